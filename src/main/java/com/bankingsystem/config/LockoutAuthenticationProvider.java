@@ -0,0 +1,52 @@
+package com.bankingsystem.config;
+
+import com.bankingsystem.service.LoginAttemptTracker;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * Username/password authentication that consults the {@link LoginAttemptTracker}.
+ *
+ * Locked usernames and addresses are refused before the user is loaded or a
+ * hash is checked, so a credential-stuffing run costs no database reads and
+ * no hashing once it trips the lock. Wrong passwords and unknown usernames
+ * both count as failures.
+ */
+public class LockoutAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final LoginAttemptTracker loginAttemptTracker;
+
+    public LockoutAuthenticationProvider(LoginAttemptTracker loginAttemptTracker) {
+        this.loginAttemptTracker = loginAttemptTracker;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        String address = remoteAddress(authentication);
+
+        if (loginAttemptTracker.isLocked(username, address)) {
+            throw new LockedException("Too many failed sign-in attempts; please try again later");
+        }
+
+        try {
+            Authentication result = super.authenticate(authentication);
+            loginAttemptTracker.recordSuccess(username);
+            return result;
+        } catch (BadCredentialsException e) {
+            loginAttemptTracker.recordFailure(username, address);
+            throw e;
+        }
+    }
+
+    private String remoteAddress(Authentication authentication) {
+        if (authentication.getDetails() instanceof WebAuthenticationDetails) {
+            return ((WebAuthenticationDetails) authentication.getDetails()).getRemoteAddress();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.bankingsystem.config;
+
+import com.bankingsystem.service.RateLimiter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the {@link RateLimiter} to login and money-movement posts.
+ *
+ * Every limited request takes a token from its client address's bucket, and
+ * signed-in users also from their own, so one user cannot get around the
+ * limit by changing address. Refused requests get 429 with Retry-After. The
+ * filter sits in the security chain after the session is restored, so the
+ * user is known. It is not a bean, so the servlet container does not run it a
+ * second time outside the chain.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // The path within the application, whatever the servlet mapping
+        String route = rateLimiter.routeFor(request.getMethod(), urlPathHelper.getPathWithinApplication(request));
+        if (route == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = rateLimiter.tryAcquire(route, "ip:" + request.getRemoteAddr());
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (waitNanos == 0 && auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            waitNanos = rateLimiter.tryAcquire(route, "user:" + auth.getName());
+        }
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("Too many requests; please retry in " + retryAfterSeconds + " seconds");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -1,22 +1,75 @@
 package com.bankingsystem.config;
 
+import com.bankingsystem.service.LoginAttemptTracker;
+import com.bankingsystem.service.RateLimiter;
+import com.bankingsystem.service.UserDetailsServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    /**
+     * Hashes new passwords with the configured algorithm and still verifies every
+     * supported one. Hashes made with another algorithm or a lower BCrypt cost
+     * are upgraded on the next successful login (see UserDetailsServiceImpl).
+     */
+    @Bean
+    public PooledPasswordEncoder passwordEncoder(
+            @Value("${security.password.algorithm:bcrypt}") String algorithm,
+            @Value("${security.password.bcrypt-strength:10}") int bcryptStrength,
+            @Value("${security.password.pbkdf2-iterations:310000}") int pbkdf2Iterations,
+            @Value("${security.password.hashing-threads:2}") int hashingThreads,
+            @Value("${security.password.hashing-queue:16}") int hashingQueue,
+            @Value("${security.password.hashing-timeout-ms:5000}") long hashingTimeoutMillis) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Pbkdf2PasswordEncoder pbkdf2 = new Pbkdf2PasswordEncoder("", 16, pbkdf2Iterations, 256);
+        pbkdf2.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+        encoders.put("pbkdf2", pbkdf2);
+        if (!encoders.containsKey(algorithm)) {
+            throw new IllegalArgumentException("security.password.algorithm must be one of " + encoders.keySet());
+        }
+
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(algorithm, encoders);
+        // Hashes stored before ids were added to the column are plain BCrypt
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return new PooledPasswordEncoder(delegating, Math.max(1, hashingThreads), hashingQueue, hashingTimeoutMillis);
+    }
+
+    /**
+     * Form login and AuthService both authenticate through this provider, so the
+     * lockout applies to every username/password sign-in.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public LockoutAuthenticationProvider authenticationProvider(UserDetailsServiceImpl userDetailsService,
+                                                                PasswordEncoder passwordEncoder,
+                                                                LoginAttemptTracker loginAttemptTracker) {
+        LockoutAuthenticationProvider provider = new LockoutAuthenticationProvider(loginAttemptTracker);
+        provider.setUserDetailsService(userDetailsService);
+        provider.setUserDetailsPasswordService(userDetailsService);
+        provider.setPasswordEncoder(passwordEncoder);
+        return provider;
     }
 
     @Bean
@@ -25,12 +78,19 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, RateLimiter rateLimiter) throws Exception {
         http
+            .addFilterBefore(new RateLimitFilter(rateLimiter), UsernamePasswordAuthenticationFilter.class)
             .authorizeRequests()
                 .antMatchers("/css/**", "/js/**", "/images/**", "/webjars/**").permitAll()
                 .antMatchers("/", "/home", "/register", "/login", "/forgot-password", "/h2-console/**").permitAll()
                 .antMatchers("/admin/**").permitAll() // Temporarily allow all access to admin pages for testing
+                // Operational counters name accounts and users; never public
+                .antMatchers("/api/metrics/**").hasRole("ADMIN")
+                // A stress run scans every active loan; only operators may start or read one
+                .antMatchers("/api/loans/stress/**").hasRole("ADMIN")
+                // Bulk files post from the caller's own accounts
+                .antMatchers("/api/bulk-transfers/**").authenticated()
                 .antMatchers("/api/**").permitAll() // Allow access to API endpoints for testing
                 .anyRequest().permitAll() // Temporarily allow all access for testing
                 .and()
@@ -41,7 +101,12 @@ public class SecurityConfig {
                 .and()
             .logout()
                 .logoutSuccessUrl("/login?logout")
-                .permitAll();
+                .permitAll()
+                .and()
+            // API clients get a 401 instead of a redirect to the login page
+            .exceptionHandling()
+                .defaultAuthenticationEntryPointFor(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED),
+                        new AntPathRequestMatcher("/api/**"));
         
         // Disable CSRF and frame options for development
         http.csrf().disable();
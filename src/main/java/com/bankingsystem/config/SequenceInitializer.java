@@ -0,0 +1,75 @@
+package com.bankingsystem.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * Moves the id sequences of tables that used to have IDENTITY ids past the
+ * ids already stored.
+ *
+ * {@code ddl-auto=update} creates a new sequence starting at 1 next to the
+ * existing rows, so the first pooled block would collide with them. Runs once
+ * the schema is updated and before the application takes requests; a sequence
+ * that is already ahead is left alone.
+ */
+@Component
+@Slf4j
+public class SequenceInitializer {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    private static final String[][] SEQUENCES = {
+            {"transactions", "transaction_seq"},
+            {"notifications", "notification_seq"}
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Injected so the schema update has run before the sequences are read
+    public SequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void alignSequences() {
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        for (String[] sequence : SEQUENCES) {
+            align(database, sequence[0], sequence[1]);
+        }
+    }
+
+    private void align(String database, String table, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        if (maxId == null) {
+            return;
+        }
+        // The pooled optimizer hands out the block just below the value it reads
+        long required = maxId + ALLOCATION_SIZE;
+
+        if ("H2".equals(database)) {
+            List<Long> next = jdbcTemplate.queryForList(
+                    "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?",
+                    Long.class, sequence.toUpperCase());
+            if (!next.isEmpty() && next.get(0) < required) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + required);
+                log.info("Restarted {} at {} above the existing {} ids", sequence, required, table);
+            }
+        } else if ("MySQL".equals(database)) {
+            // MySQL has no sequences; Hibernate keeps the next value in a one-row table
+            List<Long> next = jdbcTemplate.queryForList("SELECT next_val FROM " + sequence, Long.class);
+            if (!next.isEmpty() && next.get(0) < required) {
+                jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ?", required);
+                log.info("Moved {} to {} above the existing {} ids", sequence, required, table);
+            }
+        } else {
+            log.warn("Not checking {} against the existing {} ids on {}", sequence, table, database);
+        }
+    }
+}
@@ -1,25 +1,34 @@
 package com.bankingsystem.controller;
 
 import com.bankingsystem.model.Account;
+import com.bankingsystem.model.AccountSnapshot;
 import com.bankingsystem.model.Transaction;
 import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserPrincipal;
 import com.bankingsystem.model.Account.AccountType;
 import com.bankingsystem.repository.AccountRepository;
 import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.service.AccountCache;
 import com.bankingsystem.service.AccountService;
+import com.bankingsystem.service.CurrentUser;
+import com.bankingsystem.service.StatementService;
 import com.bankingsystem.controller.form.AccountForm;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.validation.BindingResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.validation.Valid;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,55 +43,57 @@ public class AccountController {
     private final AccountService accountService;
     private final UserRepository userRepository;
     private final AccountRepository accountRepository;
+    private final StatementService statementService;
+    private final AccountCache accountCache;
+    private final CurrentUser currentUser;
+    
+    private static final LocalDateTime STATEMENT_EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
 
     @GetMapping
     public String listAccounts(Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
+        if (principal != null) {
+            User user = userRepository.getReferenceById(principal.getId());
             
-            if (user != null) {
-                try {
-                    // Get active accounts for the user
-                    List<Account> accounts = accountService.getUserActiveAccounts(user);
-                    
-                    if (accounts.isEmpty()) {
-                        // If no accounts exist, create sample accounts for the user
-                        accounts = createSampleAccounts();
-                        // Save the sample accounts to the database
-                        for (Account account : accounts) {
-                            account.setUser(user);
-                            accountRepository.save(account);
-                        }
+            try {
+                // Get active accounts for the user
+                List<Account> accounts = accountService.getUserActiveAccounts(user);
+                
+                if (accounts.isEmpty()) {
+                    // If no accounts exist, create sample accounts for the user
+                    accounts = createSampleAccounts();
+                    // Save the sample accounts to the database
+                    for (Account account : accounts) {
+                        account.setUser(user);
+                        accountRepository.save(account);
                     }
-                    
-                    // Calculate total balance
-                    BigDecimal totalBalance = accounts.stream()
-                            .map(Account::getBalance)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    // Get the most recent transaction date if any
-                    LocalDateTime lastTransaction = accounts.stream()
-                        .flatMap(account -> account.getTransactions() != null ? account.getTransactions().stream() : null)
-                        .filter(Objects::nonNull)
-                        .map(Transaction::getTransactionDate)
-                        .filter(Objects::nonNull)
-                        .max(LocalDateTime::compareTo)
-                        .orElse(null);
-
-                    model.addAttribute("user", user);
-                    model.addAttribute("accounts", accounts);
-                    model.addAttribute("totalBalance", totalBalance);
-                    model.addAttribute("lastTransaction", lastTransaction);
-                    
-                    return "accounts/index";
-                } catch (Exception e) {
-                    // Log the error and show a friendly message
-                    model.addAttribute("error", "Error loading accounts: " + e.getMessage());
-                    return "error";
                 }
+                
+                // Calculate total balance
+                BigDecimal totalBalance = accounts.stream()
+                        .map(Account::getBalance)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                // Get the most recent transaction date if any
+                LocalDateTime lastTransaction = accounts.stream()
+                    .flatMap(account -> account.getTransactions() != null ? account.getTransactions().stream() : null)
+                    .filter(Objects::nonNull)
+                    .map(Transaction::getTransactionDate)
+                    .filter(Objects::nonNull)
+                    .max(LocalDateTime::compareTo)
+                    .orElse(null);
+
+                model.addAttribute("user", principal);
+                model.addAttribute("accounts", accounts);
+                model.addAttribute("totalBalance", totalBalance);
+                model.addAttribute("lastTransaction", lastTransaction);
+                
+                return "accounts/index";
+            } catch (Exception e) {
+                // Log the error and show a friendly message
+                model.addAttribute("error", "Error loading accounts: " + e.getMessage());
+                return "error";
             }
         }
         
@@ -91,20 +102,15 @@ public class AccountController {
     
     @GetMapping("/new")
     public String showNewAccountForm(Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
-            
-            if (user != null) {
-                model.addAttribute("user", user);
-                if (!model.containsAttribute("accountForm")) {
-                    model.addAttribute("accountForm", new AccountForm());
-                }
-                return "accounts/new";
+        if (principal != null) {
+            model.addAttribute("user", principal);
+            if (!model.containsAttribute("accountForm")) {
+                model.addAttribute("accountForm", new AccountForm());
             }
+            return "accounts/new";
         }
         
         return "redirect:/login";
@@ -116,17 +122,12 @@ public class AccountController {
             BindingResult bindingResult,
             RedirectAttributes redirectAttributes) {
         
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null || !(auth.getPrincipal() instanceof UserDetails)) {
-            return "redirect:/login";
-        }
-        
-        UserDetails userDetails = (UserDetails) auth.getPrincipal();
-        User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
-        if (user == null) {
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        if (principal == null) {
             return "redirect:/login";
         }
+        User user = userRepository.getReferenceById(principal.getId());
         
         // Validate minimum deposit based on account type
         if (accountForm.getType() != null && accountForm.getInitialDeposit() != null) {
@@ -179,26 +180,21 @@ public class AccountController {
 
     @GetMapping("/{accountNumber}")
     public String viewAccount(@PathVariable String accountNumber, Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
+        if (principal != null) {
+            // Get the account
+            AccountSnapshot account = accountService.getAccountByNumber(accountNumber);
             
-            if (user != null) {
-                // Get the account
-                Account account = accountService.getAccountByNumber(accountNumber);
-                
-                // Use empty list for transactions since we simplified the service
-                List<Transaction> transactions = Collections.emptyList();
-                
-                model.addAttribute("user", user);
-                model.addAttribute("account", account);
-                model.addAttribute("transactions", transactions);
-                
-                return "accounts/details";
-            }
+            // Use empty list for transactions since we simplified the service
+            List<Transaction> transactions = Collections.emptyList();
+            
+            model.addAttribute("user", principal);
+            model.addAttribute("account", account);
+            model.addAttribute("transactions", transactions);
+            
+            return "accounts/details";
         }
         
         return "redirect:/login";
@@ -207,11 +203,10 @@ public class AccountController {
     @GetMapping("/{accountNumber}/statement")
     public String generateStatement(
             @PathVariable String accountNumber,
-            @RequestParam(required = false) String format,
             Model model) {
         
         // Get the account
-        Account account = accountService.getAccountByNumber(accountNumber);
+        AccountSnapshot account = accountService.getAccountByNumber(accountNumber);
         
         // Use empty list for transactions since we simplified the service
         List<Transaction> transactions = Collections.emptyList();
@@ -219,28 +214,60 @@ public class AccountController {
         model.addAttribute("account", account);
         model.addAttribute("transactions", transactions);
         
-        // If format is specified, generate and return the appropriate format
-        if (format != null) {
-            if (format.equals("pdf")) {
-                // Logic to generate PDF statement
-                return "accounts/statement-pdf";
-            } else if (format.equals("excel")) {
-                // Logic to generate Excel statement
-                return "accounts/statement-excel";
-            }
-        }
-        
         // Default to HTML statement
         return "accounts/statement";
     }
     
+    @GetMapping(value = "/{accountNumber}/statement", params = "format")
+    public ResponseEntity<StreamingResponseBody> exportStatement(
+            @PathVariable String accountNumber,
+            @RequestParam String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        AccountSnapshot account = accountCache.get(accountNumber).orElse(null);
+        if (account == null || !account.isHeldBy(principal.getId())) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        StatementService.Format statementFormat;
+        switch (format.toLowerCase()) {
+            case "csv":
+            case "excel":
+                // Spreadsheet applications open the CSV export directly
+                statementFormat = StatementService.Format.CSV;
+                break;
+            case "ndjson":
+            case "json":
+                statementFormat = StatementService.Format.NDJSON;
+                break;
+            default:
+                return ResponseEntity.badRequest().build();
+        }
+        
+        LocalDateTime start = from != null ? from.atStartOfDay() : STATEMENT_EPOCH;
+        LocalDateTime end = to != null ? to.plusDays(1).atStartOfDay() : LocalDateTime.now();
+        
+        StreamingResponseBody body = out -> statementService.writeStatement(accountNumber, start, end, statementFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(statementFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"statement-" + accountNumber + "." + statementFormat.getExtension() + "\"")
+                .body(body);
+    }
+    
     // Helper method to create sample accounts for demonstration
     private List<Account> createSampleAccounts() {
         List<Account> accounts = new ArrayList<>();
         
         // Sample checking account
         Account checkingAccount = new Account();
-        checkingAccount.setId(1L);
         checkingAccount.setAccountNumber("XXXX-1234");
         checkingAccount.setAccountType(Account.AccountType.CHECKING);
         checkingAccount.setBalance(new BigDecimal("2540.50"));
@@ -251,7 +278,6 @@ public class AccountController {
         
         // Sample savings account
         Account savingsAccount = new Account();
-        savingsAccount.setId(2L);
         savingsAccount.setAccountNumber("XXXX-5678");
         savingsAccount.setAccountType(Account.AccountType.SAVINGS);
         savingsAccount.setBalance(new BigDecimal("7250.25"));
@@ -263,7 +289,6 @@ public class AccountController {
         
         // Sample emergency fund account
         Account emergencyFund = new Account();
-        emergencyFund.setId(3L);
         emergencyFund.setAccountNumber("XXXX-9012");
         emergencyFund.setAccountType(Account.AccountType.SAVINGS);
         emergencyFund.setBalance(new BigDecimal("10000.00"));
@@ -274,7 +299,6 @@ public class AccountController {
         
         // Sample fixed deposit account
         Account fixedDeposit = new Account();
-        fixedDeposit.setId(4L);
         fixedDeposit.setAccountNumber("XXXX-3456");
         fixedDeposit.setAccountType(Account.AccountType.FIXED_DEPOSIT);
         fixedDeposit.setBalance(new BigDecimal("15000.00"));
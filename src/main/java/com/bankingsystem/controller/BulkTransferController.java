@@ -0,0 +1,112 @@
+package com.bankingsystem.controller;
+
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.service.BulkTransferService;
+import com.bankingsystem.service.CurrentUser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Bulk transfer (payroll) files. POST the file as the raw request body with
+ * Content-Type text/csv or application/x-ndjson; an optional Idempotency-Key
+ * header names the batch so a re-submitted file does not post twice. The job
+ * runs in the background: poll its status and download the per-line results.
+ */
+@RestController
+@RequestMapping("/api/bulk-transfers")
+@RequiredArgsConstructor
+public class BulkTransferController {
+
+    private final CurrentUser currentUser;
+    private final BulkTransferService bulkTransferService;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submit(
+            HttpServletRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String batchId) throws IOException {
+        
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        BulkTransferService.Format format = formatOf(request.getContentType());
+        if (format == null) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(Collections.singletonMap("error", "Send text/csv or application/x-ndjson"));
+        }
+        
+        try {
+            BulkTransferService.Job job = bulkTransferService.submit(principal.getId(), batchId, format,
+                    request.getInputStream());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/bulk-transfers/" + job.getId()))
+                    .body(job.toStatus());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> status(@PathVariable String jobId) {
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        return bulkTransferService.getJob(principal.getId(), jobId)
+                .map(job -> ResponseEntity.ok(job.toStatus()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/{jobId}/results")
+    public ResponseEntity<Resource> results(@PathVariable String jobId) {
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        // Results are appended chunk by chunk, so a running job returns what is done so far
+        return bulkTransferService.getJob(principal.getId(), jobId)
+                .<ResponseEntity<Resource>>map(job -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("text/csv"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment; filename=\"bulk-transfer-" + jobId + "-results.csv\"")
+                        .body(new FileSystemResource(job.getResults())))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    private static BulkTransferService.Format formatOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String type = contentType.toLowerCase();
+        if (type.startsWith("text/csv")) {
+            return BulkTransferService.Format.CSV;
+        }
+        if (type.startsWith("application/x-ndjson") || type.startsWith("application/ndjson")) {
+            return BulkTransferService.Format.NDJSON;
+        }
+        return null;
+    }
+}
@@ -1,43 +1,44 @@
 package com.bankingsystem.controller;
 
 import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserFinancialSummary;
+import com.bankingsystem.model.UserPrincipal;
 import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.service.CurrentUser;
+import com.bankingsystem.service.UserSummaryService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
-import java.math.BigDecimal;
-import java.util.Collections;
-
 @Controller
 @RequiredArgsConstructor
 public class DashboardController {
 
     private final UserRepository userRepository;
+    private final CurrentUser currentUser;
+    private final UserSummaryService userSummaryService;
 
     @GetMapping("/dashboard")
     public String dashboard(Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
+        if (principal != null) {
+            User user = userRepository.getReferenceById(principal.getId());
+            
+            // One primary-key read of the maintained summary
+            UserFinancialSummary summary = userSummaryService.getSummary(user);
             
-            if (user != null) {
-                // Add data to the model
-                model.addAttribute("user", user);
-                model.addAttribute("accounts", Collections.emptyList());
-                model.addAttribute("recentTransactions", Collections.emptyList());
-                model.addAttribute("unreadNotifications", 0);
-                model.addAttribute("totalBalance", BigDecimal.ZERO);
-                
-                return "dashboard/index";
-            }
+            // Add data to the model
+            model.addAttribute("user", principal);
+            model.addAttribute("summary", summary);
+            model.addAttribute("accounts", summary.getAccounts());
+            model.addAttribute("recentTransactions", summary.getRecentTransactions());
+            model.addAttribute("unreadNotifications", summary.getUnreadNotifications());
+            model.addAttribute("totalBalance", summary.getTotalBalance());
+            
+            return "dashboard/index";
         }
         
         return "redirect:/login";
@@ -45,17 +46,12 @@ public class DashboardController {
     
     @GetMapping("/profile")
     public String profile(Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
-            
-            if (user != null) {
-                model.addAttribute("user", user);
-                return "dashboard/profile";
-            }
+        if (principal != null) {
+            model.addAttribute("user", principal);
+            return "dashboard/profile";
         }
         
         return "redirect:/login";
@@ -0,0 +1,43 @@
+package com.bankingsystem.controller;
+
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.service.CurrentUser;
+import com.bankingsystem.service.EventStreamRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-sent events for the signed-in user: "notification" for each new
+ * in-app notification and "balance" for each change to an account they hold.
+ */
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+public class EventStreamController {
+
+    private final CurrentUser currentUser;
+    private final EventStreamRegistry eventStreamRegistry;
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe() {
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        SseEmitter emitter = eventStreamRegistry.subscribe(principal.getId());
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+}
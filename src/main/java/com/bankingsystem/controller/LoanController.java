@@ -1,15 +1,13 @@
 package com.bankingsystem.controller;
 
 import com.bankingsystem.controller.form.LoanForm;
+import com.bankingsystem.model.AmortizationSchedule;
 import com.bankingsystem.model.Loan;
 import com.bankingsystem.model.Loan.LoanType;
-import com.bankingsystem.model.LoanPayment;
-import com.bankingsystem.model.User;
-import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.service.CurrentUser;
+import com.bankingsystem.service.LoanService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -18,31 +16,27 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.validation.Valid;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 
 @Controller
 @RequestMapping("/loans")
 @RequiredArgsConstructor
 public class LoanController {
 
-    private final UserRepository userRepository;
+    // One year of payments per page of the amortization schedule
+    private static final int SCHEDULE_PAGE_SIZE = 12;
+
+    private final CurrentUser currentUser;
+    private final LoanService loanService;
 
     @GetMapping
     public String listLoans(Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
-            
-            if (user != null) {
-                model.addAttribute("loans", Collections.emptyList());
-                return "loans/list";
-            }
+        if (principal != null) {
+            model.addAttribute("loans", Collections.emptyList());
+            return "loans/list";
         }
         
         return "redirect:/login";
@@ -86,79 +80,30 @@ public class LoanController {
     public String calculateLoan(
             @Valid @ModelAttribute("loanForm") LoanForm loanForm,
             BindingResult bindingResult,
+            @RequestParam(defaultValue = "0") int schedulePage,
             Model model) {
         
         if (bindingResult.hasErrors()) {
             return "loans/calculator";
         }
         
-        BigDecimal amount = loanForm.getAmount();
-        BigDecimal annualRate = loanForm.getInterestRate();
-        int termMonths = loanForm.getTermMonths();
-        
-        // Calculate monthly interest rate
-        BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_UP);
-        
-        // Calculate EMI using the formula: P * r * (1 + r)^n / ((1 + r)^n - 1)
-        BigDecimal temp = monthlyRate.add(BigDecimal.ONE).pow(termMonths);
-        BigDecimal emi = amount.multiply(monthlyRate)
-                .multiply(temp)
-                .divide(temp.subtract(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
-        
-        // Calculate total payment and total interest
-        BigDecimal totalPayment = emi.multiply(BigDecimal.valueOf(termMonths));
-        BigDecimal totalInterest = totalPayment.subtract(amount);
-        
-        // Generate amortization schedule
-        List<LoanPayment> amortizationSchedule = generateAmortizationSchedule(amount, annualRate, termMonths, emi);
+        // Cents arithmetic in a columnar schedule; rows are built only for the page shown
+        AmortizationSchedule schedule = loanService.amortize(
+                loanForm.getAmount(), loanForm.getInterestRate(), loanForm.getTermMonths());
+        int pages = schedule.pageCount(SCHEDULE_PAGE_SIZE);
+        int page = Math.min(Math.max(schedulePage, 0), pages - 1);
         
         // Add results to the model
-        model.addAttribute("emi", emi);
-        model.addAttribute("totalPayment", totalPayment);
-        model.addAttribute("totalInterest", totalInterest);
-        model.addAttribute("amortizationSchedule", amortizationSchedule);
+        model.addAttribute("emi", schedule.getEmi());
+        model.addAttribute("totalPayment", schedule.getTotalPayment());
+        model.addAttribute("totalInterest", schedule.getTotalInterest());
+        model.addAttribute("amortizationSchedule", schedule.page(page, SCHEDULE_PAGE_SIZE));
+        model.addAttribute("schedulePage", page);
+        model.addAttribute("schedulePages", pages);
         
         return "loans/calculator";
     }
     
-    private List<LoanPayment> generateAmortizationSchedule(
-            BigDecimal principal, 
-            BigDecimal annualRate, 
-            int termMonths, 
-            BigDecimal emi) {
-        
-        List<LoanPayment> schedule = new ArrayList<>();
-        BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_UP);
-        BigDecimal remainingBalance = principal;
-        
-        for (int i = 1; i <= termMonths; i++) {
-            BigDecimal interestForMonth = remainingBalance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
-            BigDecimal principalForMonth = emi.subtract(interestForMonth);
-            
-            // Adjust for the last payment to account for any rounding differences
-            if (i == termMonths) {
-                principalForMonth = remainingBalance;
-                remainingBalance = BigDecimal.ZERO;
-            } else {
-                remainingBalance = remainingBalance.subtract(principalForMonth);
-            }
-            
-            if (remainingBalance.compareTo(BigDecimal.ZERO) < 0) {
-                remainingBalance = BigDecimal.ZERO;
-            }
-            
-            schedule.add(new LoanPayment(
-                i,
-                emi,
-                principalForMonth,
-                interestForMonth,
-                remainingBalance
-            ));
-        }
-        
-        return schedule;
-    }
-    
     @GetMapping("/eligibility")
     public String showEligibilityCalculator() {
         return "loans/eligibility";
@@ -179,41 +124,8 @@ public class LoanController {
             return "0";
         }
         
-        // Rough estimate based on loan type
-        BigDecimal rate;
-        int termMonths;
-        
-        switch (loanType) {
-            case HOME:
-                rate = BigDecimal.valueOf(7.5);
-                termMonths = 240;
-                break;
-            case CAR:
-                rate = BigDecimal.valueOf(9.0);
-                termMonths = 60;
-                break;
-            case PERSONAL:
-                rate = BigDecimal.valueOf(12.0);
-                termMonths = 36;
-                break;
-            case EDUCATION:
-                rate = BigDecimal.valueOf(8.0);
-                termMonths = 84;
-                break;
-            default:
-                rate = BigDecimal.valueOf(10.0);
-                termMonths = 60;
-        }
-        
-        // P = EMI * ((1+r)^n - 1) / (r * (1+r)^n)
-        BigDecimal monthlyRate = rate.divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_UP);
-        BigDecimal factor = BigDecimal.ONE.add(monthlyRate).pow(termMonths);
-        BigDecimal eligibleAmount = availableEmi.multiply(
-                factor.subtract(BigDecimal.ONE)
-        ).divide(
-                monthlyRate.multiply(factor),
-                2, RoundingMode.HALF_UP
-        );
+        // Standard rate and term for the loan type; their discount factors are precomputed
+        BigDecimal eligibleAmount = loanService.eligibleAmount(availableEmi, loanType);
         
         return eligibleAmount.toString();
     }
@@ -0,0 +1,60 @@
+package com.bankingsystem.controller;
+
+import com.bankingsystem.model.LoanStressReport;
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.service.CurrentUser;
+import com.bankingsystem.service.LoanStressService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rate-shock reports for the loan book. POST runs a simulation and returns its
+ * report, with shocks in basis points (for example {@code ?shocks=100,200,300});
+ * GET returns the last report without running again.
+ */
+@RestController
+@RequestMapping("/api/loans/stress")
+@RequiredArgsConstructor
+public class LoanStressController {
+
+    private final CurrentUser currentUser;
+    private final LoanStressService loanStressService;
+
+    @PostMapping
+    public ResponseEntity<?> run(@RequestParam(required = false) List<Integer> shocks) {
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        try {
+            return ResponseEntity.ok(loanStressService.run(shocks));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping
+    public ResponseEntity<LoanStressReport> lastReport() {
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        return loanStressService.getLastReport()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
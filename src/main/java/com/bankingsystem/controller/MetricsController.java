@@ -0,0 +1,77 @@
+package com.bankingsystem.controller;
+
+import com.bankingsystem.config.PooledPasswordEncoder;
+import com.bankingsystem.service.AccountCache;
+import com.bankingsystem.service.BulkTransferService;
+import com.bankingsystem.service.EventStreamRegistry;
+import com.bankingsystem.service.IdempotencyStore;
+import com.bankingsystem.service.InterestAccrualJob;
+import com.bankingsystem.service.LoanCalculationCache;
+import com.bankingsystem.service.LoanStressService;
+import com.bankingsystem.service.LoginAttemptTracker;
+import com.bankingsystem.service.NotificationRetentionJob;
+import com.bankingsystem.service.NotificationService;
+import com.bankingsystem.service.OutboxRelay;
+import com.bankingsystem.service.PostingRetryPolicy;
+import com.bankingsystem.service.PrincipalCache;
+import com.bankingsystem.service.RateLimiter;
+import com.bankingsystem.service.TransactionJournalWriter;
+import com.bankingsystem.service.UserSummaryService;
+import com.bankingsystem.service.ledger.LedgerEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final AccountCache accountCache;
+    private final PrincipalCache principalCache;
+    private final PooledPasswordEncoder passwordEncoder;
+    private final LoginAttemptTracker loginAttemptTracker;
+    private final RateLimiter rateLimiter;
+    private final IdempotencyStore idempotencyStore;
+    private final PostingRetryPolicy postingRetryPolicy;
+    private final TransactionJournalWriter transactionJournalWriter;
+    private final OutboxRelay outboxRelay;
+    private final UserSummaryService userSummaryService;
+    private final InterestAccrualJob interestAccrualJob;
+    private final BulkTransferService bulkTransferService;
+    private final NotificationService notificationService;
+    private final EventStreamRegistry eventStreamRegistry;
+    private final NotificationRetentionJob notificationRetentionJob;
+    private final LoanCalculationCache loanCalculationCache;
+    private final LoanStressService loanStressService;
+    private final Optional<LedgerEngine> ledgerEngine;
+
+    @GetMapping
+    public Map<String, Object> metrics() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("accountCache", accountCache.getMetrics());
+        response.put("principalCache", principalCache.getMetrics());
+        response.put("passwordHashing", passwordEncoder.getMetrics());
+        response.put("loginAttempts", loginAttemptTracker.getMetrics());
+        response.put("rateLimits", rateLimiter.getMetrics());
+        response.put("idempotency", idempotencyStore.getMetrics());
+        response.put("postingRetries", postingRetryPolicy.getMetrics());
+        response.put("journal", transactionJournalWriter.getMetrics());
+        response.put("outbox", outboxRelay.getMetrics());
+        response.put("userSummary", userSummaryService.getMetrics());
+        response.put("interestAccrual", interestAccrualJob.getMetrics());
+        response.put("bulkTransfers", bulkTransferService.getMetrics());
+        response.put("notifications", notificationService.getMetrics());
+        response.put("eventStream", eventStreamRegistry.getMetrics());
+        response.put("notificationRetention", notificationRetentionJob.getMetrics());
+        response.put("loanCalculations", loanCalculationCache.getMetrics());
+        response.put("loanStress", loanStressService.getMetrics());
+        ledgerEngine.ifPresent(engine -> response.put("ledger", engine.getMetrics()));
+        return response;
+    }
+}
@@ -1,19 +1,17 @@
 package com.bankingsystem.controller;
 
 import com.bankingsystem.model.Notification;
-import com.bankingsystem.model.User;
-import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.service.CurrentUser;
+import com.bankingsystem.service.NotificationService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 
 @Controller
@@ -21,158 +19,94 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class NotificationController {
 
-    private final UserRepository userRepository;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final CurrentUser currentUser;
+    private final NotificationService notificationService;
 
     @GetMapping
-    public String listNotifications(Model model) {
+    public String listNotifications(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int size,
+            Model model) {
         try {
-            // Get the currently authenticated user
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            
-            if (auth != null && auth.isAuthenticated() && !(auth.getPrincipal() instanceof String)) {
-                String username = ((UserDetails) auth.getPrincipal()).getUsername();
-                Optional<User> userOptional = userRepository.findByUsername(username);
-                
-                if (userOptional.isPresent()) {
-                    // For demo purposes, create sample notifications
-                    List<Notification> notifications = createSampleNotifications();
-                    
-                    model.addAttribute("notifications", notifications);
-                    model.addAttribute("user", userOptional.get());
-                    model.addAttribute("unreadCount", countUnreadNotifications(notifications));
-                    
-                    return "notifications/index";
+            // Get the currently authenticated user from the session principal, without a query
+            Optional<UserPrincipal> principal = currentUser.getPrincipal();
+
+            if (principal.isPresent()) {
+                // One keyset-paged query on the (user_id, delivery_channel, created_at, id) index
+                int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+                Slice<Notification> notifications = notificationService.getInbox(principal.get().getId(), before, beforeId, pageSize);
+
+                model.addAttribute("notifications", notifications.getContent());
+                model.addAttribute("hasNext", notifications.hasNext());
+                if (notifications.hasNext()) {
+                    // Cursor for the next page is the last notification on this one
+                    Notification last = notifications.getContent().get(notifications.getNumberOfElements() - 1);
+                    model.addAttribute("nextBefore", last.getCreatedAt());
+                    model.addAttribute("nextBeforeId", last.getId());
                 }
+                model.addAttribute("size", pageSize);
+                model.addAttribute("user", principal.get());
+                model.addAttribute("unreadCount", notificationService.getUnreadCount(principal.get().getId()));
+
+                return "notifications/index";
             }
             return "redirect:/login";
         } catch (Exception e) {
             return "redirect:/login";
         }
     }
-    
+
     @GetMapping("/{notificationId}")
     public String viewNotification(@PathVariable Long notificationId, Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
-            
-            if (user != null) {
-                // For demo purposes, find the notification by ID
-                Notification notification = findNotificationById(notificationId);
-                
-                if (notification != null) {
-                    // Mark as read
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+
+        if (principal != null) {
+            Notification notification = notificationService.getInboxNotification(principal.getId(), notificationId).orElse(null);
+
+            if (notification != null) {
+                // Mark as read
+                if (!notification.isRead() && notificationService.markAsRead(principal.getId(), notificationId)) {
                     notification.setRead(true);
-                    
-                    model.addAttribute("notification", notification);
-                    model.addAttribute("user", user);
-                    
-                    return "notifications/details";
+                    notification.setReadAt(LocalDateTime.now());
                 }
+
+                model.addAttribute("notification", notification);
+                model.addAttribute("user", principal);
+
+                return "notifications/details";
             }
         }
-        
+
         return "redirect:/notifications";
     }
-    
+
     @PostMapping("/{notificationId}/mark-read")
     @ResponseBody
     public String markAsRead(@PathVariable Long notificationId) {
-        // Find the notification by ID
-        Notification notification = findNotificationById(notificationId);
-        
-        if (notification != null) {
-            // Mark as read
-            notification.setRead(true);
-            
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+
+        if (principal != null && notificationService.markAsRead(principal.getId(), notificationId)) {
             return "success";
         }
-        
+
         return "error";
     }
-    
+
     @PostMapping("/mark-all-read")
     public String markAllAsRead() {
-        // Get all notifications and mark them as read
-        List<Notification> notifications = createSampleNotifications();
-        
-        for (Notification notification : notifications) {
-            notification.setRead(true);
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+
+        if (principal != null) {
+            // Chunked, so a large inbox does not hold its row locks in one long statement
+            notificationService.markAllAsRead(principal.getId());
         }
-        
+
         return "redirect:/notifications";
     }
-    
-    // Helper method to create sample notifications for demonstration
-    private List<Notification> createSampleNotifications() {
-        List<Notification> notifications = new ArrayList<>();
-        
-        // Sample notification 1
-        Notification notification1 = new Notification();
-        notification1.setId(1L);
-        notification1.setTitle("Welcome to Online Banking");
-        notification1.setMessage("Thank you for registering with our online banking service.");
-        notification1.setType(Notification.NotificationType.SYSTEM);
-        notification1.setDeliveryChannel(Notification.DeliveryChannel.IN_APP);
-        notification1.setCreatedAt(LocalDateTime.now().minusDays(2));
-        notification1.setRead(false);
-        notification1.setPriority(Notification.NotificationPriority.NORMAL);
-        notifications.add(notification1);
-        
-        // Sample notification 2
-        Notification notification2 = new Notification();
-        notification2.setId(2L);
-        notification2.setTitle("New Transaction");
-        notification2.setMessage("A new transaction of $100.00 has been credited to your account.");
-        notification2.setType(Notification.NotificationType.TRANSACTION);
-        notification2.setDeliveryChannel(Notification.DeliveryChannel.IN_APP);
-        notification2.setCreatedAt(LocalDateTime.now().minusHours(5));
-        notification2.setRead(false);
-        notification2.setPriority(Notification.NotificationPriority.NORMAL);
-        notifications.add(notification2);
-        
-        // Sample notification 3
-        Notification notification3 = new Notification();
-        notification3.setId(3L);
-        notification3.setTitle("Security Alert");
-        notification3.setMessage("A new device has been detected logging into your account.");
-        notification3.setType(Notification.NotificationType.SECURITY);
-        notification3.setDeliveryChannel(Notification.DeliveryChannel.IN_APP);
-        notification3.setCreatedAt(LocalDateTime.now().minusHours(1));
-        notification3.setRead(true);
-        notification3.setPriority(Notification.NotificationPriority.HIGH);
-        notifications.add(notification3);
-        
-        // Sample notification 4
-        Notification notification4 = new Notification();
-        notification4.setId(4L);
-        notification4.setTitle("Low Balance Alert");
-        notification4.setMessage("Your Primary Checking account balance is below $500. Consider transferring funds to avoid overdraft fees.");
-        notification4.setType(Notification.NotificationType.ALERT);
-        notification4.setDeliveryChannel(Notification.DeliveryChannel.IN_APP);
-        notification4.setCreatedAt(LocalDateTime.now().minusMinutes(30));
-        notification4.setRead(false);
-        notification4.setPriority(Notification.NotificationPriority.NORMAL);
-        notifications.add(notification4);
-        
-        return notifications;
-    }
-    
-    // Helper method to find a notification by ID
-    private Notification findNotificationById(Long id) {
-        return createSampleNotifications().stream()
-                .filter(n -> n.getId().equals(id))
-                .findFirst()
-                .orElse(null);
-    }
-    
-    // Helper method to count unread notifications
-    private int countUnreadNotifications(List<Notification> notifications) {
-        return (int) notifications.stream()
-                .filter(n -> !n.isRead())
-                .count();
-    }
 }
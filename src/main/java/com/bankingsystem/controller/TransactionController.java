@@ -3,17 +3,14 @@ package com.bankingsystem.controller;
 import com.bankingsystem.model.Account;
 import com.bankingsystem.model.Transaction;
 import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserPrincipal;
 import com.bankingsystem.repository.UserRepository;
 import com.bankingsystem.service.AccountService;
+import com.bankingsystem.service.CurrentUser;
 import com.bankingsystem.service.TransactionService;
-import com.bankingsystem.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -34,9 +31,12 @@ import com.bankingsystem.controller.form.TransactionForm;
 public class TransactionController {
 
     private final UserRepository userRepository;
+    private final CurrentUser currentUser;
     private final AccountService accountService;
     private final TransactionService transactionService;
-    private final TransactionRepository transactionRepository;
+    
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
 
     @GetMapping
     public String listTransactions(
@@ -44,38 +44,37 @@ public class TransactionController {
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(required = false) Long beforeId,
             @RequestParam(defaultValue = "10") int size,
             Model model) {
         
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
+        if (principal != null) {
+            User user = userRepository.getReferenceById(principal.getId());
             
-            if (user != null) {
-                // Get all accounts for the user
-                List<Account> userAccounts = accountService.getUserAccounts(user);
-                
-                // Get transactions for all user's accounts with pagination
-                List<Transaction> transactions = new ArrayList<>();
-                Pageable pageable = PageRequest.of(page, size);
-                for (Account userAccount : userAccounts) {
-                    Page<Transaction> accountTransactions = transactionRepository.findBySourceAccountOrDestinationAccount(userAccount, userAccount, pageable);
-                    transactions.addAll(accountTransactions.getContent());
-                }
-                
-                model.addAttribute("transactions", transactions);
-                model.addAttribute("user", user);
-                
-                // Add sample accounts for the filter dropdown
-                List<Account> accounts = createSampleAccounts();
-                model.addAttribute("accounts", accounts);
-                
-                return "transactions/index";
+            // One keyset-paged query across all of the user's accounts
+            int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+            Slice<Transaction> transactions = transactionService.getUserTransactions(user, before, beforeId, pageSize);
+            
+            model.addAttribute("transactions", transactions.getContent());
+            model.addAttribute("hasNext", transactions.hasNext());
+            if (transactions.hasNext()) {
+                // Cursor for the next page is the last transaction on this one
+                Transaction last = transactions.getContent().get(transactions.getNumberOfElements() - 1);
+                model.addAttribute("nextBefore", last.getTransactionDate());
+                model.addAttribute("nextBeforeId", last.getId());
             }
+            model.addAttribute("size", pageSize);
+            model.addAttribute("user", principal);
+            
+            // Add sample accounts for the filter dropdown
+            List<Account> accounts = createSampleAccounts();
+            model.addAttribute("accounts", accounts);
+            
+            return "transactions/index";
         }
         
         return "redirect:/login";
@@ -83,22 +82,17 @@ public class TransactionController {
     
     @GetMapping("/{transactionId}")
     public String viewTransaction(@PathVariable Long transactionId, Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
+        if (principal != null) {
+            // For demo purposes, create a sample transaction
+            Transaction transaction = createSampleTransaction(transactionId);
             
-            if (user != null) {
-                // For demo purposes, create a sample transaction
-                Transaction transaction = createSampleTransaction(transactionId);
-                
-                model.addAttribute("transaction", transaction);
-                model.addAttribute("user", user);
-                
-                return "transactions/details";
-            }
+            model.addAttribute("transaction", transaction);
+            model.addAttribute("user", principal);
+            
+            return "transactions/details";
         }
         
         return "redirect:/login";
@@ -106,23 +100,20 @@ public class TransactionController {
     
     @GetMapping("/new")
     public String showNewTransactionForm(Model model) {
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
+        if (principal != null) {
+            User user = userRepository.getReferenceById(principal.getId());
             
-            if (user != null) {
-                // Get user's accounts for the transfer form
-                List<Account> userAccounts = accountService.getUserAccounts(user);
-                
-                model.addAttribute("user", user);
-                model.addAttribute("userAccounts", userAccounts);
-                model.addAttribute("transactionForm", new TransactionForm());
-                
-                return "transactions/new";
-            }
+            // Get user's accounts for the transfer form
+            List<Account> userAccounts = accountService.getUserAccounts(user);
+            
+            model.addAttribute("user", principal);
+            model.addAttribute("userAccounts", userAccounts);
+            model.addAttribute("transactionForm", new TransactionForm());
+            
+            return "transactions/new";
         }
         
         return "redirect:/login";
@@ -131,31 +122,28 @@ public class TransactionController {
     @PostMapping("/transfer")
     public String processTransfer(
             @ModelAttribute("transactionForm") TransactionForm transactionForm,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKeyHeader,
             RedirectAttributes redirectAttributes) {
         
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
-            
-            if (user != null) {
-                try {
-                    // Process the transfer
-                    Transaction transaction = transactionService.transfer(
-                            transactionForm.getFromAccountNumber(),
-                            transactionForm.getToAccountNumber(),
-                            transactionForm.getAmount(),
-                            transactionForm.getDescription()
-                    );
-                    
-                    redirectAttributes.addFlashAttribute("success", "Transfer completed successfully!");
-                    return "redirect:/transactions/" + transaction.getId();
-                } catch (Exception e) {
-                    redirectAttributes.addFlashAttribute("error", "Transfer failed: " + e.getMessage());
-                    return "redirect:/transactions/new";
-                }
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
+        
+        if (principal != null) {
+            try {
+                // Process the transfer; a retry carrying the same key gets the original transaction back
+                Transaction transaction = transactionService.transfer(
+                        transactionForm.getFromAccountNumber(),
+                        transactionForm.getToAccountNumber(),
+                        transactionForm.getAmount(),
+                        transactionForm.getDescription(),
+                        idempotencyKey(principal, idempotencyKeyHeader, transactionForm.getIdempotencyKey())
+                );
+                
+                redirectAttributes.addFlashAttribute("success", "Transfer completed successfully!");
+                return "redirect:/transactions/" + transaction.getId();
+            } catch (Exception e) {
+                redirectAttributes.addFlashAttribute("error", "Transfer failed: " + e.getMessage());
+                return "redirect:/transactions/new";
             }
         }
         
@@ -167,40 +155,35 @@ public class TransactionController {
             @ModelAttribute("transactionForm") TransactionForm transactionForm,
             RedirectAttributes redirectAttributes) {
         
-        // Get the currently authenticated user
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // Get the currently authenticated user from the session principal, without a query
+        UserPrincipal principal = currentUser.getPrincipal().orElse(null);
         
-        if (auth != null && auth.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) auth.getPrincipal();
-            User user = userRepository.findByUsername(userDetails.getUsername()).orElse(null);
-            
-            if (user != null) {
-                try {
-                    // Process the transaction based on type
-                    Transaction transaction;
-                    if (transactionForm.getType() == Transaction.TransactionType.TRANSFER) {
-                        transaction = transactionService.transfer(
-                                transactionForm.getFromAccountNumber(),
-                                transactionForm.getToAccountNumber(),
-                                transactionForm.getAmount(),
-                                transactionForm.getDescription()
-                        );
-                    } else if (transactionForm.getType() == Transaction.TransactionType.DEPOSIT) {
-                        // Handle deposit
-                        // Implementation needed
-                        throw new UnsupportedOperationException("Deposit functionality not implemented yet");
-                    } else {
-                        // Handle withdrawal
-                        // Implementation needed
-                        throw new UnsupportedOperationException("Withdrawal functionality not implemented yet");
-                    }
-                    
-                    redirectAttributes.addFlashAttribute("success", "Transaction completed successfully!");
-                    return "redirect:/transactions/" + transaction.getId();
-                } catch (Exception e) {
-                    redirectAttributes.addFlashAttribute("error", "Transaction failed: " + e.getMessage());
-                    return "redirect:/transactions/new";
+        if (principal != null) {
+            try {
+                // Process the transaction based on type
+                Transaction transaction;
+                if (transactionForm.getType() == Transaction.TransactionType.TRANSFER) {
+                    transaction = transactionService.transfer(
+                            transactionForm.getFromAccountNumber(),
+                            transactionForm.getToAccountNumber(),
+                            transactionForm.getAmount(),
+                            transactionForm.getDescription()
+                    );
+                } else if (transactionForm.getType() == Transaction.TransactionType.DEPOSIT) {
+                    // Handle deposit
+                    // Implementation needed
+                    throw new UnsupportedOperationException("Deposit functionality not implemented yet");
+                } else {
+                    // Handle withdrawal
+                    // Implementation needed
+                    throw new UnsupportedOperationException("Withdrawal functionality not implemented yet");
                 }
+                
+                redirectAttributes.addFlashAttribute("success", "Transaction completed successfully!");
+                return "redirect:/transactions/" + transaction.getId();
+            } catch (Exception e) {
+                redirectAttributes.addFlashAttribute("error", "Transaction failed: " + e.getMessage());
+                return "redirect:/transactions/new";
             }
         }
         
@@ -302,6 +285,20 @@ public class TransactionController {
         return accounts;
     }
     
+    /**
+     * Client idempotency key scoped to the user, so keys from different users never collide
+     */
+    private String idempotencyKey(UserPrincipal principal, String header, String formField) {
+        String key = header != null && !header.isBlank() ? header.trim() : formField;
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        if (key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new RuntimeException("Idempotency key must be at most " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        return "transfer:" + principal.getId() + ":" + key.trim();
+    }
+    
     // Form class for transfers
     public static class TransferForm {
         private String fromAccount;
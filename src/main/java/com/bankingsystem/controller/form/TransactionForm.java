@@ -23,4 +23,7 @@ public class TransactionForm {
     private BigDecimal amount;
     
     private String description;
+    
+    // Optional; the Idempotency-Key header takes precedence
+    private String idempotencyKey;
 }
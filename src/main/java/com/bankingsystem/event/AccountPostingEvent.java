@@ -0,0 +1,66 @@
+package com.bankingsystem.event;
+
+import com.bankingsystem.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Published inside the posting transaction whenever an account balance or status
+ * changes. The transaction fields are null for changes that are not postings.
+ *
+ * The outbox stores one copy per affected account, with {@code accountId} set,
+ * so each account's events stay in order; consumers handle only that account's
+ * side of the posting (see {@link #covers(Long)}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPostingEvent {
+    private Long sourceAccountId;
+    private Long destinationAccountId;
+    private Long transactionId;
+    private String transactionNumber;
+    private LocalDateTime transactionDate;
+    private Transaction.TransactionType transactionType;
+    private String description;
+    private BigDecimal amount;
+    // The account whose event stream this copy belongs to; null on the published event
+    private Long accountId;
+
+    public static AccountPostingEvent of(Transaction transaction) {
+        return new AccountPostingEvent(
+                transaction.getSourceAccount() != null ? transaction.getSourceAccount().getId() : null,
+                transaction.getDestinationAccount() != null ? transaction.getDestinationAccount().getId() : null,
+                transaction.getId(),
+                transaction.getTransactionNumber(),
+                transaction.getTransactionDate(),
+                transaction.getTransactionType(),
+                transaction.getDescription(),
+                transaction.getAmount(),
+                null);
+    }
+
+    public static AccountPostingEvent statusChanged(Long accountId) {
+        return new AccountPostingEvent(null, accountId, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Copy of this event for one affected account's stream
+     */
+    public AccountPostingEvent forAccount(Long accountId) {
+        return new AccountPostingEvent(sourceAccountId, destinationAccountId, transactionId, transactionNumber,
+                transactionDate, transactionType, description, amount, accountId);
+    }
+
+    /**
+     * Whether the given side (source or destination) of the posting is handled through this copy
+     */
+    public boolean covers(Long sideAccountId) {
+        return sideAccountId != null && (accountId == null || Objects.equals(accountId, sideAccountId));
+    }
+}
@@ -0,0 +1,19 @@
+package com.bankingsystem.event;
+
+import java.util.List;
+
+/**
+ * Consumer of events relayed from the transactional outbox.
+ *
+ * Called on a relay worker thread with events in commit order for each
+ * partition key (an account or a user); different keys may be delivered
+ * concurrently. Delivery is at least once: if any listener throws, the
+ * batch is delivered again to every listener (split by partition key to find
+ * the failing ones), so handling must tolerate repeats. Events that keep
+ * failing end up in {@code outbox_dead_letters}. Each listener picks the
+ * event types it cares about.
+ */
+public interface OutboxListener {
+
+    void onEvents(List<Object> events);
+}
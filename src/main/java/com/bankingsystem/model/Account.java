@@ -48,12 +48,17 @@ public class Account {
     @Column(name = "is_active")
     private boolean active = true;
     
-    @Column(name = "interest_rate")
+    // Annual rate as a fraction (0.025 = 2.5%); the default scale of 2 would round it to 0.03
+    @Column(name = "interest_rate", precision = 9, scale = 6)
     private BigDecimal interestRate;
     
     @Column(name = "minimum_balance")
     private BigDecimal minimumBalance;
     
+    @Version
+    @Column(name = "version")
+    private Long version;
+    
     @OneToMany(mappedBy = "sourceAccount", fetch = FetchType.LAZY)
     private List<Transaction> sourceTransactions;
     
@@ -0,0 +1,63 @@
+package com.bankingsystem.model;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable, detached copy of an account for read paths. Safe to share between
+ * requests and threads; never attached to a persistence context.
+ */
+@Value
+public class AccountSnapshot {
+    Long id;
+    String accountNumber;
+    String name;
+    Account.AccountType accountType;
+    BigDecimal balance;
+    BigDecimal minimumBalance;
+    BigDecimal interestRate;
+    boolean active;
+    boolean jointAccount;
+    Long ownerId;
+    Set<Long> jointHolderIds;
+    LocalDateTime createdAt;
+    LocalDateTime updatedAt;
+    Long version;
+
+    /**
+     * Copy an account whose owner and joint holders are already loaded
+     */
+    public static AccountSnapshot of(Account account) {
+        Set<Long> holderIds = new HashSet<>();
+        for (User holder : account.getJointHolders()) {
+            holderIds.add(holder.getId());
+        }
+        return new AccountSnapshot(
+                account.getId(),
+                account.getAccountNumber(),
+                account.getName(),
+                account.getAccountType(),
+                account.getBalance(),
+                account.getMinimumBalance(),
+                account.getInterestRate(),
+                account.isActive(),
+                account.isJointAccount(),
+                account.getUser().getId(),
+                Collections.unmodifiableSet(holderIds),
+                account.getCreatedAt(),
+                account.getUpdatedAt(),
+                account.getVersion());
+    }
+
+    /**
+     * Whether the user owns the account or is one of its joint holders
+     */
+    public boolean isHeldBy(Long userId) {
+        return ownerId.equals(userId) || jointHolderIds.contains(userId);
+    }
+}
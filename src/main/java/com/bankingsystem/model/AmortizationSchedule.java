@@ -0,0 +1,96 @@
+package com.bankingsystem.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A loan's repayment schedule held as parallel arrays of cents, one slot per
+ * month. {@link LoanPayment} rows are built only for the months asked for, so
+ * a 30-year schedule costs three long arrays rather than 360 objects with
+ * four BigDecimals each. Instances never change after construction, so one
+ * schedule can be shared by every request for the same loan.
+ */
+public class AmortizationSchedule {
+
+    private final long emiCents;
+    private final long[] principalCents;
+    private final long[] interestCents;
+    private final long[] balanceCents;
+    private final long totalPaymentCents;
+    private final long totalInterestCents;
+
+    public AmortizationSchedule(long emiCents, long[] principalCents, long[] interestCents, long[] balanceCents) {
+        this.emiCents = emiCents;
+        this.principalCents = principalCents;
+        this.interestCents = interestCents;
+        this.balanceCents = balanceCents;
+
+        long principal = 0;
+        long interest = 0;
+        for (int i = 0; i < principalCents.length; i++) {
+            principal = Math.addExact(principal, principalCents[i]);
+            interest = Math.addExact(interest, interestCents[i]);
+        }
+        this.totalPaymentCents = Math.addExact(principal, interest);
+        this.totalInterestCents = interest;
+    }
+
+    public int size() {
+        return principalCents.length;
+    }
+
+    public BigDecimal getEmi() {
+        return BigDecimal.valueOf(emiCents, 2);
+    }
+
+    /**
+     * Sum of the payments as scheduled. The last one clears the remaining balance
+     * rather than paying the EMI, so this is not simply EMI times the term.
+     */
+    public BigDecimal getTotalPayment() {
+        return BigDecimal.valueOf(totalPaymentCents, 2);
+    }
+
+    public BigDecimal getTotalInterest() {
+        return BigDecimal.valueOf(totalInterestCents, 2);
+    }
+
+    public long getPrincipalCents(int index) {
+        return principalCents[index];
+    }
+
+    public long getInterestCents(int index) {
+        return interestCents[index];
+    }
+
+    public long getBalanceCents(int index) {
+        return balanceCents[index];
+    }
+
+    /**
+     * The payment for one month, 0-based; the EMI except in the last month
+     */
+    public LoanPayment getPayment(int index) {
+        long paymentCents = principalCents[index] + interestCents[index];
+        return new LoanPayment(index + 1, BigDecimal.valueOf(paymentCents, 2), BigDecimal.valueOf(principalCents[index], 2),
+                BigDecimal.valueOf(interestCents[index], 2), BigDecimal.valueOf(balanceCents[index], 2));
+    }
+
+    public int pageCount(int pageSize) {
+        return Math.max(1, (size() + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * Payments on one 0-based page
+     */
+    public List<LoanPayment> page(int page, int pageSize) {
+        int from = Math.min(page * pageSize, size());
+        int to = Math.min(from + pageSize, size());
+        List<LoanPayment> payments = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            payments.add(getPayment(i));
+        }
+        return payments;
+    }
+}
@@ -0,0 +1,61 @@
+package com.bankingsystem.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Progress checkpoint for one monthly interest accrual run.
+ *
+ * Accounts are processed in id-range chunks; every chunk below
+ * {@code nextChunkStart} is known to be complete, so a restarted run resumes
+ * from there. Chunks above it that finished before a crash are harmless to
+ * repeat because each accrual carries an idempotency key.
+ */
+@Entity
+@Table(name = "interest_accrual_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InterestAccrualRun {
+    
+    // Accrual period as yyyy-MM
+    @Id
+    @Column(name = "period", length = 7)
+    private String period;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private RunStatus status;
+    
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize;
+    
+    // Accounts created after the run started are not part of it
+    @Column(name = "upper_bound_id", nullable = false)
+    private long upperBoundId;
+    
+    @Column(name = "next_chunk_start", nullable = false)
+    private long nextChunkStart;
+    
+    @Column(name = "accounts_accrued")
+    private Long accountsAccrued;
+    
+    @Column(name = "total_interest")
+    private BigDecimal totalInterest;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    public enum RunStatus {
+        RUNNING,
+        COMPLETED
+    }
+}
@@ -0,0 +1,48 @@
+package com.bankingsystem.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import javax.persistence.AttributeConverter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores a list of small value objects in a single JSON text column
+ */
+public abstract class JsonListConverter<T> implements AttributeConverter<List<T>, String> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final JavaType listType;
+
+    protected JsonListConverter(Class<T> elementType) {
+        this.listType = MAPPER.getTypeFactory().constructCollectionType(List.class, elementType);
+    }
+
+    @Override
+    public String convertToDatabaseColumn(List<T> values) {
+        try {
+            return MAPPER.writeValueAsString(values != null ? values : new ArrayList<>());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize list to JSON", e);
+        }
+    }
+
+    @Override
+    public List<T> convertToEntityAttribute(String json) {
+        if (json == null || json.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            return MAPPER.readValue(json, listType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not read list from JSON", e);
+        }
+    }
+}
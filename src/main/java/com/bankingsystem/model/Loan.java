@@ -76,11 +76,28 @@ public class Loan {
     private String purpose;
     
     public enum LoanType {
-        PERSONAL,
-        HOME,
-        CAR,
-        EDUCATION,
-        BUSINESS
+        PERSONAL("12.0", 36),
+        HOME("7.5", 240),
+        CAR("9.0", 60),
+        EDUCATION("8.0", 84),
+        BUSINESS("10.0", 60);
+        
+        // Quoted annual rate (%) and term used for eligibility estimates
+        private final BigDecimal standardRate;
+        private final int standardTermMonths;
+        
+        LoanType(String standardRate, int standardTermMonths) {
+            this.standardRate = new BigDecimal(standardRate);
+            this.standardTermMonths = standardTermMonths;
+        }
+        
+        public BigDecimal getStandardRate() {
+            return standardRate;
+        }
+        
+        public int getStandardTermMonths() {
+            return standardTermMonths;
+        }
     }
     
     public enum LoanStatus {
@@ -0,0 +1,51 @@
+package com.bankingsystem.model;
+
+import com.bankingsystem.model.Loan.LoanStatus;
+import com.bankingsystem.model.Loan.LoanType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Result of a rate-shock simulation over the loan book. Each scenario raises
+ * every loan's rate by {@code shockBp} basis points from {@code asOf} and
+ * re-amortizes the outstanding balance over the remaining term; a shock of 0
+ * is the baseline. Amounts are sums over the loans in each segment.
+ */
+@Data
+@AllArgsConstructor
+public class LoanStressReport {
+    private LocalDate asOf;
+    private LocalDateTime completedAt;
+    private long loans;
+    private long elapsedMillis;
+    private List<Scenario> scenarios;
+
+    @Data
+    @AllArgsConstructor
+    public static class Scenario {
+        private int shockBp;
+        private Segment total;
+        private List<Segment> segments;
+    }
+
+    /**
+     * Totals for one loan type and status; both are null in a scenario's total
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Segment {
+        private LoanType loanType;
+        private LoanStatus status;
+        private long loans;
+        private BigDecimal outstanding;
+        private BigDecimal monthlyEmi;
+        private BigDecimal remainingInterest;
+        private long atRiskLoans;
+        private BigDecimal defaultExposure;
+    }
+}
@@ -8,14 +8,21 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+// In the inbox's order: its user and channel, newest first with id as the tie-break, so a page
+// is read straight off the index and email and SMS rows are never touched
+@Table(name = "notifications", indexes = {
+    @Index(name = "idx_notifications_user_channel_created",
+           columnList = "user_id, delivery_channel, created_at DESC, id DESC")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Notification {
     
+    // Sequence ids let the notification writer insert in JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_seq")
+    @SequenceGenerator(name = "notification_seq", sequenceName = "notification_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -54,6 +61,10 @@ public class Notification {
     @Column(name = "priority", nullable = false)
     private NotificationPriority priority = NotificationPriority.NORMAL;
     
+    // Set on notifications raised by a relayed event, e.g. "TRANSACTION:TXN123:DEBIT:42:IN_APP"
+    @Column(name = "idempotency_key", unique = true)
+    private String idempotencyKey;
+    
     public enum NotificationType {
         TRANSACTION,
         SECURITY,
@@ -0,0 +1,53 @@
+package com.bankingsystem.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One compressed chunk of archived notifications.
+ *
+ * The retention job moves expired notifications here so the live table stays
+ * small. Each row holds notifications created in a single month, as GZIP'd
+ * newline-delimited JSON, one object per notification.
+ */
+@Entity
+@Table(name = "notification_archive", indexes = {
+    @Index(name = "idx_notification_archive_period", columnList = "period")
+})
+@Data
+@NoArgsConstructor
+public class NotificationArchive {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // Month the notifications were created in, as yyyy-MM
+    @Column(name = "period", nullable = false, length = 7)
+    private String period;
+    
+    @Column(name = "row_count", nullable = false)
+    private int rowCount;
+    
+    @Column(name = "first_notification_id", nullable = false)
+    private Long firstNotificationId;
+    
+    @Column(name = "last_notification_id", nullable = false)
+    private Long lastNotificationId;
+    
+    @Column(name = "oldest_created_at", nullable = false)
+    private LocalDateTime oldestCreatedAt;
+    
+    @Column(name = "newest_created_at", nullable = false)
+    private LocalDateTime newestCreatedAt;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+    
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+}
@@ -0,0 +1,28 @@
+package com.bankingsystem.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * Unread in-app notification count for one user.
+ *
+ * Adjusted in the same transaction as every insert and mark-read, so the
+ * badge is a primary-key read instead of a count over the inbox.
+ */
+@Entity
+@Table(name = "notification_counters")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationCounter {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "unread_count", nullable = false)
+    private long unreadCount;
+}
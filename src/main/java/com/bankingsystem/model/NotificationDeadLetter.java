@@ -0,0 +1,49 @@
+package com.bankingsystem.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A notification that could not be stored or delivered after its last retry.
+ *
+ * Kept for inspection and manual replay; {@code notificationId} is null when
+ * the notification itself could not be stored.
+ */
+@Entity
+@Table(name = "notification_dead_letters")
+@Data
+@NoArgsConstructor
+public class NotificationDeadLetter {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "notification_id")
+    private Long notificationId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "delivery_channel", nullable = false)
+    private Notification.DeliveryChannel deliveryChannel;
+    
+    @Column(name = "title", nullable = false)
+    private String title;
+    
+    @Column(name = "message", nullable = false, length = 1000)
+    private String message;
+    
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+}
@@ -0,0 +1,48 @@
+package com.bankingsystem.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An outbox event that still failed after its last delivery attempt.
+ *
+ * Moved out of the outbox so the rest of its partition, and every other
+ * partition, keeps flowing; kept for inspection and manual replay.
+ */
+@Entity
+@Table(name = "outbox_dead_letters")
+@Data
+@NoArgsConstructor
+public class OutboxDeadLetter {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "outbox_event_id", nullable = false)
+    private Long outboxEventId;
+    
+    @Column(name = "partition_key", nullable = false, length = 64)
+    private String partitionKey;
+    
+    @Column(name = "event_type", nullable = false, length = 64)
+    private String eventType;
+    
+    @Column(name = "payload", nullable = false, length = 4000)
+    private String payload;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+}
@@ -0,0 +1,45 @@
+package com.bankingsystem.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An event waiting to be relayed to in-process listeners.
+ *
+ * Rows are inserted in the same transaction as the change they describe, so
+ * an event exists exactly when its posting committed. The relay deletes a row
+ * once every listener has processed it, or moves it to
+ * {@link OutboxDeadLetter} once its delivery attempts run out.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Data
+@NoArgsConstructor
+public class OutboxEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_seq")
+    @SequenceGenerator(name = "outbox_seq", sequenceName = "outbox_seq", allocationSize = 50)
+    private Long id;
+    
+    // Events with the same key (for example one account) are delivered in order
+    @Column(name = "partition_key", nullable = false, length = 64)
+    private String partitionKey;
+    
+    @Column(name = "event_type", nullable = false, length = 64)
+    private String eventType;
+    
+    // The event serialized as JSON
+    @Column(name = "payload", nullable = false, length = 4000)
+    private String payload;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    // Failed deliveries so far; the default fills the column on outboxes created before it existed
+    @Column(name = "attempts", nullable = false, columnDefinition = "integer default 0 not null")
+    private int attempts;
+}
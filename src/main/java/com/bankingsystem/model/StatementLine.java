@@ -0,0 +1,26 @@
+package com.bankingsystem.model;
+
+import com.bankingsystem.model.Transaction.TransactionStatus;
+import com.bankingsystem.model.Transaction.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One row of an account statement, read as a projection so exported rows never
+ * enter the persistence context. The amount is positive for money coming into
+ * the account and negative for money going out.
+ */
+@Data
+@AllArgsConstructor
+public class StatementLine {
+    private String transactionNumber;
+    private LocalDateTime transactionDate;
+    private TransactionType transactionType;
+    private TransactionStatus status;
+    private String description;
+    private String referenceNumber;
+    private BigDecimal amount;
+}
@@ -10,14 +10,21 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+// Newest first with id as the tie-break, the order of the keyset pages, so a page is read
+// straight off the index whatever its depth
+@Table(name = "transactions", indexes = {
+    @Index(name = "idx_transactions_source_date", columnList = "source_account_id, transaction_date DESC, id DESC"),
+    @Index(name = "idx_transactions_destination_date", columnList = "destination_account_id, transaction_date DESC, id DESC")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Transaction {
     
+    // Pooled sequence ids let Hibernate batch journal inserts; IDENTITY forces one insert per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "transaction_number", unique = true, nullable = false)
@@ -52,6 +59,10 @@ public class Transaction {
     @Column(name = "reference_number")
     private String referenceNumber;
     
+    // Set by postings that must happen at most once, e.g. "INTEREST:2026-09:42"
+    @Column(name = "idempotency_key", unique = true)
+    private String idempotencyKey;
+    
     public enum TransactionType {
         DEPOSIT,
         WITHDRAWAL,
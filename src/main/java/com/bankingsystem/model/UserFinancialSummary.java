@@ -0,0 +1,107 @@
+package com.bankingsystem.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-computed dashboard figures for one user, keyed by the user id so the
+ * dashboard reads it with a single primary-key lookup. Kept up to date from
+ * posting and notification events by UserSummaryService; loan and investment
+ * figures have no events and are re-read once they are older than
+ * {@code summary.holdings-ttl-seconds}.
+ */
+@Entity
+@Table(name = "user_financial_summaries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserFinancialSummary {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "total_balance", nullable = false)
+    private BigDecimal totalBalance = BigDecimal.ZERO;
+    
+    @Lob
+    @Convert(converter = AccountBalanceListConverter.class)
+    @Column(name = "account_balances")
+    private List<AccountBalance> accounts = new ArrayList<>();
+    
+    @Lob
+    @Convert(converter = RecentTransactionListConverter.class)
+    @Column(name = "recent_transactions")
+    private List<RecentTransaction> recentTransactions = new ArrayList<>();
+    
+    @Column(name = "unread_notifications", nullable = false)
+    private long unreadNotifications;
+    
+    @Column(name = "active_loan_emi_total", nullable = false)
+    private BigDecimal activeLoanEmiTotal = BigDecimal.ZERO;
+    
+    @Column(name = "investment_value", nullable = false)
+    private BigDecimal investmentValue = BigDecimal.ZERO;
+    
+    // When activeLoanEmiTotal and investmentValue were last read from their tables
+    @Column(name = "holdings_refreshed_at")
+    private LocalDateTime holdingsRefreshedAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @Version
+    @Column(name = "version")
+    private Long version;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AccountBalance {
+        private Long accountId;
+        private String accountNumber;
+        private String name;
+        private Account.AccountType accountType;
+        private BigDecimal balance;
+        private boolean active;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecentTransaction {
+        private Long transactionId;
+        private String transactionNumber;
+        private LocalDateTime transactionDate;
+        private Transaction.TransactionType transactionType;
+        private String description;
+        private BigDecimal amount;
+        // IN, OUT or INTERNAL from this user's point of view
+        private String direction;
+    }
+    
+    public static class AccountBalanceListConverter extends JsonListConverter<AccountBalance> {
+        public AccountBalanceListConverter() {
+            super(AccountBalance.class);
+        }
+    }
+    
+    public static class RecentTransactionListConverter extends JsonListConverter<RecentTransaction> {
+        public RecentTransactionListConverter() {
+            super(RecentTransaction.class);
+        }
+    }
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,91 @@
+package com.bankingsystem.model;
+
+import lombok.Getter;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Slim authenticated principal kept in the security context: the user id, the
+ * fields the views display and the granted roles. Carries the password hash
+ * only until authentication completes.
+ */
+@Getter
+public class UserPrincipal implements UserDetails, CredentialsContainer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String username;
+    private final String firstName;
+    private final boolean enabled;
+    private final Set<GrantedAuthority> authorities;
+    private String password;
+
+    private UserPrincipal(Long id, String username, String firstName, boolean enabled,
+                          Set<GrantedAuthority> authorities, String password) {
+        this.id = id;
+        this.username = username;
+        this.firstName = firstName;
+        this.enabled = enabled;
+        this.authorities = authorities;
+        this.password = password;
+    }
+
+    /**
+     * Build a principal from a user whose roles are already loaded
+     */
+    public static UserPrincipal of(User user) {
+        Set<GrantedAuthority> authorities = new HashSet<>();
+        for (Role role : user.getRoles()) {
+            authorities.add(new SimpleGrantedAuthority(role.getName().toString()));
+        }
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getFirstName(), user.isEnabled(),
+                Collections.unmodifiableSet(authorities), user.getPassword());
+    }
+
+    /**
+     * Copy of this principal without the password hash, safe to share
+     */
+    public UserPrincipal withoutPassword() {
+        return withPassword(null);
+    }
+
+    /**
+     * Copy of this principal carrying a different password hash
+     */
+    public UserPrincipal withPassword(String password) {
+        return new UserPrincipal(id, username, firstName, enabled, authorities, password);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+}
@@ -3,8 +3,13 @@ package com.bankingsystem.repository;
 import com.bankingsystem.model.Account;
 import com.bankingsystem.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,4 +23,62 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     List<Account> findByUserAndActive(User user, boolean active);
     
     boolean existsByAccountNumber(String accountNumber);
+    
+    @Query("SELECT DISTINCT a FROM Account a LEFT JOIN FETCH a.jointHolders WHERE a.accountNumber = ?1")
+    Optional<Account> findWithHoldersByAccountNumber(String accountNumber);
+    
+    @Query("SELECT a.id FROM Account a WHERE a.accountNumber = ?1")
+    Optional<Long> findIdByAccountNumber(String accountNumber);
+    
+    @Query("SELECT COUNT(a) > 0 FROM Account a WHERE a.accountNumber = ?1 AND (a.user = ?2 OR ?2 MEMBER OF a.jointHolders)")
+    boolean isHeldBy(String accountNumber, User user);
+    
+    @Query("SELECT a FROM Account a WHERE a.user = ?1 OR ?1 MEMBER OF a.jointHolders ORDER BY a.id")
+    List<Account> findHeldBy(User user);
+    
+    @Query("SELECT a.id FROM Account a WHERE a.user = ?1 OR ?1 MEMBER OF a.jointHolders")
+    List<Long> findIdsHeldBy(User user);
+    
+    @Query("SELECT DISTINCT a FROM Account a LEFT JOIN FETCH a.jointHolders WHERE a.id IN ?1")
+    List<Account> findWithHoldersByIdIn(Collection<Long> ids);
+    
+    @Query("SELECT a.accountNumber, a.id, a.active FROM Account a WHERE a.accountNumber IN ?1")
+    List<Object[]> findIdAndStatusByAccountNumberIn(Collection<String> accountNumbers);
+    
+    @Query("SELECT COALESCE(MAX(a.id), 0) FROM Account a")
+    long findMaxId();
+    
+    /**
+     * Active accounts of one type within an id range, for chunked batch jobs
+     */
+    @Query("SELECT a FROM Account a WHERE a.id >= ?1 AND a.id < ?2 AND a.accountType = ?3 AND a.active = true ORDER BY a.id")
+    List<Account> findActiveInIdRange(long fromId, long toId, Account.AccountType accountType);
+    
+    /**
+     * Debit an active account in one statement, only if the balance stays at or above
+     * the minimum balance. Returns the number of rows updated (0 or 1).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Account a SET a.balance = a.balance - ?2, a.version = COALESCE(a.version, 0) + 1, a.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE a.accountNumber = ?1 AND a.active = true AND a.balance - ?2 >= COALESCE(a.minimumBalance, 0)")
+    int debit(String accountNumber, BigDecimal amount);
+    
+    /**
+     * Credit an active account in one statement. Returns the number of rows updated (0 or 1).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Account a SET a.balance = a.balance + ?2, a.version = COALESCE(a.version, 0) + 1, a.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE a.accountNumber = ?1 AND a.active = true")
+    int credit(String accountNumber, BigDecimal amount);
+    
+    /**
+     * Overwrite the balance with the value held by the in-memory ledger engine
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Account a SET a.balance = ?2, a.version = COALESCE(a.version, 0) + 1, a.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE a.accountNumber = ?1")
+    int updateProjectedBalance(String accountNumber, BigDecimal balance);
 }
@@ -0,0 +1,14 @@
+package com.bankingsystem.repository;
+
+import com.bankingsystem.model.InterestAccrualRun;
+import com.bankingsystem.model.InterestAccrualRun.RunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InterestAccrualRunRepository extends JpaRepository<InterestAccrualRun, String> {
+    
+    List<InterestAccrualRun> findByStatus(RunStatus status);
+}
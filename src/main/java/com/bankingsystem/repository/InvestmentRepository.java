@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -35,4 +36,7 @@ public interface InvestmentRepository extends JpaRepository<Investment, Long> {
     
     @Query("SELECT i.investmentType, SUM(i.currentValue) FROM Investment i WHERE i.user = ?1 AND i.status = 'ACTIVE' GROUP BY i.investmentType")
     List<Object[]> getInvestmentBreakdown(User user);
+    
+    @Query("SELECT COALESCE(SUM(i.currentValue), 0) FROM Investment i WHERE i.user = ?1 AND i.status = 'ACTIVE'")
+    BigDecimal sumActiveValue(User user);
 }
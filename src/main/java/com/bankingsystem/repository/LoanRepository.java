@@ -4,11 +4,14 @@ import com.bankingsystem.model.Loan;
 import com.bankingsystem.model.Loan.LoanStatus;
 import com.bankingsystem.model.Loan.LoanType;
 import com.bankingsystem.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,4 +35,15 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
     
     @Query("SELECT COUNT(l) FROM Loan l WHERE l.user = ?1 AND l.status IN ('ACTIVE', 'APPROVED')")
     Long countActiveLoans(User user);
+    
+    @Query("SELECT COALESCE(SUM(l.emiAmount), 0) FROM Loan l WHERE l.user = ?1 AND l.status = 'ACTIVE'")
+    BigDecimal sumActiveEmi(User user);
+    
+    /**
+     * Terms of loans in the given statuses, in id order after the given id, as
+     * {id, loanType, status, principalAmount, interestRate, termMonths, startDate}
+     */
+    @Query("SELECT l.id, l.loanType, l.status, l.principalAmount, l.interestRate, l.termMonths, l.startDate " +
+           "FROM Loan l WHERE l.status IN ?1 AND l.id > ?2 ORDER BY l.id")
+    List<Object[]> findTermsAfter(Collection<LoanStatus> statuses, Long afterId, Pageable pageable);
 }
@@ -0,0 +1,13 @@
+package com.bankingsystem.repository;
+
+import com.bankingsystem.model.NotificationArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NotificationArchiveRepository extends JpaRepository<NotificationArchive, Long> {
+    
+    List<NotificationArchive> findByPeriodOrderById(String period);
+}
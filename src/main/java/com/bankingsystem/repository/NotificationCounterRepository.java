@@ -0,0 +1,26 @@
+package com.bankingsystem.repository;
+
+import com.bankingsystem.model.NotificationCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface NotificationCounterRepository extends JpaRepository<NotificationCounter, Long> {
+    
+    /**
+     * Returns the number of rows updated; 0 means the user has no counter yet
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificationCounter c SET c.unreadCount = c.unreadCount + ?2 WHERE c.userId = ?1")
+    int addUnread(Long userId, long count);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificationCounter c SET c.unreadCount = CASE WHEN c.unreadCount > ?2 THEN (c.unreadCount - ?2) ELSE 0 END " +
+           "WHERE c.userId = ?1")
+    int subtractUnread(Long userId, long count);
+}
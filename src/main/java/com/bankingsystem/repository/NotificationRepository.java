@@ -6,6 +6,7 @@ import com.bankingsystem.model.Notification.NotificationType;
 import com.bankingsystem.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,7 +14,9 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
@@ -30,16 +33,63 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     
     List<Notification> findByUserAndCreatedAtAfter(User user, LocalDateTime dateTime);
     
-    @Query("SELECT COUNT(n) FROM Notification n WHERE n.user = ?1 AND n.read = false")
-    Long countUnreadNotifications(User user);
+    /**
+     * Newest first, walking the (user_id, delivery_channel, created_at, id) index
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.id = ?1 AND n.deliveryChannel = ?2 " +
+           "ORDER BY n.user.id, n.deliveryChannel, n.createdAt DESC, n.id DESC")
+    Slice<Notification> findInbox(Long userId, DeliveryChannel channel, Pageable pageable);
     
+    /**
+     * Keyset page: notifications strictly older than the (createdAt, id) cursor,
+     * so deep pages cost the same as the first one instead of scanning an OFFSET.
+     * The date bound stands on its own so it becomes the index range.
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.id = ?1 AND n.deliveryChannel = ?2 " +
+           "AND n.createdAt <= ?3 AND (n.createdAt < ?3 OR n.id < ?4) " +
+           "ORDER BY n.user.id, n.deliveryChannel, n.createdAt DESC, n.id DESC")
+    Slice<Notification> findInboxBefore(Long userId, DeliveryChannel channel, LocalDateTime beforeDate, Long beforeId,
+                                        Pageable pageable);
+    
+    @Query("SELECT n FROM Notification n WHERE n.id = ?1 AND n.user.id = ?2 AND n.deliveryChannel = ?3")
+    Optional<Notification> findInboxNotification(Long id, Long userId, DeliveryChannel channel);
+    
+    /**
+     * Full count, used only to seed a user's unread counter
+     */
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.id = ?1 AND n.deliveryChannel = ?2 AND n.read = false")
+    long countUnread(Long userId, DeliveryChannel channel);
+    
+    @Query("SELECT MAX(n.id) FROM Notification n WHERE n.user.id = ?1")
+    Long findMaxId(Long userId);
+    
+    @Query("SELECT n.id FROM Notification n WHERE n.user.id = ?1 AND n.deliveryChannel = ?2 AND n.read = false " +
+           "AND n.id <= ?3 ORDER BY n.id")
+    List<Long> findUnreadIds(Long userId, DeliveryChannel channel, Long maxId, Pageable pageable);
+    
+    /**
+     * Retention candidates of one type, in id order after the given id, each with its user id.
+     * Unread inbox notifications are never candidates; other channels' rows are only delivery records.
+     */
+    @Query("SELECT n, n.user.id FROM Notification n WHERE n.type = ?1 AND n.createdAt < ?2 " +
+           "AND (n.read = true OR n.deliveryChannel <> ?3) AND n.id > ?4 ORDER BY n.id")
+    List<Object[]> findArchivable(NotificationType type, LocalDateTime createdBefore, DeliveryChannel inboxChannel,
+                                  Long afterId, Pageable pageable);
+    
+    /**
+     * Returns 1 if the notification was unread and now is read, otherwise 0
+     */
     @Modifying
     @Transactional
-    @Query("UPDATE Notification n SET n.read = true, n.readAt = CURRENT_TIMESTAMP WHERE n.id = ?1")
-    void markAsRead(Long id);
+    @Query("UPDATE Notification n SET n.read = true, n.readAt = CURRENT_TIMESTAMP " +
+           "WHERE n.id = ?1 AND n.user.id = ?2 AND n.deliveryChannel = ?3 AND n.read = false")
+    int markAsRead(Long id, Long userId, DeliveryChannel channel);
     
     @Modifying
     @Transactional
-    @Query("UPDATE Notification n SET n.read = true, n.readAt = CURRENT_TIMESTAMP WHERE n.user = ?1")
-    void markAllAsRead(User user);
+    @Query("UPDATE Notification n SET n.read = true, n.readAt = CURRENT_TIMESTAMP WHERE n.id IN ?1 AND n.read = false")
+    int markAsRead(Collection<Long> ids);
+    
+    @Query("SELECT n.idempotencyKey FROM Notification n WHERE n.idempotencyKey IN ?1")
+    List<String> findExistingIdempotencyKeys(Collection<String> keys);
 }
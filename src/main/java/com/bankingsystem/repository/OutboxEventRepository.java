@@ -0,0 +1,32 @@
+package com.bankingsystem.repository;
+
+import com.bankingsystem.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    
+    @Query("SELECT o FROM OutboxEvent o ORDER BY o.id")
+    List<OutboxEvent> findPending(Pageable pageable);
+    
+    // Pending events outside the given partitions (those waiting out a retry backoff)
+    @Query("SELECT o FROM OutboxEvent o WHERE o.partitionKey NOT IN ?1 ORDER BY o.id")
+    List<OutboxEvent> findPendingExcept(Collection<String> partitionKeys, Pageable pageable);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent o SET o.attempts = o.attempts + 1 WHERE o.id IN ?1")
+    int incrementAttempts(Collection<Long> ids);
+    
+    @Query("SELECT MIN(o.createdAt) FROM OutboxEvent o")
+    LocalDateTime findOldestCreatedAt();
+}
@@ -9,6 +9,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +24,12 @@ public interface SecurityConfigRepository extends JpaRepository<SecurityConfig,
     
     List<SecurityConfig> findByAccountLocked(boolean locked);
     
+    @Query("SELECT s FROM SecurityConfig s JOIN FETCH s.user u WHERE u.username IN ?1")
+    List<SecurityConfig> findWithUserByUsernameIn(Collection<String> usernames);
+    
+    @Query("SELECT s FROM SecurityConfig s JOIN FETCH s.user WHERE s.accountLocked = true")
+    List<SecurityConfig> findLockedWithUser();
+    
     @Query("SELECT s FROM SecurityConfig s WHERE s.lastPasswordChange < ?1")
     List<SecurityConfig> findByPasswordExpired(LocalDateTime expiryDate);
     
@@ -1,17 +1,24 @@
 package com.bankingsystem.repository;
 
 import com.bankingsystem.model.Account;
+import com.bankingsystem.model.StatementLine;
 import com.bankingsystem.model.Transaction;
 import com.bankingsystem.model.Transaction.TransactionStatus;
 import com.bankingsystem.model.Transaction.TransactionType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
@@ -37,4 +44,71 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     
     List<Transaction> findByDestinationAccountAndTransactionDateBetween(
             Account account, LocalDateTime startDate, LocalDateTime endDate);
+    
+    /**
+     * Transactions debiting one account, newest first, strictly older than the
+     * (transactionDate, id) cursor. Ordered exactly like idx_transactions_source_date,
+     * and the date bound stands on its own as the index range, so only the requested
+     * rows are read whatever the depth.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.sourceAccount.id = ?1 " +
+           "AND t.transactionDate <= ?2 AND (t.transactionDate < ?2 OR t.id < ?3) " +
+           "ORDER BY t.sourceAccount.id, t.transactionDate DESC, t.id DESC")
+    List<Transaction> findLatestFrom(Long accountId, LocalDateTime beforeDate, Long beforeId, Pageable pageable);
+    
+    /**
+     * Transactions crediting one account, read off idx_transactions_destination_date like {@link #findLatestFrom}
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.destinationAccount.id = ?1 " +
+           "AND t.transactionDate <= ?2 AND (t.transactionDate < ?2 OR t.id < ?3) " +
+           "ORDER BY t.destinationAccount.id, t.transactionDate DESC, t.id DESC")
+    List<Transaction> findLatestTo(Long accountId, LocalDateTime beforeDate, Long beforeId, Pageable pageable);
+    
+    /**
+     * Statement rows for an account in posting order, read through a forward-only cursor.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+        @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    @Query("SELECT new com.bankingsystem.model.StatementLine(t.transactionNumber, t.transactionDate, t.transactionType, " +
+           "t.status, t.description, t.referenceNumber, " + SIGNED_AMOUNT + ") " +
+           "FROM Transaction t " +
+           "WHERE (t.sourceAccount.id = ?1 OR t.destinationAccount.id = ?1) " +
+           "AND t.transactionDate >= ?2 AND t.transactionDate < ?3 " +
+           "ORDER BY t.transactionDate ASC, t.id ASC")
+    Stream<StatementLine> streamStatement(Long accountId, LocalDateTime from, LocalDateTime to);
+    
+    /**
+     * Net effect of completed postings on an account before the given date, i.e. its balance at that moment
+     */
+    @Query("SELECT COALESCE(SUM(" + SIGNED_AMOUNT + "), 0) FROM Transaction t " +
+           "WHERE (t.sourceAccount.id = ?1 OR t.destinationAccount.id = ?1) " +
+           "AND t.transactionDate < ?2 AND t.status = com.bankingsystem.model.Transaction$TransactionStatus.COMPLETED")
+    BigDecimal sumPostingsBefore(Long accountId, LocalDateTime before);
+    
+    @Query("SELECT t FROM Transaction t LEFT JOIN FETCH t.sourceAccount LEFT JOIN FETCH t.destinationAccount " +
+           "WHERE t.idempotencyKey = ?1")
+    Optional<Transaction> findWithAccountsByIdempotencyKey(String idempotencyKey);
+    
+    @Query("SELECT t.idempotencyKey FROM Transaction t WHERE t.idempotencyKey IN ?1")
+    List<String> findExistingIdempotencyKeys(Collection<String> keys);
+    
+    @Query("SELECT t.transactionNumber FROM Transaction t WHERE t.transactionNumber IN ?1")
+    List<String> findExistingTransactionNumbers(Collection<String> transactionNumbers);
+    
+    /**
+     * Net effect of all completed postings on each of the given accounts; accounts without postings are left out
+     */
+    @Query("SELECT a.accountNumber, COALESCE(SUM(CASE WHEN t.destinationAccount = a THEN t.amount ELSE -t.amount END), 0) " +
+           "FROM Transaction t, Account a WHERE (t.sourceAccount = a OR t.destinationAccount = a) " +
+           "AND a.accountNumber IN ?1 AND t.status = com.bankingsystem.model.Transaction$TransactionStatus.COMPLETED " +
+           "GROUP BY a.accountNumber")
+    List<Object[]> sumPostingsByAccountNumber(Collection<String> accountNumbers);
+    
+    @Query("SELECT COUNT(t), COALESCE(SUM(t.amount), 0) FROM Transaction t WHERE t.idempotencyKey LIKE ?1")
+    List<Object[]> summarizeByIdempotencyKeyPrefix(String pattern);
+    
+    String SIGNED_AMOUNT = "CASE WHEN t.destinationAccount.id = ?1 THEN t.amount ELSE -t.amount END";
 }
@@ -0,0 +1,22 @@
+package com.bankingsystem.repository;
+
+import com.bankingsystem.model.UserFinancialSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Repository
+public interface UserFinancialSummaryRepository extends JpaRepository<UserFinancialSummary, Long> {
+    
+    // Leaves the version alone, so it never makes a concurrent event update fail
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserFinancialSummary s SET s.activeLoanEmiTotal = ?2, s.investmentValue = ?3, " +
+           "s.holdingsRefreshedAt = ?4 WHERE s.userId = ?1")
+    int updateHoldings(Long userId, BigDecimal activeLoanEmiTotal, BigDecimal investmentValue, LocalDateTime refreshedAt);
+}
@@ -2,8 +2,13 @@ package com.bankingsystem.repository;
 
 import com.bankingsystem.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,9 +16,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     Optional<User> findByUsername(String username);
     
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username = ?1")
+    Optional<User> findWithRolesByUsername(String username);
+    
+    List<User> findByUsernameIn(Collection<String> usernames);
+    
     Optional<User> findByEmail(String email);
     
     Boolean existsByUsername(String username);
     
     Boolean existsByEmail(String email);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = ?2, u.updatedAt = CURRENT_TIMESTAMP WHERE u.username = ?1")
+    int updatePassword(String username, String encodedPassword);
 }
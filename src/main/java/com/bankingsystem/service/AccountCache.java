@@ -0,0 +1,178 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.AccountSnapshot;
+import com.bankingsystem.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of {@link AccountSnapshot}s keyed by account number.
+ *
+ * Entries live in independently locked LRU segments and expire after
+ * {@code accounts.cache.ttl-seconds}. Code that changes an account calls
+ * {@link #evict(String)}, which drops the entry at once and again when the
+ * surrounding transaction completes. Each segment counts its evictions, and a
+ * load that overlapped one is returned but not stored, so a row read before a
+ * commit never outlives it in the cache.
+ */
+@Component
+public class AccountCache {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate readOnlyTemplate;
+    private final long ttlNanos;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public AccountCache(AccountRepository accountRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${accounts.cache.max-size:10000}") int maxSize,
+                        @Value("${accounts.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.accountRepository = accountRepository;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.segments = new Segment[SEGMENT_COUNT];
+        int segmentCapacity = Math.max(1, maxSize / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Snapshot of an account, loaded from the database on a miss
+     */
+    public Optional<AccountSnapshot> get(String accountNumber) {
+        Segment segment = segmentFor(accountNumber);
+        long generation;
+        synchronized (segment) {
+            Entry entry = segment.get(accountNumber);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return Optional.of(entry.snapshot);
+                }
+                segment.remove(accountNumber);
+                expirations.increment();
+            }
+            generation = segment.generation;
+        }
+
+        misses.increment();
+        Optional<AccountSnapshot> loaded = readOnlyTemplate.execute(status ->
+                accountRepository.findWithHoldersByAccountNumber(accountNumber).map(AccountSnapshot::of));
+
+        loaded.ifPresent(snapshot -> {
+            synchronized (segment) {
+                if (segment.generation == generation) {
+                    segment.put(accountNumber, new Entry(snapshot, System.nanoTime() + ttlNanos));
+                }
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Drop an account's entry now and again once the current transaction, if any, completes
+     */
+    public void evict(String accountNumber) {
+        invalidate(accountNumber);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(accountNumber);
+                }
+            });
+        }
+    }
+
+    /**
+     * Snapshot of the cache counters
+     */
+    public Map<String, Object> getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        metrics.put("evictions", evictions.sum());
+        metrics.put("expirations", expirations.sum());
+        metrics.put("invalidations", invalidations.sum());
+        metrics.put("size", size);
+        return metrics;
+    }
+
+    private void invalidate(String accountNumber) {
+        Segment segment = segmentFor(accountNumber);
+        synchronized (segment) {
+            segment.generation++;
+            if (segment.remove(accountNumber) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    private Segment segmentFor(String accountNumber) {
+        int h = accountNumber.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private static final class Entry {
+        private final AccountSnapshot snapshot;
+        private final long expiresAt;
+
+        private Entry(AccountSnapshot snapshot, long expiresAt) {
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Access-ordered map that drops its least recently used entry when full.
+     * All access is synchronized on the segment itself.
+     */
+    private final class Segment extends LinkedHashMap<String, Entry> {
+        private final int capacity;
+        private long generation;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.bankingsystem.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped in-process locks keyed by account number.
+ *
+ * Postings on the same account serialize on one stripe while postings on
+ * unrelated accounts proceed in parallel. Two-account operations always take
+ * the lower stripe first so opposing transfers cannot deadlock.
+ */
+@Component
+public class AccountLockManager {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public AccountLockManager(@Value("${accounts.lock-stripes:1024}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Run an action while holding the lock for a single account
+     */
+    public <T> T withLock(String accountNumber, Supplier<T> action) {
+        return withStripe(stripeFor(accountNumber), action);
+    }
+
+    /**
+     * Run an action while holding the locks for two accounts, acquired in stripe order
+     */
+    public <T> T withLocks(String firstAccountNumber, String secondAccountNumber, Supplier<T> action) {
+        int first = stripeFor(firstAccountNumber);
+        int second = stripeFor(secondAccountNumber);
+
+        if (first == second) {
+            return withStripe(first, action);
+        }
+
+        ReentrantLock lower = stripes[Math.min(first, second)];
+        ReentrantLock upper = stripes[Math.max(first, second)];
+        lower.lock();
+        try {
+            upper.lock();
+            try {
+                return action.get();
+            } finally {
+                upper.unlock();
+            }
+        } finally {
+            lower.unlock();
+        }
+    }
+
+    /**
+     * Number of stripes backing this manager
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    private <T> T withStripe(int stripe, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripe];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stripeFor(String accountNumber) {
+        // Spread the hash so account numbers sharing low digits do not cluster
+        int h = accountNumber.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+}
@@ -1,29 +1,47 @@
 package com.bankingsystem.service;
 
+import com.bankingsystem.event.AccountPostingEvent;
 import com.bankingsystem.model.Account;
 import com.bankingsystem.model.Account.AccountType;
+import com.bankingsystem.model.AccountSnapshot;
 import com.bankingsystem.model.Transaction;
 import com.bankingsystem.model.Transaction.TransactionStatus;
 import com.bankingsystem.model.Transaction.TransactionType;
 import com.bankingsystem.model.User;
 import com.bankingsystem.repository.AccountRepository;
 import com.bankingsystem.repository.TransactionRepository;
+import com.bankingsystem.service.ledger.LedgerEngine;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Random;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class AccountService {
+    
+    private static final int MAX_ACCOUNT_NUMBER_ATTEMPTS = 10;
 
     private final AccountRepository accountRepository;
+    private final AccountCache accountCache;
     private final TransactionRepository transactionRepository;
+    private final AccountLockManager accountLockManager;
+    private final PostingRetryPolicy postingRetryPolicy;
+    private final TransactionTemplate transactionTemplate;
+    private final Optional<LedgerEngine> ledgerEngine;
+    private final TransactionJournalWriter journalWriter;
+    private final IdGenerator idGenerator;
+    private final ApplicationEventPublisher eventPublisher;
     
     /**
      * Get all accounts for a user
@@ -40,10 +58,10 @@ public class AccountService {
     }
     
     /**
-     * Get account by account number
+     * Get a cached snapshot of an account by account number
      */
-    public Account getAccountByNumber(String accountNumber) {
-        return accountRepository.findByAccountNumber(accountNumber)
+    public AccountSnapshot getAccountByNumber(String accountNumber) {
+        return accountCache.get(accountNumber)
                 .orElseThrow(() -> new RuntimeException("Account not found"));
     }
     
@@ -78,6 +96,8 @@ public class AccountService {
         account.setAccountType(accountType);
         account.setBalance(initialDeposit);
         account.setUser(user);
+        account.setMinimumBalance(minimumBalance);
+        account.setInterestRate(interestRate);
         account.setActive(true);
         account.setJointAccount(isJointAccount);
         
@@ -97,7 +117,7 @@ public class AccountService {
         if (initialDeposit.compareTo(BigDecimal.ZERO) > 0) {
             // Create transaction record
             Transaction transaction = new Transaction();
-            transaction.setTransactionNumber(generateTransactionNumber());
+            transaction.setTransactionNumber(idGenerator.nextTransactionNumber());
             transaction.setTransactionType(TransactionType.DEPOSIT);
             transaction.setAmount(initialDeposit);
             transaction.setDescription("Initial deposit");
@@ -107,6 +127,9 @@ public class AccountService {
             transaction.setStatus(TransactionStatus.COMPLETED);
             
             transactionRepository.save(transaction);
+            eventPublisher.publishEvent(AccountPostingEvent.of(transaction));
+        } else {
+            eventPublisher.publishEvent(AccountPostingEvent.statusChanged(savedAccount.getId()));
         }
         
         return savedAccount;
@@ -119,10 +142,7 @@ public class AccountService {
      */
     @Transactional
     public void addJointAccountHolder(String accountNumber, User secondaryUser) {
-        Account account = getAccountByNumber(accountNumber);
-        if (account == null) {
-            throw new RuntimeException("Account not found");
-        }
+        Account account = loadAccount(accountNumber);
         
         // Check if the secondary user is already a joint holder
         if (account.getJointHolders().contains(secondaryUser)) {
@@ -132,6 +152,8 @@ public class AccountService {
         // Add the secondary user as a joint holder
         account.getJointHolders().add(secondaryUser);
         accountRepository.save(account);
+        accountCache.evict(accountNumber);
+        eventPublisher.publishEvent(AccountPostingEvent.statusChanged(account.getId()));
     }
     
     /**
@@ -158,22 +180,34 @@ public class AccountService {
     /**
      * Deposit money into an account
      */
-    @Transactional
     public Transaction deposit(String accountNumber, BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new RuntimeException("Deposit amount must be positive");
         }
         
-        Account account = getAccountByNumber(accountNumber);
+        if (ledgerEngine.isPresent()) {
+            return postToLedger(
+                    transactionNumber -> ledgerEngine.get().deposit(transactionNumber, accountNumber, amount),
+                    transactionNumber -> recordTransaction(transactionNumber,
+                            null, accountReference(accountNumber), TransactionType.DEPOSIT, amount,
+                            "Deposit to account", TransactionStatus.COMPLETED, null),
+                    accountNumber);
+        }
+        
+        // Hold the account lock until the group commit carrying this posting is durable
+        return accountLockManager.withLock(accountNumber,
+                () -> journalWriter.post(() -> doDeposit(accountNumber, amount)));
+    }
+    
+    private Transaction doDeposit(String accountNumber, BigDecimal amount) {
+        Account account = accountReference(accountNumber);
         
-        if (!account.isActive()) {
+        // Update balance in a single conditional statement
+        accountCache.evict(accountNumber);
+        if (accountRepository.credit(accountNumber, amount) == 0) {
             throw new RuntimeException("Cannot deposit to an inactive account");
         }
         
-        // Update balance
-        account.setBalance(account.getBalance().add(amount));
-        accountRepository.save(account);
-        
         // Record transaction
         Transaction transaction = recordTransaction(
                 null,
@@ -190,27 +224,36 @@ public class AccountService {
     /**
      * Withdraw money from an account
      */
-    @Transactional
     public Transaction withdraw(String accountNumber, BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new RuntimeException("Withdrawal amount must be positive");
         }
         
-        Account account = getAccountByNumber(accountNumber);
-        
-        if (!account.isActive()) {
-            throw new RuntimeException("Cannot withdraw from an inactive account");
+        if (ledgerEngine.isPresent()) {
+            return postToLedger(
+                    transactionNumber -> ledgerEngine.get().withdraw(transactionNumber, accountNumber, amount),
+                    transactionNumber -> recordTransaction(transactionNumber,
+                            accountReference(accountNumber), null, TransactionType.WITHDRAWAL, amount,
+                            "Withdrawal from account", TransactionStatus.COMPLETED, null),
+                    accountNumber);
         }
         
-        // Check if withdrawal would go below minimum balance
-        if (account.getBalance().subtract(amount).compareTo(account.getMinimumBalance()) < 0) {
-            throw new RuntimeException("Withdrawal would go below minimum balance");
+        // Hold the account lock until the group commit carrying this posting is durable
+        return accountLockManager.withLock(accountNumber,
+                () -> journalWriter.post(() -> doWithdraw(accountNumber, amount)));
+    }
+    
+    private Transaction doWithdraw(String accountNumber, BigDecimal amount) {
+        Account account = accountReference(accountNumber);
+        
+        // Update balance only if the account is active and stays above its minimum balance
+        accountCache.evict(accountNumber);
+        if (accountRepository.debit(accountNumber, amount) == 0) {
+            throw rejectedDebit(accountNumber,
+                    "Cannot withdraw from an inactive account",
+                    "Withdrawal would go below minimum balance");
         }
         
-        // Update balance
-        account.setBalance(account.getBalance().subtract(amount));
-        accountRepository.save(account);
-        
         // Record transaction
         Transaction transaction = recordTransaction(
                 account,
@@ -227,9 +270,24 @@ public class AccountService {
     /**
      * Transfer money between accounts
      */
-    @Transactional
     public Transaction transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+        return transfer(fromAccountNumber, toAccountNumber, amount, "Transfer between accounts");
+    }
+    
+    /**
+     * Transfer money between accounts with a custom description
+     */
+    public Transaction transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount, String description) {
+        return transfer(fromAccountNumber, toAccountNumber, amount, description, null);
+    }
+    
+    /**
+     * Transfer money between accounts, recording the idempotency key on the journal row
+     * (its unique index rejects a second posting with the same key)
+     */
+    public Transaction transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount, String description,
+                                String idempotencyKey) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new RuntimeException("Transfer amount must be positive");
         }
         
@@ -237,76 +295,106 @@ public class AccountService {
             throw new RuntimeException("Cannot transfer to the same account");
         }
         
-        Account fromAccount = getAccountByNumber(fromAccountNumber);
-        Account toAccount = getAccountByNumber(toAccountNumber);
-        
-        if (!fromAccount.isActive() || !toAccount.isActive()) {
-            throw new RuntimeException("Cannot transfer with inactive accounts");
+        if (ledgerEngine.isPresent()) {
+            // The engine serializes each account on its shard writer, so no striped lock is needed
+            return postToLedger(
+                    transactionNumber -> ledgerEngine.get().transfer(transactionNumber, fromAccountNumber,
+                            toAccountNumber, amount),
+                    transactionNumber -> recordTransaction(transactionNumber,
+                            accountReference(fromAccountNumber), accountReference(toAccountNumber),
+                            TransactionType.TRANSFER, amount, description, TransactionStatus.COMPLETED, idempotencyKey),
+                    fromAccountNumber, toAccountNumber);
         }
         
-        // Check if transfer would go below minimum balance
-        if (fromAccount.getBalance().subtract(amount).compareTo(fromAccount.getMinimumBalance()) < 0) {
-            throw new RuntimeException("Transfer would go below minimum balance");
+        // Both account locks are taken in a fixed order and held until the group commit is durable
+        return accountLockManager.withLocks(fromAccountNumber, toAccountNumber,
+                () -> journalWriter.post(() -> doTransfer(fromAccountNumber, toAccountNumber, amount, description,
+                        idempotencyKey)));
+    }
+    
+    private Transaction doTransfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount, String description,
+                                   String idempotencyKey) {
+        Account fromAccount = accountReference(fromAccountNumber);
+        Account toAccount = accountReference(toAccountNumber);
+        
+        // Touch the rows in account-number order so concurrent transfers lock them consistently
+        if (fromAccountNumber.compareTo(toAccountNumber) < 0) {
+            applyDebit(fromAccountNumber, amount);
+            applyCredit(toAccountNumber, amount);
+        } else {
+            applyCredit(toAccountNumber, amount);
+            applyDebit(fromAccountNumber, amount);
         }
         
-        // Update balances
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
-        
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
-        
         // Record transaction
         Transaction transaction = recordTransaction(
                 fromAccount,
                 toAccount,
                 TransactionType.TRANSFER,
                 amount,
-                "Transfer between accounts",
-                TransactionStatus.COMPLETED
+                description,
+                TransactionStatus.COMPLETED,
+                idempotencyKey
         );
         
         return transaction;
     }
     
+    private void applyDebit(String accountNumber, BigDecimal amount) {
+        accountCache.evict(accountNumber);
+        if (accountRepository.debit(accountNumber, amount) == 0) {
+            throw rejectedDebit(accountNumber,
+                    "Cannot transfer with inactive accounts",
+                    "Transfer would go below minimum balance");
+        }
+    }
+    
+    private void applyCredit(String accountNumber, BigDecimal amount) {
+        // A failed credit rolls back the whole transfer, including any debit already applied
+        accountCache.evict(accountNumber);
+        if (accountRepository.credit(accountNumber, amount) == 0) {
+            throw new RuntimeException("Cannot transfer with inactive accounts");
+        }
+    }
+    
     /**
-     * Freeze/unfreeze an account
+     * Resolve an account reference for the transaction record without loading the entity.
+     * An account's id never changes, so the cached snapshot is always good enough here.
      */
-    @Transactional
-    public void setAccountStatus(String accountNumber, boolean active) {
-        Account account = getAccountByNumber(accountNumber);
-        account.setActive(active);
-        accountRepository.save(account);
+    private Account accountReference(String accountNumber) {
+        return accountRepository.getReferenceById(getAccountByNumber(accountNumber).getId());
     }
     
     /**
-     * Apply interest to savings accounts (scheduled task)
+     * Load the managed entity, bypassing the cache, for code that modifies it
      */
-    @Transactional
-    public void applyInterest() {
-        List<Account> savingsAccounts = accountRepository.findAll().stream()
-                .filter(a -> a.getAccountType() == AccountType.SAVINGS && a.isActive())
-                .toList();
-        
-        for (Account account : savingsAccounts) {
-            // Calculate interest (simple interest for demonstration)
-            BigDecimal interestRate = account.getInterestRate().divide(new BigDecimal("100"));
-            BigDecimal interest = account.getBalance().multiply(interestRate).divide(new BigDecimal("12"));
-            
-            // Apply interest
-            account.setBalance(account.getBalance().add(interest));
-            accountRepository.save(account);
-            
-            // Record transaction
-            Transaction transaction = recordTransaction(
-                    null,
-                    account,
-                    TransactionType.INTEREST,
-                    interest,
-                    "Monthly interest",
-                    TransactionStatus.COMPLETED
-            );
-        }
+    private Account loadAccount(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new RuntimeException("Account not found"));
+    }
+    
+    /**
+     * Work out why a conditional debit matched no rows (only runs on the failure path)
+     */
+    private RuntimeException rejectedDebit(String accountNumber, String inactiveMessage, String balanceMessage) {
+        Account account = loadAccount(accountNumber);
+        return new RuntimeException(account.isActive() ? balanceMessage : inactiveMessage);
+    }
+    
+    /**
+     * Freeze/unfreeze an account
+     */
+    public void setAccountStatus(String accountNumber, boolean active) {
+        // Retried because a concurrent posting bumps the version of the loaded row
+        postingRetryPolicy.execute(accountNumber, () -> transactionTemplate.execute(status -> {
+            Account account = loadAccount(accountNumber);
+            account.setActive(active);
+            accountCache.evict(accountNumber);
+            eventPublisher.publishEvent(AccountPostingEvent.statusChanged(account.getId()));
+            return accountRepository.save(account);
+        }));
+        
+        ledgerEngine.ifPresent(engine -> engine.updateStatus(accountNumber, active));
     }
     
     /**
@@ -319,9 +407,35 @@ public class AccountService {
             BigDecimal amount,
             String description,
             TransactionStatus status
+    ) {
+        return recordTransaction(sourceAccount, destinationAccount, type, amount, description, status, null);
+    }
+    
+    private Transaction recordTransaction(
+            Account sourceAccount,
+            Account destinationAccount,
+            TransactionType type,
+            BigDecimal amount,
+            String description,
+            TransactionStatus status,
+            String idempotencyKey
+    ) {
+        return recordTransaction(idGenerator.nextTransactionNumber(), sourceAccount, destinationAccount, type, amount,
+                description, status, idempotencyKey);
+    }
+    
+    private Transaction recordTransaction(
+            String transactionNumber,
+            Account sourceAccount,
+            Account destinationAccount,
+            TransactionType type,
+            BigDecimal amount,
+            String description,
+            TransactionStatus status,
+            String idempotencyKey
     ) {
         Transaction transaction = new Transaction();
-        transaction.setTransactionNumber(generateTransactionNumber());
+        transaction.setTransactionNumber(transactionNumber);
         transaction.setTransactionType(type);
         transaction.setAmount(amount);
         transaction.setSourceAccount(sourceAccount);
@@ -329,40 +443,56 @@ public class AccountService {
         transaction.setDescription(description);
         transaction.setTransactionDate(LocalDateTime.now());
         transaction.setStatus(status);
-        transaction.setReferenceNumber(generateReferenceNumber());
+        transaction.setReferenceNumber(idGenerator.nextReferenceNumber());
+        transaction.setIdempotencyKey(idempotencyKey);
         
-        return transactionRepository.save(transaction);
+        // In a group commit the row is written with the rest of the batch. OutboxWriter stores the event in the
+        // outbox in the same transaction and the relay delivers it only after commit, so a rejected posting
+        // writes neither and never reaches consumers
+        journalWriter.atCommit(() -> {
+            transactionRepository.save(transaction);
+            eventPublisher.publishEvent(AccountPostingEvent.of(transaction));
+        });
+        return transaction;
     }
     
     /**
-     * Generate a unique account number
+     * Post to the ledger engine under the transaction number of the journal row, then write the row.
+     * The engine posting is confirmed once the row commits and settled (reversed unless the row committed
+     * after all) when the write fails; a crash in between is settled by the engine on its next start.
      */
-    private String generateAccountNumber() {
-        // In a real application, this would follow a specific format and validation
-        Random random = new Random();
-        StringBuilder sb = new StringBuilder();
-        
-        // Generate a 10-digit account number
-        for (int i = 0; i < 10; i++) {
-            sb.append(random.nextInt(10));
+    private Transaction postToLedger(Consumer<String> enginePosting, Function<String, Transaction> journalPosting,
+                                     String... accountNumbers) {
+        String transactionNumber = idGenerator.nextTransactionNumber();
+        enginePosting.accept(transactionNumber);
+        
+        Transaction transaction;
+        try {
+            transaction = journalWriter.post(() -> journalPosting.apply(transactionNumber));
+        } catch (RuntimeException e) {
+            try {
+                ledgerEngine.get().settle(Collections.singleton(transactionNumber), Arrays.asList(accountNumbers));
+            } catch (RuntimeException settleFailure) {
+                // Left pending; the engine settles it against the journal on its next start
+                e.addSuppressed(settleFailure);
+            }
+            throw e;
         }
-        
-        return sb.toString();
-    }
-    
-    /**
-     * Generate a unique transaction number
-     */
-    private String generateTransactionNumber() {
-        // Use UUID for uniqueness
-        return "TXN" + UUID.randomUUID().toString().replaceAll("-", "").substring(0, 16).toUpperCase();
+        ledgerEngine.get().confirm(transactionNumber, accountNumbers);
+        return transaction;
     }
     
     /**
-     * Generate a reference number for a transaction
+     * Generate a unique account number
      */
-    private String generateReferenceNumber() {
-        // Use UUID for uniqueness
-        return "REF" + UUID.randomUUID().toString().replaceAll("-", "").substring(0, 8).toUpperCase();
+    private String generateAccountNumber() {
+        // The unique constraint on account_number still guards the window between check and insert
+        for (int attempt = 0; attempt < MAX_ACCOUNT_NUMBER_ATTEMPTS; attempt++) {
+            String accountNumber = idGenerator.nextAccountNumber();
+            if (!accountRepository.existsByAccountNumber(accountNumber)) {
+                return accountNumber;
+            }
+        }
+        throw new RuntimeException("Could not allocate a unique account number");
     }
 }
@@ -24,6 +24,7 @@ public class AuthService {
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
+    private final NotificationService notificationService;
     
     /**
      * Register a new user with default role
@@ -60,14 +61,15 @@ public class AuthService {
         // Save user
         User savedUser = userRepository.save(user);
         
-        // Log welcome message instead of sending notification
-        System.out.println("User registered successfully: " + savedUser.getUsername());
+        // Queued once the registration commits
+        notificationService.sendWelcomeNotification(savedUser);
         
         return savedUser;
     }
     
     /**
-     * Authenticate user
+     * Authenticate user; refused with a LockedException while the username is
+     * locked out after repeated failures (see LoginAttemptTracker)
      */
     public Authentication authenticateUser(String username, String password) {
         Authentication authentication = authenticationManager.authenticate(
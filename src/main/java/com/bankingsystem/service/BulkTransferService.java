@@ -0,0 +1,839 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.model.Transaction;
+import com.bankingsystem.model.Transaction.TransactionStatus;
+import com.bankingsystem.model.Transaction.TransactionType;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.TransactionRepository;
+import com.bankingsystem.service.ledger.LedgerEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk transfers (payroll runs) from CSV or NDJSON files.
+ *
+ * An upload is spooled to disk and processed in the background by two stages
+ * joined by a small bounded queue. The first parses the file as a stream and
+ * validates it chunk by chunk: the line syntax, then one query per chunk for
+ * the accounts the chunk names. The second posts each chunk in its own
+ * transaction and appends one result row per input line to the job's result
+ * file.
+ *
+ * A chunk's debits and credits are summed per account and applied in one pass
+ * over every account it touches, in account-number order, so chunks and single
+ * transfers always lock rows in the same order. Its journal rows are inserted
+ * as a Hibernate batch. If the chunk cannot be posted as a whole (for example a
+ * source runs short part-way through), its lines are posted one by one through
+ * the regular transfer path instead, so a bad line never fails the rest. Every
+ * line carries the idempotency key {@code BULK:<user>:<batch>:<line>}, so
+ * re-submitting a file under the same batch id only posts the lines that did
+ * not go through before.
+ */
+@Service
+@Slf4j
+public class BulkTransferService {
+
+    public enum Format {
+        CSV("csv"),
+        NDJSON("ndjson");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public enum JobState {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    public enum LineStatus {
+        POSTED, REJECTED, DUPLICATE, FAILED
+    }
+
+    private static final int MAX_BATCH_ID_LENGTH = 100;
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+    private static final String DEFAULT_DESCRIPTION = "Bulk transfer";
+    private static final int QUEUED_CHUNKS = 4;
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountService accountService;
+    private final AccountCache accountCache;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Optional<LedgerEngine> ledgerEngine;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int chunkSize;
+    private final long retentionMillis;
+    private final ExecutorService postingExecutor;
+    private final ExecutorService parsingExecutor;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Set<String> activeBatches = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder jobsSubmitted = new LongAdder();
+    private final LongAdder linesPosted = new LongAdder();
+    private final LongAdder linesRejected = new LongAdder();
+    private final LongAdder linesDuplicate = new LongAdder();
+    private final LongAdder linesFailed = new LongAdder();
+    private final LongAdder chunksPosted = new LongAdder();
+    private final LongAdder chunksPostedByLine = new LongAdder();
+
+    public BulkTransferService(
+            AccountRepository accountRepository,
+            TransactionRepository transactionRepository,
+            AccountService accountService,
+            AccountCache accountCache,
+            PlatformTransactionManager transactionManager,
+            IdGenerator idGenerator,
+            ApplicationEventPublisher eventPublisher,
+            Optional<LedgerEngine> ledgerEngine,
+            ObjectMapper objectMapper,
+            @Value("${bulk.directory:bulk-data}") String directory,
+            @Value("${bulk.chunk-size:500}") int chunkSize,
+            @Value("${bulk.max-concurrent-jobs:2}") int maxConcurrentJobs,
+            @Value("${bulk.retention-hours:24}") long retentionHours) throws IOException {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountService = accountService;
+        this.accountCache = accountCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idGenerator = idGenerator;
+        this.eventPublisher = eventPublisher;
+        this.ledgerEngine = ledgerEngine;
+        this.objectMapper = objectMapper;
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.chunkSize = Math.max(1, chunkSize);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        int jobThreads = Math.max(1, maxConcurrentJobs);
+        this.postingExecutor = Executors.newFixedThreadPool(jobThreads, namedThreads("bulk-transfer-"));
+        this.parsingExecutor = Executors.newFixedThreadPool(jobThreads, namedThreads("bulk-transfer-parse-"));
+    }
+
+    @PreDestroy
+    public void stop() {
+        postingExecutor.shutdownNow();
+        parsingExecutor.shutdownNow();
+    }
+
+    /**
+     * Spool an uploaded file and queue it for posting
+     *
+     * @param ownerId id of the submitting user; every source account must be held by them
+     * @param batchId client batch id (for example an Idempotency-Key header), or null for a new batch
+     * @throws IllegalArgumentException if the batch id is too long
+     * @throws IllegalStateException    if the same batch is already being processed
+     */
+    public Job submit(Long ownerId, String batchId, Format format, InputStream content) throws IOException {
+        String jobId = UUID.randomUUID().toString();
+        String batch = batchId != null && !batchId.isBlank() ? batchId.trim() : jobId;
+        if (batch.length() > MAX_BATCH_ID_LENGTH) {
+            throw new IllegalArgumentException("Batch id must be at most " + MAX_BATCH_ID_LENGTH + " characters");
+        }
+
+        String batchKey = ownerId + ":" + batch;
+        if (!activeBatches.add(batchKey)) {
+            throw new IllegalStateException("Batch " + batch + " is already being processed");
+        }
+
+        Job job = new Job(jobId, ownerId, batch, format,
+                directory.resolve(jobId + "." + format.getExtension()),
+                directory.resolve(jobId + "-results.csv"));
+        try {
+            Files.copy(content, job.input);
+            jobs.put(jobId, job);
+            jobsSubmitted.increment();
+            postingExecutor.execute(() -> run(job, batchKey));
+        } catch (IOException | RuntimeException e) {
+            activeBatches.remove(batchKey);
+            Files.deleteIfExists(job.input);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * A job submitted by this user, if it is still retained
+     */
+    public Optional<Job> getJob(Long ownerId, String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null && job.ownerId.equals(ownerId) ? Optional.of(job) : Optional.empty();
+    }
+
+    /**
+     * Forget finished jobs older than {@code bulk.retention-hours} and delete their result files
+     */
+    @Scheduled(fixedDelayString = "${bulk.sweep-interval-ms:600000}")
+    public void evictFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            Job job = iterator.next();
+            if (job.finishedAt != 0 && job.finishedAt < cutoff) {
+                iterator.remove();
+                deleteQuietly(job.results);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the bulk posting counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("jobsSubmitted", jobsSubmitted.sum());
+        metrics.put("jobsActive", activeBatches.size());
+        metrics.put("linesPosted", linesPosted.sum());
+        metrics.put("linesRejected", linesRejected.sum());
+        metrics.put("linesDuplicate", linesDuplicate.sum());
+        metrics.put("linesFailed", linesFailed.sum());
+        metrics.put("chunksPosted", chunksPosted.sum());
+        metrics.put("chunksPostedByLine", chunksPostedByLine.sum());
+        return metrics;
+    }
+
+    private void run(Job job, String batchKey) {
+        job.state = JobState.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+        Future<?> parsing = parsingExecutor.submit(() -> parse(job, chunks));
+        try (Writer results = Files.newBufferedWriter(job.results, StandardCharsets.UTF_8)) {
+            results.write("line,status,transaction_number,message\n");
+            while (true) {
+                Chunk chunk = chunks.take();
+                if (chunk.failure != null) {
+                    throw chunk.failure;
+                }
+                if (chunk.lines.isEmpty()) {
+                    break;
+                }
+                post(job, chunk.lines);
+                writeResults(job, chunk.lines, results);
+            }
+            job.state = JobState.COMPLETED;
+            log.info("Bulk transfer job {} completed: {} posted, {} rejected, {} duplicate, {} failed",
+                    job.id, job.posted.sum(), job.rejected.sum(), job.duplicates.sum(), job.failed.sum());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(job, e);
+        } catch (IOException | RuntimeException e) {
+            fail(job, e);
+        } finally {
+            parsing.cancel(true);
+            job.finishedAt = System.currentTimeMillis();
+            activeBatches.remove(batchKey);
+            deleteQuietly(job.input);
+        }
+    }
+
+    private void fail(Job job, Exception e) {
+        log.error("Bulk transfer job {} failed after {} lines", job.id, job.lines.sum(), e);
+        job.state = JobState.FAILED;
+        job.error = e.getMessage();
+    }
+
+    // Stage 1: parse and validate
+
+    private void parse(Job job, BlockingQueue<Chunk> chunks) {
+        try {
+            try (BufferedReader reader = Files.newBufferedReader(job.input, StandardCharsets.UTF_8)) {
+                LineParser parser = job.format == Format.NDJSON ? new JsonLineParser() : new CsvLineParser();
+                Map<String, Boolean> ownedSources = new HashMap<>();
+                List<BulkLine> lines = new ArrayList<>(chunkSize);
+                int lineNumber = 0;
+                String text;
+                while ((text = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (text.isBlank()) {
+                        continue;
+                    }
+                    BulkLine line = parser.parse(lineNumber, text);
+                    if (line == null) {
+                        continue;
+                    }
+                    lines.add(line);
+                    if (lines.size() == chunkSize) {
+                        chunks.put(new Chunk(validate(job, lines, ownedSources), null));
+                        lines = new ArrayList<>(chunkSize);
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    chunks.put(new Chunk(validate(job, lines, ownedSources), null));
+                }
+            }
+            chunks.put(new Chunk(new ArrayList<>(), null));
+        } catch (InterruptedException e) {
+            // The posting stage stopped early and cancelled us
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            RuntimeException failure = e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+            try {
+                chunks.put(new Chunk(null, failure));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private List<BulkLine> validate(Job job, List<BulkLine> lines, Map<String, Boolean> ownedSources) {
+        Set<String> accountNumbers = new HashSet<>();
+        for (BulkLine line : lines) {
+            if (line.status == null) {
+                checkSyntax(line);
+            }
+            if (line.status == null) {
+                accountNumbers.add(line.from);
+                accountNumbers.add(line.to);
+            }
+        }
+        if (accountNumbers.isEmpty()) {
+            return lines;
+        }
+
+        Map<String, Object[]> accounts = new HashMap<>();
+        for (Object[] row : accountRepository.findIdAndStatusByAccountNumberIn(accountNumbers)) {
+            accounts.put((String) row[0], row);
+        }
+
+        for (BulkLine line : lines) {
+            if (line.status != null) {
+                continue;
+            }
+            Object[] source = accounts.get(line.from);
+            // Someone else's account is reported exactly like a missing one
+            boolean owned = source != null && ownedSources.computeIfAbsent(line.from, number ->
+                    accountCache.get(number).map(account -> account.isHeldBy(job.ownerId)).orElse(false));
+            Object[] destination = accounts.get(line.to);
+            if (!owned) {
+                line.reject("Source account not found");
+            } else if (!Boolean.TRUE.equals(source[2])) {
+                line.reject("Source account is inactive");
+            } else if (destination == null) {
+                line.reject("Destination account not found");
+            } else if (!Boolean.TRUE.equals(destination[2])) {
+                line.reject("Destination account is inactive");
+            } else {
+                line.sourceId = (Long) source[1];
+                line.destinationId = (Long) destination[1];
+                line.idempotencyKey = "BULK:" + job.ownerId + ":" + job.batchId + ":" + line.number;
+            }
+        }
+        return lines;
+    }
+
+    private static void checkSyntax(BulkLine line) {
+        if (line.from == null || line.from.isEmpty()) {
+            line.reject("Source account is required");
+        } else if (line.to == null || line.to.isEmpty()) {
+            line.reject("Destination account is required");
+        } else if (line.from.equals(line.to)) {
+            line.reject("Cannot transfer to the same account");
+        } else if (line.amount == null) {
+            line.reject("Amount is required");
+        } else if (line.amount.signum() <= 0) {
+            line.reject("Transfer amount must be positive");
+        } else if (line.amount.stripTrailingZeros().scale() > 2) {
+            line.reject("Amount must have at most 2 decimal places");
+        } else if (line.description != null && line.description.length() > MAX_DESCRIPTION_LENGTH) {
+            line.reject("Description must be at most " + MAX_DESCRIPTION_LENGTH + " characters");
+        }
+    }
+
+    // Stage 2: post and record results
+
+    private void post(Job job, List<BulkLine> lines) {
+        List<BulkLine> pending = new ArrayList<>(lines.size());
+        List<String> keys = new ArrayList<>(lines.size());
+        for (BulkLine line : lines) {
+            if (line.status == null) {
+                pending.add(line);
+                keys.add(line.idempotencyKey);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Set<String> alreadyPosted = new HashSet<>(transactionRepository.findExistingIdempotencyKeys(keys));
+        if (!alreadyPosted.isEmpty()) {
+            List<BulkLine> remaining = new ArrayList<>(pending.size());
+            for (BulkLine line : pending) {
+                if (alreadyPosted.contains(line.idempotencyKey)) {
+                    line.status = LineStatus.DUPLICATE;
+                    line.message = "Already posted in an earlier submission of this batch";
+                } else {
+                    remaining.add(line);
+                }
+            }
+            pending = remaining;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        if (!ledgerEngine.isPresent()) {
+            try {
+                postChunk(pending);
+                chunksPosted.increment();
+                return;
+            } catch (RuntimeException e) {
+                log.debug("Bulk transfer job {} chunk could not be posted whole, posting line by line", job.id, e);
+            }
+        }
+
+        // Line by line through the regular transfer path (always, with the in-memory engine)
+        chunksPostedByLine.increment();
+        for (BulkLine line : pending) {
+            try {
+                Transaction transaction = accountService.transfer(line.from, line.to, line.amount,
+                        descriptionOf(line), line.idempotencyKey);
+                line.post(transaction.getTransactionNumber());
+            } catch (RuntimeException e) {
+                line.status = LineStatus.FAILED;
+                line.message = e.getMessage();
+            }
+        }
+    }
+
+    private void postChunk(List<BulkLine> lines) {
+        List<Transaction> transactions = transactionTemplate.execute(status -> {
+            // Net movements per account, over every account the chunk touches
+            Map<String, BigDecimal> debits = new HashMap<>();
+            Map<String, BigDecimal> credits = new HashMap<>();
+            for (BulkLine line : lines) {
+                debits.merge(line.from, line.amount, BigDecimal::add);
+                credits.merge(line.to, line.amount, BigDecimal::add);
+            }
+            Set<String> touched = new TreeSet<>(debits.keySet());
+            touched.addAll(credits.keySet());
+
+            // One pass in account-number order, the order doTransfer uses, so each row is
+            // locked in the same sequence by every chunk and transfer. An account's debit
+            // is checked before its own credits are applied, as when debits went first.
+            for (String accountNumber : touched) {
+                accountCache.evict(accountNumber);
+                BigDecimal debit = debits.get(accountNumber);
+                if (debit != null && accountRepository.debit(accountNumber, debit) == 0) {
+                    throw new RuntimeException("Source account " + accountNumber + " cannot cover the chunk");
+                }
+                BigDecimal credit = credits.get(accountNumber);
+                if (credit != null && accountRepository.credit(accountNumber, credit) == 0) {
+                    throw new RuntimeException("Destination account " + accountNumber + " became inactive");
+                }
+            }
+
+            List<Transaction> journal = new ArrayList<>(lines.size());
+            for (BulkLine line : lines) {
+                journal.add(journalRow(line));
+            }
+            transactionRepository.saveAll(journal);
+            journal.forEach(transaction -> eventPublisher.publishEvent(AccountPostingEvent.of(transaction)));
+            return journal;
+        });
+
+        for (int i = 0; i < lines.size(); i++) {
+            lines.get(i).post(transactions.get(i).getTransactionNumber());
+        }
+    }
+
+    private Transaction journalRow(BulkLine line) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionNumber(idGenerator.nextTransactionNumber());
+        transaction.setTransactionType(TransactionType.TRANSFER);
+        transaction.setAmount(line.amount);
+        transaction.setSourceAccount(accountRepository.getReferenceById(line.sourceId));
+        transaction.setDestinationAccount(accountRepository.getReferenceById(line.destinationId));
+        transaction.setDescription(descriptionOf(line));
+        transaction.setTransactionDate(LocalDateTime.now());
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        transaction.setReferenceNumber(idGenerator.nextReferenceNumber());
+        transaction.setIdempotencyKey(line.idempotencyKey);
+        return transaction;
+    }
+
+    private static String descriptionOf(BulkLine line) {
+        return line.description != null && !line.description.isEmpty() ? line.description : DEFAULT_DESCRIPTION;
+    }
+
+    private void writeResults(Job job, List<BulkLine> lines, Writer results) throws IOException {
+        for (BulkLine line : lines) {
+            results.write(String.valueOf(line.number));
+            results.write(',');
+            results.write(line.status.name());
+            results.write(',');
+            if (line.transactionNumber != null) {
+                results.write(line.transactionNumber);
+            }
+            results.write(',');
+            writeQuoted(results, line.message);
+            results.write('\n');
+
+            job.lines.increment();
+            switch (line.status) {
+                case POSTED:
+                    job.posted.increment();
+                    linesPosted.increment();
+                    break;
+                case REJECTED:
+                    job.rejected.increment();
+                    linesRejected.increment();
+                    break;
+                case DUPLICATE:
+                    job.duplicates.increment();
+                    linesDuplicate.increment();
+                    break;
+                default:
+                    job.failed.increment();
+                    linesFailed.increment();
+            }
+        }
+        // Make progress visible to anyone downloading the results while the job runs
+        results.flush();
+    }
+
+    private static void writeQuoted(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", path, e);
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private interface LineParser {
+        /**
+         * Parse one non-blank line; null for lines that carry no transfer (such as a header)
+         */
+        BulkLine parse(int number, String text);
+    }
+
+    /**
+     * CSV with a header row naming the columns: from_account, to_account, amount and
+     * optionally description, in any order. Fields may be double-quoted.
+     */
+    private static final class CsvLineParser implements LineParser {
+        private int fromColumn = -1;
+        private int toColumn = -1;
+        private int amountColumn = -1;
+        private int descriptionColumn = -1;
+        private boolean headerRead;
+
+        @Override
+        public BulkLine parse(int number, String text) {
+            List<String> fields = split(text);
+            if (!headerRead) {
+                readHeader(fields);
+                return null;
+            }
+
+            BulkLine line = new BulkLine(number);
+            if (fromColumn >= fields.size() || toColumn >= fields.size() || amountColumn >= fields.size()) {
+                line.reject("Expected " + (Math.max(fromColumn, Math.max(toColumn, amountColumn)) + 1) + " columns");
+                return line;
+            }
+            line.from = fields.get(fromColumn).trim();
+            line.to = fields.get(toColumn).trim();
+            line.description = descriptionColumn >= 0 && descriptionColumn < fields.size()
+                    ? fields.get(descriptionColumn).trim() : null;
+            line.amount = parseAmount(line, fields.get(amountColumn).trim());
+            return line;
+        }
+
+        private void readHeader(List<String> fields) {
+            for (int i = 0; i < fields.size(); i++) {
+                switch (normalize(fields.get(i))) {
+                    case "fromaccount":
+                    case "fromaccountnumber":
+                        fromColumn = i;
+                        break;
+                    case "toaccount":
+                    case "toaccountnumber":
+                        toColumn = i;
+                        break;
+                    case "amount":
+                        amountColumn = i;
+                        break;
+                    case "description":
+                        descriptionColumn = i;
+                        break;
+                    default:
+                        // Extra columns (employee id, reference, ...) are ignored
+                }
+            }
+            if (fromColumn < 0 || toColumn < 0 || amountColumn < 0) {
+                throw new IllegalArgumentException("CSV header must name from_account, to_account and amount columns");
+            }
+            headerRead = true;
+        }
+
+        private static List<String> split(String text) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * One JSON object per line with fromAccount, toAccount, amount and optionally description
+     */
+    private final class JsonLineParser implements LineParser {
+        @Override
+        public BulkLine parse(int number, String text) {
+            BulkLine line = new BulkLine(number);
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (IOException e) {
+                line.reject("Malformed JSON");
+                return line;
+            }
+            if (!node.isObject()) {
+                line.reject("Expected a JSON object");
+                return line;
+            }
+
+            String amount = null;
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String value = field.getValue().isNull() ? null : field.getValue().asText().trim();
+                switch (normalize(field.getKey())) {
+                    case "fromaccount":
+                    case "fromaccountnumber":
+                        line.from = value;
+                        break;
+                    case "toaccount":
+                    case "toaccountnumber":
+                        line.to = value;
+                        break;
+                    case "amount":
+                        amount = value;
+                        break;
+                    case "description":
+                        line.description = value;
+                        break;
+                    default:
+                        // Extra fields are ignored
+                }
+            }
+            line.amount = amount != null ? parseAmount(line, amount) : null;
+            return line;
+        }
+    }
+
+    private static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static BigDecimal parseAmount(BulkLine line, String text) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            line.reject("Amount is not a number");
+            return null;
+        }
+    }
+
+    private static final class BulkLine {
+        private final int number;
+        private String from;
+        private String to;
+        private BigDecimal amount;
+        private String description;
+        private Long sourceId;
+        private Long destinationId;
+        private String idempotencyKey;
+        private LineStatus status;
+        private String transactionNumber;
+        private String message;
+
+        private BulkLine(int number) {
+            this.number = number;
+        }
+
+        private void reject(String reason) {
+            if (status == null) {
+                status = LineStatus.REJECTED;
+                message = reason;
+            }
+        }
+
+        private void post(String transactionNumber) {
+            this.status = LineStatus.POSTED;
+            this.transactionNumber = transactionNumber;
+        }
+    }
+
+    private static final class Chunk {
+        // An empty list marks the end of the file
+        private final List<BulkLine> lines;
+        private final RuntimeException failure;
+
+        private Chunk(List<BulkLine> lines, RuntimeException failure) {
+            this.lines = lines;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Progress of one submitted file
+     */
+    public static final class Job {
+        private final String id;
+        private final Long ownerId;
+        private final String batchId;
+        private final Format format;
+        private final Path input;
+        private final Path results;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final LongAdder lines = new LongAdder();
+        private final LongAdder posted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder duplicates = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private volatile JobState state = JobState.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile long finishedAt;
+        private volatile String error;
+
+        private Job(String id, Long ownerId, String batchId, Format format, Path input, Path results) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.batchId = batchId;
+            this.format = format;
+            this.input = input;
+            this.results = results;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Path getResults() {
+            return results;
+        }
+
+        /**
+         * Current state and line counts
+         */
+        public Map<String, Object> toStatus() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("id", id);
+            status.put("batchId", batchId);
+            status.put("format", format);
+            status.put("state", state);
+            status.put("submittedAt", submittedAt.toString());
+            status.put("startedAt", startedAt != null ? startedAt.toString() : null);
+            status.put("lines", lines.sum());
+            status.put("posted", posted.sum());
+            status.put("rejected", rejected.sum());
+            status.put("duplicates", duplicates.sum());
+            status.put("failed", failed.sum());
+            status.put("error", error);
+            return status;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.UserPrincipal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.Optional;
+
+/**
+ * The authenticated user for the current request, resolved once per request.
+ *
+ * Sessions created by our login already hold a {@link UserPrincipal}, so no
+ * query is needed; any other {@link UserDetails} principal is resolved through
+ * the shared {@link PrincipalCache}. Controllers that need the user entity for
+ * a query or association take {@code userRepository.getReferenceById(id)},
+ * which does not load the row.
+ */
+@Component
+@RequestScope
+@RequiredArgsConstructor
+public class CurrentUser {
+
+    private final PrincipalCache principalCache;
+
+    private boolean resolved;
+    private UserPrincipal principal;
+
+    /**
+     * Principal of the signed-in user, empty for anonymous requests
+     */
+    public Optional<UserPrincipal> getPrincipal() {
+        if (!resolved) {
+            principal = resolve();
+            resolved = true;
+        }
+        return Optional.ofNullable(principal);
+    }
+
+    private UserPrincipal resolve() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            return null;
+        }
+        if (auth.getPrincipal() instanceof UserPrincipal) {
+            return (UserPrincipal) auth.getPrincipal();
+        }
+        if (auth.getPrincipal() instanceof UserDetails) {
+            return principalCache.get(((UserDetails) auth.getPrincipal()).getUsername()).orElse(null);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,444 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.event.OutboxListener;
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Notification;
+import com.bankingsystem.model.Notification.DeliveryChannel;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-sent event connections, keyed by user id.
+ *
+ * Connections are async requests, so an idle subscriber holds a socket but no
+ * servlet thread. Publishing never blocks: events go into a small buffer per
+ * connection, and a shared pool of sender threads writes them out. A
+ * connection whose buffer fills up is closed, so one slow client cannot hold
+ * up the rest; browsers reconnect on their own. Comment heartbeats keep
+ * proxies from timing out idle connections and find dead ones.
+ *
+ * A write to a client that stops reading blocks its sender thread until the
+ * container's write timeout. A watchdog drops any connection whose write has
+ * taken longer than {@code events.stream.write-timeout-ms} and adds a sender
+ * thread in place of the stuck one until its write returns, so stalled
+ * clients do not hold up the rest either.
+ *
+ * In-app notifications arrive as the {@link DeliveryChannel#IN_APP} sender and
+ * balance changes from the outbox; nothing is looked up for users who are not
+ * connected.
+ */
+@Component
+@Slf4j
+public class EventStreamRegistry implements NotificationSender, OutboxListener {
+
+    // Write state of a connection, checked by the watchdog
+    private static final int IDLE = 0;
+    private static final int SENDING = 1;
+    private static final int STALLED = 2;
+
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final long heartbeatSeconds;
+    private final long writeTimeoutMillis;
+    private final int senderThreads;
+    private final int maxStalledSenders;
+
+    private final ConcurrentHashMap<Long, Set<Connection>> connectionsByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger stalledSenders = new AtomicInteger();
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService heartbeats;
+
+    private final LongAdder subscribed = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder droppedSlow = new LongAdder();
+    private final LongAdder writeTimeouts = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+
+    public EventStreamRegistry(
+            AccountRepository accountRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${events.stream.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${events.stream.buffer-size:64}") int bufferSize,
+            @Value("${events.stream.max-connections:50000}") int maxConnections,
+            @Value("${events.stream.max-connections-per-user:5}") int maxConnectionsPerUser,
+            @Value("${events.stream.heartbeat-seconds:20}") long heartbeatSeconds,
+            @Value("${events.stream.sender-threads:4}") int senderThreads,
+            @Value("${events.stream.write-timeout-ms:2000}") long writeTimeoutMillis,
+            @Value("${events.stream.max-stalled-senders:16}") int maxStalledSenders) {
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.timeoutMillis = timeoutMillis;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxConnectionsPerUser = Math.max(1, maxConnectionsPerUser);
+        this.heartbeatSeconds = Math.max(1, heartbeatSeconds);
+        this.writeTimeoutMillis = Math.max(100, writeTimeoutMillis);
+        this.senderThreads = Math.max(1, senderThreads);
+        this.maxStalledSenders = Math.max(0, maxStalledSenders);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(this.senderThreads, this.senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "event-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-stream-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        long checkMillis = Math.max(50, writeTimeoutMillis / 4);
+        heartbeats.scheduleWithFixedDelay(this::checkWrites, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeats.shutdownNow();
+        for (Set<Connection> connections : connectionsByUser.values()) {
+            connections.forEach(Connection::close);
+        }
+        senders.shutdownNow();
+    }
+
+    /**
+     * Open an event stream for a user, or return null when the server is at its connection limit
+     */
+    public SseEmitter subscribe(Long userId) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            refused.increment();
+            return null;
+        }
+
+        Connection connection = new Connection(userId, new SseEmitter(timeoutMillis));
+        Set<Connection> connections = connectionsByUser.compute(userId, (id, existing) -> {
+            Set<Connection> set = existing != null ? existing : ConcurrentHashMap.newKeySet();
+            set.add(connection);
+            return set;
+        });
+        connection.emitter.onCompletion(connection::remove);
+        connection.emitter.onTimeout(connection::close);
+        connection.emitter.onError(error -> connection.close());
+        subscribed.increment();
+
+        // Another tab over the limit replaces the oldest of this user's connections
+        if (connections.size() > maxConnectionsPerUser) {
+            connections.stream()
+                    .filter(other -> other != connection)
+                    .min((a, b) -> Long.compare(a.openedAt, b.openedAt))
+                    .ifPresent(Connection::close);
+        }
+
+        connection.offer(SseEmitter.event().name("connected").reconnectTime(TimeUnit.SECONDS.toMillis(5)).data(userId));
+        return connection.emitter;
+    }
+
+    @Override
+    public DeliveryChannel getChannel() {
+        return DeliveryChannel.IN_APP;
+    }
+
+    @Override
+    public void deliver(Long userId, Notification notification) {
+        Set<Connection> connections = connectionsByUser.get(userId);
+        if (connections == null) {
+            return;
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", notification.getId());
+        data.put("title", notification.getTitle());
+        data.put("message", notification.getMessage());
+        data.put("type", notification.getType());
+        data.put("priority", notification.getPriority());
+        data.put("createdAt", notification.getCreatedAt());
+        data.put("actionUrl", notification.getActionUrl());
+        for (Connection connection : connections) {
+            connection.offer(SseEmitter.event().name("notification").id(String.valueOf(notification.getId())).data(data));
+        }
+    }
+
+    @Override
+    public void onEvents(List<Object> events) {
+        if (connectionsByUser.isEmpty()) {
+            return;
+        }
+        Set<Long> accountIds = new HashSet<>();
+        for (Object event : events) {
+            if (event instanceof AccountPostingEvent) {
+                accountIds.add(((AccountPostingEvent) event).getSourceAccountId());
+                accountIds.add(((AccountPostingEvent) event).getDestinationAccountId());
+            }
+        }
+        accountIds.remove(null);
+        if (accountIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Losing a push is harmless, so never make the relay redeliver to the other listeners
+            List<BalanceChange> changes = transactionTemplate.execute(status -> balanceChanges(events, accountIds));
+            for (BalanceChange change : changes) {
+                Set<Connection> connections = connectionsByUser.get(change.userId);
+                if (connections != null) {
+                    for (Connection connection : connections) {
+                        connection.offer(SseEmitter.event().name("balance").data(change.data));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not push {} balance changes", events.size(), e);
+        }
+    }
+
+    /**
+     * Snapshot of the stream counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connections", connectionCount.get());
+        metrics.put("users", connectionsByUser.size());
+        metrics.put("subscribed", subscribed.sum());
+        metrics.put("refused", refused.sum());
+        metrics.put("sent", sent.sum());
+        metrics.put("droppedSlow", droppedSlow.sum());
+        metrics.put("writeTimeouts", writeTimeouts.sum());
+        metrics.put("stalledSenders", Math.max(0, stalledSenders.get()));
+        metrics.put("closed", closed.sum());
+        return metrics;
+    }
+
+    private List<BalanceChange> balanceChanges(List<Object> events, Set<Long> accountIds) {
+        Map<Long, Account> accounts = new LinkedHashMap<>();
+        for (Account account : accountRepository.findWithHoldersByIdIn(accountIds)) {
+            accounts.put(account.getId(), account);
+        }
+
+        List<BalanceChange> changes = new ArrayList<>();
+        for (Object event : events) {
+            if (event instanceof AccountPostingEvent) {
+                AccountPostingEvent posting = (AccountPostingEvent) event;
+                BigDecimal amount = posting.getAmount();
+                if (posting.covers(posting.getSourceAccountId())) {
+                    addBalanceChange(changes, posting, accounts.get(posting.getSourceAccountId()), amount != null ? amount.negate() : null);
+                }
+                if (posting.covers(posting.getDestinationAccountId())) {
+                    addBalanceChange(changes, posting, accounts.get(posting.getDestinationAccountId()), amount);
+                }
+            }
+        }
+        return changes;
+    }
+
+    private void addBalanceChange(List<BalanceChange> changes, AccountPostingEvent posting, Account account, BigDecimal delta) {
+        if (account == null) {
+            return;
+        }
+        Set<Long> holders = new HashSet<>();
+        holders.add(account.getUser().getId());
+        for (User jointHolder : account.getJointHolders()) {
+            holders.add(jointHolder.getId());
+        }
+        holders.retainAll(connectionsByUser.keySet());
+        if (holders.isEmpty()) {
+            return;
+        }
+
+        // The balance is the current one, which may already include later postings
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("accountId", account.getId());
+        data.put("accountNumber", account.getAccountNumber());
+        data.put("delta", delta);
+        data.put("balance", account.getBalance());
+        data.put("active", account.isActive());
+        data.put("transactionNumber", posting.getTransactionNumber());
+        for (Long userId : holders) {
+            changes.add(new BalanceChange(userId, data));
+        }
+    }
+
+    private void heartbeat() {
+        for (Set<Connection> connections : connectionsByUser.values()) {
+            for (Connection connection : connections) {
+                connection.offer(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    /**
+     * Drop connections whose current write has passed the deadline
+     */
+    private void checkWrites() {
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        for (Set<Connection> connections : connectionsByUser.values()) {
+            for (Connection connection : connections) {
+                if (connection.sendState.get() == SENDING && connection.sendStartedAt - deadline < 0
+                        && connection.sendState.compareAndSet(SENDING, STALLED)) {
+                    writeTimeouts.increment();
+                    log.debug("Dropping event stream for user {} after a write took over {} ms",
+                            connection.userId, writeTimeoutMillis);
+                    connection.close();
+                    stalledSenders.incrementAndGet();
+                    resizeSenders();
+                }
+            }
+        }
+    }
+
+    /**
+     * One sender thread on top of the configured ones for each write still stuck, up to the limit
+     */
+    private synchronized void resizeSenders() {
+        int size = senderThreads + Math.min(Math.max(0, stalledSenders.get()), maxStalledSenders);
+        if (size > senders.getMaximumPoolSize()) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else if (size < senders.getMaximumPoolSize()) {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+
+    private static final class BalanceChange {
+        private final Long userId;
+        private final Map<String, Object> data;
+
+        private BalanceChange(Long userId, Map<String, Object> data) {
+            this.userId = userId;
+            this.data = data;
+        }
+    }
+
+    private final class Connection {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final long openedAt = System.nanoTime();
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+        private final AtomicInteger sendState = new AtomicInteger(IDLE);
+        private volatile long sendStartedAt;
+
+        private Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            if (removed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                droppedSlow.increment();
+                log.debug("Closing slow event stream for user {}", userId);
+                close();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                SseEmitter.SseEventBuilder event;
+                while ((event = buffer.poll()) != null) {
+                    boolean written = false;
+                    sendStartedAt = System.nanoTime();
+                    sendState.set(SENDING);
+                    try {
+                        emitter.send(event);
+                        sent.increment();
+                        written = true;
+                    } catch (IOException | IllegalStateException e) {
+                        // Client gone; closed below
+                    } finally {
+                        if (sendState.getAndSet(IDLE) == STALLED) {
+                            stalledSenders.decrementAndGet();
+                            resizeSenders();
+                        }
+                    }
+                    // Also closes a connection dropped while the write was in progress
+                    if (!written || removed.get()) {
+                        close();
+                        return;
+                    }
+                }
+                draining.set(false);
+                // An event offered after the last poll but before the flag cleared is still ours to send
+            } while (!buffer.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private void close() {
+            remove();
+            // A write in progress holds the emitter's lock; its sender completes the emitter once the write returns
+            if (sendState.get() != IDLE) {
+                return;
+            }
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // Already completed
+            }
+        }
+
+        private void remove() {
+            if (!removed.compareAndSet(false, true)) {
+                return;
+            }
+            closed.increment();
+            connectionCount.decrementAndGet();
+            buffer.clear();
+            connectionsByUser.computeIfPresent(userId, (id, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+}
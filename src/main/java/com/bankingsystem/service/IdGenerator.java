@@ -0,0 +1,25 @@
+package com.bankingsystem.service;
+
+/**
+ * Source of business identifiers for accounts and transactions.
+ *
+ * The default implementation is {@link SnowflakeIdGenerator}; declare another
+ * bean of this type to replace it.
+ */
+public interface IdGenerator {
+
+    /**
+     * Next unique transaction number
+     */
+    String nextTransactionNumber();
+
+    /**
+     * Next unique transaction reference number
+     */
+    String nextReferenceNumber();
+
+    /**
+     * Next candidate account number; callers check it against existing accounts
+     */
+    String nextAccountNumber();
+}
@@ -0,0 +1,202 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Transaction;
+import com.bankingsystem.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs each idempotency key's posting at most once.
+ *
+ * The first request for a key runs the posting. Concurrent requests with the
+ * same key wait for that run and get its result or its error. Completed
+ * results are kept in memory for {@code idempotency.ttl-minutes}. After that,
+ * replays are answered from the unique-indexed {@code idempotency_key} column
+ * of the journal, which also catches duplicates that reach the database from
+ * another node. A failed posting is forgotten, so a later retry runs it again.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private final TransactionRepository transactionRepository;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder replayedFromDatabase = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public IdempotencyStore(TransactionRepository transactionRepository,
+                            @Value("${idempotency.ttl-minutes:60}") long ttlMinutes,
+                            @Value("${idempotency.max-entries:100000}") int maxEntries) {
+        this.transactionRepository = transactionRepository;
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Run the posting for this key, or return the transaction an earlier run with the key produced
+     *
+     * @param key         idempotency key, already scoped to the caller
+     * @param source      source account number, or null
+     * @param destination destination account number, or null
+     * @param amount      posting amount
+     * @param posting     the posting; it must store {@code key} on its transaction
+     */
+    public Transaction execute(String key, String source, String destination, BigDecimal amount,
+                               Supplier<Transaction> posting) {
+        String fingerprint = fingerprint(source, destination, amount);
+        Entry entry = new Entry(fingerprint);
+        Entry existing = entries.putIfAbsent(key, entry);
+        if (existing != null) {
+            return await(key, existing, fingerprint);
+        }
+
+        try {
+            Transaction transaction = findInDatabase(key, fingerprint);
+            if (transaction != null) {
+                replayedFromDatabase.increment();
+            } else {
+                transaction = run(key, fingerprint, posting);
+            }
+            entry.complete(transaction);
+            return transaction;
+        } catch (RuntimeException e) {
+            entries.remove(key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Drop completed entries past their age, then the oldest ones while over the size limit
+     */
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:30000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.result.isDone() && now - entry.completedAt > ttlNanos);
+
+        int excess = entries.size() - maxEntries;
+        if (excess > 0) {
+            List<Map.Entry<String, Entry>> completed = new ArrayList<>();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue().result.isDone()) {
+                    completed.add(e);
+                }
+            }
+            completed.sort(Comparator.comparingLong(e -> e.getValue().completedAt));
+            for (int i = 0; i < excess && i < completed.size(); i++) {
+                entries.remove(completed.get(i).getKey(), completed.get(i).getValue());
+            }
+        }
+        evicted.add(Math.max(0, before - entries.size()));
+    }
+
+    /**
+     * Snapshot of the store counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("executed", executed.sum());
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("replayed", replayed.sum());
+        metrics.put("replayedFromDatabase", replayedFromDatabase.sum());
+        metrics.put("evicted", evicted.sum());
+        metrics.put("entries", entries.size());
+        return metrics;
+    }
+
+    private Transaction run(String key, String fingerprint, Supplier<Transaction> posting) {
+        try {
+            Transaction transaction = posting.get();
+            executed.increment();
+            return transaction;
+        } catch (RuntimeException e) {
+            // Another node may have posted the key first; the unique index rejected ours
+            Transaction transaction = findInDatabase(key, fingerprint);
+            if (transaction == null) {
+                throw e;
+            }
+            log.info("Idempotency key {} was posted concurrently elsewhere; returning that posting", key);
+            replayedFromDatabase.increment();
+            return transaction;
+        }
+    }
+
+    private Transaction await(String key, Entry entry, String fingerprint) {
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new RuntimeException("Idempotency key " + key + " was already used for a different request");
+        }
+        if (entry.result.isDone()) {
+            replayed.increment();
+        } else {
+            coalesced.increment();
+        }
+        try {
+            return entry.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Transaction findInDatabase(String key, String fingerprint) {
+        Optional<Transaction> stored = transactionRepository.findWithAccountsByIdempotencyKey(key);
+        if (!stored.isPresent()) {
+            return null;
+        }
+        Transaction transaction = stored.get();
+        if (!fingerprint(accountNumber(transaction.getSourceAccount()),
+                accountNumber(transaction.getDestinationAccount()), transaction.getAmount()).equals(fingerprint)) {
+            throw new RuntimeException("Idempotency key " + key + " was already used for a different request");
+        }
+        return transaction;
+    }
+
+    private static String accountNumber(Account account) {
+        return account != null ? account.getAccountNumber() : null;
+    }
+
+    private static String fingerprint(String source, String destination, BigDecimal amount) {
+        return source + '>' + destination + ':' + (amount != null ? amount.stripTrailingZeros().toPlainString() : null);
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<Transaction> result = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private void complete(Transaction transaction) {
+            completedAt = System.nanoTime();
+            result.complete(transaction);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Account.AccountType;
+import com.bankingsystem.model.InterestAccrualRun;
+import com.bankingsystem.model.InterestAccrualRun.RunStatus;
+import com.bankingsystem.model.Transaction;
+import com.bankingsystem.model.Transaction.TransactionStatus;
+import com.bankingsystem.model.Transaction.TransactionType;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.InterestAccrualRunRepository;
+import com.bankingsystem.repository.TransactionRepository;
+import com.bankingsystem.service.ledger.LedgerEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monthly interest accrual for active savings accounts.
+ *
+ * The id space is split into fixed-size chunks that are processed in parallel,
+ * each in its own transaction: the chunk's accounts are read with one range
+ * query, balances are raised with one JDBC batch and the interest transactions
+ * are inserted as a Hibernate batch. Every accrual carries the idempotency key
+ * {@code INTEREST:<period>:<accountId>}, and progress is checkpointed in
+ * {@link InterestAccrualRun}, so an interrupted run resumes on the next start
+ * without paying anyone twice.
+ *
+ * With the ledger engine, each deposit is posted under its accrual's
+ * transaction number before the chunk commits. The chunk confirms the deposits
+ * once it has committed and settles them if it rolls back. A crash in between
+ * is settled against the journal when the engine starts, which happens before
+ * interrupted runs resume.
+ */
+@Component
+@Slf4j
+public class InterestAccrualJob {
+
+    private static final BigDecimal MONTHS_PER_YEAR = new BigDecimal("12");
+    private static final String ACCRUAL_DESCRIPTION = "Monthly interest";
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final InterestAccrualRunRepository runRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
+    private final AccountCache accountCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Optional<LedgerEngine> ledgerEngine;
+    private final int chunkSize;
+    private final int parallelism;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder chunksProcessed = new LongAdder();
+    private final LongAdder accountsAccrued = new LongAdder();
+    private volatile String lastPeriod;
+
+    public InterestAccrualJob(
+            AccountRepository accountRepository,
+            TransactionRepository transactionRepository,
+            InterestAccrualRunRepository runRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            IdGenerator idGenerator,
+            AccountCache accountCache,
+            ApplicationEventPublisher eventPublisher,
+            Optional<LedgerEngine> ledgerEngine,
+            @Value("${interest.chunk-size:1000}") int chunkSize,
+            @Value("${interest.parallelism:4}") int parallelism) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.runRepository = runRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idGenerator = idGenerator;
+        this.accountCache = accountCache;
+        this.eventPublisher = eventPublisher;
+        this.ledgerEngine = ledgerEngine;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Accrue last month's interest (by default at 01:00 on the first of each month)
+     */
+    @Scheduled(cron = "${interest.cron:0 0 1 1 * *}")
+    public void accrueLastMonth() {
+        accrue(YearMonth.now().minusMonths(1));
+    }
+
+    /**
+     * Finish any run that was interrupted by a shutdown or crash
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRuns() {
+        for (InterestAccrualRun run : runRepository.findByStatus(RunStatus.RUNNING)) {
+            log.info("Resuming interest accrual for {} from account id {}", run.getPeriod(), run.getNextChunkStart());
+            accrue(YearMonth.parse(run.getPeriod()));
+        }
+    }
+
+    /**
+     * Accrue interest for one period; a completed period is not processed again
+     */
+    public void accrue(YearMonth period) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Interest accrual already in progress, skipping {}", period);
+            return;
+        }
+        try {
+            InterestAccrualRun run = startOrResume(period.toString());
+            if (run.getStatus() == RunStatus.COMPLETED) {
+                return;
+            }
+            lastPeriod = run.getPeriod();
+            processChunks(run);
+            complete(run);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Snapshot of the job counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("running", running.get());
+        metrics.put("lastPeriod", lastPeriod);
+        metrics.put("chunksProcessed", chunksProcessed.sum());
+        metrics.put("accountsAccrued", accountsAccrued.sum());
+        return metrics;
+    }
+
+    private InterestAccrualRun startOrResume(String period) {
+        return transactionTemplate.execute(status -> runRepository.findById(period).orElseGet(() -> {
+            InterestAccrualRun run = new InterestAccrualRun();
+            run.setPeriod(period);
+            run.setStatus(RunStatus.RUNNING);
+            run.setChunkSize(chunkSize);
+            run.setUpperBoundId(accountRepository.findMaxId());
+            run.setNextChunkStart(0);
+            run.setStartedAt(LocalDateTime.now());
+            return runRepository.save(run);
+        }));
+    }
+
+    private void processChunks(InterestAccrualRun run) {
+        long firstChunk = run.getNextChunkStart();
+        int size = run.getChunkSize();
+        int chunkCount = (int) ((run.getUpperBoundId() - firstChunk) / size + 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, namedThreads());
+        ExecutorCompletionService<Long> completion = new ExecutorCompletionService<>(executor);
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                long from = firstChunk + (long) i * size;
+                completion.submit(() -> {
+                    accrueChunk(run.getPeriod(), from, from + size);
+                    return from;
+                });
+            }
+
+            // Advance the checkpoint only over a contiguous prefix of finished chunks
+            Set<Long> finished = new HashSet<>();
+            long watermark = firstChunk;
+            for (int i = 0; i < chunkCount; i++) {
+                finished.add(completion.take().get());
+                long advanced = watermark;
+                while (finished.remove(advanced)) {
+                    advanced += size;
+                }
+                if (advanced != watermark) {
+                    watermark = advanced;
+                    saveCheckpoint(run.getPeriod(), watermark);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interest accrual interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Interest accrual chunk failed; the run resumes from its checkpoint", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void accrueChunk(String period, long fromId, long toId) {
+        // Transaction number -> account number of each engine deposit made for this chunk
+        Map<String, String> ledgerPostings = new LinkedHashMap<>();
+        int accrued;
+        try {
+            accrued = accrueChunk(period, fromId, toId, ledgerPostings);
+        } catch (RuntimeException e) {
+            if (!ledgerPostings.isEmpty()) {
+                try {
+                    // Reversed unless their rows committed after all
+                    ledgerEngine.get().settle(ledgerPostings.keySet(), ledgerPostings.values());
+                } catch (RuntimeException settleFailure) {
+                    // Left pending; the engine settles them against the journal on its next start
+                    e.addSuppressed(settleFailure);
+                }
+            }
+            throw e;
+        }
+        if (!ledgerPostings.isEmpty()) {
+            ledgerEngine.get().confirm(ledgerPostings.keySet(), ledgerPostings.values());
+        }
+        accountsAccrued.add(accrued);
+        chunksProcessed.increment();
+    }
+
+    private int accrueChunk(String period, long fromId, long toId, Map<String, String> ledgerPostings) {
+        return transactionTemplate.execute(status -> {
+            List<Account> accounts = accountRepository.findActiveInIdRange(fromId, toId, AccountType.SAVINGS);
+            if (accounts.isEmpty()) {
+                return 0;
+            }
+
+            List<String> keys = new ArrayList<>(accounts.size());
+            for (Account account : accounts) {
+                keys.add(idempotencyKey(period, account.getId()));
+            }
+            Set<String> alreadyAccrued = new HashSet<>(transactionRepository.findExistingIdempotencyKeys(keys));
+
+            List<Account> credited = new ArrayList<>();
+            List<Transaction> transactions = new ArrayList<>();
+            for (int i = 0; i < accounts.size(); i++) {
+                Account account = accounts.get(i);
+                BigDecimal interest = monthlyInterest(account);
+                if (alreadyAccrued.contains(keys.get(i)) || interest.signum() <= 0) {
+                    continue;
+                }
+                credited.add(account);
+                transactions.add(accrual(account, interest, keys.get(i)));
+            }
+
+            creditBalances(credited, transactions, ledgerPostings);
+            transactionRepository.saveAll(transactions);
+            transactions.forEach(transaction -> eventPublisher.publishEvent(AccountPostingEvent.of(transaction)));
+            return transactions.size();
+        });
+    }
+
+    private void creditBalances(List<Account> accounts, List<Transaction> transactions,
+                                Map<String, String> ledgerPostings) {
+        if (ledgerEngine.isPresent()) {
+            // Balances live in the engine; the accounts table follows through its projection
+            for (int i = 0; i < accounts.size(); i++) {
+                String transactionNumber = transactions.get(i).getTransactionNumber();
+                String accountNumber = accounts.get(i).getAccountNumber();
+                ledgerEngine.get().deposit(transactionNumber, accountNumber, transactions.get(i).getAmount());
+                ledgerPostings.put(transactionNumber, accountNumber);
+            }
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(accounts.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            accountCache.evict(accounts.get(i).getAccountNumber());
+            rows.add(new Object[]{transactions.get(i).getAmount(), now, accounts.get(i).getId()});
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE accounts SET balance = balance + ?, version = COALESCE(version, 0) + 1, updated_at = ? " +
+                "WHERE id = ?", rows);
+    }
+
+    private Transaction accrual(Account account, BigDecimal interest, String key) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionNumber(idGenerator.nextTransactionNumber());
+        transaction.setTransactionType(TransactionType.INTEREST);
+        transaction.setAmount(interest);
+        transaction.setDestinationAccount(account);
+        transaction.setDescription(ACCRUAL_DESCRIPTION);
+        transaction.setTransactionDate(LocalDateTime.now());
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        transaction.setReferenceNumber(idGenerator.nextReferenceNumber());
+        transaction.setIdempotencyKey(key);
+        return transaction;
+    }
+
+    /**
+     * One month of simple interest; interestRate is an annual fraction (0.025 = 2.5%)
+     */
+    static BigDecimal monthlyInterest(Account account) {
+        if (account.getInterestRate() == null || account.getBalance() == null) {
+            return BigDecimal.ZERO;
+        }
+        return account.getBalance()
+                .multiply(account.getInterestRate())
+                .divide(MONTHS_PER_YEAR, 2, RoundingMode.HALF_EVEN);
+    }
+
+    private void saveCheckpoint(String period, long nextChunkStart) {
+        transactionTemplate.executeWithoutResult(status -> runRepository.findById(period).ifPresent(run -> {
+            run.setNextChunkStart(nextChunkStart);
+            runRepository.save(run);
+        }));
+    }
+
+    private void complete(InterestAccrualRun run) {
+        transactionTemplate.executeWithoutResult(status -> {
+            InterestAccrualRun current = runRepository.findById(run.getPeriod()).orElse(run);
+            Object[] totals = transactionRepository
+                    .summarizeByIdempotencyKeyPrefix(idempotencyKey(run.getPeriod(), null) + "%").get(0);
+            current.setStatus(RunStatus.COMPLETED);
+            current.setNextChunkStart(current.getUpperBoundId() + 1);
+            current.setAccountsAccrued(((Number) totals[0]).longValue());
+            current.setTotalInterest((BigDecimal) totals[1]);
+            current.setCompletedAt(LocalDateTime.now());
+            runRepository.save(current);
+            log.info("Interest accrual for {} completed: {} accounts, {} total",
+                    current.getPeriod(), current.getAccountsAccrued(), current.getTotalInterest());
+        });
+    }
+
+    private static String idempotencyKey(String period, Long accountId) {
+        return "INTEREST:" + period + ":" + (accountId != null ? accountId : "");
+    }
+
+    private static ThreadFactory namedThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "interest-accrual-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
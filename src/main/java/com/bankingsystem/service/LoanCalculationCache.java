@@ -0,0 +1,191 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.AmortizationSchedule;
+import com.bankingsystem.model.Loan.LoanType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Memo of loan calculations that are expensive and asked for repeatedly.
+ *
+ * Discount factors {@code (1 + r)^n} are exact BigDecimal powers and cost the
+ * most; the factors for each {@link LoanType}'s standard rate and term are
+ * computed at startup and never evicted, and other factors sit in an LRU of
+ * {@code loans.cache.factor-max-size}. Whole schedules are kept in an LRU of
+ * {@code loans.cache.schedule-max-size}, keyed on the amount in cents and the
+ * monthly rate, so any two requests that would compute the same schedule share
+ * one. Values are computed outside the lock; two threads missing on the same
+ * key may both compute it, which only costs time.
+ */
+@Component
+public class LoanCalculationCache {
+
+    private final Map<FactorKey, BigDecimal> standardFactors = new HashMap<>();
+    private final Map<FactorKey, BigDecimal> factors;
+    private final Map<ScheduleKey, AmortizationSchedule> schedules;
+
+    private final LongAdder standardFactorHits = new LongAdder();
+    private final LongAdder factorHits = new LongAdder();
+    private final LongAdder factorMisses = new LongAdder();
+    private final LongAdder scheduleHits = new LongAdder();
+    private final LongAdder scheduleMisses = new LongAdder();
+
+    public LoanCalculationCache(@Value("${loans.cache.factor-max-size:1000}") int factorMaxSize,
+                                @Value("${loans.cache.schedule-max-size:500}") int scheduleMaxSize) {
+        this.factors = lru(Math.max(1, factorMaxSize));
+        this.schedules = lru(Math.max(1, scheduleMaxSize));
+
+        for (LoanType type : LoanType.values()) {
+            BigDecimal monthlyRate = LoanService.monthlyRate(type.getStandardRate());
+            standardFactors.put(new FactorKey(monthlyRate, type.getStandardTermMonths()),
+                    LoanService.discountFactor(monthlyRate, type.getStandardTermMonths()));
+        }
+    }
+
+    /**
+     * (1 + monthlyRate)^termMonths
+     */
+    public BigDecimal discountFactor(BigDecimal monthlyRate, int termMonths) {
+        FactorKey key = new FactorKey(monthlyRate, termMonths);
+        BigDecimal factor = standardFactors.get(key);
+        if (factor != null) {
+            standardFactorHits.increment();
+            return factor;
+        }
+        synchronized (factors) {
+            factor = factors.get(key);
+        }
+        if (factor != null) {
+            factorHits.increment();
+            return factor;
+        }
+
+        factorMisses.increment();
+        factor = LoanService.discountFactor(monthlyRate, termMonths);
+        synchronized (factors) {
+            factors.put(key, factor);
+        }
+        return factor;
+    }
+
+    /**
+     * Schedule for a loan, computed by the loader on a miss
+     */
+    public AmortizationSchedule schedule(long amountCents, BigDecimal monthlyRate, int termMonths,
+                                         Supplier<AmortizationSchedule> loader) {
+        ScheduleKey key = new ScheduleKey(amountCents, monthlyRate, termMonths);
+        AmortizationSchedule schedule;
+        synchronized (schedules) {
+            schedule = schedules.get(key);
+        }
+        if (schedule != null) {
+            scheduleHits.increment();
+            return schedule;
+        }
+
+        scheduleMisses.increment();
+        schedule = loader.get();
+        synchronized (schedules) {
+            schedules.put(key, schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Snapshot of the cache counters
+     */
+    public Map<String, Object> getMetrics() {
+        long factorHitCount = standardFactorHits.sum() + factorHits.sum();
+        long factorMissCount = factorMisses.sum();
+        long scheduleHitCount = scheduleHits.sum();
+        long scheduleMissCount = scheduleMisses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("standardFactorHits", standardFactorHits.sum());
+        metrics.put("factorHits", factorHits.sum());
+        metrics.put("factorMisses", factorMissCount);
+        metrics.put("factorHitRatio", ratio(factorHitCount, factorMissCount));
+        metrics.put("scheduleHits", scheduleHitCount);
+        metrics.put("scheduleMisses", scheduleMissCount);
+        metrics.put("scheduleHitRatio", ratio(scheduleHitCount, scheduleMissCount));
+        metrics.put("standardFactors", standardFactors.size());
+        synchronized (factors) {
+            metrics.put("factorSize", factors.size());
+        }
+        synchronized (schedules) {
+            metrics.put("scheduleSize", schedules.size());
+        }
+        return metrics;
+    }
+
+    private static double ratio(long hits, long misses) {
+        return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    private static <K, V> Map<K, V> lru(int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static final class FactorKey {
+        private final BigDecimal monthlyRate;
+        private final int termMonths;
+
+        private FactorKey(BigDecimal monthlyRate, int termMonths) {
+            this.monthlyRate = monthlyRate;
+            this.termMonths = termMonths;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FactorKey)) {
+                return false;
+            }
+            FactorKey other = (FactorKey) o;
+            return termMonths == other.termMonths && monthlyRate.equals(other.monthlyRate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(monthlyRate, termMonths);
+        }
+    }
+
+    private static final class ScheduleKey {
+        private final long amountCents;
+        private final BigDecimal monthlyRate;
+        private final int termMonths;
+
+        private ScheduleKey(long amountCents, BigDecimal monthlyRate, int termMonths) {
+            this.amountCents = amountCents;
+            this.monthlyRate = monthlyRate;
+            this.termMonths = termMonths;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ScheduleKey)) {
+                return false;
+            }
+            ScheduleKey other = (ScheduleKey) o;
+            return amountCents == other.amountCents && termMonths == other.termMonths
+                    && monthlyRate.equals(other.monthlyRate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(amountCents, monthlyRate, termMonths);
+        }
+    }
+}
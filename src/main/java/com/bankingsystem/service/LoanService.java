@@ -1,25 +1,33 @@
 package com.bankingsystem.service;
 
+import com.bankingsystem.model.AmortizationSchedule;
+import com.bankingsystem.model.Loan.LoanType;
 import com.bankingsystem.model.User;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
 @Service
+@RequiredArgsConstructor
 public class LoanService {
 
+    private static final BigDecimal PERCENT_MONTHS_PER_YEAR = new BigDecimal("1200");
+    // The monthly rate is kept to 10 decimal places, so its unscaled value is rate * 10^10
+    private static final int RATE_SCALE = 10;
+    private static final long RATE_UNIT = 10_000_000_000L;
+
+    private final LoanCalculationCache calculationCache;
+
     /**
      * Calculate EMI for a loan
      */
     public BigDecimal calculateEmi(BigDecimal principal, BigDecimal interestRate, int tenureInMonths) {
-        // Convert annual interest rate to monthly
-        BigDecimal monthlyRate = interestRate.divide(new BigDecimal("100"), 10, RoundingMode.HALF_UP)
-                .divide(new BigDecimal("12"), 10, RoundingMode.HALF_UP);
+        BigDecimal monthlyRate = monthlyRate(interestRate);
         
         // Calculate EMI using formula: P * r * (1 + r)^n / ((1 + r)^n - 1)
-        BigDecimal onePlusRate = BigDecimal.ONE.add(monthlyRate);
-        BigDecimal powValue = onePlusRate.pow(tenureInMonths);
+        BigDecimal powValue = calculationCache.discountFactor(monthlyRate, tenureInMonths);
         
         BigDecimal numerator = principal.multiply(monthlyRate).multiply(powValue);
         BigDecimal denominator = powValue.subtract(BigDecimal.ONE);
@@ -27,6 +35,71 @@ public class LoanService {
         return numerator.divide(denominator, 2, RoundingMode.HALF_UP);
     }
     
+    /**
+     * Month-by-month repayment schedule for a loan of whole cents.
+     *
+     * Each month's interest is the remaining balance times the monthly rate,
+     * rounded HALF_UP to the cent; the rest of the EMI repays principal, and
+     * the last payment clears whatever balance is left. The loop runs on
+     * longs: balances are in cents and the rate is an integer scaled by
+     * 10^10, so every product is exact and rounds exactly as BigDecimal
+     * would. Only a balance-rate product too large for a long falls back to
+     * BigDecimal. Schedules are memoized by {@link LoanCalculationCache}.
+     */
+    public AmortizationSchedule amortize(BigDecimal principal, BigDecimal interestRate, int tenureInMonths) {
+        BigDecimal amount = principal.setScale(2, RoundingMode.HALF_UP);
+        BigDecimal monthlyRate = monthlyRate(interestRate);
+        return calculationCache.schedule(amount.unscaledValue().longValueExact(), monthlyRate, tenureInMonths,
+                () -> computeSchedule(amount, monthlyRate, tenureInMonths));
+    }
+    
+    /**
+     * Largest loan a monthly installment can repay at a loan type's standard rate and term
+     */
+    public BigDecimal eligibleAmount(BigDecimal availableEmi, LoanType loanType) {
+        // P = EMI * ((1+r)^n - 1) / (r * (1+r)^n)
+        BigDecimal monthlyRate = monthlyRate(loanType.getStandardRate());
+        BigDecimal factor = calculationCache.discountFactor(monthlyRate, loanType.getStandardTermMonths());
+        return availableEmi.multiply(factor.subtract(BigDecimal.ONE))
+                .divide(monthlyRate.multiply(factor), 2, RoundingMode.HALF_UP);
+    }
+    
+    private AmortizationSchedule computeSchedule(BigDecimal amount, BigDecimal monthlyRate, int tenureInMonths) {
+        BigDecimal factor = calculationCache.discountFactor(monthlyRate, tenureInMonths);
+        BigDecimal emi = amount.multiply(monthlyRate).multiply(factor)
+                .divide(factor.subtract(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
+        
+        long amountCents = amount.unscaledValue().longValueExact();
+        long emiCents = emi.unscaledValue().longValueExact();
+        long[] principalCents = new long[tenureInMonths];
+        long[] interestCents = new long[tenureInMonths];
+        long[] balanceCents = new long[tenureInMonths];
+        
+        try {
+            long rate = monthlyRate.unscaledValue().longValueExact();
+            long balance = amountCents;
+            for (int i = 0; i < tenureInMonths; i++) {
+                long interest = roundHalfUp(Math.multiplyExact(balance, rate), RATE_UNIT);
+                long principalPart = emiCents - interest;
+                if (i == tenureInMonths - 1) {
+                    principalPart = balance;
+                    balance = 0;
+                } else {
+                    balance -= principalPart;
+                }
+                if (balance < 0) {
+                    balance = 0;
+                }
+                principalCents[i] = principalPart;
+                interestCents[i] = interest;
+                balanceCents[i] = balance;
+            }
+        } catch (ArithmeticException overflow) {
+            amortizeExact(amount, monthlyRate, emi, principalCents, interestCents, balanceCents);
+        }
+        return new AmortizationSchedule(emiCents, principalCents, interestCents, balanceCents);
+    }
+    
     /**
      * Calculate total interest payable
      */
@@ -42,4 +115,42 @@ public class LoanService {
         // Simple eligibility check: loan amount should not exceed 36 times monthly income
         return loanAmount.compareTo(income.multiply(new BigDecimal("36"))) <= 0;
     }
+    
+    static BigDecimal monthlyRate(BigDecimal annualRatePercent) {
+        return annualRatePercent.divide(PERCENT_MONTHS_PER_YEAR, RATE_SCALE, RoundingMode.HALF_UP);
+    }
+    
+    static BigDecimal discountFactor(BigDecimal monthlyRate, int tenureInMonths) {
+        return BigDecimal.ONE.add(monthlyRate).pow(tenureInMonths);
+    }
+    
+    /**
+     * value / unit rounded to the nearest integer, halves away from zero
+     */
+    private static long roundHalfUp(long value, long unit) {
+        long half = unit / 2;
+        return value >= 0 ? (value + half) / unit : -((-value + half) / unit);
+    }
+    
+    // The same schedule in BigDecimal, for balances too large for the long path
+    private static void amortizeExact(BigDecimal amount, BigDecimal monthlyRate, BigDecimal emi,
+                                      long[] principalCents, long[] interestCents, long[] balanceCents) {
+        BigDecimal balance = amount;
+        for (int i = 0; i < principalCents.length; i++) {
+            BigDecimal interest = balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal principalPart = emi.subtract(interest);
+            if (i == principalCents.length - 1) {
+                principalPart = balance;
+                balance = BigDecimal.ZERO.setScale(2);
+            } else {
+                balance = balance.subtract(principalPart);
+            }
+            if (balance.signum() < 0) {
+                balance = BigDecimal.ZERO.setScale(2);
+            }
+            principalCents[i] = principalPart.unscaledValue().longValueExact();
+            interestCents[i] = interest.unscaledValue().longValueExact();
+            balanceCents[i] = balance.unscaledValue().longValueExact();
+        }
+    }
 }
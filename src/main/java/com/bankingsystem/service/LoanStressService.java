@@ -0,0 +1,389 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Loan.LoanStatus;
+import com.bankingsystem.model.Loan.LoanType;
+import com.bankingsystem.model.LoanStressReport;
+import com.bankingsystem.model.LoanStressReport.Scenario;
+import com.bankingsystem.model.LoanStressReport.Segment;
+import com.bankingsystem.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate-shock simulation over the whole loan book.
+ *
+ * Loans are read in id order a chunk at a time as bare columns and copied into
+ * primitive arrays. Each chunk is simulated on a fork-join pool while the next
+ * one is read: tasks split the chunk until it is small, fill per-scenario
+ * arrays of sums indexed by loan type and status, and are merged by adding the
+ * arrays. A scenario raises the rate and re-amortizes the balance outstanding
+ * today over the months left. A loan is at risk when it is DEFAULTED or its
+ * installment would rise by more than {@code loans.stress.payment-shock-threshold};
+ * its outstanding balance is then counted as default exposure. The arithmetic
+ * is in doubles, as this is an estimate and not a posting.
+ */
+@Component
+@Slf4j
+public class LoanStressService {
+
+    // Rejected and closed loans carry no balance, so they are not read at all
+    private static final List<LoanStatus> EXPOSED_STATUSES =
+            Arrays.asList(LoanStatus.PENDING, LoanStatus.APPROVED, LoanStatus.ACTIVE, LoanStatus.DEFAULTED);
+    private static final LoanType[] TYPES = LoanType.values();
+    private static final LoanStatus[] STATUSES = LoanStatus.values();
+    private static final int SEGMENTS = TYPES.length * STATUSES.length;
+    private static final int SPLIT_THRESHOLD = 2048;
+    // Every task leaf holds sums for each scenario, so the count is bounded
+    private static final int MAX_SHOCKS = 10;
+
+    private final LoanRepository loanRepository;
+    private final TransactionTemplate readOnlyTemplate;
+    private final List<Integer> defaultShocksBp;
+    private final int chunkSize;
+    private final int parallelism;
+    private final double paymentShockThreshold;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder loansSimulated = new LongAdder();
+    private volatile LoanStressReport lastReport;
+
+    public LoanStressService(
+            LoanRepository loanRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${loans.stress.shocks-bp:100,200,300}") Integer[] defaultShocksBp,
+            @Value("${loans.stress.chunk-size:20000}") int chunkSize,
+            @Value("${loans.stress.parallelism:0}") int parallelism,
+            @Value("${loans.stress.payment-shock-threshold:0.15}") double paymentShockThreshold) {
+        this.loanRepository = loanRepository;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.defaultShocksBp = Arrays.asList(defaultShocksBp);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.paymentShockThreshold = paymentShockThreshold;
+    }
+
+    /**
+     * Simulate the baseline and each shock (in basis points) over every loan
+     *
+     * @param shocksBp up to 10 shocks to apply, or null or empty for {@code loans.stress.shocks-bp}
+     */
+    public LoanStressReport run(List<Integer> shocksBp) {
+        int[] shocks = scenarios(shocksBp == null || shocksBp.isEmpty() ? defaultShocksBp : shocksBp);
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A loan stress run is already in progress");
+        }
+        try {
+            LocalDate asOf = LocalDate.now();
+            long start = System.nanoTime();
+            Totals totals = simulate(shocks, asOf);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            LoanStressReport report = totals.toReport(shocks, asOf, elapsedMillis);
+            lastReport = report;
+            runs.increment();
+            loansSimulated.add(report.getLoans());
+            log.info("Loan stress run over {} loans and {} scenarios took {} ms",
+                    report.getLoans(), shocks.length, elapsedMillis);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Optional<LoanStressReport> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    /**
+     * Snapshot of the simulation counters
+     */
+    public Map<String, Object> getMetrics() {
+        LoanStressReport report = lastReport;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("running", running.get());
+        metrics.put("runs", runs.sum());
+        metrics.put("loansSimulated", loansSimulated.sum());
+        metrics.put("parallelism", parallelism);
+        metrics.put("lastRunAt", report != null ? report.getCompletedAt() : null);
+        metrics.put("lastRunLoans", report != null ? report.getLoans() : 0);
+        metrics.put("lastRunMillis", report != null ? report.getElapsedMillis() : 0);
+        return metrics;
+    }
+
+    private Totals simulate(int[] shocks, LocalDate asOf) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism, namedThreads(), null, false);
+        Totals totals = new Totals(shocks.length);
+        Deque<ForkJoinTask<Totals>> inFlight = new ArrayDeque<>();
+        try {
+            long afterId = 0;
+            while (true) {
+                long from = afterId;
+                List<Object[]> rows = readOnlyTemplate.execute(status -> loanRepository.findTermsAfter(
+                        EXPOSED_STATUSES, from, PageRequest.of(0, chunkSize)));
+                if (rows == null || rows.isEmpty()) {
+                    break;
+                }
+                LoanChunk chunk = LoanChunk.of(rows, asOf);
+                inFlight.add(pool.submit(new ChunkTask(chunk, shocks, 0, chunk.size)));
+
+                // A couple of chunks per worker keeps the pool busy while the next one is read
+                if (inFlight.size() > parallelism * 2) {
+                    totals.merge(inFlight.poll().join());
+                }
+                afterId = chunk.lastId;
+                if (rows.size() < chunkSize) {
+                    break;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                totals.merge(inFlight.poll().join());
+            }
+            return totals;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Baseline first, then the distinct shocks in increasing order
+     */
+    private static int[] scenarios(List<Integer> shocksBp) {
+        if (shocksBp.size() > MAX_SHOCKS) {
+            throw new IllegalArgumentException("At most " + MAX_SHOCKS + " rate shocks can be simulated in one run");
+        }
+        if (shocksBp.contains(null)) {
+            throw new IllegalArgumentException("Rate shocks must be whole numbers of basis points");
+        }
+        TreeSet<Integer> distinct = new TreeSet<>(shocksBp);
+        distinct.remove(0);
+        int[] shocks = new int[distinct.size() + 1];
+        int i = 1;
+        for (int shock : distinct) {
+            if (shock < -10_000 || shock > 10_000) {
+                throw new IllegalArgumentException("Rate shocks must be between -10000 and 10000 basis points");
+            }
+            shocks[i++] = shock;
+        }
+        return shocks;
+    }
+
+    // Level installment repaying a balance over the given months at a monthly rate
+    private static double emi(double balance, double monthlyRate, int months) {
+        if (monthlyRate <= 0) {
+            return balance / months;
+        }
+        double factor = Math.pow(1 + monthlyRate, months);
+        return balance * monthlyRate * factor / (factor - 1);
+    }
+
+    // Balance left on a level-installment loan once paid of its term installments are made
+    private static double outstanding(double principal, double monthlyRate, int term, int paid) {
+        if (monthlyRate <= 0) {
+            return principal * (term - paid) / term;
+        }
+        double full = Math.pow(1 + monthlyRate, term);
+        return principal * (full - Math.pow(1 + monthlyRate, paid)) / (full - 1);
+    }
+
+    private static ForkJoinPool.ForkJoinWorkerThreadFactory namedThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("loan-stress-" + counter.incrementAndGet());
+            return thread;
+        };
+    }
+
+    /**
+     * One chunk of loans as parallel primitive columns
+     */
+    private static final class LoanChunk {
+        private final int size;
+        private final long lastId;
+        private final int[] segment;
+        private final boolean[] defaulted;
+        private final double[] principal;
+        private final double[] annualRate;
+        private final int[] term;
+        private final int[] paid;
+
+        private LoanChunk(int size, long lastId) {
+            this.size = size;
+            this.lastId = lastId;
+            this.segment = new int[size];
+            this.defaulted = new boolean[size];
+            this.principal = new double[size];
+            this.annualRate = new double[size];
+            this.term = new int[size];
+            this.paid = new int[size];
+        }
+
+        private static LoanChunk of(List<Object[]> rows, LocalDate asOf) {
+            LoanChunk chunk = new LoanChunk(rows.size(), ((Number) rows.get(rows.size() - 1)[0]).longValue());
+            for (int i = 0; i < rows.size(); i++) {
+                Object[] row = rows.get(i);
+                LoanStatus status = (LoanStatus) row[2];
+                int term = Math.max(1, ((Number) row[5]).intValue());
+                LocalDate startDate = (LocalDate) row[6];
+                long paid = startDate == null ? 0 : ChronoUnit.MONTHS.between(startDate, asOf);
+
+                chunk.segment[i] = ((LoanType) row[1]).ordinal() * STATUSES.length + status.ordinal();
+                chunk.defaulted[i] = status == LoanStatus.DEFAULTED;
+                chunk.principal[i] = ((BigDecimal) row[3]).doubleValue();
+                chunk.annualRate[i] = ((BigDecimal) row[4]).doubleValue();
+                chunk.term[i] = term;
+                chunk.paid[i] = (int) Math.min(Math.max(paid, 0), term);
+            }
+            return chunk;
+        }
+    }
+
+    private final class ChunkTask extends RecursiveTask<Totals> {
+        private final LoanChunk chunk;
+        private final int[] shocks;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(LoanChunk chunk, int[] shocks, int from, int to) {
+            this.chunk = chunk;
+            this.shocks = shocks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ChunkTask left = new ChunkTask(chunk, shocks, from, middle);
+                left.fork();
+                Totals right = new ChunkTask(chunk, shocks, middle, to).compute();
+                right.merge(left.join());
+                return right;
+            }
+
+            Totals totals = new Totals(shocks.length);
+            for (int i = from; i < to; i++) {
+                int remaining = chunk.term[i] - chunk.paid[i];
+                double annualRate = chunk.annualRate[i];
+                double balance = remaining > 0
+                        ? outstanding(chunk.principal[i], annualRate / 1200, chunk.term[i], chunk.paid[i]) : 0;
+                double baseEmi = remaining > 0 ? emi(balance, annualRate / 1200, remaining) : 0;
+
+                for (int s = 0; s < shocks.length; s++) {
+                    double shockedEmi = shocks[s] == 0 || remaining == 0
+                            ? baseEmi : emi(balance, (annualRate + shocks[s] / 100.0) / 1200, remaining);
+                    int slot = s * SEGMENTS + chunk.segment[i];
+                    totals.loans[slot]++;
+                    totals.outstanding[slot] += balance;
+                    totals.emi[slot] += shockedEmi;
+                    totals.interest[slot] += shockedEmi * remaining - balance;
+                    if (chunk.defaulted[i] || (baseEmi > 0 && shockedEmi > baseEmi * (1 + paymentShockThreshold))) {
+                        totals.atRisk[slot]++;
+                        totals.exposure[slot] += balance;
+                    }
+                }
+            }
+            return totals;
+        }
+    }
+
+    /**
+     * Sums per scenario and segment, flattened to one slot per (scenario, type, status)
+     */
+    private static final class Totals {
+        private final long[] loans;
+        private final long[] atRisk;
+        private final double[] outstanding;
+        private final double[] emi;
+        private final double[] interest;
+        private final double[] exposure;
+
+        private Totals(int scenarios) {
+            int slots = scenarios * SEGMENTS;
+            this.loans = new long[slots];
+            this.atRisk = new long[slots];
+            this.outstanding = new double[slots];
+            this.emi = new double[slots];
+            this.interest = new double[slots];
+            this.exposure = new double[slots];
+        }
+
+        private void merge(Totals other) {
+            for (int i = 0; i < loans.length; i++) {
+                loans[i] += other.loans[i];
+                atRisk[i] += other.atRisk[i];
+                outstanding[i] += other.outstanding[i];
+                emi[i] += other.emi[i];
+                interest[i] += other.interest[i];
+                exposure[i] += other.exposure[i];
+            }
+        }
+
+        private LoanStressReport toReport(int[] shocks, LocalDate asOf, long elapsedMillis) {
+            List<Scenario> scenarios = new ArrayList<>(shocks.length);
+            long loanCount = 0;
+            for (int s = 0; s < shocks.length; s++) {
+                List<Segment> segments = new ArrayList<>();
+                long scenarioLoans = 0;
+                long scenarioAtRisk = 0;
+                double scenarioOutstanding = 0;
+                double scenarioEmi = 0;
+                double scenarioInterest = 0;
+                double scenarioExposure = 0;
+                for (int segment = 0; segment < SEGMENTS; segment++) {
+                    int slot = s * SEGMENTS + segment;
+                    if (loans[slot] == 0) {
+                        continue;
+                    }
+                    segments.add(new Segment(TYPES[segment / STATUSES.length], STATUSES[segment % STATUSES.length],
+                            loans[slot], money(outstanding[slot]), money(emi[slot]), money(interest[slot]),
+                            atRisk[slot], money(exposure[slot])));
+                    scenarioLoans += loans[slot];
+                    scenarioAtRisk += atRisk[slot];
+                    scenarioOutstanding += outstanding[slot];
+                    scenarioEmi += emi[slot];
+                    scenarioInterest += interest[slot];
+                    scenarioExposure += exposure[slot];
+                }
+                scenarios.add(new Scenario(shocks[s], new Segment(null, null, scenarioLoans, money(scenarioOutstanding),
+                        money(scenarioEmi), money(scenarioInterest), scenarioAtRisk, money(scenarioExposure)), segments));
+                loanCount = scenarioLoans;
+            }
+            return new LoanStressReport(asOf, LocalDateTime.now(), loanCount, elapsedMillis, scenarios);
+        }
+
+        private static BigDecimal money(double amount) {
+            return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Notification;
+import com.bankingsystem.model.Notification.DeliveryChannel;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local stand-in for a channel with no real sender configured; it only logs.
+ */
+@Slf4j
+class LoggingNotificationSender implements NotificationSender {
+
+    private final DeliveryChannel channel;
+
+    LoggingNotificationSender(DeliveryChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public DeliveryChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void deliver(Long userId, Notification notification) {
+        log.debug("{} notification {} to user {}: {}", channel, notification.getId(), userId, notification.getTitle());
+    }
+}
@@ -0,0 +1,379 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.SecurityConfig;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.SecurityConfigRepository;
+import com.bankingsystem.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory sliding-window counters of failed logins per username and per
+ * client address, and the lockouts they trigger.
+ *
+ * Recording an attempt never touches the database. Only lock and unlock
+ * transitions are queued, and a background writer stores them in
+ * {@code security_configs} in batches. A credential-stuffing burst therefore
+ * costs at most one write per locked account, not one per attempt. Locks
+ * still in force are reloaded on startup.
+ */
+@Component
+@Slf4j
+public class LoginAttemptTracker {
+
+    private static final int MAX_LOCK_CHANGES_PER_BATCH = 500;
+
+    private final UserRepository userRepository;
+    private final SecurityConfigRepository securityConfigRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int buckets;
+    private final long bucketMillis;
+    private final int maxUserFailures;
+    private final int maxAddressFailures;
+    private final long lockMillis;
+    private final int maxTrackedKeys;
+    private final long flushIntervalMillis;
+
+    private final ConcurrentHashMap<String, SlidingWindow> userFailures = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SlidingWindow> addressFailures = new ConcurrentHashMap<>();
+    // Lock expiry in epoch milliseconds
+    private final ConcurrentHashMap<String, Long> lockedUsers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lockedAddresses = new ConcurrentHashMap<>();
+    private final BlockingQueue<LockChange> lockChanges = new ArrayBlockingQueue<>(10000);
+
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder locks = new LongAdder();
+    private final LongAdder lockChangesWritten = new LongAdder();
+    private final LongAdder lockChangesDropped = new LongAdder();
+
+    private final LongSupplier clock;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public LoginAttemptTracker(UserRepository userRepository,
+                               SecurityConfigRepository securityConfigRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${security.lockout.window-minutes:15}") int windowMinutes,
+                               @Value("${security.lockout.max-user-failures:5}") int maxUserFailures,
+                               @Value("${security.lockout.max-address-failures:100}") int maxAddressFailures,
+                               @Value("${security.lockout.lock-minutes:15}") int lockMinutes,
+                               @Value("${security.lockout.max-tracked-keys:100000}") int maxTrackedKeys,
+                               @Value("${security.lockout.flush-interval-ms:1000}") long flushIntervalMillis) {
+        this(userRepository, securityConfigRepository, transactionManager, windowMinutes, maxUserFailures,
+                maxAddressFailures, lockMinutes, maxTrackedKeys, flushIntervalMillis, System::currentTimeMillis);
+    }
+
+    LoginAttemptTracker(UserRepository userRepository,
+                        SecurityConfigRepository securityConfigRepository,
+                        PlatformTransactionManager transactionManager,
+                        int windowMinutes,
+                        int maxUserFailures,
+                        int maxAddressFailures,
+                        int lockMinutes,
+                        int maxTrackedKeys,
+                        long flushIntervalMillis,
+                        LongSupplier clock) {
+        this.userRepository = userRepository;
+        this.securityConfigRepository = securityConfigRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // One bucket per minute of the window
+        this.buckets = Math.max(1, windowMinutes);
+        this.bucketMillis = TimeUnit.MINUTES.toMillis(1);
+        this.maxUserFailures = maxUserFailures;
+        this.maxAddressFailures = maxAddressFailures;
+        this.lockMillis = TimeUnit.MINUTES.toMillis(lockMinutes);
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void start() {
+        restoreLocks();
+        running = true;
+        writer = new Thread(this::run, "login-lockout-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Whether sign-in is currently refused for this username or client address
+     */
+    public boolean isLocked(String username, String address) {
+        long now = clock.getAsLong();
+        if (isLocked(lockedUsers, username, now, true) || isLocked(lockedAddresses, address, now, false)) {
+            refused.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count a failed login, locking the username or address once its window fills
+     */
+    public void recordFailure(String username, String address) {
+        failures.increment();
+        long now = clock.getAsLong();
+
+        SlidingWindow userWindow = window(userFailures, username);
+        if (userWindow != null) {
+            long count = userWindow.increment(now);
+            if (count >= maxUserFailures && lockedUsers.put(username, now + lockMillis) == null) {
+                locks.increment();
+                queue(new LockChange(username, true, (int) count));
+                log.warn("Locked sign-in for user {} after {} failed attempts", username, count);
+            }
+        }
+
+        SlidingWindow addressWindow = window(addressFailures, address);
+        if (addressWindow != null) {
+            long count = addressWindow.increment(now);
+            if (count >= maxAddressFailures && lockedAddresses.put(address, now + lockMillis) == null) {
+                locks.increment();
+                log.warn("Blocked sign-in from {} after {} failed attempts", address, count);
+            }
+        }
+    }
+
+    /**
+     * Clear the username's failure window after a successful login
+     */
+    public void recordSuccess(String username) {
+        successes.increment();
+        userFailures.remove(username);
+    }
+
+    /**
+     * Snapshot of the tracker counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("failures", failures.sum());
+        metrics.put("successes", successes.sum());
+        metrics.put("refused", refused.sum());
+        metrics.put("locks", locks.sum());
+        metrics.put("lockedUsers", lockedUsers.size());
+        metrics.put("lockedAddresses", lockedAddresses.size());
+        metrics.put("trackedUsers", userFailures.size());
+        metrics.put("trackedAddresses", addressFailures.size());
+        metrics.put("lockChangesPending", lockChanges.size());
+        metrics.put("lockChangesWritten", lockChangesWritten.sum());
+        metrics.put("lockChangesDropped", lockChangesDropped.sum());
+        return metrics;
+    }
+
+    private boolean isLocked(Map<String, Long> locked, String key, long now, boolean persisted) {
+        if (key == null) {
+            return false;
+        }
+        Long until = locked.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (until > now) {
+            return true;
+        }
+        // Expired: only the thread that removes the entry reports the unlock
+        if (locked.remove(key, until) && persisted) {
+            queue(new LockChange(key, false, 0));
+        }
+        return false;
+    }
+
+    private SlidingWindow window(ConcurrentHashMap<String, SlidingWindow> windows, String key) {
+        if (key == null) {
+            return null;
+        }
+        SlidingWindow window = windows.get(key);
+        if (window != null) {
+            return window;
+        }
+        // Under a flood of distinct names stop tracking new ones; the address window still applies
+        if (windows.size() >= maxTrackedKeys) {
+            return null;
+        }
+        return windows.computeIfAbsent(key, k -> new SlidingWindow(buckets));
+    }
+
+    private void queue(LockChange change) {
+        if (!lockChanges.offer(change)) {
+            lockChangesDropped.increment();
+        }
+    }
+
+    private void run() {
+        List<LockChange> batch = new ArrayList<>(MAX_LOCK_CHANGES_PER_BATCH);
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                // Stopping: fall through and write what is queued
+            }
+            try {
+                evictIdleWindows();
+                while (lockChanges.drainTo(batch, MAX_LOCK_CHANGES_PER_BATCH) > 0) {
+                    writeLockChanges(batch);
+                    batch.clear();
+                }
+            } catch (RuntimeException e) {
+                log.error("Writing {} login lock changes failed", batch.size(), e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeLockChanges(List<LockChange> batch) {
+        // Only the latest change per user matters
+        Map<String, LockChange> latest = new LinkedHashMap<>();
+        for (LockChange change : batch) {
+            latest.put(change.username, change);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, SecurityConfig> configs = new HashMap<>();
+            for (SecurityConfig config : securityConfigRepository.findWithUserByUsernameIn(latest.keySet())) {
+                configs.put(config.getUser().getUsername(), config);
+            }
+            Map<String, User> users = new HashMap<>();
+            for (User user : userRepository.findByUsernameIn(latest.keySet())) {
+                users.put(user.getUsername(), user);
+            }
+
+            List<SecurityConfig> changed = new ArrayList<>(latest.size());
+            for (LockChange change : latest.values()) {
+                User user = users.get(change.username);
+                if (user == null) {
+                    // Failed attempts against names that are not registered are tracked but never stored
+                    continue;
+                }
+                SecurityConfig config = configs.get(change.username);
+                if (config == null) {
+                    config = new SecurityConfig();
+                    config.setUser(user);
+                }
+                config.setAccountLocked(change.locked);
+                config.setAccountLockTime(change.locked ? LocalDateTime.now() : null);
+                config.setLoginAttempts(change.attempts);
+                changed.add(config);
+            }
+            securityConfigRepository.saveAll(changed);
+        });
+        lockChangesWritten.add(latest.size());
+    }
+
+    private void restoreLocks() {
+        long now = clock.getAsLong();
+        for (SecurityConfig config : securityConfigRepository.findLockedWithUser()) {
+            if (config.getAccountLockTime() == null) {
+                continue;
+            }
+            long until = config.getAccountLockTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + lockMillis;
+            if (until > now) {
+                lockedUsers.put(config.getUser().getUsername(), until);
+            } else {
+                queue(new LockChange(config.getUser().getUsername(), false, 0));
+            }
+        }
+        if (!lockedUsers.isEmpty()) {
+            log.info("Restored {} sign-in locks (oldest expires {})", lockedUsers.size(),
+                    Instant.ofEpochMilli(lockedUsers.values().stream().min(Long::compare).orElse(now)));
+        }
+    }
+
+    private void evictIdleWindows() {
+        long now = clock.getAsLong();
+        userFailures.values().removeIf(window -> window.sum(now) == 0);
+        addressFailures.values().removeIf(window -> window.sum(now) == 0);
+        lockedAddresses.values().removeIf(until -> until <= now);
+        // A stored lock carries its own lock time, and restoreLocks treats an expired one as unlocked
+        lockedUsers.values().removeIf(until -> until <= now);
+    }
+
+    /**
+     * Ring of per-minute failure counts. Each slot packs the bucket's minute
+     * (high 40 bits) and its count (low 24 bits) into one long, so moving to a
+     * new minute and counting are a single compare-and-set.
+     */
+    private final class SlidingWindow {
+        private static final int COUNT_BITS = 24;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        private final AtomicLongArray slots;
+
+        private SlidingWindow(int size) {
+            this.slots = new AtomicLongArray(size);
+        }
+
+        long increment(long now) {
+            long bucket = now / bucketMillis;
+            int index = (int) (bucket % slots.length());
+            while (true) {
+                long current = slots.get(index);
+                long next = (current >>> COUNT_BITS) == bucket
+                        ? current + ((current & COUNT_MASK) < COUNT_MASK ? 1 : 0)
+                        : (bucket << COUNT_BITS) | 1;
+                if (slots.compareAndSet(index, current, next)) {
+                    break;
+                }
+            }
+            return sum(now);
+        }
+
+        long sum(long now) {
+            long bucket = now / bucketMillis;
+            long total = 0;
+            for (int i = 0; i < slots.length(); i++) {
+                long value = slots.get(i);
+                if (bucket - (value >>> COUNT_BITS) < slots.length()) {
+                    total += value & COUNT_MASK;
+                }
+            }
+            return total;
+        }
+    }
+
+    private static final class LockChange {
+        private final String username;
+        private final boolean locked;
+        private final int attempts;
+
+        private LockChange(String username, boolean locked, int attempts) {
+            this.username = username;
+            this.locked = locked;
+            this.attempts = attempts;
+        }
+    }
+}
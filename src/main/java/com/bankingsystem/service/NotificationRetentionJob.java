@@ -0,0 +1,265 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Notification;
+import com.bankingsystem.model.Notification.DeliveryChannel;
+import com.bankingsystem.model.Notification.NotificationType;
+import com.bankingsystem.model.NotificationArchive;
+import com.bankingsystem.repository.NotificationArchiveRepository;
+import com.bankingsystem.repository.NotificationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves expired notifications out of the live table.
+ *
+ * Each {@link NotificationType} has its own time to live. Read inbox
+ * notifications and the delivery records of other channels become eligible
+ * once they are older than that; unread inbox notifications stay, so the unread
+ * counters never change here. Candidates are walked in id order a chunk at a
+ * time. Each chunk is written as one compressed {@link NotificationArchive} row
+ * per creation month and deleted, in one short transaction, so inserts and
+ * inbox reads carry on while the job runs.
+ */
+@Component
+@Slf4j
+public class NotificationRetentionJob {
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationArchiveRepository archiveRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<NotificationType, Integer> ttlDays = new EnumMap<>(NotificationType.class);
+    private final int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder archived = new LongAdder();
+    private final LongAdder archiveRows = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunRows;
+    private volatile long lastRunMillis;
+
+    public NotificationRetentionJob(
+            NotificationRepository notificationRepository,
+            NotificationArchiveRepository archiveRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${notifications.retention.default-ttl-days:180}") int defaultTtlDays,
+            @Value("${notifications.retention.ttl-days:}") String ttlDaysByType,
+            @Value("${notifications.retention.chunk-size:1000}") int chunkSize) {
+        this.notificationRepository = notificationRepository;
+        this.archiveRepository = archiveRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+
+        for (NotificationType type : NotificationType.values()) {
+            ttlDays.put(type, defaultTtlDays);
+        }
+        // TYPE=days pairs, for example TRANSACTION=90,MARKETING=30
+        for (String entry : ttlDaysByType.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected TYPE=days in notifications.retention.ttl-days, got " + entry);
+            }
+            ttlDays.put(NotificationType.valueOf(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+    }
+
+    /**
+     * Archive expired notifications (by default at 02:30 every day)
+     */
+    @Scheduled(cron = "${notifications.retention.cron:0 30 2 * * *}")
+    public void archiveExpired() {
+        archive(LocalDateTime.now());
+    }
+
+    /**
+     * Archive every notification that has expired by the given time
+     *
+     * @return the number of notifications archived
+     */
+    public long archive(LocalDateTime now) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Notification retention already in progress, skipping");
+            return 0;
+        }
+        long start = System.nanoTime();
+        long total = 0;
+        try {
+            for (Map.Entry<NotificationType, Integer> ttl : ttlDays.entrySet()) {
+                if (ttl.getValue() >= 0) {
+                    total += archiveType(ttl.getKey(), now.minusDays(ttl.getValue()));
+                }
+            }
+        } finally {
+            lastRunAt = now;
+            lastRunRows = total;
+            lastRunMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            runs.increment();
+            running.set(false);
+        }
+        if (total > 0) {
+            log.info("Archived {} notifications in {} ms", total, lastRunMillis);
+        }
+        return total;
+    }
+
+    /**
+     * Snapshot of the retention counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("runs", runs.sum());
+        metrics.put("archived", archived.sum());
+        metrics.put("archiveRows", archiveRows.sum());
+        metrics.put("rawBytes", rawBytes.sum());
+        metrics.put("compressedBytes", compressedBytes.sum());
+        metrics.put("lastRunAt", lastRunAt);
+        metrics.put("lastRunRows", lastRunRows);
+        metrics.put("lastRunMillis", lastRunMillis);
+        metrics.put("lastRunRowsPerSecond", lastRunMillis > 0 ? lastRunRows * 1000 / lastRunMillis : lastRunRows);
+        return metrics;
+    }
+
+    private long archiveType(NotificationType type, LocalDateTime createdBefore) {
+        long total = 0;
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            List<Object[]> chunk = transactionTemplate.execute(status -> {
+                List<Object[]> rows = notificationRepository.findArchivable(type, createdBefore, DeliveryChannel.IN_APP,
+                        from, PageRequest.of(0, chunkSize));
+                if (!rows.isEmpty()) {
+                    archiveChunk(rows);
+                }
+                return rows;
+            });
+            if (chunk == null || chunk.isEmpty()) {
+                return total;
+            }
+            total += chunk.size();
+            archived.add(chunk.size());
+            afterId = ((Notification) chunk.get(chunk.size() - 1)[0]).getId();
+            if (chunk.size() < chunkSize) {
+                return total;
+            }
+        }
+    }
+
+    private void archiveChunk(List<Object[]> rows) {
+        Map<YearMonth, List<Object[]>> byMonth = new TreeMap<>();
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Notification notification = (Notification) row[0];
+            ids.add(notification.getId());
+            byMonth.computeIfAbsent(YearMonth.from(notification.getCreatedAt()), month -> new ArrayList<>()).add(row);
+        }
+
+        LocalDateTime archivedAt = LocalDateTime.now();
+        List<NotificationArchive> archives = new ArrayList<>(byMonth.size());
+        for (Map.Entry<YearMonth, List<Object[]>> month : byMonth.entrySet()) {
+            List<Object[]> monthRows = month.getValue();
+            NotificationArchive archive = new NotificationArchive();
+            archive.setPeriod(month.getKey().toString());
+            archive.setRowCount(monthRows.size());
+            archive.setFirstNotificationId(((Notification) monthRows.get(0)[0]).getId());
+            archive.setLastNotificationId(((Notification) monthRows.get(monthRows.size() - 1)[0]).getId());
+            archive.setOldestCreatedAt(monthRows.stream().map(row -> ((Notification) row[0]).getCreatedAt())
+                    .min(LocalDateTime::compareTo).orElseThrow());
+            archive.setNewestCreatedAt(monthRows.stream().map(row -> ((Notification) row[0]).getCreatedAt())
+                    .max(LocalDateTime::compareTo).orElseThrow());
+            archive.setArchivedAt(archivedAt);
+            archive.setPayload(compress(monthRows));
+            archives.add(archive);
+        }
+
+        archiveRepository.saveAll(archives);
+        notificationRepository.deleteAllByIdInBatch(ids);
+        archiveRows.add(archives.size());
+    }
+
+    private byte[] compress(List<Object[]> rows) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        long rawCount;
+        try (CountingOutputStream raw = new CountingOutputStream(new GZIPOutputStream(buffer))) {
+            for (Object[] row : rows) {
+                Notification notification = (Notification) row[0];
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("id", notification.getId());
+                line.put("userId", row[1]);
+                line.put("type", notification.getType());
+                line.put("deliveryChannel", notification.getDeliveryChannel());
+                line.put("priority", notification.getPriority());
+                line.put("title", notification.getTitle());
+                line.put("message", notification.getMessage());
+                line.put("actionUrl", notification.getActionUrl());
+                line.put("read", notification.isRead());
+                line.put("createdAt", notification.getCreatedAt());
+                line.put("readAt", notification.getReadAt());
+                raw.write(objectMapper.writeValueAsBytes(line));
+                raw.write('\n');
+            }
+            rawCount = raw.count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compress archived notifications", e);
+        }
+        rawBytes.add(rawCount);
+        compressedBytes.add(buffer.size());
+        return buffer.toByteArray();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
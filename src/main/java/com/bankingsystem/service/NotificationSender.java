@@ -0,0 +1,19 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Notification;
+import com.bankingsystem.model.Notification.DeliveryChannel;
+
+/**
+ * Delivers stored notifications over one channel.
+ *
+ * Called from that channel's worker pool, highest priority first. Throwing
+ * makes the notification retry with backoff, and after the last attempt it
+ * goes to the dead-letter table. The notification is detached, so only its
+ * own columns may be read; the recipient is passed separately.
+ */
+public interface NotificationSender {
+
+    DeliveryChannel getChannel();
+
+    void deliver(Long userId, Notification notification);
+}
@@ -1,26 +1,626 @@
 package com.bankingsystem.service;
 
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.event.NotificationEvent;
+import com.bankingsystem.event.OutboxListener;
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Notification;
+import com.bankingsystem.model.Notification.DeliveryChannel;
+import com.bankingsystem.model.Notification.NotificationPriority;
+import com.bankingsystem.model.Notification.NotificationType;
+import com.bankingsystem.model.NotificationCounter;
+import com.bankingsystem.model.NotificationDeadLetter;
 import com.bankingsystem.model.User;
-import lombok.RequiredArgsConstructor;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.NotificationCounterRepository;
+import com.bankingsystem.repository.NotificationDeadLetterRepository;
+import com.bankingsystem.repository.NotificationRepository;
+import com.bankingsystem.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stores and delivers user notifications.
+ *
+ * Producers put notifications on a bounded queue; one writer thread drains it
+ * and inserts the rows in JDBC batches, then hands each stored notification to
+ * the worker pool of its {@link DeliveryChannel}, where higher priorities are
+ * delivered first. Failed deliveries are retried with exponential backoff and
+ * end up in the dead-letter table after the last attempt. Back-pressure runs
+ * the other way: a full channel pool stalls the writer, and a full queue
+ * makes producers wait briefly before the notification is dropped.
+ *
+ * Committed postings arrive from the outbox and become a transaction
+ * notification for every holder of the accounts involved. These skip the
+ * queue: they are stored on the relay's thread before it acknowledges the
+ * batch, so a crash cannot lose them, and each carries an idempotency key, so
+ * a batch the relay delivers again is not notified twice.
+ *
+ * The inbox is the user's {@link DeliveryChannel#IN_APP} notifications. Its
+ * unread count lives in a per-user counter that changes in the same
+ * transaction as each insert and mark-read.
+ */
 @Service
-@RequiredArgsConstructor
-public class NotificationService {
-    
+@Slf4j
+public class NotificationService implements OutboxListener {
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationDeadLetterRepository deadLetterRepository;
+    private final NotificationCounterRepository counterRepository;
+    private final AccountRepository accountRepository;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long enqueueTimeoutMillis;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final DeliveryChannel[] transactionChannels;
+    private final int markReadChunkSize;
+
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private final Map<DeliveryChannel, Channel> channels = new EnumMap<>(DeliveryChannel.class);
+    private final ScheduledExecutorService retryScheduler;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder writeBatches = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    public NotificationService(
+            NotificationRepository notificationRepository,
+            NotificationDeadLetterRepository deadLetterRepository,
+            NotificationCounterRepository counterRepository,
+            AccountRepository accountRepository,
+            UserRepository userRepository,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            List<NotificationSender> senders,
+            @Value("${notifications.queue-capacity:10000}") int queueCapacity,
+            @Value("${notifications.batch-size:200}") int batchSize,
+            @Value("${notifications.enqueue-timeout-ms:100}") long enqueueTimeoutMillis,
+            @Value("${notifications.channel-workers:2}") int channelWorkers,
+            @Value("${notifications.channel-queue-capacity:5000}") int channelQueueCapacity,
+            @Value("${notifications.max-attempts:5}") int maxAttempts,
+            @Value("${notifications.retry-backoff-ms:500}") long retryBackoffMillis,
+            @Value("${notifications.transaction-channels:IN_APP}") DeliveryChannel[] transactionChannels,
+            @Value("${notifications.mark-read-chunk-size:1000}") int markReadChunkSize) {
+        this.notificationRepository = notificationRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.counterRepository = counterRepository;
+        this.accountRepository = accountRepository;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.enqueueTimeoutMillis = Math.max(0, enqueueTimeoutMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = Math.max(1, retryBackoffMillis);
+        this.transactionChannels = transactionChannels;
+        this.markReadChunkSize = Math.max(1, markReadChunkSize);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        Map<DeliveryChannel, NotificationSender> sendersByChannel = new EnumMap<>(DeliveryChannel.class);
+        for (NotificationSender sender : senders) {
+            sendersByChannel.put(sender.getChannel(), sender);
+        }
+        for (DeliveryChannel channel : DeliveryChannel.values()) {
+            NotificationSender sender = sendersByChannel.getOrDefault(channel, new LoggingNotificationSender(channel));
+            channels.put(channel, new Channel(channel, sender, Math.max(1, channelWorkers), Math.max(1, channelQueueCapacity)));
+        }
+
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::run, "notification-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        retryScheduler.shutdownNow();
+        for (Channel channel : channels.values()) {
+            channel.executor.shutdownNow();
+        }
+    }
+
     /**
      * Send a welcome notification to a new user
      */
     public void sendWelcomeNotification(User user) {
-        // In a real application, this would create a notification
-        System.out.println("Welcome notification sent to: " + user.getEmail());
+        String message = "Thank you for registering with our online banking service.";
+        send(user.getId(), "Welcome to Online Banking", message, NotificationType.SYSTEM,
+                DeliveryChannel.IN_APP, NotificationPriority.NORMAL, null);
+        send(user.getId(), "Welcome to Online Banking", message, NotificationType.SYSTEM,
+                DeliveryChannel.EMAIL, NotificationPriority.LOW, null);
     }
-    
+
     /**
      * Send OTP notification
      */
     public void sendOtpNotification(User user, String otp) {
-        // In a real application, this would send an SMS or email with the OTP
-        System.out.println("OTP notification sent to: " + user.getEmail() + ", OTP: " + otp);
+        send(user.getId(), "Your one-time password", "Your one-time password is " + otp + ".",
+                NotificationType.SECURITY, DeliveryChannel.SMS, NotificationPriority.CRITICAL, null);
+    }
+
+    /**
+     * Queue a notification for storage and delivery.
+     *
+     * Inside a transaction it is queued once the transaction commits. If the
+     * queue stays full for {@code notifications.enqueue-timeout-ms} the
+     * notification is dropped and counted as rejected.
+     */
+    public void send(Long userId, String title, String message, NotificationType type,
+                     DeliveryChannel channel, NotificationPriority priority, String actionUrl) {
+        Notification notification = new Notification();
+        notification.setTitle(title);
+        notification.setMessage(message);
+        notification.setType(type);
+        notification.setDeliveryChannel(channel);
+        notification.setPriority(priority);
+        notification.setActionUrl(actionUrl);
+        Pending pending = new Pending(userId, notification);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(pending);
+                }
+            });
+        } else {
+            offer(pending);
+        }
+    }
+
+    /**
+     * A page of the user's inbox, newest first, strictly older than the cursor when one is given
+     */
+    public Slice<Notification> getInbox(Long userId, LocalDateTime beforeDate, Long beforeId, int size) {
+        Pageable pageable = PageRequest.of(0, size);
+        if (beforeDate == null || beforeId == null) {
+            return notificationRepository.findInbox(userId, DeliveryChannel.IN_APP, pageable);
+        }
+        return notificationRepository.findInboxBefore(userId, DeliveryChannel.IN_APP, beforeDate, beforeId, pageable);
+    }
+
+    public Optional<Notification> getInboxNotification(Long userId, Long notificationId) {
+        return notificationRepository.findInboxNotification(notificationId, userId, DeliveryChannel.IN_APP);
+    }
+
+    /**
+     * Unread inbox count from the user's counter; counted only for users who have never had a notification stored
+     */
+    public long getUnreadCount(Long userId) {
+        return counterRepository.findById(userId)
+                .map(NotificationCounter::getUnreadCount)
+                .orElseGet(() -> notificationRepository.countUnread(userId, DeliveryChannel.IN_APP));
+    }
+
+    /**
+     * Mark one inbox notification read; returns false if it was already read or is not the user's
+     */
+    public boolean markAsRead(Long userId, Long notificationId) {
+        Boolean changed = transactionTemplate.execute(status -> {
+            if (notificationRepository.markAsRead(notificationId, userId, DeliveryChannel.IN_APP) == 0) {
+                return false;
+            }
+            counterRepository.subtractUnread(userId, 1);
+            eventPublisher.publishEvent(new NotificationEvent(userId));
+            return true;
+        });
+        return Boolean.TRUE.equals(changed);
+    }
+
+    /**
+     * Mark the whole inbox read in short transactions of {@code notifications.mark-read-chunk-size} rows,
+     * so a large inbox never holds its row locks for long. Notifications stored meanwhile stay unread.
+     *
+     * @return the number of notifications marked read
+     */
+    public int markAllAsRead(Long userId) {
+        Long maxId = notificationRepository.findMaxId(userId);
+        if (maxId == null) {
+            return 0;
+        }
+        int total = 0;
+        while (true) {
+            Integer marked = transactionTemplate.execute(status -> {
+                List<Long> ids = notificationRepository.findUnreadIds(userId, DeliveryChannel.IN_APP, maxId,
+                        PageRequest.of(0, markReadChunkSize));
+                if (ids.isEmpty()) {
+                    return -1;
+                }
+                int count = notificationRepository.markAsRead(ids);
+                counterRepository.subtractUnread(userId, count);
+                return count;
+            });
+            if (marked == null || marked < 0) {
+                break;
+            }
+            total += marked;
+        }
+        if (total > 0) {
+            transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(new NotificationEvent(userId)));
+        }
+        return total;
+    }
+
+    @Override
+    public void onEvents(List<Object> events) {
+        // Stored before the relay deletes the outbox rows; notifications a redelivered batch already produced are skipped
+        List<Pending> stored = transactionTemplate.execute(status -> {
+            List<Pending> notifications = transactionNotifications(events);
+            if (notifications.isEmpty()) {
+                return notifications;
+            }
+            List<String> keys = new ArrayList<>(notifications.size());
+            for (Pending pending : notifications) {
+                keys.add(pending.notification.getIdempotencyKey());
+            }
+            Set<String> existing = new HashSet<>(notificationRepository.findExistingIdempotencyKeys(keys));
+            List<Pending> fresh = new ArrayList<>(notifications.size());
+            for (Pending pending : notifications) {
+                if (!existing.contains(pending.notification.getIdempotencyKey())) {
+                    fresh.add(pending);
+                }
+            }
+            if (!fresh.isEmpty()) {
+                save(fresh);
+            }
+            return fresh;
+        });
+        if (stored == null || stored.isEmpty()) {
+            return;
+        }
+        persisted.add(stored.size());
+        try {
+            dispatch(stored);
+        } catch (InterruptedException e) {
+            // The rows are stored; only their delivery to the other channels is lost
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Snapshot of the pipeline counters and queue depths
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enqueued", enqueued.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("persisted", persisted.sum());
+        metrics.put("writeBatches", writeBatches.sum());
+        metrics.put("delivered", delivered.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("deadLettered", deadLettered.sum());
+        metrics.put("queueDepth", queue.size());
+        Map<String, Object> pending = new LinkedHashMap<>();
+        for (Channel channel : channels.values()) {
+            pending.put(channel.channel.name(), channel.inFlight.get());
+        }
+        metrics.put("pendingDeliveries", pending);
+        return metrics;
+    }
+
+    private void offer(Pending pending) {
+        try {
+            if (queue.offer(pending, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                enqueued.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        log.warn("Notification queue full; dropped {} notification for user {}",
+                pending.notification.getDeliveryChannel(), pending.userId);
+    }
+
+    private List<Pending> transactionNotifications(List<Object> events) {
+        Set<Long> accountIds = new HashSet<>();
+        for (Object event : events) {
+            if (event instanceof AccountPostingEvent && ((AccountPostingEvent) event).getTransactionNumber() != null) {
+                accountIds.add(((AccountPostingEvent) event).getSourceAccountId());
+                accountIds.add(((AccountPostingEvent) event).getDestinationAccountId());
+            }
+        }
+        accountIds.remove(null);
+        List<Pending> notifications = new ArrayList<>();
+        if (accountIds.isEmpty()) {
+            return notifications;
+        }
+
+        Map<Long, Account> accounts = new LinkedHashMap<>();
+        for (Account account : accountRepository.findWithHoldersByIdIn(accountIds)) {
+            accounts.put(account.getId(), account);
+        }
+        for (Object event : events) {
+            if (!(event instanceof AccountPostingEvent) || ((AccountPostingEvent) event).getTransactionNumber() == null) {
+                continue;
+            }
+            AccountPostingEvent posting = (AccountPostingEvent) event;
+            if (posting.covers(posting.getSourceAccountId())) {
+                addTransactionNotifications(notifications, posting, accounts.get(posting.getSourceAccountId()), true);
+            }
+            if (posting.covers(posting.getDestinationAccountId())) {
+                addTransactionNotifications(notifications, posting, accounts.get(posting.getDestinationAccountId()), false);
+            }
+        }
+        return notifications;
+    }
+
+    private void addTransactionNotifications(List<Pending> notifications, AccountPostingEvent posting,
+                                             Account account, boolean debit) {
+        if (account == null) {
+            return;
+        }
+        Set<Long> holders = new LinkedHashSet<>();
+        holders.add(account.getUser().getId());
+        for (User jointHolder : account.getJointHolders()) {
+            holders.add(jointHolder.getId());
+        }
+
+        String message = String.format("$%,.2f was %s account %s.", posting.getAmount(),
+                debit ? "debited from" : "credited to", account.getAccountNumber());
+        String side = debit ? "DEBIT" : "CREDIT";
+        for (Long userId : holders) {
+            for (DeliveryChannel channel : transactionChannels) {
+                Notification notification = new Notification();
+                notification.setTitle("New Transaction");
+                notification.setMessage(message);
+                notification.setType(NotificationType.TRANSACTION);
+                notification.setDeliveryChannel(channel);
+                notification.setPriority(NotificationPriority.NORMAL);
+                notification.setActionUrl("/transactions");
+                notification.setIdempotencyKey(String.join(":", "TRANSACTION", posting.getTransactionNumber(), side,
+                        String.valueOf(userId), channel.name()));
+                notifications.add(new Pending(userId, notification));
+            }
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                dispatch(persist(batch));
+            } catch (InterruptedException e) {
+                // Stopping; the loop condition decides
+            } catch (RuntimeException e) {
+                log.error("Notification writer failed on a batch of {}", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    private List<Pending> persist(List<Pending> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> save(batch));
+            writeBatches.increment();
+            persisted.add(batch.size());
+            return batch;
+        } catch (RuntimeException e) {
+            log.warn("Storing {} notifications failed; storing them one by one", batch.size(), e);
+        }
+
+        List<Pending> stored = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            pending.notification.setId(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> save(List.of(pending)));
+                persisted.increment();
+                stored.add(pending);
+            } catch (RuntimeException e) {
+                deadLetter(pending, 1, e);
+            }
+        }
+        return stored;
+    }
+
+    private void save(List<Pending> batch) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        List<Notification> notifications = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            pending.notification.setUser(userRepository.getReferenceById(pending.userId));
+            notifications.add(pending.notification);
+            userIds.add(pending.userId);
+        }
+        notificationRepository.saveAll(notifications);
+
+        Map<Long, Integer> inboxCounts = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            if (pending.notification.getDeliveryChannel() == DeliveryChannel.IN_APP) {
+                inboxCounts.merge(pending.userId, 1, Integer::sum);
+            }
+        }
+        inboxCounts.forEach((userId, count) -> {
+            if (counterRepository.addUnread(userId, count) == 0) {
+                // First notification for this user: seed the counter; the count includes the rows just saved
+                counterRepository.save(new NotificationCounter(userId,
+                        notificationRepository.countUnread(userId, DeliveryChannel.IN_APP)));
+            }
+        });
+
+        for (Long userId : userIds) {
+            eventPublisher.publishEvent(new NotificationEvent(userId));
+        }
+    }
+
+    private void dispatch(List<Pending> stored) throws InterruptedException {
+        for (Pending pending : stored) {
+            Channel channel = channels.get(pending.notification.getDeliveryChannel());
+            channel.capacity.acquire();
+            channel.inFlight.incrementAndGet();
+            try {
+                channel.executor.execute(new Delivery(channel, pending, 1));
+            } catch (RejectedExecutionException e) {
+                channel.finish();
+                throw e;
+            }
+        }
+    }
+
+    private void deliver(Delivery delivery) {
+        Channel channel = delivery.channel;
+        Pending pending = delivery.pending;
+        try {
+            channel.sender.deliver(pending.userId, pending.notification);
+            delivered.increment();
+            channel.finish();
+        } catch (RuntimeException e) {
+            if (delivery.attempt >= maxAttempts) {
+                deadLetter(pending, delivery.attempt, e);
+                channel.finish();
+                return;
+            }
+            retries.increment();
+            long delay = retryBackoffMillis << Math.min(delivery.attempt - 1, 16);
+            Delivery retry = new Delivery(channel, pending, delivery.attempt + 1);
+            try {
+                retryScheduler.schedule(() -> channel.executor.execute(retry), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException stopped) {
+                channel.finish();
+            }
+        }
+    }
+
+    private void deadLetter(Pending pending, int attempts, RuntimeException error) {
+        deadLettered.increment();
+        Notification notification = pending.notification;
+        log.warn("Dead-lettering {} notification {} for user {} after {} attempts",
+                notification.getDeliveryChannel(), notification.getId(), pending.userId, attempts, error);
+
+        NotificationDeadLetter deadLetter = new NotificationDeadLetter();
+        deadLetter.setNotificationId(notification.getId());
+        deadLetter.setUserId(pending.userId);
+        deadLetter.setDeliveryChannel(notification.getDeliveryChannel());
+        deadLetter.setTitle(notification.getTitle());
+        deadLetter.setMessage(notification.getMessage());
+        deadLetter.setAttempts(attempts);
+        String reason = String.valueOf(error.getMessage());
+        deadLetter.setLastError(reason.length() > 1000 ? reason.substring(0, 1000) : reason);
+        deadLetter.setFailedAt(LocalDateTime.now());
+        try {
+            deadLetterRepository.save(deadLetter);
+        } catch (RuntimeException e) {
+            log.error("Could not store dead letter for user {}", pending.userId, e);
+        }
+    }
+
+    private static final class Pending {
+        private final Long userId;
+        private final Notification notification;
+
+        private Pending(Long userId, Notification notification) {
+            this.userId = userId;
+            this.notification = notification;
+        }
+    }
+
+    private final class Channel {
+        private final DeliveryChannel channel;
+        private final NotificationSender sender;
+        private final ThreadPoolExecutor executor;
+        // Deliveries queued, running or waiting to retry; the writer blocks when none are left
+        private final Semaphore capacity;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Channel(DeliveryChannel channel, NotificationSender sender, int workers, int queueCapacity) {
+            this.channel = channel;
+            this.sender = sender;
+            this.capacity = new Semaphore(queueCapacity);
+            AtomicInteger threadCount = new AtomicInteger();
+            String prefix = "notification-" + channel.name().toLowerCase().replace('_', '-') + "-";
+            this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        private void finish() {
+            inFlight.decrementAndGet();
+            capacity.release();
+        }
+    }
+
+    private final class Delivery implements Runnable, Comparable<Delivery> {
+        private final Channel channel;
+        private final Pending pending;
+        private final int attempt;
+
+        private Delivery(Channel channel, Pending pending, int attempt) {
+            this.channel = channel;
+            this.pending = pending;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            deliver(this);
+        }
+
+        // CRITICAL first, then oldest first
+        @Override
+        public int compareTo(Delivery other) {
+            int byPriority = Integer.compare(other.pending.notification.getPriority().ordinal(),
+                    pending.notification.getPriority().ordinal());
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            return Long.compare(pending.notification.getId(), other.pending.notification.getId());
+        }
     }
 }
@@ -0,0 +1,359 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.event.NotificationEvent;
+import com.bankingsystem.event.OutboxListener;
+import com.bankingsystem.model.OutboxDeadLetter;
+import com.bankingsystem.model.OutboxEvent;
+import com.bankingsystem.repository.OutboxDeadLetterRepository;
+import com.bankingsystem.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers outbox events to every {@link OutboxListener}.
+ *
+ * One poller thread reads the oldest pending events a page at a time and
+ * splits the page by partition key across a fixed set of single-threaded
+ * workers, so the events of one account are always handled in order by one
+ * thread while different accounts proceed in parallel. A worker deletes its
+ * rows only after every listener has returned, which gives at-least-once
+ * delivery. The next page is read only when the current one is done, so a row
+ * that commits late with a lower id is never skipped.
+ *
+ * A failed delivery is retried partition by partition, so one failing
+ * partition does not hold back the others sharing its worker. Each failure
+ * counts against the rows involved and their partition is skipped for a
+ * growing backoff while everything else keeps flowing; a row that reaches
+ * {@code outbox.max-attempts} is moved to {@link OutboxDeadLetter} and the
+ * rest of its partition continues after it.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final Map<String, Class<?>> EVENT_TYPES = Map.of(
+            AccountPostingEvent.class.getSimpleName(), AccountPostingEvent.class,
+            NotificationEvent.class.getSimpleName(), NotificationEvent.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxDeadLetterRepository deadLetterRepository;
+    private final List<OutboxListener> listeners;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+    private final ExecutorService[] workers;
+    // Partition key -> time (epoch millis) before which its events are not retried
+    private final Map<String, Long> retryAt = new ConcurrentHashMap<>();
+    private final Thread poller;
+    private final Semaphore wakeUps = new Semaphore(0);
+    private volatile boolean running = true;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private volatile long lastDeliveryLagMillis;
+
+    public OutboxRelay(
+            OutboxEventRepository outboxEventRepository,
+            OutboxDeadLetterRepository deadLetterRepository,
+            List<OutboxListener> listeners,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${outbox.batch-size:500}") int batchSize,
+            @Value("${outbox.workers:4}") int workerCount,
+            @Value("${outbox.poll-interval-ms:200}") long pollIntervalMillis,
+            @Value("${outbox.max-backoff-ms:30000}") long maxBackoffMillis,
+            @Value("${outbox.max-attempts:10}") int maxAttempts) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.listeners = listeners;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.pollIntervalMillis = Math.max(1, pollIntervalMillis);
+        this.maxBackoffMillis = Math.max(this.pollIntervalMillis, maxBackoffMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.workers = new ExecutorService[Math.max(1, workerCount)];
+        for (int i = 0; i < workers.length; i++) {
+            String name = "outbox-relay-worker-" + (i + 1);
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.poller = new Thread(this::run, "outbox-relay");
+        this.poller.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        poller.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        poller.interrupt();
+        poller.join(TimeUnit.SECONDS.toMillis(10));
+        for (ExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+    }
+
+    /**
+     * Check for new events now rather than at the next poll
+     */
+    public void wakeUp() {
+        if (wakeUps.availablePermits() == 0) {
+            wakeUps.release();
+        }
+    }
+
+    /**
+     * Snapshot of the relay counters; lagMillis is the age of the oldest undelivered event
+     */
+    public Map<String, Object> getMetrics() {
+        LocalDateTime oldest = outboxEventRepository.findOldestCreatedAt();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("delivered", delivered.sum());
+        metrics.put("batches", batches.sum());
+        metrics.put("failures", failures.sum());
+        metrics.put("discarded", discarded.sum());
+        metrics.put("deadLettered", deadLettered.sum());
+        metrics.put("partitionsBackingOff", retryAt.size());
+        metrics.put("lagMillis", oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis()));
+        metrics.put("lastDeliveryLagMillis", lastDeliveryLagMillis);
+        return metrics;
+    }
+
+    private void run() {
+        long backoffMillis = 0;
+        while (running) {
+            try {
+                if (backoffMillis > 0) {
+                    Thread.sleep(backoffMillis);
+                } else {
+                    wakeUps.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+                wakeUps.drainPermits();
+
+                int relayed;
+                do {
+                    relayed = relayPage();
+                } while (relayed == batchSize && running);
+                backoffMillis = 0;
+            } catch (InterruptedException e) {
+                // Stopping, or woken early; the loop condition decides
+            } catch (RuntimeException e) {
+                log.error("Outbox relay poll failed", e);
+                backoffMillis = Math.min(maxBackoffMillis, Math.max(pollIntervalMillis, backoffMillis * 2));
+            }
+        }
+    }
+
+    /**
+     * Deliver the oldest page of events outside backed-off partitions; returns how many were read
+     */
+    private int relayPage() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        retryAt.values().removeIf(at -> at <= now);
+        List<OutboxEvent> page = retryAt.isEmpty()
+                ? outboxEventRepository.findPending(PageRequest.of(0, batchSize))
+                : outboxEventRepository.findPendingExcept(new ArrayList<>(retryAt.keySet()), PageRequest.of(0, batchSize));
+        if (page.isEmpty()) {
+            return 0;
+        }
+
+        List<List<OutboxEvent>> partitions = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (OutboxEvent row : page) {
+            partitions.get(Math.floorMod(row.getPartitionKey().hashCode(), workers.length)).add(row);
+        }
+
+        List<Future<?>> results = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            List<OutboxEvent> rows = partitions.get(i);
+            if (!rows.isEmpty()) {
+                results.add(workers[i].submit(() -> deliver(rows)));
+            }
+        }
+
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                log.error("Outbox relay worker failed", e.getCause());
+            }
+        }
+        return page.size();
+    }
+
+    private void deliver(List<OutboxEvent> rows) {
+        RuntimeException error = tryDeliver(rows);
+        if (error == null) {
+            return;
+        }
+
+        // Find the failing partitions so the others handled by this worker are not held back
+        Map<String, List<OutboxEvent>> byPartition = new LinkedHashMap<>();
+        for (OutboxEvent row : rows) {
+            byPartition.computeIfAbsent(row.getPartitionKey(), key -> new ArrayList<>()).add(row);
+        }
+        if (byPartition.size() == 1) {
+            recordFailure(rows.get(0).getPartitionKey(), rows, error);
+            return;
+        }
+        for (Map.Entry<String, List<OutboxEvent>> partition : byPartition.entrySet()) {
+            RuntimeException partitionError = tryDeliver(partition.getValue());
+            if (partitionError != null) {
+                recordFailure(partition.getKey(), partition.getValue(), partitionError);
+            }
+        }
+    }
+
+    /**
+     * Hand the rows to every listener and delete them; returns the failure, or null once delivered
+     */
+    private RuntimeException tryDeliver(List<OutboxEvent> rows) {
+        List<Object> events = new ArrayList<>(rows.size());
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (OutboxEvent row : rows) {
+            ids.add(row.getId());
+            Object event = deserialize(row);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+
+        try {
+            List<Object> view = Collections.unmodifiableList(events);
+            for (OutboxListener listener : listeners) {
+                listener.onEvents(view);
+            }
+            transactionTemplate.executeWithoutResult(status -> outboxEventRepository.deleteAllByIdInBatch(ids));
+        } catch (RuntimeException e) {
+            return e;
+        }
+
+        batches.increment();
+        delivered.add(events.size());
+        lastDeliveryLagMillis = Math.max(0, Duration.between(rows.get(0).getCreatedAt(), LocalDateTime.now()).toMillis());
+        return null;
+    }
+
+    /**
+     * Count a failed attempt against one partition's rows, dead-letter those out of attempts and back
+     * the partition off before its remaining rows are tried again
+     */
+    private void recordFailure(String partitionKey, List<OutboxEvent> rows, RuntimeException error) {
+        failures.increment();
+        List<Long> ids = new ArrayList<>(rows.size());
+        List<OutboxEvent> exhausted = new ArrayList<>();
+        List<Long> exhaustedIds = new ArrayList<>();
+        int attempts = 0;
+        for (OutboxEvent row : rows) {
+            ids.add(row.getId());
+            row.setAttempts(row.getAttempts() + 1);
+            if (row.getAttempts() >= maxAttempts) {
+                exhausted.add(row);
+                exhaustedIds.add(row.getId());
+            } else {
+                attempts = Math.max(attempts, row.getAttempts());
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                outboxEventRepository.incrementAttempts(ids);
+                if (!exhausted.isEmpty()) {
+                    deadLetterRepository.saveAll(deadLetters(exhausted, error));
+                    outboxEventRepository.deleteAllByIdInBatch(exhaustedIds);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not record failed delivery for outbox partition {}", partitionKey, e);
+            attempts = Math.max(attempts, 1);
+            exhausted.clear();
+        }
+
+        if (!exhausted.isEmpty()) {
+            deadLettered.add(exhausted.size());
+            log.error("Dead-lettered {} outbox events of partition {} after {} attempts",
+                    exhausted.size(), partitionKey, maxAttempts, error);
+        }
+        if (attempts > 0) {
+            long backoffMillis = Math.min(maxBackoffMillis, pollIntervalMillis << Math.min(attempts - 1, 20));
+            retryAt.put(partitionKey, System.currentTimeMillis() + backoffMillis);
+            log.warn("Delivering {} outbox events of partition {} failed (attempt {}); retrying in {} ms",
+                    rows.size() - exhausted.size(), partitionKey, attempts, backoffMillis, error);
+        }
+    }
+
+    private List<OutboxDeadLetter> deadLetters(List<OutboxEvent> rows, RuntimeException error) {
+        String reason = String.valueOf(error.getMessage());
+        List<OutboxDeadLetter> deadLetters = new ArrayList<>(rows.size());
+        for (OutboxEvent row : rows) {
+            OutboxDeadLetter deadLetter = new OutboxDeadLetter();
+            deadLetter.setOutboxEventId(row.getId());
+            deadLetter.setPartitionKey(row.getPartitionKey());
+            deadLetter.setEventType(row.getEventType());
+            deadLetter.setPayload(row.getPayload());
+            deadLetter.setCreatedAt(row.getCreatedAt());
+            deadLetter.setAttempts(row.getAttempts());
+            deadLetter.setLastError(reason.length() > 1000 ? reason.substring(0, 1000) : reason);
+            deadLetter.setFailedAt(LocalDateTime.now());
+            deadLetters.add(deadLetter);
+        }
+        return deadLetters;
+    }
+
+    private Object deserialize(OutboxEvent row) {
+        Class<?> type = EVENT_TYPES.get(row.getEventType());
+        try {
+            if (type != null) {
+                return objectMapper.readValue(row.getPayload(), type);
+            }
+        } catch (IOException e) {
+            log.error("Discarding unreadable outbox event {}", row.getId(), e);
+        }
+        // Retrying cannot fix it, and keeping it would block its partition forever
+        if (type == null) {
+            log.error("Discarding outbox event {} of unknown type {}", row.getId(), row.getEventType());
+        }
+        discarded.increment();
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.event.NotificationEvent;
+import com.bankingsystem.model.OutboxEvent;
+import com.bankingsystem.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Stores published events in the outbox inside the publishing transaction.
+ *
+ * Publishers keep calling {@code publishEvent} as before; this listener runs
+ * synchronously on their thread, so the outbox row commits or rolls back with
+ * the posting. The relay is woken once the transaction commits.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxWriter {
+
+    // Bound to the transaction once its after-commit wake-up is registered
+    private static final Object WAKE_UP_REGISTERED = new Object();
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxRelay outboxRelay;
+    private final ObjectMapper objectMapper;
+
+    @EventListener
+    public void onAccountPosting(AccountPostingEvent event) {
+        // One row per affected account, so a transfer is ordered with both the debits and the credits of each side
+        Set<Long> accountIds = new LinkedHashSet<>();
+        accountIds.add(event.getSourceAccountId());
+        accountIds.add(event.getDestinationAccountId());
+        accountIds.remove(null);
+        for (Long accountId : accountIds) {
+            write("account:" + accountId, event.forAccount(accountId));
+        }
+    }
+
+    @EventListener
+    public void onNotification(NotificationEvent event) {
+        write("user:" + event.getUserId(), event);
+    }
+
+    private void write(String partitionKey, Object event) {
+        OutboxEvent row = new OutboxEvent();
+        row.setPartitionKey(partitionKey);
+        row.setEventType(event.getClass().getSimpleName());
+        try {
+            row.setPayload(objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize " + row.getEventType(), e);
+        }
+        row.setCreatedAt(LocalDateTime.now());
+        outboxEventRepository.save(row);
+        wakeRelayAfterCommit();
+    }
+
+    private void wakeRelayAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            outboxRelay.wakeUp();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(WAKE_UP_REGISTERED)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WAKE_UP_REGISTERED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.wakeUp();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WAKE_UP_REGISTERED);
+            }
+        });
+    }
+}
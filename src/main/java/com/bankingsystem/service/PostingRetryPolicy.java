@@ -0,0 +1,120 @@
+package com.bankingsystem.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded retry with jittered exponential backoff for optimistic-locking conflicts.
+ *
+ * The first attempt runs without any extra work; only a version conflict
+ * triggers a backoff and a fresh attempt.
+ */
+@Component
+@Slf4j
+public class PostingRetryPolicy {
+
+    // Cap on distinct accounts tracked so a conflict storm cannot grow the map unbounded
+    private static final int MAX_TRACKED_ACCOUNTS = 1000;
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> conflictsByAccount = new ConcurrentHashMap<>();
+
+    public PostingRetryPolicy(
+            @Value("${accounts.retry.max-attempts:5}") int maxAttempts,
+            @Value("${accounts.retry.base-backoff-ms:5}") long baseBackoffMillis,
+            @Value("${accounts.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = Math.max(1, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Run an action, retrying it when it fails with an optimistic-locking conflict
+     */
+    public <T> T execute(String accountNumber, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            attempts.increment();
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                recordConflict(accountNumber);
+
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("Giving up on account {} after {} conflicting attempts", accountNumber, attempt);
+                    throw e;
+                }
+
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the retry counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("attempts", attempts.sum());
+        metrics.put("conflicts", conflicts.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("exhausted", exhausted.sum());
+
+        // Only the last digits leave the process; accounts sharing them are counted together
+        Map<String, Long> byAccount = new LinkedHashMap<>();
+        conflictsByAccount.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .limit(20)
+                .forEach(e -> byAccount.merge(mask(e.getKey()), e.getValue().sum(), Long::sum));
+        metrics.put("hotAccounts", byAccount);
+        return metrics;
+    }
+
+    private static String mask(String accountNumber) {
+        return "****" + accountNumber.substring(Math.max(0, accountNumber.length() - 4));
+    }
+
+    private void recordConflict(String accountNumber) {
+        if (accountNumber == null) {
+            return;
+        }
+        LongAdder counter = conflictsByAccount.get(accountNumber);
+        if (counter == null) {
+            if (conflictsByAccount.size() >= MAX_TRACKED_ACCOUNTS) {
+                return;
+            }
+            counter = conflictsByAccount.computeIfAbsent(accountNumber, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    private void backoff(int attempt) {
+        // Full jitter: sleep a random time up to the exponential ceiling
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        long sleep = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying posting", e);
+        }
+    }
+}
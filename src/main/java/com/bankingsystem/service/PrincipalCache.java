@@ -0,0 +1,107 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Short-lived shared cache of password-less {@link UserPrincipal}s by username.
+ *
+ * Login primes it, so requests that need to re-resolve a principal by name
+ * (for example one not created by this application's login) skip the user and
+ * role queries. Entries expire after {@code security.principal-cache.ttl-seconds};
+ * call {@link #evict(String)} when a user's roles or status change.
+ */
+@Component
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PrincipalCache(UserRepository userRepository,
+                          @Value("${security.principal-cache.max-size:10000}") int maxSize,
+                          @Value("${security.principal-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PrincipalCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Principal for a username, loaded with its roles in one query on a miss
+     */
+    public Optional<UserPrincipal> get(String username) {
+        synchronized (entries) {
+            Entry entry = entries.get(username);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits.increment();
+                return Optional.of(entry.principal);
+            }
+        }
+
+        misses.increment();
+        Optional<UserPrincipal> loaded = userRepository.findWithRolesByUsername(username)
+                .map(user -> UserPrincipal.of(user).withoutPassword());
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    /**
+     * Store a principal, dropping its password first
+     */
+    public void put(UserPrincipal principal) {
+        UserPrincipal shared = principal.getPassword() == null ? principal : principal.withoutPassword();
+        synchronized (entries) {
+            entries.put(shared.getUsername(), new Entry(shared, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    /**
+     * Drop a user's entry so the next lookup reloads it
+     */
+    public void evict(String username) {
+        synchronized (entries) {
+            entries.remove(username);
+        }
+    }
+
+    /**
+     * Snapshot of the cache counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        synchronized (entries) {
+            metrics.put("size", entries.size());
+        }
+        return metrics;
+    }
+
+    private static final class Entry {
+        private final UserPrincipal principal;
+        private final long expiresAt;
+
+        private Entry(UserPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
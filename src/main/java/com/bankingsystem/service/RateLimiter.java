@@ -0,0 +1,165 @@
+package com.bankingsystem.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets for the expensive POST endpoints, keyed by route and by user
+ * or client address.
+ *
+ * Each bucket is a single {@link AtomicLong} holding the time at which it will
+ * be full again (the generic cell rate form of a token bucket). A check is
+ * one read and one compare-and-set, with no locks. A bucket
+ * whose refill time has passed holds the same state as a new one, so the
+ * periodic sweep drops it without losing anything.
+ */
+@Component
+@Slf4j
+public class RateLimiter {
+
+    private final boolean enabled;
+    private final int maxBuckets;
+    private final LongSupplier nanoClock;
+    private final Map<String, Limit> limitsByPath = new HashMap<>();
+    private final Map<String, Limit> limitsByRoute = new HashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    @Autowired
+    public RateLimiter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                       @Value("${rate-limit.max-buckets:100000}") int maxBuckets,
+                       @Value("${rate-limit.login.per-minute:20}") int loginPerMinute,
+                       @Value("${rate-limit.login.burst:10}") int loginBurst,
+                       @Value("${rate-limit.transfer.per-minute:30}") int transferPerMinute,
+                       @Value("${rate-limit.transfer.burst:10}") int transferBurst,
+                       @Value("${rate-limit.new-transaction.per-minute:30}") int newTransactionPerMinute,
+                       @Value("${rate-limit.new-transaction.burst:10}") int newTransactionBurst) {
+        this(enabled, maxBuckets, loginPerMinute, loginBurst, transferPerMinute, transferBurst,
+                newTransactionPerMinute, newTransactionBurst, System::nanoTime);
+    }
+
+    RateLimiter(boolean enabled, int maxBuckets, int loginPerMinute, int loginBurst, int transferPerMinute,
+                int transferBurst, int newTransactionPerMinute, int newTransactionBurst, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.maxBuckets = maxBuckets;
+        this.nanoClock = nanoClock;
+        addLimit("login", "/login", loginPerMinute, loginBurst);
+        addLimit("transfer", "/transactions/transfer", transferPerMinute, transferBurst);
+        addLimit("new-transaction", "/transactions/new", newTransactionPerMinute, newTransactionBurst);
+    }
+
+    /**
+     * Name of the limited route for this request, or null when it is not limited
+     */
+    public String routeFor(String method, String path) {
+        if (!enabled || !"POST".equals(method)) {
+            return null;
+        }
+        Limit limit = limitsByPath.get(path);
+        return limit != null ? limit.route : null;
+    }
+
+    /**
+     * Take a token from the route's bucket for this key (a user or client address)
+     *
+     * @return 0 if the request may proceed, otherwise nanoseconds until a token is available
+     */
+    public long tryAcquire(String route, String key) {
+        Limit limit = limitsByRoute.get(route);
+        AtomicLong bucket = bucket(route + ':' + key);
+        if (bucket == null) {
+            // Table full: let the request through rather than refuse it for a key we cannot track
+            untracked.increment();
+            return 0;
+        }
+
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + limit.intervalNanos;
+            long waitNanos = next - limit.burstNanos - now;
+            if (waitNanos > 0) {
+                limited.increment();
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drop buckets that have refilled completely
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = nanoClock.getAsLong();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        evicted.add(before - buckets.size());
+    }
+
+    /**
+     * Snapshot of the limiter counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("allowed", allowed.sum());
+        metrics.put("limited", limited.sum());
+        metrics.put("untracked", untracked.sum());
+        metrics.put("evicted", evicted.sum());
+        metrics.put("buckets", buckets.size());
+        return metrics;
+    }
+
+    private AtomicLong bucket(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets) {
+            return null;
+        }
+        // A new bucket starts full
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(nanoClock.getAsLong()));
+    }
+
+    private void addLimit(String route, String path, int perMinute, int burst) {
+        if (perMinute <= 0) {
+            log.info("Rate limit for {} disabled", path);
+            return;
+        }
+        Limit limit = new Limit(route, TimeUnit.MINUTES.toNanos(1) / perMinute, Math.max(1, burst));
+        limitsByPath.put(path, limit);
+        limitsByRoute.put(route, limit);
+    }
+
+    private static final class Limit {
+        private final String route;
+        private final long intervalNanos;
+        private final long burstNanos;
+
+        private Limit(String route, long intervalNanos, int burst) {
+            this.route = route;
+            this.intervalNanos = intervalNanos;
+            this.burstNanos = intervalNanos * burst;
+        }
+    }
+}
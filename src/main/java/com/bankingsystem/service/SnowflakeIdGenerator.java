@@ -0,0 +1,120 @@
+package com.bankingsystem.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style identifiers: 41 bits of milliseconds since 2024-01-01,
+ * 10 bits of node id ({@code ids.node-id}) and a 12-bit per-millisecond sequence.
+ *
+ * Ids are written as 13 fixed-width Crockford base32 characters behind a
+ * prefix, so they sort in creation order. When the clock stalls, steps back or
+ * a millisecond's sequence runs out, the generator borrows the next
+ * millisecond instead of waiting, so ids stay unique and increasing.
+ */
+@Component
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    private static final long EPOCH_MILLIS = 1704067200000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+    private static final int ACCOUNT_NUMBER_LENGTH = 10;
+
+    private final long node;
+    private final LongSupplier clock;
+    // Last issued (milliseconds << SEQUENCE_BITS | sequence)
+    private final AtomicLong state = new AtomicLong();
+
+    @Autowired
+    public SnowflakeIdGenerator(@Value("${ids.node-id:0}") int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("ids.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.node = nodeId;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextTransactionNumber() {
+        return encode("TXN", nextId());
+    }
+
+    @Override
+    public String nextReferenceNumber() {
+        return encode("REF", nextId());
+    }
+
+    /**
+     * Nine random digits (no leading zero) followed by a Luhn check digit
+     */
+    @Override
+    public String nextAccountNumber() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] digits = new char[ACCOUNT_NUMBER_LENGTH];
+        digits[0] = (char) ('1' + random.nextInt(9));
+        for (int i = 1; i < ACCOUNT_NUMBER_LENGTH - 1; i++) {
+            digits[i] = (char) ('0' + random.nextInt(10));
+        }
+        digits[ACCOUNT_NUMBER_LENGTH - 1] = (char) ('0' + luhnCheckDigit(digits, ACCOUNT_NUMBER_LENGTH - 1));
+        return new String(digits);
+    }
+
+    /**
+     * Next raw 64-bit id
+     */
+    public long nextId() {
+        long now = clock.getAsLong() - EPOCH_MILLIS;
+        while (true) {
+            long last = state.get();
+            // A new millisecond restarts the sequence; otherwise the increment carries
+            // into the millisecond field once the sequence is exhausted
+            long next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+            if (state.compareAndSet(last, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    private static String encode(String prefix, long id) {
+        int offset = prefix.length();
+        char[] chars = new char[offset + ENCODED_LENGTH];
+        prefix.getChars(0, offset, chars, 0);
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[offset + i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private static int luhnCheckDigit(char[] digits, int length) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = digits[i] - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,207 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.StatementLine;
+import com.bankingsystem.model.Transaction.TransactionStatus;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.TransactionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes account statements as CSV or newline-delimited JSON.
+ *
+ * Rows are read through a forward-only cursor and written as they arrive, so
+ * memory use does not depend on the length of the statement. The opening
+ * balance is the sum of the completed postings dated before the period, so it
+ * comes from the same journal as the rows and never from the projected account
+ * balance, and the running balance is carried row by row.
+ */
+@Service
+public class StatementService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String OPENING_BALANCE = "OPENING_BALANCE";
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate readOnlyTemplate;
+    private final ObjectMapper objectMapper;
+
+    public StatementService(AccountRepository accountRepository,
+                            TransactionRepository transactionRepository,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Stream the statement for an account over [from, to) to the given output
+     */
+    public void writeStatement(String accountNumber, LocalDateTime from, LocalDateTime to,
+                               Format format, OutputStream out) {
+        // The cursor only stays open inside a transaction
+        readOnlyTemplate.executeWithoutResult(status -> {
+            Account account = accountRepository.findByAccountNumber(accountNumber)
+                    .orElseThrow(() -> new RuntimeException("Account not found"));
+            BigDecimal balance = transactionRepository.sumPostingsBefore(account.getId(), from);
+
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try (Stream<StatementLine> lines = transactionRepository.streamStatement(account.getId(), from, to)) {
+                RowWriter rows = format == Format.NDJSON ? new JsonRowWriter(writer) : new CsvRowWriter(writer);
+                rows.writeOpening(from, balance);
+
+                Iterator<StatementLine> iterator = lines.iterator();
+                while (iterator.hasNext()) {
+                    StatementLine line = iterator.next();
+                    if (line.getStatus() == TransactionStatus.COMPLETED) {
+                        balance = balance.add(line.getAmount());
+                    }
+                    rows.write(line, balance);
+                }
+                rows.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private interface RowWriter {
+        void writeOpening(LocalDateTime from, BigDecimal balance) throws IOException;
+
+        void write(StatementLine line, BigDecimal balance) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write("transaction_number,date,type,status,description,reference,amount,balance\n");
+        }
+
+        @Override
+        public void writeOpening(LocalDateTime from, BigDecimal balance) throws IOException {
+            writer.write("," + from + "," + OPENING_BALANCE + ",,,,," + balance.toPlainString() + "\n");
+        }
+
+        @Override
+        public void write(StatementLine line, BigDecimal balance) throws IOException {
+            writer.write(line.getTransactionNumber());
+            writer.write(',');
+            writer.write(String.valueOf(line.getTransactionDate()));
+            writer.write(',');
+            writer.write(String.valueOf(line.getTransactionType()));
+            writer.write(',');
+            writer.write(String.valueOf(line.getStatus()));
+            writer.write(',');
+            writeQuoted(line.getDescription());
+            writer.write(',');
+            writeQuoted(line.getReferenceNumber());
+            writer.write(',');
+            writer.write(line.getAmount().toPlainString());
+            writer.write(',');
+            writer.write(balance.toPlainString());
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void writeQuoted(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private final class JsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        private JsonRowWriter(Writer writer) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            // Rows are separated by our own newlines rather than Jackson's default space
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void writeOpening(LocalDateTime from, BigDecimal balance) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("date", from.toString());
+            generator.writeStringField("type", OPENING_BALANCE);
+            generator.writeStringField("balance", balance.toPlainString());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void write(StatementLine line, BigDecimal balance) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("transactionNumber", line.getTransactionNumber());
+            generator.writeStringField("date", String.valueOf(line.getTransactionDate()));
+            generator.writeStringField("type", String.valueOf(line.getTransactionType()));
+            generator.writeStringField("status", String.valueOf(line.getStatus()));
+            generator.writeStringField("description", line.getDescription());
+            generator.writeStringField("reference", line.getReferenceNumber());
+            generator.writeStringField("amount", line.getAmount().toPlainString());
+            generator.writeStringField("balance", balance.toPlainString());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+}
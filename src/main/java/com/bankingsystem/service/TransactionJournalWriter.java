@@ -0,0 +1,262 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Group-commit writer for postings.
+ *
+ * Postings submitted by concurrent requests are collected for up to
+ * {@code journal.max-linger-micros} (or until {@code journal.batch-size} are
+ * waiting) and then run on one writer thread inside a single database
+ * transaction. Each posting's balance updates run under its own savepoint, so
+ * a rejected posting rolls back only its own writes. The journal rows a posting
+ * writes through {@link #atCommit} are held with it and written, for the
+ * postings that succeeded, just before the batch commits, so the inserts of the
+ * whole batch go out in one flush as JDBC batches. After a rollback the
+ * persistence context is cleared, so nothing the rejected posting loaded or
+ * changed is written later in the batch.
+ */
+@Component
+@Slf4j
+public class TransactionJournalWriter {
+
+    private final TransactionTemplate batchTemplate;
+    private final int batchSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<JournalEntry> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Entry being applied on the writer thread; its row writes are held until the batch commits
+    private JournalEntry applying;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder postings = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batchFailures = new LongAdder();
+
+    public TransactionJournalWriter(
+            PlatformTransactionManager transactionManager,
+            @Value("${journal.batch-size:50}") int batchSize,
+            @Value("${journal.max-linger-micros:1000}") long maxLingerMicros,
+            @Value("${journal.queue-capacity:10000}") int queueCapacity) {
+        this.batchTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxLingerNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxLingerMicros));
+        this.queue = new ArrayBlockingQueue<>(Math.max(this.batchSize, queueCapacity));
+        this.writer = new Thread(this::run, "transaction-journal-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Run a posting in the next group commit and wait until it is durable
+     */
+    public Transaction post(Supplier<Transaction> posting) {
+        if (!running) {
+            throw new IllegalStateException("Transaction journal writer is stopped");
+        }
+
+        JournalEntry entry = new JournalEntry(posting);
+        try {
+            // Blocks when the writer falls behind, pushing back on callers
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing posting", e);
+        }
+
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Write a posting's journal rows. Inside a group commit the writes are held with the posting and run
+     * just before the batch commits, and dropped if the posting is rejected; anywhere else they run at once.
+     */
+    public void atCommit(Runnable rowWrites) {
+        if (Thread.currentThread() == writer && applying != null) {
+            applying.rowWrites.add(rowWrites);
+        } else {
+            rowWrites.run();
+        }
+    }
+
+    /**
+     * Snapshot of the writer counters
+     */
+    public Map<String, Object> getMetrics() {
+        long batchCount = batches.sum();
+        long postingCount = postings.sum();
+        long rejectedCount = rejected.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("batches", batchCount);
+        metrics.put("postings", postingCount);
+        metrics.put("rejected", rejectedCount);
+        metrics.put("batchFailures", batchFailures.sum());
+        metrics.put("averageBatchSize", batchCount == 0 ? 0.0 : (double) (postingCount + rejectedCount) / batchCount);
+        metrics.put("queueDepth", queue.size());
+        return metrics;
+    }
+
+    private void run() {
+        List<JournalEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                if (batch.isEmpty()) {
+                    continue;
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<JournalEntry> batch) throws InterruptedException {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + maxLingerNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            JournalEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<JournalEntry> batch) {
+        try {
+            batchTemplate.executeWithoutResult(status -> {
+                batch.forEach(this::apply);
+                writeHeldRows(batch);
+            });
+        } catch (RuntimeException e) {
+            // The held rows or the commit failed (e.g. a duplicate idempotency key within the batch);
+            // isolate the bad posting by retrying one per transaction
+            batchFailures.increment();
+            log.warn("Journal batch of {} postings failed, retrying individually", batch.size(), e);
+            for (JournalEntry entry : batch) {
+                if (entry.failure == null) {
+                    retryAlone(entry);
+                }
+            }
+        }
+
+        batches.increment();
+        for (JournalEntry entry : batch) {
+            if (entry.failure != null) {
+                rejected.increment();
+                entry.future.completeExceptionally(entry.failure);
+            } else {
+                postings.increment();
+                entry.future.complete(entry.result);
+            }
+        }
+    }
+
+    private void apply(JournalEntry entry) {
+        // HibernateJpaDialect has no savepoint support, so NESTED propagation is not
+        // available; take the savepoint on the batch transaction's connection directly
+        Session session = entityManager.unwrap(Session.class);
+        Savepoint savepoint = session.doReturningWork(connection -> connection.setSavepoint());
+        applying = entry;
+        try {
+            entry.result = entry.posting.get();
+            // Held rows are not in the context yet, so this only writes entity changes the posting made
+            entityManager.flush();
+            session.doWork(connection -> connection.releaseSavepoint(savepoint));
+        } catch (RuntimeException e) {
+            session.doWork(connection -> connection.rollback(savepoint));
+            // The context may hold this posting's rolled-back state
+            entityManager.clear();
+            entry.rowWrites.clear();
+            entry.failure = e;
+        } finally {
+            applying = null;
+        }
+    }
+
+    private void writeHeldRows(List<JournalEntry> batch) {
+        for (JournalEntry entry : batch) {
+            if (entry.failure == null) {
+                entry.rowWrites.forEach(Runnable::run);
+            }
+        }
+        // One flush for the whole batch; order_inserts groups the rows into JDBC batches per table
+        entityManager.flush();
+    }
+
+    private void retryAlone(JournalEntry entry) {
+        entry.rowWrites.clear();
+        try {
+            entry.result = batchTemplate.execute(status -> entry.posting.get());
+        } catch (RuntimeException e) {
+            entry.failure = e;
+        }
+    }
+
+    private static final class JournalEntry {
+        private final Supplier<Transaction> posting;
+        private final CompletableFuture<Transaction> future = new CompletableFuture<>();
+        private final List<Runnable> rowWrites = new ArrayList<>();
+        private Transaction result;
+        private RuntimeException failure;
+
+        private JournalEntry(Supplier<Transaction> posting) {
+            this.posting = posting;
+        }
+    }
+}
@@ -8,24 +8,37 @@ import com.bankingsystem.model.User;
 import com.bankingsystem.repository.AccountRepository;
 import com.bankingsystem.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.math.BigDecimal;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
 
+    private static final LocalDateTime END_OF_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private static final Comparator<Transaction> NEWEST_FIRST = Comparator
+            .comparing(Transaction::getTransactionDate)
+            .thenComparing(Transaction::getId)
+            .reversed();
+
     private final TransactionRepository transactionRepository;
     private final AccountRepository accountRepository;
+    private final AccountService accountService;
+    private final IdempotencyStore idempotencyStore;
 
     /**
      * Get a transaction by its transaction number
@@ -44,11 +57,44 @@ public class TransactionService {
     }
 
     /**
-     * Get all transactions for a user
+     * Get a page of transactions across all of a user's accounts, newest first.
+     * Pass the date and id of the last transaction on the previous page to continue;
+     * without them the first page is returned.
+     */
+    public Slice<Transaction> getUserTransactions(User user, LocalDateTime beforeDate, Long beforeId, int size) {
+        return getAccountTransactions(accountRepository.findIdsHeldBy(user), beforeDate, beforeId, size);
+    }
+
+    /**
+     * Get a page of transactions touching any of the given accounts, newest first.
+     *
+     * Each account is read on each side separately. A single query over all of them
+     * has to read and sort every row of those accounts, so deep pages would slow down
+     * as the journal grows; each of these reads at most one page off its index. The
+     * page is the newest of their rows, with a transfer between two of the accounts
+     * counted once.
      */
-    public Page<Transaction> getUserTransactions(User user, Pageable pageable) {
-        // Simplified implementation - just return empty page for now
-        return new PageImpl<>(Collections.emptyList(), pageable, 0);
+    public Slice<Transaction> getAccountTransactions(Collection<Long> accountIds, LocalDateTime beforeDate, Long beforeId,
+                                                     int size) {
+        // The first page seeks from the end of time too; without a date bound the database
+        // may pick the foreign-key index on the account column and sort all of its rows
+        boolean first = beforeDate == null || beforeId == null;
+        LocalDateTime date = first ? END_OF_TIME : beforeDate;
+        Long id = first ? Long.MAX_VALUE : beforeId;
+        // One row beyond the page tells whether there is a next one
+        Pageable pageable = PageRequest.of(0, size + 1);
+        Map<Long, Transaction> candidates = new HashMap<>();
+        for (Long accountId : accountIds) {
+            transactionRepository.findLatestFrom(accountId, date, id, pageable)
+                    .forEach(transaction -> candidates.putIfAbsent(transaction.getId(), transaction));
+            transactionRepository.findLatestTo(accountId, date, id, pageable)
+                    .forEach(transaction -> candidates.putIfAbsent(transaction.getId(), transaction));
+        }
+
+        List<Transaction> page = new ArrayList<>(candidates.values());
+        page.sort(NEWEST_FIRST);
+        boolean hasNext = page.size() > size;
+        return new SliceImpl<>(hasNext ? page.subList(0, size) : page, PageRequest.of(0, size), hasNext);
     }
 
     /**
@@ -98,45 +144,22 @@ public class TransactionService {
      * @param description Transfer description
      * @return The created transaction
      */
-    @Transactional
     public Transaction transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount, String description) {
-        // Get the source and destination accounts
-        Account sourceAccount = accountRepository.findByAccountNumber(fromAccountNumber)
-                .orElseThrow(() -> new RuntimeException("Source account not found"));
-                
-        Account destinationAccount = accountRepository.findByAccountNumber(toAccountNumber)
-                .orElseThrow(() -> new RuntimeException("Destination account not found"));
-        
-        // Check if source account has sufficient balance
-        if (sourceAccount.getBalance().compareTo(amount) < 0) {
-            throw new RuntimeException("Insufficient balance");
-        }
-        
-        // Create transaction record
-        Transaction transaction = new Transaction();
-        transaction.setTransactionNumber(generateTransactionNumber());
-        transaction.setTransactionType(Transaction.TransactionType.TRANSFER);
-        transaction.setAmount(amount);
-        transaction.setDescription(description);
-        transaction.setSourceAccount(sourceAccount);
-        transaction.setDestinationAccount(destinationAccount);
-        transaction.setTransactionDate(LocalDateTime.now());
-        transaction.setStatus(TransactionStatus.COMPLETED);
-        
-        // Update account balances
-        sourceAccount.setBalance(sourceAccount.getBalance().subtract(amount));
-        destinationAccount.setBalance(destinationAccount.getBalance().add(amount));
-        
-        // Save the transaction and update accounts
-        accountRepository.save(sourceAccount);
-        accountRepository.save(destinationAccount);
-        return transactionRepository.save(transaction);
+        // All postings go through AccountService so they share the same locking and balance rules
+        return accountService.transfer(fromAccountNumber, toAccountNumber, amount, description);
     }
     
     /**
-     * Generate a unique transaction number
+     * Transfer money between accounts at most once per idempotency key. A retry
+     * with the same key returns the original transaction without posting again.
+     * @param idempotencyKey Key scoped to the caller, or null to always post
      */
-    private String generateTransactionNumber() {
-        return "TXN" + System.currentTimeMillis();
+    public Transaction transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount, String description,
+                                String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return transfer(fromAccountNumber, toAccountNumber, amount, description);
+        }
+        return idempotencyStore.execute(idempotencyKey, fromAccountNumber, toAccountNumber, amount,
+                () -> accountService.transfer(fromAccountNumber, toAccountNumber, amount, description, idempotencyKey));
     }
 }
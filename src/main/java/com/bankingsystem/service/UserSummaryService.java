@@ -0,0 +1,361 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.event.NotificationEvent;
+import com.bankingsystem.event.OutboxListener;
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Transaction;
+import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserFinancialSummary;
+import com.bankingsystem.model.UserFinancialSummary.AccountBalance;
+import com.bankingsystem.model.UserFinancialSummary.RecentTransaction;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.InvestmentRepository;
+import com.bankingsystem.repository.LoanRepository;
+import com.bankingsystem.repository.UserFinancialSummaryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains {@link UserFinancialSummary} rows for the dashboard.
+ *
+ * Committed posting and notification events arrive in batches from the
+ * outbox relay and are applied to the summaries of every holder of the
+ * accounts involved. Batches are applied one at a time, since relay workers
+ * for different accounts can touch the same user's summary. Balances and unread counts are re-read rather than adjusted by
+ * deltas, so replaying an event is harmless. A summary is built from the full
+ * tables the first time it is read; if an update fails, the affected rows are
+ * dropped so the next read rebuilds them.
+ *
+ * A rebuild is stored only if no event touched the user while it was being
+ * computed and the stored row is still the version it started from, so it can
+ * never overwrite a newer summary or miss an event that arrived before its
+ * row existed. Loans and investments publish no events; their totals are
+ * re-read on access once older than {@code summary.holdings-ttl-seconds}.
+ */
+@Service
+@Slf4j
+public class UserSummaryService implements OutboxListener {
+
+    private static final int MAX_REBUILD_ATTEMPTS = 3;
+    // Striped per-user event marks; a shared stripe only costs a needless rebuild retry
+    private static final int MARK_STRIPES = 1024;
+
+    private final UserFinancialSummaryRepository summaryRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionService transactionService;
+    private final NotificationService notificationService;
+    private final LoanRepository loanRepository;
+    private final InvestmentRepository investmentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int recentLimit;
+    private final Duration holdingsTtl;
+    private final AtomicLongArray eventMarks = new AtomicLongArray(MARK_STRIPES);
+
+    private final LongAdder eventsApplied = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejectedRebuilds = new LongAdder();
+    private final LongAdder holdingsRefreshes = new LongAdder();
+
+    public UserSummaryService(
+            UserFinancialSummaryRepository summaryRepository,
+            AccountRepository accountRepository,
+            TransactionService transactionService,
+            NotificationService notificationService,
+            LoanRepository loanRepository,
+            InvestmentRepository investmentRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${summary.recent-transactions:10}") int recentLimit,
+            @Value("${summary.holdings-ttl-seconds:300}") long holdingsTtlSeconds) {
+        this.summaryRepository = summaryRepository;
+        this.accountRepository = accountRepository;
+        this.transactionService = transactionService;
+        this.notificationService = notificationService;
+        this.loanRepository = loanRepository;
+        this.investmentRepository = investmentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recentLimit = Math.max(1, recentLimit);
+        this.holdingsTtl = Duration.ofSeconds(Math.max(0, holdingsTtlSeconds));
+    }
+
+    @Override
+    public synchronized void onEvents(List<Object> events) {
+        apply(events);
+    }
+
+    /**
+     * Get the dashboard summary for a user, building it on first use
+     */
+    public UserFinancialSummary getSummary(User user) {
+        return summaryRepository.findById(user.getId())
+                .map(summary -> holdingsExpired(summary) ? refreshHoldings(user, summary) : summary)
+                .orElseGet(() -> rebuild(user));
+    }
+
+    /**
+     * Recompute a user's summary from the underlying tables and store it, unless something newer
+     * was stored or an event for the user arrived while it was being computed
+     */
+    public UserFinancialSummary rebuild(User user) {
+        UserFinancialSummary summary = null;
+        for (int attempt = 1; attempt <= MAX_REBUILD_ATTEMPTS; attempt++) {
+            rebuilds.increment();
+            long mark = eventMarks.get(stripe(user.getId()));
+            // The version is read before the tables, so a summary updated after compute() started is newer
+            Long startVersion = summaryRepository.findById(user.getId())
+                    .map(UserFinancialSummary::getVersion)
+                    .orElse(null);
+            summary = transactionTemplate.execute(status -> compute(user));
+            summary.setVersion(startVersion);
+
+            UserFinancialSummary computed = summary;
+            try {
+                summary = transactionTemplate.execute(status -> summaryRepository.save(computed));
+            } catch (DataAccessException e) {
+                // A newer summary was stored meanwhile (optimistic lock or duplicate key); it wins
+                rejectedRebuilds.increment();
+                log.debug("Rebuild of summary for user {} lost to a newer one", user.getId(), e);
+                return summaryRepository.findById(user.getId()).orElse(computed);
+            }
+            if (eventMarks.get(stripe(user.getId())) == mark) {
+                return summary;
+            }
+            // An event arrived mid-rebuild; it may have found no row to update, so compute again
+            rejectedRebuilds.increment();
+        }
+
+        // Still racing with events; leave no possibly stale row behind for the next read
+        Long userId = user.getId();
+        try {
+            transactionTemplate.executeWithoutResult(status -> summaryRepository.deleteById(userId));
+        } catch (DataAccessException e) {
+            log.warn("Could not drop summary for user {} after {} rebuild attempts", userId, MAX_REBUILD_ATTEMPTS, e);
+        }
+        return summary;
+    }
+
+    /**
+     * Build a summary from scratch without storing it
+     */
+    public UserFinancialSummary compute(User user) {
+        UserFinancialSummary summary = new UserFinancialSummary();
+        summary.setUserId(user.getId());
+
+        List<Account> accounts = accountRepository.findHeldBy(user);
+        summary.setAccounts(accounts.stream().map(this::toBalance).collect(Collectors.toList()));
+        summary.setTotalBalance(total(summary.getAccounts()));
+
+        Set<Long> heldIds = accounts.stream().map(Account::getId).collect(Collectors.toSet());
+        List<RecentTransaction> recent = new ArrayList<>();
+        for (Transaction transaction : transactionService.getAccountTransactions(heldIds, null, null, recentLimit)) {
+            recent.add(new RecentTransaction(transaction.getId(), transaction.getTransactionNumber(), transaction.getTransactionDate(),
+                    transaction.getTransactionType(), transaction.getDescription(), transaction.getAmount(),
+                    direction(heldIds, idOf(transaction.getSourceAccount()), idOf(transaction.getDestinationAccount()))));
+        }
+        summary.setRecentTransactions(recent);
+
+        summary.setUnreadNotifications(notificationService.getUnreadCount(user.getId()));
+        summary.setActiveLoanEmiTotal(loanRepository.sumActiveEmi(user));
+        summary.setInvestmentValue(investmentRepository.sumActiveValue(user));
+        summary.setHoldingsRefreshedAt(LocalDateTime.now());
+        return summary;
+    }
+
+    /**
+     * Snapshot of the updater counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("eventsApplied", eventsApplied.sum());
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("failures", failures.sum());
+        metrics.put("rejectedRebuilds", rejectedRebuilds.sum());
+        metrics.put("holdingsRefreshes", holdingsRefreshes.sum());
+        return metrics;
+    }
+
+    private boolean holdingsExpired(UserFinancialSummary summary) {
+        return summary.getHoldingsRefreshedAt() == null
+                || summary.getHoldingsRefreshedAt().plus(holdingsTtl).isBefore(LocalDateTime.now());
+    }
+
+    private UserFinancialSummary refreshHoldings(User user, UserFinancialSummary summary) {
+        holdingsRefreshes.increment();
+        summary.setActiveLoanEmiTotal(loanRepository.sumActiveEmi(user));
+        summary.setInvestmentValue(investmentRepository.sumActiveValue(user));
+        summary.setHoldingsRefreshedAt(LocalDateTime.now());
+        // An event applied concurrently may write back the old figures; the next read then refreshes again
+        summaryRepository.updateHoldings(user.getId(), summary.getActiveLoanEmiTotal(), summary.getInvestmentValue(),
+                summary.getHoldingsRefreshedAt());
+        return summary;
+    }
+
+    private static int stripe(Long userId) {
+        return Math.floorMod(Long.hashCode(userId), MARK_STRIPES);
+    }
+
+    private void apply(List<Object> batch) {
+        Set<Long> touchedUsers = new HashSet<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, Account> accounts = loadAccounts(batch);
+                Map<Long, Optional<UserFinancialSummary>> summaries = new HashMap<>();
+                Set<Long> notifiedUsers = new HashSet<>();
+
+                for (Object event : batch) {
+                    if (event instanceof AccountPostingEvent) {
+                        AccountPostingEvent posting = (AccountPostingEvent) event;
+                        // Only the side this copy covers; the other side has its own copy
+                        Account source = posting.covers(posting.getSourceAccountId())
+                                ? accounts.get(posting.getSourceAccountId()) : null;
+                        Account destination = posting.covers(posting.getDestinationAccountId())
+                                ? accounts.get(posting.getDestinationAccountId()) : null;
+
+                        Set<Long> holders = new HashSet<>();
+                        addHolders(holders, source);
+                        addHolders(holders, destination);
+                        for (Long userId : holders) {
+                            touchedUsers.add(userId);
+                            // Before the lookup, so a rebuild racing this event sees it and retries
+                            eventMarks.incrementAndGet(stripe(userId));
+                            // Users without a summary yet get one built on their next read
+                            summaries.computeIfAbsent(userId, summaryRepository::findById)
+                                    .ifPresent(summary -> applyPosting(summary, posting, source, destination));
+                        }
+                    } else if (event instanceof NotificationEvent) {
+                        Long userId = ((NotificationEvent) event).getUserId();
+                        touchedUsers.add(userId);
+                        eventMarks.incrementAndGet(stripe(userId));
+                        notifiedUsers.add(userId);
+                    }
+                    eventsApplied.increment();
+                }
+
+                for (Long userId : notifiedUsers) {
+                    summaries.computeIfAbsent(userId, summaryRepository::findById).ifPresent(summary ->
+                            summary.setUnreadNotifications(notificationService.getUnreadCount(userId)));
+                }
+
+                summaryRepository.saveAll(summaries.values().stream()
+                        .flatMap(Optional::stream)
+                        .collect(Collectors.toList()));
+            });
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Applying {} summary events failed; dropping {} summaries for rebuild",
+                    batch.size(), touchedUsers.size(), e);
+            try {
+                transactionTemplate.executeWithoutResult(status -> summaryRepository.deleteAllByIdInBatch(touchedUsers));
+            } catch (RuntimeException deleteFailure) {
+                log.error("Could not drop stale summaries", deleteFailure);
+            }
+        }
+    }
+
+    private Map<Long, Account> loadAccounts(List<Object> batch) {
+        Set<Long> ids = new HashSet<>();
+        for (Object event : batch) {
+            if (event instanceof AccountPostingEvent) {
+                AccountPostingEvent posting = (AccountPostingEvent) event;
+                ids.add(posting.getSourceAccountId());
+                ids.add(posting.getDestinationAccountId());
+            }
+        }
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        return accountRepository.findWithHoldersByIdIn(ids).stream()
+                .collect(Collectors.toMap(Account::getId, account -> account));
+    }
+
+    private void applyPosting(UserFinancialSummary summary, AccountPostingEvent posting, Account source, Account destination) {
+        refreshAccount(summary, source);
+        refreshAccount(summary, destination);
+        summary.setTotalBalance(total(summary.getAccounts()));
+
+        if (posting.getTransactionNumber() == null) {
+            return;
+        }
+        List<RecentTransaction> recent = new ArrayList<>(summary.getRecentTransactions());
+        if (recent.stream().anyMatch(r -> posting.getTransactionNumber().equals(r.getTransactionNumber()))) {
+            return;
+        }
+
+        Set<Long> heldIds = summary.getAccounts().stream().map(AccountBalance::getAccountId).collect(Collectors.toSet());
+        recent.add(new RecentTransaction(posting.getTransactionId(), posting.getTransactionNumber(), posting.getTransactionDate(),
+                posting.getTransactionType(), posting.getDescription(), posting.getAmount(),
+                direction(heldIds, posting.getSourceAccountId(), posting.getDestinationAccountId())));
+        recent.sort(Comparator.comparing(RecentTransaction::getTransactionDate, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(RecentTransaction::getTransactionId, Comparator.nullsLast(Comparator.reverseOrder())));
+        summary.setRecentTransactions(new ArrayList<>(recent.subList(0, Math.min(recentLimit, recent.size()))));
+    }
+
+    private void refreshAccount(UserFinancialSummary summary, Account account) {
+        if (account == null) {
+            return;
+        }
+        List<AccountBalance> balances = new ArrayList<>(summary.getAccounts());
+        balances.removeIf(balance -> Objects.equals(balance.getAccountId(), account.getId()));
+        balances.add(toBalance(account));
+        balances.sort(Comparator.comparing(AccountBalance::getAccountId));
+        summary.setAccounts(balances);
+    }
+
+    private static void addHolders(Set<Long> holders, Account account) {
+        if (account == null) {
+            return;
+        }
+        holders.add(account.getUser().getId());
+        for (User jointHolder : account.getJointHolders()) {
+            holders.add(jointHolder.getId());
+        }
+    }
+
+    private AccountBalance toBalance(Account account) {
+        return new AccountBalance(account.getId(), account.getAccountNumber(), account.getName(),
+                account.getAccountType(), account.getBalance(), account.isActive());
+    }
+
+    private static String direction(Set<Long> heldIds, Long sourceId, Long destinationId) {
+        boolean fromHeld = sourceId != null && heldIds.contains(sourceId);
+        boolean toHeld = destinationId != null && heldIds.contains(destinationId);
+        if (fromHeld && toHeld) {
+            return "INTERNAL";
+        }
+        return fromHeld ? "OUT" : "IN";
+    }
+
+    private static Long idOf(Account account) {
+        return account != null ? account.getId() : null;
+    }
+
+    private static BigDecimal total(List<AccountBalance> balances) {
+        return balances.stream()
+                .map(AccountBalance::getBalance)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
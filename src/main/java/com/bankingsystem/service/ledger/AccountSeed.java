@@ -0,0 +1,15 @@
+package com.bankingsystem.service.ledger;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Starting state for an account the ledger has not seen before, in cents
+ */
+@Data
+@AllArgsConstructor
+class AccountSeed {
+    private long balance;
+    private long minimumBalance;
+    private boolean active;
+}
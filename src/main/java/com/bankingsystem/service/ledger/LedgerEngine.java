@@ -0,0 +1,506 @@
+package com.bankingsystem.service.ledger;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.TransactionRepository;
+import com.bankingsystem.service.AccountCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional in-memory ledger for high-frequency postings, enabled with
+ * {@code ledger.engine=inmemory}.
+ *
+ * Balances live in per-shard primitive arrays owned by one writer thread each.
+ * A posting is acknowledged only after its WAL record has been forced to disk.
+ * The {@code accounts} table is brought up to date asynchronously, and on
+ * startup each shard is rebuilt from its latest snapshot plus a WAL replay.
+ *
+ * Every posting is keyed by the transaction number of its journal row and made
+ * before that row is written. The caller confirms it once the row commits, or
+ * settles it if the write fails. On startup, postings still pending are
+ * settled against the journal: they are confirmed if the row exists and
+ * reversed if it does not. Every balance the engine holds is then checked
+ * against the journal ({@code ledger.verify-on-start}), so a recovery that
+ * rebuilt anything other than the state the journal records is reported.
+ */
+@Component
+@ConditionalOnProperty(name = "ledger.engine", havingValue = "inmemory")
+@Slf4j
+public class LedgerEngine {
+
+    private static final int JOURNAL_QUERY_SIZE = 1000;
+    private static final int MISMATCHES_LOGGED = 20;
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountCache accountCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final int shardCount;
+    private final int walCapacity;
+    private final long projectionIntervalMillis;
+    private final long snapshotIntervalMillis;
+    private final boolean verifyOnStart;
+
+    // Transfers hold the read side for both legs; snapshots take the write side
+    // so no transfer is ever half-covered by a snapshot.
+    private final ReentrantReadWriteLock transferGate = new ReentrantReadWriteLock();
+    private final AtomicLong transferIds = new AtomicLong();
+
+    private LedgerShard[] shards;
+    private ScheduledExecutorService scheduler;
+    private volatile long lastSnapshotAt;
+
+    private final LongAdder confirmedOnRecovery = new LongAdder();
+    private final LongAdder reversed = new LongAdder();
+    private volatile long verifiedAccounts;
+    private volatile long mismatchedAccounts;
+    private volatile LocalDateTime lastVerifiedAt;
+
+    public LedgerEngine(
+            AccountRepository accountRepository,
+            TransactionRepository transactionRepository,
+            AccountCache accountCache,
+            TransactionTemplate transactionTemplate,
+            @Value("${ledger.directory:ledger-data}") String directory,
+            @Value("${ledger.shards:4}") int shardCount,
+            @Value("${ledger.wal-segment-bytes:67108864}") int walCapacity,
+            @Value("${ledger.projection-interval-ms:1000}") long projectionIntervalMillis,
+            @Value("${ledger.snapshot-interval-ms:300000}") long snapshotIntervalMillis,
+            @Value("${ledger.verify-on-start:true}") boolean verifyOnStart) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountCache = accountCache;
+        this.transactionTemplate = transactionTemplate;
+        this.directory = Paths.get(directory);
+        this.shardCount = Math.max(1, shardCount);
+        this.walCapacity = walCapacity;
+        this.projectionIntervalMillis = projectionIntervalMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.verifyOnStart = verifyOnStart;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+
+        shards = new LedgerShard[shardCount];
+        List<LedgerRecord> replayed = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LedgerShard(i, directory, walCapacity, this::loadSeed);
+            replayed.addAll(shards[i].recover());
+        }
+        for (LedgerShard shard : shards) {
+            shard.start();
+        }
+
+        completeInterruptedTransfers(replayed);
+        settlePendingPostings();
+        if (verifyOnStart) {
+            verifyAgainstJournal();
+        }
+        lastSnapshotAt = System.currentTimeMillis();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-projection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::projectAndMaybeSnapshot,
+                projectionIntervalMillis, projectionIntervalMillis, TimeUnit.MILLISECONDS);
+
+        log.info("In-memory ledger started with {} shards in {}", shardCount, directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+
+        project();
+        snapshot();
+        for (LedgerShard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    /**
+     * Credit an account under the transaction number of the journal row about to be written
+     */
+    public void deposit(String key, String accountNumber, BigDecimal amount) {
+        long cents = toCents(amount);
+        LedgerShard shard = shardFor(accountNumber);
+        await(shard.submit(() -> shard.credit(key, accountNumber, cents, "Cannot deposit to an inactive account")));
+    }
+
+    /**
+     * Debit an account, keeping it at or above its minimum balance
+     */
+    public void withdraw(String key, String accountNumber, BigDecimal amount) {
+        long cents = toCents(amount);
+        LedgerShard shard = shardFor(accountNumber);
+        await(shard.submit(() -> shard.debit(key, accountNumber, cents,
+                "Cannot withdraw from an inactive account",
+                "Withdrawal would go below minimum balance")));
+    }
+
+    /**
+     * Move money between two accounts, possibly on different shards
+     */
+    public void transfer(String key, String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        long cents = toCents(amount);
+        LedgerShard source = shardFor(fromAccountNumber);
+        LedgerShard destination = shardFor(toAccountNumber);
+
+        transferGate.readLock().lock();
+        try {
+            long transferId = transferIds.incrementAndGet();
+            await(source.submit(() -> {
+                source.transferOut(transferId, key, fromAccountNumber, toAccountNumber, cents);
+                return null;
+            }));
+
+            try {
+                await(destination.submit(() -> {
+                    destination.transferIn(transferId, key, toAccountNumber, fromAccountNumber, cents);
+                    return null;
+                }));
+            } catch (RuntimeException e) {
+                // Give the money back to the source before reporting the failure
+                await(source.submit(() -> {
+                    source.reverseTransfer(transferId, key, fromAccountNumber, cents);
+                    return null;
+                }));
+                throw e;
+            }
+        } finally {
+            transferGate.readLock().unlock();
+        }
+    }
+
+    /**
+     * The journal row for a posting committed; the engine no longer needs to be able to undo it
+     */
+    public void confirm(String key, String... accountNumbers) {
+        confirm(Collections.singleton(key), Arrays.asList(accountNumbers));
+    }
+
+    /**
+     * Confirm several postings, touching each shard that holds one of the accounts once
+     */
+    public void confirm(Collection<String> keys, Collection<String> accountNumbers) {
+        for (LedgerShard shard : shardsFor(accountNumbers)) {
+            // Nothing is logged, so there is nothing to wait for
+            shard.submit(() -> shard.confirm(keys));
+        }
+    }
+
+    /**
+     * Resolve postings whose journal write failed: confirm those whose row committed after all, reverse the rest
+     */
+    public void settle(Collection<String> keys, Collection<String> accountNumbers) {
+        Set<String> journaled = journaledKeys(keys);
+        for (LedgerShard shard : shardsFor(accountNumbers)) {
+            await(shard.submit(() -> settle(shard, keys, journaled)));
+        }
+        reversed.add(keys.size() - journaled.size());
+    }
+
+    /**
+     * Compare every balance held by the engine with the net of its completed journal postings, which record
+     * every change to it. Run after recovery, this checks that the snapshot and WAL replay rebuilt exactly
+     * the state the journal describes. Returns the number of accounts that differ.
+     */
+    public long verifyAgainstJournal() {
+        Map<String, Long> held = new LinkedHashMap<>();
+        for (LedgerShard shard : shards) {
+            held.putAll(await(shard.submit(shard::balances)));
+        }
+
+        List<String> accountNumbers = new ArrayList<>(held.keySet());
+        long mismatches = 0;
+        for (int from = 0; from < accountNumbers.size(); from += JOURNAL_QUERY_SIZE) {
+            List<String> chunk = accountNumbers.subList(from, Math.min(from + JOURNAL_QUERY_SIZE, accountNumbers.size()));
+            Map<String, Long> journal = new LinkedHashMap<>();
+            for (Object[] row : transactionRepository.sumPostingsByAccountNumber(chunk)) {
+                journal.put((String) row[0], toCents((BigDecimal) row[1]));
+            }
+            for (String accountNumber : chunk) {
+                long expected = journal.getOrDefault(accountNumber, 0L);
+                long actual = held.get(accountNumber);
+                if (expected != actual && ++mismatches <= MISMATCHES_LOGGED) {
+                    log.error("Ledger balance of {} is {} but its journal postings net to {}",
+                            accountNumber, BigDecimal.valueOf(actual, 2), BigDecimal.valueOf(expected, 2));
+                }
+            }
+        }
+
+        verifiedAccounts = held.size();
+        mismatchedAccounts = mismatches;
+        lastVerifiedAt = LocalDateTime.now();
+        if (mismatches > 0) {
+            log.error("{} of {} ledger balances differ from the journal", mismatches, held.size());
+        } else {
+            log.info("All {} ledger balances match the journal", held.size());
+        }
+        return mismatches;
+    }
+
+    /**
+     * Snapshot of the engine counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("shards", shards.length);
+        metrics.put("failedShards", Arrays.stream(shards).filter(LedgerShard::failed).count());
+        metrics.put("confirmedOnRecovery", confirmedOnRecovery.sum());
+        metrics.put("reversed", reversed.sum());
+        metrics.put("verifiedAccounts", verifiedAccounts);
+        metrics.put("mismatchedAccounts", mismatchedAccounts);
+        metrics.put("lastVerifiedAt", lastVerifiedAt);
+        return metrics;
+    }
+
+    /**
+     * Propagate an active/frozen status change made in the accounts table
+     */
+    public void updateStatus(String accountNumber, boolean active) {
+        LedgerShard shard = shardFor(accountNumber);
+        await(shard.submit(() -> {
+            shard.updateStatus(accountNumber, active);
+            return null;
+        }));
+    }
+
+    /**
+     * Current ledger balance, if the account has been loaded into the engine
+     */
+    public Optional<BigDecimal> getBalance(String accountNumber) {
+        LedgerShard shard = shardFor(accountNumber);
+        return await(shard.submit(() -> shard.balanceOf(accountNumber)))
+                .map(cents -> BigDecimal.valueOf(cents, 2));
+    }
+
+    /**
+     * Write every shard's state to a snapshot and empty the WALs
+     */
+    public void snapshot() {
+        transferGate.writeLock().lock();
+        try {
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            for (LedgerShard shard : shards) {
+                // A failed shard's memory may be ahead of its WAL; it must not be snapshotted
+                if (!shard.failed()) {
+                    pending.add(shard.submit(shard::snapshot));
+                }
+            }
+            pending.forEach(LedgerEngine::await);
+            lastSnapshotAt = System.currentTimeMillis();
+        } finally {
+            transferGate.writeLock().unlock();
+        }
+    }
+
+    private void projectAndMaybeSnapshot() {
+        try {
+            project();
+
+            boolean walFilling = false;
+            for (LedgerShard shard : shards) {
+                walFilling |= shard.walUsage() > 0.5;
+            }
+            if (walFilling || System.currentTimeMillis() - lastSnapshotAt >= snapshotIntervalMillis) {
+                snapshot();
+            }
+        } catch (RuntimeException e) {
+            log.error("Ledger projection cycle failed", e);
+        }
+    }
+
+    /**
+     * Push changed balances to the accounts table
+     */
+    private void project() {
+        for (LedgerShard shard : shards) {
+            if (shard.failed()) {
+                continue;
+            }
+            Map<String, Long> changed = await(shard.submit(shard::drainDirty));
+            if (changed.isEmpty()) {
+                continue;
+            }
+            try {
+                transactionTemplate.execute(status -> {
+                    changed.forEach((accountNumber, cents) -> {
+                        accountCache.evict(accountNumber);
+                        accountRepository.updateProjectedBalance(accountNumber, BigDecimal.valueOf(cents, 2));
+                    });
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Ledger projection of {} accounts failed; will retry", changed.size(), e);
+                shard.submit(() -> shard.markDirty(changed.keySet()));
+            }
+        }
+    }
+
+    /**
+     * A crash between the two legs of a transfer leaves an outgoing record without
+     * a matching incoming or reversal record; finish those transfers now.
+     */
+    private void completeInterruptedTransfers(List<LedgerRecord> replayed) {
+        Map<Long, LedgerRecord> outgoing = new LinkedHashMap<>();
+        Set<Long> settled = new HashSet<>();
+        long maxTransferId = 0;
+
+        for (LedgerRecord record : replayed) {
+            if (record.type == LedgerRecord.TRANSFER_OUT) {
+                outgoing.put(record.transferId, record);
+            } else if (record.type == LedgerRecord.TRANSFER_IN || record.type == LedgerRecord.TRANSFER_REVERSAL) {
+                settled.add(record.transferId);
+            }
+            maxTransferId = Math.max(maxTransferId, record.transferId);
+        }
+        transferIds.set(Math.max(maxTransferId, System.currentTimeMillis() * 1000));
+
+        for (LedgerRecord out : outgoing.values()) {
+            if (settled.contains(out.transferId)) {
+                continue;
+            }
+            LedgerShard destination = shardFor(out.counterparty);
+            LedgerShard source = shardFor(out.accountNumber);
+            try {
+                await(destination.submit(() -> {
+                    destination.transferIn(out.transferId, out.key, out.counterparty, out.accountNumber, out.amount);
+                    return null;
+                }));
+                log.info("Completed interrupted ledger transfer {}", out.transferId);
+            } catch (RuntimeException e) {
+                await(source.submit(() -> {
+                    source.reverseTransfer(out.transferId, out.key, out.accountNumber, out.amount);
+                    return null;
+                }));
+                log.warn("Reversed interrupted ledger transfer {}: {}", out.transferId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A crash between a posting and its journal commit leaves the posting pending; keep it if the row made
+     * it to the journal and reverse it otherwise
+     */
+    private void settlePendingPostings() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (LedgerShard shard : shards) {
+            keys.addAll(await(shard.submit(shard::pendingKeys)));
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        Set<String> journaled = journaledKeys(keys);
+        for (LedgerShard shard : shards) {
+            await(shard.submit(() -> settle(shard, keys, journaled)));
+        }
+        confirmedOnRecovery.add(journaled.size());
+        reversed.add(keys.size() - journaled.size());
+        log.info("Settled {} pending ledger postings against the journal: {} kept, {} reversed",
+                keys.size(), journaled.size(), keys.size() - journaled.size());
+    }
+
+    private Void settle(LedgerShard shard, Collection<String> keys, Set<String> journaled) {
+        shard.confirm(journaled);
+        for (String key : keys) {
+            if (!journaled.contains(key)) {
+                shard.reverse(key);
+            }
+        }
+        return null;
+    }
+
+    private Set<String> journaledKeys(Collection<String> keys) {
+        List<String> all = new ArrayList<>(keys);
+        Set<String> journaled = new HashSet<>();
+        for (int from = 0; from < all.size(); from += JOURNAL_QUERY_SIZE) {
+            journaled.addAll(transactionRepository.findExistingTransactionNumbers(
+                    all.subList(from, Math.min(from + JOURNAL_QUERY_SIZE, all.size()))));
+        }
+        return journaled;
+    }
+
+    private Set<LedgerShard> shardsFor(Collection<String> accountNumbers) {
+        Set<LedgerShard> owners = new LinkedHashSet<>();
+        for (String accountNumber : accountNumbers) {
+            owners.add(shardFor(accountNumber));
+        }
+        return owners;
+    }
+
+    private Optional<AccountSeed> loadSeed(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber).map(this::toSeed);
+    }
+
+    private AccountSeed toSeed(Account account) {
+        BigDecimal minimumBalance = account.getMinimumBalance() != null ? account.getMinimumBalance() : BigDecimal.ZERO;
+        return new AccountSeed(
+                account.getBalance().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact(),
+                minimumBalance.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact(),
+                account.isActive());
+    }
+
+    private LedgerShard shardFor(String accountNumber) {
+        return shards[Math.floorMod(accountNumber.hashCode(), shards.length)];
+    }
+
+    private static long toCents(BigDecimal amount) {
+        try {
+            return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new RuntimeException("Amount must not have more than two decimal places");
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.bankingsystem.service.ledger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One write-ahead log entry. Every record carries the absolute balance after it
+ * was applied, so replaying a record is idempotent. Postings also carry the
+ * transaction number of their journal row as the key, and a reversal names the
+ * key it undoes.
+ */
+final class LedgerRecord {
+
+    static final byte OPEN = 1;
+    static final byte POST = 2;
+    static final byte TRANSFER_OUT = 3;
+    static final byte TRANSFER_IN = 4;
+    static final byte TRANSFER_REVERSAL = 5;
+    static final byte STATUS = 6;
+    static final byte REVERSAL = 7;
+
+    final byte type;
+    final long sequence;
+    final String accountNumber;
+    final long balance;
+    final long minimumBalance;
+    final boolean active;
+    final long transferId;
+    final long amount;
+    final String counterparty;
+    final String key;
+
+    LedgerRecord(byte type, long sequence, String accountNumber, long balance, long minimumBalance,
+                 boolean active, long transferId, long amount, String counterparty) {
+        this(type, sequence, accountNumber, balance, minimumBalance, active, transferId, amount, counterparty, null);
+    }
+
+    LedgerRecord(byte type, long sequence, String accountNumber, long balance, long minimumBalance,
+                 boolean active, long transferId, long amount, String counterparty, String key) {
+        this.type = type;
+        this.sequence = sequence;
+        this.accountNumber = accountNumber;
+        this.balance = balance;
+        this.minimumBalance = minimumBalance;
+        this.active = active;
+        this.transferId = transferId;
+        this.amount = amount;
+        this.counterparty = counterparty == null ? "" : counterparty;
+        this.key = key == null ? "" : key;
+    }
+
+    byte[] encode() {
+        byte[] account = accountNumber.getBytes(StandardCharsets.UTF_8);
+        byte[] other = counterparty.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + 8 * 5 + 1 + 2 + account.length + 2 + other.length + 2 + keyBytes.length);
+        body.put(type);
+        body.putLong(sequence);
+        body.putLong(balance);
+        body.putLong(minimumBalance);
+        body.put((byte) (active ? 1 : 0));
+        body.putLong(transferId);
+        body.putLong(amount);
+        body.putShort((short) account.length);
+        body.put(account);
+        body.putShort((short) other.length);
+        body.put(other);
+        body.putShort((short) keyBytes.length);
+        body.put(keyBytes);
+        return body.array();
+    }
+
+    static LedgerRecord decode(ByteBuffer body) {
+        byte type = body.get();
+        long sequence = body.getLong();
+        long balance = body.getLong();
+        long minimumBalance = body.getLong();
+        boolean active = body.get() == 1;
+        long transferId = body.getLong();
+        long amount = body.getLong();
+        byte[] account = new byte[body.getShort()];
+        body.get(account);
+        byte[] other = new byte[body.getShort()];
+        body.get(other);
+        // Records written before postings were keyed end here
+        byte[] keyBytes = new byte[body.hasRemaining() ? body.getShort() : 0];
+        body.get(keyBytes);
+        return new LedgerRecord(type, sequence, new String(account, StandardCharsets.UTF_8), balance,
+                minimumBalance, active, transferId, amount, new String(other, StandardCharsets.UTF_8),
+                new String(keyBytes, StandardCharsets.UTF_8));
+    }
+}
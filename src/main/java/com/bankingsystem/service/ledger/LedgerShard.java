@@ -0,0 +1,522 @@
+package com.bankingsystem.service.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * One partition of the ledger. All state is owned by a single writer thread;
+ * other threads only talk to it through {@link #submit(Callable)}.
+ *
+ * The writer drains queued operations in batches and forces the WAL once per
+ * batch before completing any of them, so acknowledgement always follows
+ * durability.
+ *
+ * Each posting leg is kept as pending under its key until the caller confirms
+ * that the journal row committed. Pending legs survive snapshots and WAL
+ * replay, so a posting whose journal row never committed can still be reversed
+ * after a crash.
+ */
+@Slf4j
+final class LedgerShard {
+
+    private static final int SNAPSHOT_MAGIC = 0x4C444753;
+    // Snapshots written before pending legs were recorded
+    private static final int UNKEYED_SNAPSHOT_MAGIC = 0x4C444752;
+    private static final int MAX_BATCH = 256;
+
+    private final int index;
+    private final WriteAheadLog wal;
+    private final Path snapshotFile;
+    private final Function<String, Optional<AccountSeed>> seedLoader;
+    private final BlockingQueue<ShardTask<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    // Slot-indexed primitive store, touched only by the writer thread
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] accountNumbers = new String[256];
+    private long[] balances = new long[256];
+    private long[] minimumBalances = new long[256];
+    private boolean[] active = new boolean[256];
+    private final BitSet dirty = new BitSet();
+    // key -> account number -> signed cents of each leg not yet confirmed
+    private final Map<String, Map<String, Long>> pending = new HashMap<>();
+    private int size;
+    private long sequence;
+    private boolean pendingForce;
+    private volatile boolean running = true;
+    // Set when a WAL force fails: memory may be ahead of disk, so the shard refuses all further work
+    private volatile RuntimeException failure;
+
+    LedgerShard(int index, Path directory, int walCapacity,
+                Function<String, Optional<AccountSeed>> seedLoader) throws IOException {
+        this(index, directory, new WriteAheadLog(directory.resolve("shard-" + index + ".wal"), walCapacity),
+                seedLoader);
+    }
+
+    LedgerShard(int index, Path directory, WriteAheadLog wal, Function<String, Optional<AccountSeed>> seedLoader) {
+        this.index = index;
+        this.wal = wal;
+        this.snapshotFile = directory.resolve("shard-" + index + ".snapshot");
+        this.seedLoader = seedLoader;
+        this.writer = new Thread(this::run, "ledger-shard-" + index);
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Rebuild state from the latest snapshot plus WAL replay. Must run before {@link #start()}.
+     * Returns the replayed records so the engine can finish interrupted transfers.
+     */
+    List<LedgerRecord> recover() throws IOException {
+        long snapshotSequence = loadSnapshot();
+        sequence = snapshotSequence;
+
+        List<LedgerRecord> replayed = new ArrayList<>();
+        for (LedgerRecord record : wal.recover()) {
+            if (record.sequence <= snapshotSequence) {
+                continue;
+            }
+            int slot = slots.containsKey(record.accountNumber)
+                    ? slots.get(record.accountNumber)
+                    : allocate(record.accountNumber);
+            balances[slot] = record.balance;
+            if (record.type == LedgerRecord.OPEN || record.type == LedgerRecord.STATUS) {
+                minimumBalances[slot] = record.minimumBalance;
+                active[slot] = record.active;
+            }
+            if (!record.key.isEmpty()) {
+                if (record.type == LedgerRecord.REVERSAL || record.type == LedgerRecord.TRANSFER_REVERSAL) {
+                    forgetLeg(record.key, record.accountNumber);
+                } else {
+                    rememberLeg(record.key, record.accountNumber,
+                            record.type == LedgerRecord.TRANSFER_OUT ? -record.amount : record.amount);
+                }
+            }
+            sequence = record.sequence;
+            replayed.add(record);
+        }
+
+        // The projection may be behind whatever we just recovered
+        dirty.set(0, size);
+        log.info("Ledger shard {} recovered {} accounts ({} WAL records after snapshot {}, {} pending postings)",
+                index, size, replayed.size(), snapshotSequence, pending.size());
+        return replayed;
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    <T> CompletableFuture<T> submit(Callable<T> body) {
+        ShardTask<T> task = new ShardTask<>(body);
+        if (failure != null) {
+            task.future.completeExceptionally(failedException());
+            return task.future;
+        }
+        if (!running) {
+            task.future.completeExceptionally(new IllegalStateException("Ledger shard " + index + " is stopped"));
+            return task.future;
+        }
+        queue.add(task);
+        return task.future;
+    }
+
+    void stop() throws IOException, InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join();
+        wal.close();
+    }
+
+    double walUsage() {
+        return wal.usage();
+    }
+
+    boolean failed() {
+        return failure != null;
+    }
+
+    // ---- Operations below run on the writer thread only ----
+
+    long credit(String key, String accountNumber, long cents, String inactiveMessage) {
+        int slot = requireSlot(accountNumber);
+        if (isPending(key, accountNumber)) {
+            // Already applied under this key and not yet confirmed; a replay must not apply it twice
+            return balances[slot];
+        }
+        if (!active[slot]) {
+            throw new RuntimeException(inactiveMessage);
+        }
+        long balance = Math.addExact(balances[slot], cents);
+        log(new LedgerRecord(LedgerRecord.POST, ++sequence, accountNumber, balance, 0, true, 0, cents, null, key));
+        rememberLeg(key, accountNumber, cents);
+        return apply(slot, balance);
+    }
+
+    long debit(String key, String accountNumber, long cents, String inactiveMessage, String balanceMessage) {
+        int slot = requireSlot(accountNumber);
+        if (isPending(key, accountNumber)) {
+            return balances[slot];
+        }
+        checkDebit(slot, cents, inactiveMessage, balanceMessage);
+        long balance = balances[slot] - cents;
+        log(new LedgerRecord(LedgerRecord.POST, ++sequence, accountNumber, balance, 0, true, 0, -cents, null, key));
+        rememberLeg(key, accountNumber, -cents);
+        return apply(slot, balance);
+    }
+
+    void transferOut(long transferId, String key, String accountNumber, String toAccountNumber, long cents) {
+        int slot = requireSlot(accountNumber);
+        checkDebit(slot, cents, "Cannot transfer with inactive accounts", "Transfer would go below minimum balance");
+        long balance = balances[slot] - cents;
+        log(new LedgerRecord(LedgerRecord.TRANSFER_OUT, ++sequence, accountNumber, balance, 0, true,
+                transferId, cents, toAccountNumber, key));
+        rememberLeg(key, accountNumber, -cents);
+        apply(slot, balance);
+    }
+
+    void transferIn(long transferId, String key, String accountNumber, String fromAccountNumber, long cents) {
+        int slot = requireSlot(accountNumber);
+        if (!active[slot]) {
+            throw new RuntimeException("Cannot transfer with inactive accounts");
+        }
+        long balance = Math.addExact(balances[slot], cents);
+        log(new LedgerRecord(LedgerRecord.TRANSFER_IN, ++sequence, accountNumber, balance, 0, true,
+                transferId, cents, fromAccountNumber, key));
+        rememberLeg(key, accountNumber, cents);
+        apply(slot, balance);
+    }
+
+    void reverseTransfer(long transferId, String key, String accountNumber, long cents) {
+        int slot = requireSlot(accountNumber);
+        long balance = Math.addExact(balances[slot], cents);
+        log(new LedgerRecord(LedgerRecord.TRANSFER_REVERSAL, ++sequence, accountNumber, balance, 0, true,
+                transferId, cents, null, key));
+        forgetLeg(key, accountNumber);
+        apply(slot, balance);
+    }
+
+    /**
+     * Undo this shard's legs of a posting whose journal row was never written.
+     * Reversals skip the status and minimum-balance checks: the money goes back regardless.
+     */
+    Void reverse(String key) {
+        Map<String, Long> legs = pending.get(key);
+        if (legs == null) {
+            return null;
+        }
+        for (Map.Entry<String, Long> leg : new ArrayList<>(legs.entrySet())) {
+            int slot = requireSlot(leg.getKey());
+            long balance = Math.subtractExact(balances[slot], leg.getValue());
+            log(new LedgerRecord(LedgerRecord.REVERSAL, ++sequence, leg.getKey(), balance, 0, true,
+                    0, -leg.getValue(), null, key));
+            forgetLeg(key, leg.getKey());
+            apply(slot, balance);
+        }
+        return null;
+    }
+
+    /**
+     * The journal row for these keys committed; stop tracking their legs. Not logged: a replay brings
+     * the legs back and the startup reconciliation confirms them again.
+     */
+    Void confirm(Iterable<String> keys) {
+        for (String key : keys) {
+            pending.remove(key);
+        }
+        return null;
+    }
+
+    List<String> pendingKeys() {
+        return new ArrayList<>(pending.keySet());
+    }
+
+    /**
+     * Balances of every account this shard holds
+     */
+    Map<String, Long> balances() {
+        Map<String, Long> all = new LinkedHashMap<>();
+        for (int slot = 0; slot < size; slot++) {
+            all.put(accountNumbers[slot], balances[slot]);
+        }
+        return all;
+    }
+
+    void updateStatus(String accountNumber, boolean isActive) {
+        Integer slot = slots.get(accountNumber);
+        if (slot == null) {
+            // Not cached yet; it will be seeded with the current status on first use
+            return;
+        }
+        log(new LedgerRecord(LedgerRecord.STATUS, ++sequence, accountNumber, balances[slot],
+                minimumBalances[slot], isActive, 0, 0, null));
+        active[slot] = isActive;
+    }
+
+    Optional<Long> balanceOf(String accountNumber) {
+        Integer slot = slots.get(accountNumber);
+        return slot == null ? Optional.empty() : Optional.of(balances[slot]);
+    }
+
+    /**
+     * Hand over balances changed since the last call, for the JPA projection
+     */
+    Map<String, Long> drainDirty() {
+        Map<String, Long> changed = new LinkedHashMap<>();
+        for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+            changed.put(accountNumbers[slot], balances[slot]);
+        }
+        dirty.clear();
+        return changed;
+    }
+
+    Void markDirty(Iterable<String> accountNumbersToRetry) {
+        for (String accountNumber : accountNumbersToRetry) {
+            Integer slot = slots.get(accountNumber);
+            if (slot != null) {
+                dirty.set(slot);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write a full snapshot and empty the WAL it supersedes. The WAL is only reset once the
+     * snapshot file and its rename are both on disk; a crash before that recovers from the old pair.
+     */
+    Void snapshot() throws IOException {
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(size);
+            for (int slot = 0; slot < size; slot++) {
+                out.writeUTF(accountNumbers[slot]);
+                out.writeLong(balances[slot]);
+                out.writeLong(minimumBalances[slot]);
+                out.writeBoolean(active[slot]);
+            }
+            int legs = 0;
+            for (Map<String, Long> byAccount : pending.values()) {
+                legs += byAccount.size();
+            }
+            out.writeInt(legs);
+            for (Map.Entry<String, Map<String, Long>> entry : pending.entrySet()) {
+                for (Map.Entry<String, Long> leg : entry.getValue().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(leg.getKey());
+                    out.writeLong(leg.getValue());
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename lives in the directory entry, which needs its own fsync
+        try (FileChannel directory = FileChannel.open(snapshotFile.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        }
+        wal.reset();
+        return null;
+    }
+
+    private boolean isPending(String key, String accountNumber) {
+        Map<String, Long> legs = pending.get(key);
+        return legs != null && legs.containsKey(accountNumber);
+    }
+
+    private void rememberLeg(String key, String accountNumber, long signedCents) {
+        pending.computeIfAbsent(key, k -> new HashMap<>(2)).put(accountNumber, signedCents);
+    }
+
+    private void forgetLeg(String key, String accountNumber) {
+        Map<String, Long> legs = pending.get(key);
+        if (legs != null && legs.remove(accountNumber) != null && legs.isEmpty()) {
+            pending.remove(key);
+        }
+    }
+
+    private void checkDebit(int slot, long cents, String inactiveMessage, String balanceMessage) {
+        if (!active[slot]) {
+            throw new RuntimeException(inactiveMessage);
+        }
+        if (balances[slot] - cents < minimumBalances[slot]) {
+            throw new RuntimeException(balanceMessage);
+        }
+    }
+
+    private int requireSlot(String accountNumber) {
+        Integer slot = slots.get(accountNumber);
+        if (slot != null) {
+            return slot;
+        }
+
+        // First touch: seed from the accounts table and make the seed durable
+        AccountSeed seed = seedLoader.apply(accountNumber)
+                .orElseThrow(() -> new RuntimeException("Account not found"));
+        log(new LedgerRecord(LedgerRecord.OPEN, ++sequence, accountNumber, seed.getBalance(),
+                seed.getMinimumBalance(), seed.isActive(), 0, 0, null));
+        int newSlot = allocate(accountNumber);
+        balances[newSlot] = seed.getBalance();
+        minimumBalances[newSlot] = seed.getMinimumBalance();
+        active[newSlot] = seed.isActive();
+        return newSlot;
+    }
+
+    /**
+     * Append to the WAL before touching memory, so a full segment leaves state unchanged
+     */
+    private void log(LedgerRecord record) {
+        if (!wal.append(record)) {
+            throw new IllegalStateException("Ledger shard " + index + " WAL is full; waiting for snapshot");
+        }
+        pendingForce = true;
+    }
+
+    private long apply(int slot, long balance) {
+        balances[slot] = balance;
+        dirty.set(slot);
+        return balance;
+    }
+
+    private int allocate(String accountNumber) {
+        if (size == accountNumbers.length) {
+            int capacity = size * 2;
+            accountNumbers = Arrays.copyOf(accountNumbers, capacity);
+            balances = Arrays.copyOf(balances, capacity);
+            minimumBalances = Arrays.copyOf(minimumBalances, capacity);
+            active = Arrays.copyOf(active, capacity);
+        }
+        accountNumbers[size] = accountNumber;
+        slots.put(accountNumber, size);
+        return size++;
+    }
+
+    private long loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshotFile))) {
+            int magic = in.readInt();
+            if (magic != SNAPSHOT_MAGIC && magic != UNKEYED_SNAPSHOT_MAGIC) {
+                throw new IOException("Corrupt ledger snapshot " + snapshotFile);
+            }
+            long snapshotSequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int slot = allocate(in.readUTF());
+                balances[slot] = in.readLong();
+                minimumBalances[slot] = in.readLong();
+                active[slot] = in.readBoolean();
+            }
+            if (magic == SNAPSHOT_MAGIC) {
+                int legs = in.readInt();
+                for (int i = 0; i < legs; i++) {
+                    rememberLeg(in.readUTF(), in.readUTF(), in.readLong());
+                }
+            }
+            return snapshotSequence;
+        }
+    }
+
+    private void run() {
+        List<ShardTask<?>> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                if (!running && queue.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            for (ShardTask<?> task : batch) {
+                task.execute();
+            }
+
+            // Group commit: one force covers every record appended by this batch
+            try {
+                if (pendingForce) {
+                    wal.force();
+                    pendingForce = false;
+                }
+                for (ShardTask<?> task : batch) {
+                    task.complete();
+                }
+            } catch (RuntimeException e) {
+                // The batch already changed balances that may never reach disk; stop here and let
+                // recovery rebuild the shard from what is durable on the next start
+                log.error("Ledger shard {} failed to force its WAL; refusing further work until restart", index, e);
+                failure = e;
+                for (ShardTask<?> task : batch) {
+                    task.future.completeExceptionally(failedException());
+                }
+                break;
+            }
+            batch.clear();
+        }
+
+        for (ShardTask<?> task : queue) {
+            task.future.completeExceptionally(failure != null
+                    ? failedException()
+                    : new IllegalStateException("Ledger shard " + index + " is stopped"));
+        }
+    }
+
+    private IllegalStateException failedException() {
+        return new IllegalStateException("Ledger shard " + index + " failed to force its WAL", failure);
+    }
+
+    private static final class ShardTask<T> {
+        private final Callable<T> body;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Throwable failure;
+
+        private ShardTask(Callable<T> body) {
+            this.body = body;
+        }
+
+        private void execute() {
+            try {
+                result = body.call();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.bankingsystem.service.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log segment.
+ *
+ * Each entry is framed as [length][crc32][body]. Reading stops at the first
+ * frame that is empty, torn, fails its checksum or does not advance the
+ * sequence number, which is how a reset segment hides its stale tail.
+ */
+class WriteAheadLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    WriteAheadLog(Path file, int capacity) throws IOException {
+        this.capacity = capacity;
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Read every valid record and leave the write position just after the last one
+     */
+    List<LedgerRecord> recover() {
+        List<LedgerRecord> records = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        long lastSequence = Long.MIN_VALUE;
+        int position = 0;
+
+        while (position + HEADER_BYTES <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > capacity) {
+                break;
+            }
+
+            byte[] body = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + HEADER_BYTES);
+            view.get(body);
+
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+
+            LedgerRecord record = LedgerRecord.decode(ByteBuffer.wrap(body));
+            if (record.sequence <= lastSequence) {
+                break;
+            }
+
+            records.add(record);
+            lastSequence = record.sequence;
+            position += HEADER_BYTES + length;
+        }
+
+        buffer.position(position);
+        return records;
+    }
+
+    /**
+     * Append a record; returns false when the segment has no room left
+     */
+    boolean append(LedgerRecord record) {
+        byte[] body = record.encode();
+        if (buffer.remaining() < HEADER_BYTES + body.length) {
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        buffer.putInt(body.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(body);
+        return true;
+    }
+
+    /**
+     * Flush appended records to the storage device
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Logically empty the segment once its contents are covered by a snapshot
+     */
+    void reset() {
+        buffer.putInt(0, 0);
+        buffer.force();
+        buffer.position(0);
+    }
+
+    double usage() {
+        return (double) buffer.position() / capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
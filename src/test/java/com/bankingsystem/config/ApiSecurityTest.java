@@ -0,0 +1,90 @@
+package com.bankingsystem.config;
+
+import com.bankingsystem.model.Role;
+import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "rate-limit.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ApiSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void metricsRequireLogin() throws Exception {
+        mockMvc.perform(get("/api/metrics")).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void metricsAreForbiddenToCustomers() throws Exception {
+        mockMvc.perform(get("/api/metrics")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void metricsAreServedToAdmins() throws Exception {
+        mockMvc.perform(get("/api/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.postingRetries.hotAccounts").isMap());
+    }
+
+    @Test
+    void stressRunsAreForbiddenToCustomers() throws Exception {
+        mockMvc.perform(post("/api/loans/stress").with(user(principal(Role.ERole.ROLE_USER))))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/loans/stress").with(user(principal(Role.ERole.ROLE_USER))))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void stressReportIsServedToAdmins() throws Exception {
+        // No run yet in this context
+        mockMvc.perform(get("/api/loans/stress").with(user(principal(Role.ERole.ROLE_ADMIN))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void bulkTransfersNeedALogin() throws Exception {
+        mockMvc.perform(post("/api/bulk-transfers").contentType("text/csv").content("from_account,to_account,amount\n"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/bulk-transfers/some-job"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/bulk-transfers/some-job").with(user(principal(Role.ERole.ROLE_USER))))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * The principal controllers read through CurrentUser; a plain mock user is not one
+     */
+    private static UserPrincipal principal(Role.ERole... roles) {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("api-security");
+        user.setFirstName("Api");
+        user.setRoles(Arrays.stream(roles).map(name -> {
+            Role role = new Role();
+            role.setName(name);
+            return role;
+        }).collect(Collectors.toSet()));
+        return UserPrincipal.of(user);
+    }
+}
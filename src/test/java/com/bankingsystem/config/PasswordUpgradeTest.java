@@ -0,0 +1,84 @@
+package com.bankingsystem.config;
+
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PasswordUpgradeTest {
+
+    private static final String PASSWORD = "correct horse";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void legacyBcryptHashIsRehashedOnLogin() throws Exception {
+        // Stored before hashes carried an algorithm id, at a lower cost than configured
+        User user = userWithHash(new BCryptPasswordEncoder(4).encode(PASSWORD));
+
+        login(user);
+
+        String upgraded = storedHash(user);
+        assertThat(upgraded).startsWith("{bcrypt}$2a$10$");
+        assertThat(passwordEncoder.matches(PASSWORD, upgraded)).isTrue();
+        login(user);
+    }
+
+    @Test
+    void pbkdf2HashIsRehashedWithTheConfiguredAlgorithm() throws Exception {
+        Pbkdf2PasswordEncoder pbkdf2 = new Pbkdf2PasswordEncoder("", 16, 310000, 256);
+        pbkdf2.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+        User user = userWithHash("{pbkdf2}" + pbkdf2.encode(PASSWORD));
+
+        login(user);
+
+        assertThat(storedHash(user)).startsWith("{bcrypt}$2a$10$");
+    }
+
+    @Test
+    void currentHashIsLeftAlone() throws Exception {
+        User user = userWithHash(passwordEncoder.encode(PASSWORD));
+        String hash = storedHash(user);
+
+        login(user);
+
+        assertThat(storedHash(user)).isEqualTo(hash);
+    }
+
+    private void login(User user) throws Exception {
+        mockMvc.perform(formLogin().user(user.getUsername()).password(PASSWORD))
+                .andExpect(authenticated().withUsername(user.getUsername()));
+    }
+
+    private User userWithHash(String hash) {
+        User user = TestAccounts.user(userRepository);
+        user.setPassword(hash);
+        return userRepository.save(user);
+    }
+
+    private String storedHash(User user) {
+        return userRepository.findById(user.getId()).orElseThrow().getPassword();
+    }
+}
@@ -0,0 +1,121 @@
+package com.bankingsystem.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PooledPasswordEncoderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private PooledPasswordEncoder encoder;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        if (encoder != null) {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void attemptsBeyondThePoolAndQueueAreRefusedAtOnce() throws Exception {
+        encoder = new PooledPasswordEncoder(new BlockingEncoder(), 1, 1, 10_000);
+
+        // One check on the pool thread and one in the queue
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> encoder.matches("a", "a"));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> encoder.matches("b", "b"));
+        awaitQueued(1);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> encoder.matches("c", "c"))
+                .isInstanceOf(AuthenticationServiceException.class)
+                .hasMessageContaining("Too many sign-in attempts");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+
+        release.countDown();
+        assertThat(running.get(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(queued.get(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(encoder.getMetrics().get("rejected")).isEqualTo(1L);
+        assertThat(encoder.getMetrics().get("completed")).isEqualTo(2L);
+    }
+
+    @Test
+    void slowChecksTimeOut() {
+        encoder = new PooledPasswordEncoder(new BlockingEncoder(), 1, 1, 50);
+
+        assertThatThrownBy(() -> encoder.encode("secret"))
+                .isInstanceOf(AuthenticationServiceException.class)
+                .hasMessageContaining("timed out");
+        assertThat(encoder.getMetrics().get("timedOut")).isEqualTo(1L);
+    }
+
+    @Test
+    void delegateFailuresReachTheCaller() {
+        encoder = new PooledPasswordEncoder(new BlockingEncoder() {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                throw new IllegalArgumentException("There is no PasswordEncoder mapped for the id \"noop\"");
+            }
+        }, 1, 1, 1000);
+
+        assertThatThrownBy(() -> encoder.matches("secret", "{noop}secret"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void upgradeCheckStaysOnTheCallerThread() {
+        encoder = new PooledPasswordEncoder(new BlockingEncoder() {
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                return Thread.currentThread().getName().startsWith("password-hashing-");
+            }
+        }, 1, 1, 1000);
+
+        assertThat(encoder.upgradeEncoding("{bcrypt}hash")).isFalse();
+    }
+
+    private void awaitQueued(int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((int) encoder.getMetrics().get("queued") < queued) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+
+    /**
+     * Holds every hashing call until the test releases it
+     */
+    private class BlockingEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            block();
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            block();
+            return rawPassword.toString().equals(encodedPassword);
+        }
+
+        private void block() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.bankingsystem.config;
+
+import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RateLimitFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void concurrentLoginsFromOneAddressGetTheBurstThen429() throws Exception {
+        int threads = 8;
+        int perThread = 5;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<MockHttpServletResponse>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                List<MockHttpServletResponse> responses = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    responses.add(mockMvc.perform(post("/login").with(csrf())
+                                    .param("username", "nobody").param("password", "wrong")
+                                    .with(from("10.5.0.1")))
+                            .andReturn().getResponse());
+                }
+                return responses;
+            }));
+        }
+        start.countDown();
+        List<MockHttpServletResponse> responses = new ArrayList<>();
+        for (Future<List<MockHttpServletResponse>> future : futures) {
+            responses.addAll(future.get(60, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        List<MockHttpServletResponse> refused = new ArrayList<>();
+        for (MockHttpServletResponse response : responses) {
+            if (response.getStatus() == 429) {
+                refused.add(response);
+            } else {
+                // Let through to the login, which turns the bad password away
+                assertThat(response.getRedirectedUrl()).isEqualTo("/login?error");
+            }
+        }
+        // A burst of 10 at 20 a minute; at most one more token can refill while the test runs
+        assertThat(responses.size() - refused.size()).isBetween(10, 11);
+        for (MockHttpServletResponse response : refused) {
+            int retryAfter = Integer.parseInt(response.getHeader(HttpHeaders.RETRY_AFTER));
+            assertThat(retryAfter).isBetween(1, 3);
+            assertThat(response.getContentType()).startsWith("text/plain");
+            assertThat(response.getContentAsString()).contains("retry in " + retryAfter + " seconds");
+        }
+    }
+
+    @Test
+    void signedInUserIsLimitedAcrossAddresses() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        List<Integer> statuses = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String address = "10.6.0." + i;
+            statuses.add(mockMvc.perform(post("/transactions/transfer").with(csrf())
+                            .with(user(UserPrincipal.of(user)))
+                            .with(from(address)))
+                    .andReturn().getResponse().getStatus());
+        }
+
+        assertThat(statuses.subList(0, 10)).doesNotContain(429);
+        assertThat(statuses.subList(10, 12)).containsOnly(429);
+    }
+
+    @Test
+    void readsAreNeverLimited() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        for (int i = 0; i < 30; i++) {
+            int status = mockMvc.perform(get("/transactions/transfer").with(user(UserPrincipal.of(user)))
+                            .with(from("10.7.0.1")))
+                    .andReturn().getResponse().getStatus();
+            assertThat(status).isNotEqualTo(429);
+        }
+    }
+
+    /**
+     * A client address of its own, so other tests' requests do not share its buckets
+     */
+    private static RequestPostProcessor from(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.bankingsystem.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SequenceInitializerTest {
+
+    @Autowired
+    private SequenceInitializer sequenceInitializer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void sequenceStartsAboveRowsWrittenWithIdentityIds() {
+        // A row left over from when the id was an IDENTITY column
+        long legacyId = 5_000_000L;
+        jdbcTemplate.update("INSERT INTO transactions (id, transaction_number, transaction_type, amount, "
+                + "transaction_date, status) VALUES (?, ?, 'DEPOSIT', 1.00, CURRENT_TIMESTAMP, 'COMPLETED')",
+                legacyId, "LEGACY-" + legacyId);
+
+        sequenceInitializer.alignSequences();
+
+        // The pooled optimizer uses the 50 ids up to the value it reads
+        Long next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR transaction_seq", Long.class);
+        assertThat(next - 49).isGreaterThan(legacyId);
+    }
+
+    @Test
+    void sequenceAlreadyAheadIsLeftAlone() {
+        sequenceInitializer.alignSequences();
+        Long before = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'NOTIFICATION_SEQ'", Long.class);
+
+        sequenceInitializer.alignSequences();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'NOTIFICATION_SEQ'", Long.class))
+                .isEqualTo(before);
+    }
+}
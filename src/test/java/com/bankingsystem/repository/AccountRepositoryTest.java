@@ -0,0 +1,143 @@
+package com.bankingsystem.repository;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.User;
+import com.bankingsystem.service.AccountService;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AccountRepositoryTest {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void debitStopsAtTheMinimumBalance() {
+        // Savings accounts keep 100.00
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "500.00").getAccountNumber();
+        long version = load(number).getVersion();
+
+        assertThat(accountRepository.debit(number, new BigDecimal("400.01"))).isZero();
+        assertThat(load(number).getBalance()).isEqualByComparingTo("500.00");
+        assertThat(load(number).getVersion()).isEqualTo(version);
+
+        assertThat(accountRepository.debit(number, new BigDecimal("400.00"))).isEqualTo(1);
+        assertThat(load(number).getBalance()).isEqualByComparingTo("100.00");
+        assertThat(load(number).getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void inactiveAccountsTakeNeitherDebitsNorCredits() {
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "500.00").getAccountNumber();
+        accountService.setAccountStatus(number, false);
+
+        assertThat(accountRepository.debit(number, BigDecimal.ONE)).isZero();
+        assertThat(accountRepository.credit(number, BigDecimal.ONE)).isZero();
+        assertThat(load(number).getBalance()).isEqualByComparingTo("500.00");
+        assertThatThrownBy(() -> accountService.withdraw(number, BigDecimal.ONE))
+                .hasMessage("Cannot withdraw from an inactive account");
+    }
+
+    @Test
+    void concurrentDebitsWithoutTheLockManagerNeverOverdraw() throws Exception {
+        // The statement alone must hold the line, whoever calls it
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "1000.00").getAccountNumber();
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            futures.add(pool.submit(() -> {
+                int applied = 0;
+                for (int i = 0; i < 10; i++) {
+                    applied += accountRepository.debit(number, new BigDecimal("10.00"));
+                }
+                return applied;
+            }));
+        }
+        int applied = 0;
+        for (Future<Integer> future : futures) {
+            applied += future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(applied).isEqualTo(90);
+        assertThat(load(number).getBalance()).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void rejectedWithdrawalExplainsTheMinimumBalance() {
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "150.00").getAccountNumber();
+        assertThatThrownBy(() -> accountService.withdraw(number, new BigDecimal("60.00")))
+                .hasMessage("Withdrawal would go below minimum balance");
+        assertThat(load(number).getBalance()).isEqualByComparingTo("150.00");
+    }
+
+    /**
+     * Conditional UPDATE against load-then-save, one posting per transaction; run with {@code -Dbenchmark=true}
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void postingThroughput() {
+        User user = TestAccounts.user(userRepository);
+        String number = TestAccounts.savings(accountService, user, "100000000.00").getAccountNumber();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        BigDecimal amount = new BigDecimal("1.00");
+        int postings = 20_000;
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < postings; i++) {
+                transactionTemplate.execute(status -> {
+                    Account account = accountRepository.findByAccountNumber(number).orElseThrow();
+                    if (account.getBalance().subtract(amount).compareTo(account.getMinimumBalance()) < 0) {
+                        throw new IllegalStateException("Below minimum balance");
+                    }
+                    account.setBalance(account.getBalance().subtract(amount));
+                    return accountRepository.save(account);
+                });
+            }
+            double loadThenSave = postings / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            for (int i = 0; i < postings; i++) {
+                transactionTemplate.execute(status -> accountRepository.debit(number, amount));
+            }
+            double conditionalUpdate = postings / ((System.nanoTime() - start) / 1e9);
+
+            System.out.printf("round=%d loadThenSave/s=%.0f conditionalUpdate/s=%.0f%n",
+                    round, loadThenSave, conditionalUpdate);
+        }
+    }
+
+    private Account load(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber).orElseThrow();
+    }
+}
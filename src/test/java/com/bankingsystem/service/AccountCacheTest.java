@@ -0,0 +1,153 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.AccountSnapshot;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.QueryCounter;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AccountCacheTest {
+
+    @Autowired
+    private AccountCache accountCache;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void secondReadIsAHitWithoutAQuery() {
+        AccountCache cache = new AccountCache(accountRepository, transactionManager, 1000, 30);
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "500.00").getAccountNumber();
+
+        QueryCounter.reset();
+        assertThat(cache.get(number)).map(AccountSnapshot::getBalance).contains(new BigDecimal("500.00"));
+        assertThat(QueryCounter.count()).isEqualTo(1);
+
+        QueryCounter.reset();
+        assertThat(cache.get(number)).isPresent();
+        assertThat(QueryCounter.count()).isZero();
+
+        Map<String, Object> metrics = cache.getMetrics();
+        assertThat(metrics.get("hits")).isEqualTo(1L);
+        assertThat(metrics.get("misses")).isEqualTo(1L);
+        assertThat(metrics.get("size")).isEqualTo(1);
+    }
+
+    @Test
+    void postingsAndStatusChangesEvictTheSnapshot() {
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "500.00").getAccountNumber();
+        assertThat(accountCache.get(number)).map(AccountSnapshot::getBalance).contains(new BigDecimal("500.00"));
+
+        accountService.deposit(number, new BigDecimal("25.00"));
+        assertThat(accountCache.get(number)).map(AccountSnapshot::getBalance).contains(new BigDecimal("525.00"));
+
+        accountService.withdraw(number, new BigDecimal("5.00"));
+        assertThat(accountCache.get(number)).map(AccountSnapshot::getBalance).contains(new BigDecimal("520.00"));
+
+        accountService.setAccountStatus(number, false);
+        assertThat(accountCache.get(number)).map(AccountSnapshot::isActive).contains(false);
+    }
+
+    @Test
+    void snapshotLoadedBeforeACommitIsDroppedWhenItCommits() {
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "500.00").getAccountNumber();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE accounts SET balance = 900.00 WHERE account_number = ?", number);
+            accountCache.evict(number);
+            // Another request reads the committed row, 500.00, and caches it before this commits
+            AccountSnapshot concurrent = CompletableFuture.supplyAsync(() -> accountCache.get(number).orElseThrow())
+                    .join();
+            assertThat(concurrent.getBalance()).isEqualByComparingTo("500.00");
+        });
+
+        assertThat(accountCache.get(number)).map(AccountSnapshot::getBalance).contains(new BigDecimal("900.00"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedWhenFull() {
+        // 16 segments of one entry each
+        AccountCache cache = new AccountCache(accountRepository, transactionManager, 16, 30);
+        User user = TestAccounts.user(userRepository);
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            numbers.add(TestAccounts.savings(accountService, user, "500.00").getAccountNumber());
+        }
+        numbers.forEach(cache::get);
+
+        Map<String, Object> metrics = cache.getMetrics();
+        assertThat((int) metrics.get("size")).isLessThanOrEqualTo(16);
+        assertThat((long) metrics.get("evictions")).isEqualTo(40 - (int) metrics.get("size"));
+
+        // The last account read is always still there
+        QueryCounter.reset();
+        cache.get(numbers.get(39));
+        assertThat(QueryCounter.count()).isZero();
+    }
+
+    @Test
+    void expiredEntriesAreLoadedAgain() throws Exception {
+        AccountCache cache = new AccountCache(accountRepository, transactionManager, 1000, 0);
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "500.00").getAccountNumber();
+
+        cache.get(number);
+        TimeUnit.MILLISECONDS.sleep(1);
+        QueryCounter.reset();
+        cache.get(number);
+
+        assertThat(QueryCounter.count()).isEqualTo(1);
+        assertThat(cache.getMetrics().get("expirations")).isEqualTo(1L);
+        assertThat(cache.getMetrics().get("hits")).isEqualTo(0L);
+    }
+
+    @Test
+    void accountLookupsAreServedFromTheCacheOnceWarm() {
+        // The account page and the ownership checks read accounts only through getAccountByNumber
+        String number = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "500.00").getAccountNumber();
+
+        QueryCounter.reset();
+        accountService.getAccountByNumber(number);
+        int cold = QueryCounter.count();
+
+        QueryCounter.reset();
+        for (int i = 0; i < 10; i++) {
+            accountService.getAccountByNumber(number);
+        }
+
+        // The account and its holders come back in one query, and only on the first read
+        assertThat(cold).isEqualTo(1);
+        assertThat(QueryCounter.count()).isZero();
+    }
+}
@@ -0,0 +1,96 @@
+package com.bankingsystem.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountLockManagerTest {
+
+    @Test
+    void stripeCountRoundsUpToAPowerOfTwo() {
+        assertThat(new AccountLockManager(1000).getStripeCount()).isEqualTo(1024);
+        assertThat(new AccountLockManager(1024).getStripeCount()).isEqualTo(1024);
+        assertThat(new AccountLockManager(3).getStripeCount()).isEqualTo(4);
+    }
+
+    @Test
+    void postingsOnOneAccountAreMutuallyExclusive() throws Exception {
+        AccountLockManager locks = new AccountLockManager(16);
+        long[] balance = new long[1];
+        AtomicBoolean inside = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    locks.withLock("1000000018", () -> {
+                        if (!inside.compareAndSet(false, true)) {
+                            overlapped.set(true);
+                        }
+                        balance[0]++;
+                        inside.set(false);
+                        return null;
+                    });
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(overlapped).isFalse();
+        assertThat(balance[0]).isEqualTo(8 * 20_000);
+    }
+
+    @Test
+    void opposingTwoAccountOperationsDoNotDeadlock() throws Exception {
+        // Few stripes, so pairs collide on stripes as well as on accounts
+        AccountLockManager locks = new AccountLockManager(4);
+        String[] accounts = new String[12];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = String.valueOf(1_000_000_000L + i * 7919L);
+        }
+        long[] balances = new long[accounts.length];
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long seed = t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20_000; i++) {
+                    int from = random.nextInt(accounts.length);
+                    int to = (from + 1 + random.nextInt(accounts.length - 1)) % accounts.length;
+                    locks.withLocks(accounts[from], accounts[to], () -> {
+                        balances[from]--;
+                        balances[to]++;
+                        return null;
+                    });
+                }
+            }));
+        }
+        // A deadlock shows up as a timeout here
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        long total = 0;
+        for (long balance : balances) {
+            total += balance;
+        }
+        assertThat(total).isZero();
+    }
+}
@@ -0,0 +1,134 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AccountServiceTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void opposingTransfersKeepTheTotalAndFinish() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        String first = TestAccounts.savings(accountService, user, "10000.00").getAccountNumber();
+        String second = TestAccounts.savings(accountService, user, "10000.00").getAccountNumber();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            boolean forward = t % 2 == 0;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    if (forward) {
+                        accountService.transfer(first, second, new BigDecimal("3.00"));
+                    } else {
+                        accountService.transfer(second, first, new BigDecimal("2.00"));
+                    }
+                }
+            }));
+        }
+        // A lock-order deadlock shows up as a timeout here
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Four threads moved 300.00 one way and four moved 200.00 back
+        assertThat(balanceOf(first)).isEqualByComparingTo("9600.00");
+        assertThat(balanceOf(second)).isEqualByComparingTo("10400.00");
+    }
+
+    @Test
+    void concurrentDepositsOnAHotAccountAreNotLost() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        String hot = TestAccounts.savings(accountService, user, "1000.00").getAccountNumber();
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    accountService.deposit(hot, new BigDecimal("1.25"));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(balanceOf(hot)).isEqualByComparingTo("2000.00");
+    }
+
+    /**
+     * 16 posters spread over 1, 4, 16 and 64 accounts; run with {@code -Dbenchmark=true}
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void hotAccountContention() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        String warmUpAccount = TestAccounts.savings(accountService, user, "1000.00").getAccountNumber();
+        for (int i = 0; i < 2000; i++) {
+            accountService.deposit(warmUpAccount, BigDecimal.ONE);
+        }
+
+        int posters = 16;
+        int postingsPerPoster = 500;
+        for (int distinct : new int[] {1, 4, 16, 64}) {
+            List<String> accounts = new ArrayList<>();
+            for (int i = 0; i < distinct; i++) {
+                accounts.add(TestAccounts.savings(accountService, user, "1000.00").getAccountNumber());
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(posters);
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < posters; t++) {
+                int poster = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < postingsPerPoster; i++) {
+                        accountService.deposit(accounts.get((poster + i) % accounts.size()), BigDecimal.ONE);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.MINUTES);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            pool.shutdown();
+
+            System.out.printf("accounts=%d postings=%d postings/s=%.0f%n",
+                    distinct, posters * postingsPerPoster, posters * postingsPerPoster / seconds);
+        }
+    }
+
+    private BigDecimal balanceOf(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance();
+    }
+}
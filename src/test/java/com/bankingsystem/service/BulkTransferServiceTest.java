@@ -0,0 +1,167 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BulkTransferServiceTest {
+
+    @Autowired
+    private BulkTransferService bulkTransferService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void badLinesDoNotRollBackTheRestOfTheFile() throws Exception {
+        User owner = TestAccounts.user(userRepository);
+        // Minimum balance 100, so 900 can leave the account
+        String source = TestAccounts.savings(accountService, owner, "1000.00").getAccountNumber();
+        String destination = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "100.00")
+                .getAccountNumber();
+
+        String file = "from_account,to_account,amount,description\n"
+                + source + "," + destination + ",100.00,Salary\n"
+                + source + "," + destination + ",200.00,Salary\n"
+                + source + ",NOSUCHACCOUNT,50.00,Salary\n"
+                + source + "," + destination + ",5000.00,Too much\n"
+                + source + "," + destination + ",300.00,Salary\n"
+                + source + "," + source + ",10.00,Self\n"
+                + source + "," + destination + ",abc,Garbage\n";
+
+        BulkTransferService.Job job = run(owner, "payroll-1", file);
+        assertThat(job.toStatus()).containsEntry("state", BulkTransferService.JobState.COMPLETED)
+                .containsEntry("lines", 7L)
+                .containsEntry("posted", 3L)
+                .containsEntry("rejected", 3L)
+                .containsEntry("failed", 1L);
+        assertThat(balanceOf(source)).isEqualByComparingTo("400.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("700.00");
+
+        List<String> results = Files.readAllLines(job.getResults(), StandardCharsets.UTF_8);
+        assertThat(results).hasSize(8);
+        assertThat(results.get(1)).startsWith("2,POSTED,");
+        assertThat(results.get(3)).startsWith("4,REJECTED,,Destination account not found");
+        assertThat(results.get(4)).startsWith("5,FAILED,");
+        assertThat(results.get(6)).startsWith("7,REJECTED,,Cannot transfer to the same account");
+        assertThat(results.get(7)).startsWith("8,REJECTED,,Amount is not a number");
+
+        // The same batch again posts nothing twice
+        BulkTransferService.Job again = run(owner, "payroll-1", file);
+        assertThat(again.toStatus()).containsEntry("posted", 0L)
+                .containsEntry("duplicates", 3L)
+                .containsEntry("failed", 1L);
+        assertThat(balanceOf(source)).isEqualByComparingTo("400.00");
+        assertThat(balanceOf(destination)).isEqualByComparingTo("700.00");
+    }
+
+    @Test
+    void fileThatFitsIsPostedInWholeChunks() throws Exception {
+        User owner = TestAccounts.user(userRepository);
+        String source = TestAccounts.savings(accountService, owner, "10000.00").getAccountNumber();
+        List<String> destinations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            destinations.add(TestAccounts.savings(accountService, TestAccounts.user(userRepository), "100.00")
+                    .getAccountNumber());
+        }
+
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            file.append("{\"fromAccount\":\"").append(source)
+                    .append("\",\"toAccount\":\"").append(destinations.get(i % destinations.size()))
+                    .append("\",\"amount\":\"10.00\"}\n");
+        }
+
+        long chunksBefore = (long) bulkTransferService.getMetrics().get("chunksPosted");
+        BulkTransferService.Job job = submitAndWait(owner, null, BulkTransferService.Format.NDJSON, file.toString());
+        assertThat(job.toStatus()).containsEntry("state", BulkTransferService.JobState.COMPLETED)
+                .containsEntry("posted", 50L);
+        assertThat((long) bulkTransferService.getMetrics().get("chunksPosted")).isEqualTo(chunksBefore + 1);
+        assertThat(balanceOf(source)).isEqualByComparingTo("9500.00");
+        for (String destination : destinations) {
+            assertThat(balanceOf(destination)).isEqualByComparingTo("200.00");
+        }
+    }
+
+    /**
+     * A 100k-line payroll file from ten sources to a thousand payees; run with {@code -Dbenchmark=true}
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void payrollThroughput() throws Exception {
+        User owner = TestAccounts.user(userRepository);
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            sources.add(TestAccounts.savings(accountService, owner, "100000000.00").getAccountNumber());
+        }
+        User payees = TestAccounts.user(userRepository);
+        List<String> destinations = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            destinations.add(TestAccounts.savings(accountService, payees, "100.00").getAccountNumber());
+        }
+
+        int lines = 100_000;
+        StringBuilder file = new StringBuilder("from_account,to_account,amount\n");
+        for (int i = 0; i < lines; i++) {
+            file.append(sources.get(i % sources.size())).append(',')
+                    .append(destinations.get(i % destinations.size())).append(",12.34\n");
+        }
+
+        long start = System.nanoTime();
+        BulkTransferService.Job job = submitAndWait(owner, null, BulkTransferService.Format.CSV, file.toString());
+        double minutes = (System.nanoTime() - start) / 60e9;
+        assertThat(job.toStatus()).containsEntry("posted", (long) lines);
+        System.out.printf("lines=%d seconds=%.1f postings/min=%.0f%n", lines, minutes * 60, lines / minutes);
+    }
+
+    private BulkTransferService.Job run(User owner, String batchId, String csv) throws Exception {
+        return submitAndWait(owner, batchId, BulkTransferService.Format.CSV, csv);
+    }
+
+    private BulkTransferService.Job submitAndWait(User owner, String batchId, BulkTransferService.Format format,
+                                                  String content) throws Exception {
+        BulkTransferService.Job job = bulkTransferService.submit(owner.getId(), batchId, format,
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        long deadline = System.currentTimeMillis() + 600_000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> status = job.toStatus();
+            boolean finished = status.get("state") == BulkTransferService.JobState.COMPLETED
+                    || status.get("state") == BulkTransferService.JobState.FAILED;
+            // The batch is released just after the state is set
+            if (finished && (int) bulkTransferService.getMetrics().get("jobsActive") == 0) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Bulk transfer job " + job.getId() + " did not finish");
+    }
+
+    private BigDecimal balanceOf(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber).map(Account::getBalance).orElseThrow();
+    }
+}
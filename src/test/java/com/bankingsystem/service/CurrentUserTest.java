@@ -0,0 +1,119 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.QueryCounter;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Printing the model would call toString on lazy journal associations after the request
+@SpringBootTest
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+@ActiveProfiles("test")
+class CurrentUserTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void loginStoresAPasswordlessPrincipalAndPrimesTheCache() throws Exception {
+        User user = userWithPassword("correct horse");
+
+        MockHttpSession session = (MockHttpSession) mockMvc
+                .perform(formLogin().user(user.getUsername()).password("correct horse"))
+                .andExpect(authenticated().withUsername(user.getUsername()))
+                .andReturn().getRequest().getSession();
+
+        SecurityContext context = (SecurityContext) session.getAttribute(
+                HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+        assertThat(context.getAuthentication().getPrincipal()).isInstanceOf(UserPrincipal.class);
+        UserPrincipal principal = (UserPrincipal) context.getAuthentication().getPrincipal();
+        assertThat(principal.getId()).isEqualTo(user.getId());
+        assertThat(principal.getPassword()).isNull();
+
+        QueryCounter.reset();
+        assertThat(principalCache.get(user.getUsername())).map(UserPrincipal::getId).contains(user.getId());
+        assertThat(QueryCounter.count()).isZero();
+    }
+
+    @Test
+    void sessionPrincipalCostsNoQueries() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        TestAccounts.savings(accountService, user, "500.00");
+
+        QueryCounter.reset();
+        transactionService.getUserTransactions(userRepository.getReferenceById(user.getId()), null, null, 10);
+        int pageQueries = QueryCounter.count();
+
+        QueryCounter.reset();
+        mockMvc.perform(get("/transactions").with(user(UserPrincipal.of(user)))).andExpect(status().isOk());
+
+        // The request runs the keyset page and nothing else: no user or role lookup
+        assertThat(QueryCounter.count()).isEqualTo(pageQueries);
+    }
+
+    @Test
+    void otherPrincipalsAreResolvedOnceThroughTheCache() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        TestAccounts.savings(accountService, user, "500.00");
+        QueryCounter.reset();
+        mockMvc.perform(get("/transactions").with(user(UserPrincipal.of(user)))).andExpect(status().isOk());
+        int pageQueries = QueryCounter.count();
+
+        // A principal our login did not create, so CurrentUser has to look it up by name
+        UserDetails foreign = new org.springframework.security.core.userdetails.User(
+                user.getUsername(), "", Collections.emptyList());
+        QueryCounter.reset();
+        mockMvc.perform(get("/transactions").with(user(foreign))).andExpect(status().isOk());
+        int cold = QueryCounter.count();
+
+        QueryCounter.reset();
+        mockMvc.perform(get("/transactions").with(user(foreign))).andExpect(status().isOk());
+
+        // The user and its roles in one query the first time, then nothing
+        assertThat(cold).isEqualTo(pageQueries + 1);
+        assertThat(QueryCounter.count()).isEqualTo(pageQueries);
+    }
+
+    private User userWithPassword(String password) {
+        User user = TestAccounts.user(userRepository);
+        user.setPassword(passwordEncoder.encode(password));
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,236 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Notification;
+import com.bankingsystem.model.Notification.NotificationType;
+import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class EventStreamRegistryTest {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EventStreamRegistry eventStreamRegistry;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final List<EventStreamRegistry> registries = new ArrayList<>();
+
+    @AfterEach
+    void stopRegistries() {
+        registries.forEach(EventStreamRegistry::stop);
+    }
+
+    @Test
+    void idleSubscribersHoldNoThreads() {
+        EventStreamRegistry registry = registry(64, 1000, 5, 60, 4, 2000);
+        int threadsBefore = senderThreads();
+
+        for (long userId = 1; userId <= 1000; userId++) {
+            assertThat(registry.subscribe(userId)).isNotNull();
+        }
+
+        assertThat(registry.getMetrics().get("connections")).isEqualTo(1000);
+        assertThat(registry.getMetrics().get("users")).isEqualTo(1000);
+        // The connected events went out through the configured senders and nothing else
+        await(() -> (long) registry.getMetrics().get("sent") == 1000);
+        assertThat(senderThreads() - threadsBefore).isLessThanOrEqualTo(4);
+
+        assertThat(registry.subscribe(1001L)).isNull();
+        assertThat(registry.getMetrics().get("refused")).isEqualTo(1L);
+    }
+
+    @Test
+    void anotherTabOverTheLimitReplacesTheOldest() {
+        EventStreamRegistry registry = registry(64, 100, 2, 60, 1, 2000);
+
+        registry.subscribe(1L);
+        registry.subscribe(1L);
+        registry.subscribe(1L);
+
+        assertThat(registry.getMetrics().get("connections")).isEqualTo(2);
+        assertThat(registry.getMetrics().get("closed")).isEqualTo(1L);
+    }
+
+    @Test
+    void heartbeatsGoToIdleConnections() {
+        EventStreamRegistry registry = registry(64, 100, 5, 1, 1, 2000);
+        registry.subscribe(1L);
+        registry.subscribe(2L);
+
+        // The two connected events, then at least one heartbeat each
+        await(() -> (long) registry.getMetrics().get("sent") >= 4);
+        assertThat(registry.getMetrics().get("connections")).isEqualTo(2);
+    }
+
+    @Test
+    void slowConsumerIsDroppedWithoutBlockingThePublisher() throws Exception {
+        EventStreamRegistry registry = registry(4, 100, 5, 60, 1, 60_000);
+        SseEmitter slow = registry.subscribe(1L);
+        registry.subscribe(2L);
+        await(() -> (long) registry.getMetrics().get("sent") == 2);
+
+        // Holding the emitter's monitor stalls its write as a client that stopped reading would
+        synchronized (slow) {
+            for (int i = 0; i < 10; i++) {
+                registry.deliver(1L, notification(i));
+            }
+            assertThat(registry.getMetrics().get("droppedSlow")).isEqualTo(1L);
+            assertThat(registry.getMetrics().get("connections")).isEqualTo(1);
+        }
+
+        // Whether or not the first stalled write went out, the other connection still gets its event
+        registry.deliver(2L, notification(99));
+        await(() -> (long) registry.getMetrics().get("sent") >= 3);
+        assertThat(registry.getMetrics().get("users")).isEqualTo(1);
+    }
+
+    @Test
+    void stalledWriteIsTimedOutAndOthersStillGetTheirEvents() throws Exception {
+        EventStreamRegistry registry = registry(64, 100, 5, 60, 1, 100);
+        SseEmitter stalled = registry.subscribe(1L);
+        await(() -> (long) registry.getMetrics().get("sent") == 1);
+
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread client = new Thread(() -> {
+            synchronized (stalled) {
+                holding.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        client.start();
+        holding.await();
+        try {
+            registry.deliver(1L, notification(1));
+            await(() -> (long) registry.getMetrics().get("writeTimeouts") == 1);
+            assertThat(registry.getMetrics().get("stalledSenders")).isEqualTo(1);
+
+            // The only configured sender is stuck, so this goes out on the extra one
+            registry.subscribe(2L);
+            registry.deliver(2L, notification(2));
+            await(() -> (long) registry.getMetrics().get("sent") == 3);
+        } finally {
+            release.countDown();
+            client.join();
+        }
+
+        await(() -> (int) registry.getMetrics().get("stalledSenders") == 0);
+        assertThat(registry.getMetrics().get("connections")).isEqualTo(1);
+    }
+
+    @Test
+    void streamCarriesNotificationsAndBalanceChanges() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        Account account = TestAccounts.savings(accountService, user, "500.00");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/api/events")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .with(user(UserPrincipal.of(user))))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+        assertThat(response.getHeader("X-Accel-Buffering")).isEqualTo("no");
+        await(() -> body(response).contains("event:connected\n"));
+
+        eventStreamRegistry.deliver(user.getId(), notification(7));
+        await(() -> body(response).contains("event:notification\nid:7\n"));
+
+        // The opening deposit's own balance event may still be on its way, so look for this one
+        accountService.deposit(account.getAccountNumber(), new BigDecimal("25.00"));
+        await(() -> body(response).contains("event:balance\ndata:{\"accountId\":" + account.getId()
+                + ",\"accountNumber\":\"" + account.getAccountNumber() + "\",\"delta\":25.00,\"balance\":525.00"));
+    }
+
+    private EventStreamRegistry registry(int bufferSize, int maxConnections, int maxPerUser,
+                                         long heartbeatSeconds, int senderThreads, long writeTimeoutMillis) {
+        EventStreamRegistry registry = new EventStreamRegistry(accountRepository, transactionManager, 1_800_000,
+                bufferSize, maxConnections, maxPerUser, heartbeatSeconds, senderThreads, writeTimeoutMillis, 16);
+        registry.start();
+        registries.add(registry);
+        return registry;
+    }
+
+    private static Notification notification(long id) {
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setTitle("Title " + id);
+        notification.setMessage("Message " + id);
+        notification.setType(NotificationType.SYSTEM);
+        return notification;
+    }
+
+    private static int senderThreads() {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("event-stream-") && !thread.getName().endsWith("heartbeat"))
+                .count();
+    }
+
+    private static String body(MockHttpServletResponse response) {
+        try {
+            return response.getContentAsString();
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out waiting").isLessThan(deadline);
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
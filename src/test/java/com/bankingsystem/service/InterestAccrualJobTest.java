@@ -0,0 +1,190 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.InterestAccrualRun;
+import com.bankingsystem.model.InterestAccrualRun.RunStatus;
+import com.bankingsystem.model.Transaction.TransactionType;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.InterestAccrualRunRepository;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.service.ledger.LedgerEngine;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Own database and ledger directory: the engine is seeded from, and verified against, this journal only
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:interest-accrual-test;DB_CLOSE_DELAY=-1",
+        "ledger.engine=inmemory",
+        "interest.chunk-size=2",
+        "interest.parallelism=2"
+})
+@ActiveProfiles("test")
+class InterestAccrualJobTest {
+
+    private static volatile Long poisonedAccountId;
+
+    @DynamicPropertySource
+    static void ledgerDirectory(DynamicPropertyRegistry registry) {
+        registry.add("ledger.directory", () -> {
+            try {
+                return Files.createTempDirectory("interest-accrual-ledger").toString();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @TestConfiguration
+    static class PoisonedAccrual {
+
+        // Runs inside the chunk transaction after its deposits and inserts, so the whole chunk rolls back
+        @EventListener
+        public void onPosting(AccountPostingEvent event) {
+            if (event.getTransactionType() == TransactionType.INTEREST
+                    && event.getDestinationAccountId().equals(poisonedAccountId)) {
+                throw new IllegalStateException("poisoned accrual");
+            }
+        }
+    }
+
+    @Autowired
+    private InterestAccrualJob interestAccrualJob;
+
+    @Autowired
+    private InterestAccrualRunRepository runRepository;
+
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void clearPoison() {
+        poisonedAccountId = null;
+    }
+
+    @Test
+    void rolledBackChunkIsReversedInTheEngineAndPaidOnceOnResume() {
+        YearMonth period = YearMonth.of(2025, 1);
+        User user = TestAccounts.user(userRepository);
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            accounts.add(TestAccounts.savings(accountService, user, "1200.00"));
+        }
+        Account poisoned = accounts.get(5);
+        poisonedAccountId = poisoned.getId();
+
+        assertThatThrownBy(() -> interestAccrualJob.accrue(period))
+                .hasMessageContaining("resumes from its checkpoint");
+
+        // The engine deposit of the rolled-back chunk was settled away, not left on the balance
+        assertThat(ledgerEngine.getBalance(poisoned.getAccountNumber())).contains(new BigDecimal("1200.00"));
+        assertThat(accrualsOf(period, poisoned)).isZero();
+        InterestAccrualRun interrupted = runRepository.findById(period.toString()).orElseThrow();
+        assertThat(interrupted.getStatus()).isEqualTo(RunStatus.RUNNING);
+        assertThat(interrupted.getNextChunkStart()).isLessThanOrEqualTo(poisoned.getId());
+        assertThat(ledgerEngine.verifyAgainstJournal()).isZero();
+
+        poisonedAccountId = null;
+        interestAccrualJob.accrue(period);
+
+        // 1200.00 at 2.5% a year is 2.50 a month, paid once however often the chunk ran
+        for (Account account : accounts) {
+            assertThat(accrualsOf(period, account)).as(account.getAccountNumber()).isEqualTo(1);
+            assertThat(ledgerEngine.getBalance(account.getAccountNumber())).contains(new BigDecimal("1202.50"));
+        }
+        InterestAccrualRun completed = runRepository.findById(period.toString()).orElseThrow();
+        assertThat(completed.getStatus()).isEqualTo(RunStatus.COMPLETED);
+        assertThat(completed.getAccountsAccrued()).isEqualTo(accrualCount(period));
+        assertThat(ledgerEngine.verifyAgainstJournal()).isZero();
+    }
+
+    @Test
+    void completedPeriodIsNotPaidAgain() {
+        YearMonth period = YearMonth.of(2025, 2);
+        Account account = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "2400.00");
+
+        interestAccrualJob.accrue(period);
+        interestAccrualJob.accrue(period);
+
+        assertThat(accrualsOf(period, account)).isEqualTo(1);
+        assertThat(ledgerEngine.getBalance(account.getAccountNumber())).contains(new BigDecimal("2405.00"));
+        assertThat(runRepository.findById(period.toString()).orElseThrow().getStatus()).isEqualTo(RunStatus.COMPLETED);
+    }
+
+    @Test
+    void resumedRunSkipsAccountsAlreadyPaidAboveTheCheckpoint() {
+        YearMonth period = YearMonth.of(2025, 3);
+        User user = TestAccounts.user(userRepository);
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            accounts.add(TestAccounts.savings(accountService, user, "1200.00"));
+        }
+        interestAccrualJob.accrue(period);
+
+        // As if the process died after these chunks committed but before the checkpoint moved
+        jdbcTemplate.update("UPDATE interest_accrual_runs SET status = 'RUNNING', next_chunk_start = 0 WHERE period = ?",
+                period.toString());
+        interestAccrualJob.resumeInterruptedRuns();
+
+        for (Account account : accounts) {
+            assertThat(accrualsOf(period, account)).isEqualTo(1);
+            assertThat(ledgerEngine.getBalance(account.getAccountNumber())).contains(new BigDecimal("1202.50"));
+        }
+        assertThat(runRepository.findById(period.toString()).orElseThrow().getStatus()).isEqualTo(RunStatus.COMPLETED);
+        assertThat(ledgerEngine.verifyAgainstJournal()).isZero();
+    }
+
+    @Test
+    void depositLeftPendingByACrashIsSettledWhenTheEngineStarts() throws Exception {
+        Account account = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "1200.00");
+
+        // A chunk that deposited and then died before its rows committed or it could settle
+        ledgerEngine.deposit("TXNCRASHED" + account.getId(), account.getAccountNumber(), new BigDecimal("2.50"));
+        assertThat(ledgerEngine.getBalance(account.getAccountNumber())).contains(new BigDecimal("1202.50"));
+
+        ledgerEngine.stop();
+        ledgerEngine.start();
+
+        assertThat(ledgerEngine.getBalance(account.getAccountNumber())).contains(new BigDecimal("1200.00"));
+        assertThat(ledgerEngine.verifyAgainstJournal()).isZero();
+    }
+
+    private long accrualsOf(YearMonth period, Account account) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE idempotency_key = ?",
+                Long.class, "INTEREST:" + period + ":" + account.getId());
+    }
+
+    private long accrualCount(YearMonth period) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE idempotency_key LIKE ?",
+                Long.class, "INTEREST:" + period + ":%");
+    }
+}
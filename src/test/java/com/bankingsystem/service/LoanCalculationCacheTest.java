@@ -0,0 +1,128 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.AmortizationSchedule;
+import com.bankingsystem.model.Loan.LoanType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoanCalculationCacheTest {
+
+    @Test
+    void standardFactorsArePrecomputedForEveryLoanType() {
+        LoanCalculationCache cache = new LoanCalculationCache(1000, 500);
+        LoanService loanService = new LoanService(cache);
+
+        for (LoanType type : LoanType.values()) {
+            loanService.eligibleAmount(new BigDecimal("500.00"), type);
+            BigDecimal monthlyRate = LoanService.monthlyRate(type.getStandardRate());
+            assertThat(cache.discountFactor(monthlyRate, type.getStandardTermMonths()))
+                    .isEqualTo(LoanService.discountFactor(monthlyRate, type.getStandardTermMonths()));
+        }
+
+        Map<String, Object> metrics = cache.getMetrics();
+        assertThat(metrics.get("standardFactors")).isEqualTo(LoanType.values().length);
+        assertThat(metrics.get("standardFactorHits")).isEqualTo(2L * LoanType.values().length);
+        assertThat(metrics.get("factorMisses")).isEqualTo(0L);
+        assertThat(metrics.get("factorSize")).isEqualTo(0);
+    }
+
+    @Test
+    void repeatedQuotesAreServedFromTheCache() {
+        LoanCalculationCache cache = new LoanCalculationCache(1000, 500);
+        LoanService loanService = new LoanService(cache);
+
+        // Ten distinct loans asked for ten times each
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10; i++) {
+                loanService.amortize(BigDecimal.valueOf(1_000_000L + i * 50_000L, 2), new BigDecimal("9.5"), 60);
+            }
+        }
+
+        Map<String, Object> metrics = cache.getMetrics();
+        assertThat(metrics.get("scheduleMisses")).isEqualTo(10L);
+        assertThat(metrics.get("scheduleHits")).isEqualTo(90L);
+        assertThat(metrics.get("scheduleHitRatio")).isEqualTo(0.9);
+        assertThat(metrics.get("scheduleSize")).isEqualTo(10);
+        // Every schedule needed the one non-standard factor, computed once
+        assertThat(metrics.get("factorMisses")).isEqualTo(1L);
+        assertThat(metrics.get("factorHits")).isEqualTo(9L);
+    }
+
+    @Test
+    void equalLoansShareOneScheduleWhateverTheirScale() {
+        LoanCalculationCache cache = new LoanCalculationCache(1000, 500);
+        LoanService loanService = new LoanService(cache);
+
+        AmortizationSchedule first = loanService.amortize(new BigDecimal("25000"), new BigDecimal("7.5"), 120);
+        AmortizationSchedule second = loanService.amortize(new BigDecimal("25000.00"), new BigDecimal("7.50"), 120);
+        AmortizationSchedule other = loanService.amortize(new BigDecimal("25000.01"), new BigDecimal("7.5"), 120);
+
+        assertThat(second).isSameAs(first);
+        assertThat(other).isNotSameAs(first);
+        Map<String, Object> metrics = cache.getMetrics();
+        assertThat(metrics.get("scheduleHits")).isEqualTo(1L);
+        assertThat(metrics.get("scheduleMisses")).isEqualTo(2L);
+        // Both misses needed the same non-standard factor; the second found it cached
+        assertThat(metrics.get("factorMisses")).isEqualTo(1L);
+        assertThat(metrics.get("factorHits")).isEqualTo(1L);
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() {
+        LoanCalculationCache cache = new LoanCalculationCache(2, 2);
+        BigDecimal rate = LoanService.monthlyRate(new BigDecimal("11.0"));
+
+        cache.discountFactor(rate, 12);
+        cache.discountFactor(rate, 24);
+        cache.discountFactor(rate, 12);
+        cache.discountFactor(rate, 36);
+
+        // 24 was the least recently used, so it went and 12 stayed
+        cache.discountFactor(rate, 12);
+        assertThat(cache.getMetrics().get("factorHits")).isEqualTo(2L);
+        cache.discountFactor(rate, 24);
+        assertThat(cache.getMetrics().get("factorMisses")).isEqualTo(4L);
+        assertThat(cache.getMetrics().get("factorSize")).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentQuotesGetTheSameSchedules() throws Exception {
+        LoanService cached = new LoanService(new LoanCalculationCache(1000, 500));
+        LoanService reference = new LoanService(new LoanCalculationCache(1, 1));
+
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 200; i++) {
+                    BigDecimal principal = BigDecimal.valueOf(500_000L + (i % 20) * 10_000L, 2);
+                    BigDecimal rate = BigDecimal.valueOf(600 + (i % 7) * 50, 2);
+                    AmortizationSchedule schedule = cached.amortize(principal, rate, 48);
+                    AmortizationSchedule expected = reference.amortize(principal, rate, 48);
+                    assertThat(schedule.getEmi()).isEqualByComparingTo(expected.getEmi());
+                    assertThat(schedule.getTotalInterest()).isEqualByComparingTo(expected.getTotalInterest());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+    }
+}
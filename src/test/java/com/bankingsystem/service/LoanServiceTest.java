@@ -0,0 +1,89 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.AmortizationSchedule;
+import com.bankingsystem.model.LoanPayment;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoanServiceTest {
+
+    private final LoanService loanService = new LoanService(new LoanCalculationCache(1000, 500));
+
+    @Test
+    void centsScheduleMatchesBigDecimalScheduleToTheCent() {
+        Random random = new Random(20261018L);
+        for (int i = 0; i < 2000; i++) {
+            BigDecimal principal = BigDecimal.valueOf(100 + random.nextInt(1_000_000_000), 2);
+            BigDecimal rate = BigDecimal.valueOf(1 + random.nextInt(3600), 2);
+            int tenure = 1 + random.nextInt(480);
+            assertMatchesReference(principal, rate, tenure);
+        }
+    }
+
+    @Test
+    void balancesTooLargeForLongProductsFallBackToBigDecimal() {
+        Random random = new Random(42L);
+        for (int i = 0; i < 200; i++) {
+            // 10^12 cents and up at 1% a month or more: balance times the scaled rate passes 2^64
+            BigDecimal principal = BigDecimal.valueOf(1_000_000_000_000L + (long) (random.nextDouble() * 1e15), 2);
+            BigDecimal rate = BigDecimal.valueOf(1200 + random.nextInt(2400), 2);
+            int tenure = 1 + random.nextInt(360);
+            long scaledRate = LoanService.monthlyRate(rate).unscaledValue().longValueExact();
+            assertThat(Math.multiplyHigh(principal.unscaledValue().longValueExact(), scaledRate)).isNotZero();
+            assertMatchesReference(principal, rate, tenure);
+        }
+    }
+
+    @Test
+    void totalsAddUpThePaymentsIncludingTheLastOne() {
+        // 1000.00 at 10% over 12 months: the EMI is 87.92 but the last payment is 87.87,
+        // so the loan costs 1054.99 rather than twelve EMIs of 1055.04
+        AmortizationSchedule schedule = loanService.amortize(new BigDecimal("1000.00"), new BigDecimal("10"), 12);
+        assertThat(schedule.getEmi()).isEqualByComparingTo("87.92");
+        assertThat(schedule.getPayment(11).getPayment()).isEqualByComparingTo("87.87");
+        assertThat(schedule.getTotalPayment()).isEqualByComparingTo("1054.99");
+        assertThat(schedule.getTotalInterest()).isEqualByComparingTo("54.99");
+    }
+
+    private void assertMatchesReference(BigDecimal principal, BigDecimal rate, int tenure) {
+        AmortizationSchedule schedule = loanService.amortize(principal, rate, tenure);
+        BigDecimal monthlyRate = LoanService.monthlyRate(rate);
+        BigDecimal emi = loanService.calculateEmi(principal, rate, tenure);
+        assertThat(schedule.getEmi()).isEqualByComparingTo(emi);
+        assertThat(schedule.size()).isEqualTo(tenure);
+
+        // The schedule as the loan calculator built it before the cents engine
+        BigDecimal balance = principal;
+        BigDecimal totalPayment = BigDecimal.ZERO;
+        BigDecimal totalInterest = BigDecimal.ZERO;
+        for (int month = 0; month < tenure; month++) {
+            BigDecimal interest = balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal principalPart = emi.subtract(interest);
+            if (month == tenure - 1) {
+                principalPart = balance;
+                balance = BigDecimal.ZERO;
+            } else {
+                balance = balance.subtract(principalPart);
+            }
+            if (balance.signum() < 0) {
+                balance = BigDecimal.ZERO;
+            }
+
+            LoanPayment payment = schedule.getPayment(month);
+            String where = principal + " at " + rate + "% for " + tenure + " months, month " + (month + 1);
+            assertThat(payment.getInterest()).as(where).isEqualByComparingTo(interest);
+            assertThat(payment.getPrincipal()).as(where).isEqualByComparingTo(principalPart);
+            assertThat(payment.getRemainingBalance()).as(where).isEqualByComparingTo(balance);
+            assertThat(payment.getPayment()).as(where).isEqualByComparingTo(principalPart.add(interest));
+            totalPayment = totalPayment.add(principalPart).add(interest);
+            totalInterest = totalInterest.add(interest);
+        }
+        assertThat(schedule.getTotalPayment()).isEqualByComparingTo(totalPayment);
+        assertThat(schedule.getTotalInterest()).isEqualByComparingTo(totalInterest);
+    }
+}
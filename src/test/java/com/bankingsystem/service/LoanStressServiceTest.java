@@ -0,0 +1,262 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Loan.LoanStatus;
+import com.bankingsystem.model.Loan.LoanType;
+import com.bankingsystem.model.LoanStressReport;
+import com.bankingsystem.model.LoanStressReport.Scenario;
+import com.bankingsystem.model.LoanStressReport.Segment;
+import com.bankingsystem.model.Role;
+import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserPrincipal;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Own database, so the loan book is exactly the loans each test writes; small chunks so a run spans several
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:loan-stress-test;DB_CLOSE_DELAY=-1",
+        "loans.stress.chunk-size=3000",
+        "loans.stress.parallelism=2",
+        "loans.stress.payment-shock-threshold=0.15"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LoanStressServiceTest {
+
+    @Autowired
+    private LoanStressService loanStressService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final List<Object[]> book = new ArrayList<>();
+    private User borrower;
+
+    @BeforeEach
+    void emptyTheBook() {
+        jdbcTemplate.update("DELETE FROM loans");
+        borrower = TestAccounts.user(userRepository);
+    }
+
+    @Test
+    void smallBookAddsUpByHand() {
+        // 12000.00 at 12% over 12 months, nothing paid yet: the textbook EMI of 1066.19
+        loan(LoanType.PERSONAL, LoanStatus.ACTIVE, "12000.00", "12.0", 12, 0);
+        // 1% over 30 years: 300 bp more raises the installment by about half, so it is at risk
+        loan(LoanType.HOME, LoanStatus.ACTIVE, "100000.00", "1.0", 360, 0);
+        // Always at risk, whatever the shock
+        loan(LoanType.CAR, LoanStatus.DEFAULTED, "20000.00", "9.0", 60, 0);
+        // Fully repaid by the calendar: counted, with nothing outstanding
+        loan(LoanType.EDUCATION, LoanStatus.ACTIVE, "5000.00", "8.0", 12, 24);
+        // Not part of the exposed book
+        loan(LoanType.BUSINESS, LoanStatus.CLOSED, "50000.00", "10.0", 60, 0);
+        loan(LoanType.BUSINESS, LoanStatus.REJECTED, "50000.00", "10.0", 60, 0);
+
+        LoanStressReport report = loanStressService.run(Arrays.asList(300, 100, 100, 0));
+
+        assertThat(report.getLoans()).isEqualTo(4);
+        assertThat(report.getScenarios()).extracting(Scenario::getShockBp).containsExactly(0, 100, 300);
+
+        Scenario baseline = report.getScenarios().get(0);
+        assertThat(baseline.getTotal().getOutstanding()).isEqualByComparingTo("132000.00");
+        assertThat(baseline.getTotal().getAtRiskLoans()).isEqualTo(1);
+        assertThat(baseline.getTotal().getDefaultExposure()).isEqualByComparingTo("20000.00");
+        assertThat(segment(baseline, LoanType.PERSONAL, LoanStatus.ACTIVE).getMonthlyEmi()).isEqualByComparingTo("1066.19");
+        assertThat(segment(baseline, LoanType.EDUCATION, LoanStatus.ACTIVE).getOutstanding()).isEqualByComparingTo("0.00");
+        assertThat(baseline.getSegments()).extracting(Segment::getLoanType).doesNotContain(LoanType.BUSINESS);
+
+        Scenario shocked = report.getScenarios().get(2);
+        assertThat(segment(shocked, LoanType.PERSONAL, LoanStatus.ACTIVE).getAtRiskLoans()).isZero();
+        assertThat(segment(shocked, LoanType.HOME, LoanStatus.ACTIVE).getAtRiskLoans()).isEqualTo(1);
+        assertThat(shocked.getTotal().getAtRiskLoans()).isEqualTo(2);
+        assertThat(shocked.getTotal().getDefaultExposure()).isEqualByComparingTo("120000.00");
+        assertThat(shocked.getTotal().getMonthlyEmi()).isGreaterThan(baseline.getTotal().getMonthlyEmi());
+
+        assertThat(loanStressService.getLastReport()).containsSame(report);
+    }
+
+    @Test
+    void largeBookMatchesALoanByLoanReference() {
+        Random random = new Random(20261018L);
+        LoanType[] types = LoanType.values();
+        LoanStatus[] statuses = {LoanStatus.PENDING, LoanStatus.APPROVED, LoanStatus.ACTIVE,
+                LoanStatus.DEFAULTED, LoanStatus.CLOSED, LoanStatus.REJECTED};
+        // Enough loans for several chunks, each large enough to be split across the pool
+        for (int i = 0; i < 10_000; i++) {
+            int term = 6 + random.nextInt(355);
+            loan(types[random.nextInt(types.length)], statuses[random.nextInt(statuses.length)],
+                    BigDecimal.valueOf(100_000 + random.nextInt(100_000_000), 2).toPlainString(),
+                    BigDecimal.valueOf(random.nextInt(2500), 2).toPlainString(),
+                    term, random.nextInt(term + 12));
+        }
+
+        List<Integer> shocks = Arrays.asList(-100, 150, 400);
+        LoanStressReport report = loanStressService.run(shocks);
+
+        List<Integer> scenarios = new ArrayList<>(Collections.singletonList(0));
+        scenarios.addAll(shocks.stream().sorted().collect(Collectors.toList()));
+        assertThat(report.getScenarios()).extracting(Scenario::getShockBp).isEqualTo(scenarios);
+        for (Scenario scenario : report.getScenarios()) {
+            double[] expected = reference(scenario.getShockBp());
+            Segment total = scenario.getTotal();
+            String where = scenario.getShockBp() + " bp";
+            assertThat(total.getLoans()).as(where).isEqualTo((long) expected[0]);
+            assertThat(total.getAtRiskLoans()).as(where).isEqualTo((long) expected[1]);
+            assertThat(total.getOutstanding().doubleValue()).as(where).isCloseTo(expected[2], within(0.05));
+            assertThat(total.getMonthlyEmi().doubleValue()).as(where).isCloseTo(expected[3], within(0.05));
+            assertThat(total.getRemainingInterest().doubleValue()).as(where).isCloseTo(expected[4], within(0.05));
+            assertThat(total.getDefaultExposure().doubleValue()).as(where).isCloseTo(expected[5], within(0.05));
+
+            // The segments partition the total
+            assertThat(scenario.getSegments().stream().mapToLong(Segment::getLoans).sum()).isEqualTo(total.getLoans());
+            assertThat(scenario.getSegments().stream().mapToLong(Segment::getAtRiskLoans).sum())
+                    .isEqualTo(total.getAtRiskLoans());
+        }
+        assertThat(report.getLoans()).isEqualTo(report.getScenarios().get(0).getTotal().getLoans());
+    }
+
+    @Test
+    void invalidShocksAreRejected() {
+        List<Integer> eleven = IntStream.rangeClosed(1, 11).map(i -> i * 25).boxed().collect(Collectors.toList());
+        assertThatThrownBy(() -> loanStressService.run(eleven)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> loanStressService.run(Collections.singletonList(10_001)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> loanStressService.run(Arrays.asList(100, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void adminsRunAndReadReportsOverHttp() throws Exception {
+        loan(LoanType.PERSONAL, LoanStatus.ACTIVE, "12000.00", "12.0", 12, 0);
+        UserPrincipal admin = admin();
+
+        mockMvc.perform(post("/api/loans/stress").param("shocks", "200,50").with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.loans").value(1))
+                .andExpect(jsonPath("$.scenarios[*].shockBp").value(contains(0, 50, 200)))
+                .andExpect(jsonPath("$.scenarios[0].total.monthlyEmi").value(1066.19));
+        mockMvc.perform(get("/api/loans/stress").with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.scenarios.length()").value(3));
+        mockMvc.perform(post("/api/loans/stress").param("shocks", "20000").with(user(admin)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").exists());
+    }
+
+    /**
+     * Sums for one scenario over the exposed loans written so far, one loan at a time:
+     * {loans, atRisk, outstanding, emi, remainingInterest, exposure}
+     */
+    private double[] reference(int shockBp) {
+        double[] sums = new double[6];
+        for (Object[] loan : book) {
+            LoanStatus status = (LoanStatus) loan[1];
+            if (status == LoanStatus.CLOSED || status == LoanStatus.REJECTED) {
+                continue;
+            }
+            double principal = new BigDecimal((String) loan[2]).doubleValue();
+            double rate = new BigDecimal((String) loan[3]).doubleValue();
+            int term = (int) loan[4];
+            int paid = Math.min((int) loan[5], term);
+            int remaining = term - paid;
+
+            double balance = 0;
+            double baseEmi = 0;
+            double shockedEmi = 0;
+            if (remaining > 0) {
+                balance = balanceAfter(principal, rate / 1200, term, paid);
+                baseEmi = installment(balance, rate / 1200, remaining);
+                shockedEmi = shockBp == 0 ? baseEmi : installment(balance, (rate + shockBp / 100.0) / 1200, remaining);
+            }
+            boolean atRisk = status == LoanStatus.DEFAULTED || (baseEmi > 0 && shockedEmi > baseEmi * 1.15);
+
+            sums[0]++;
+            sums[2] += balance;
+            sums[3] += shockedEmi;
+            sums[4] += shockedEmi * remaining - balance;
+            if (atRisk) {
+                sums[1]++;
+                sums[5] += balance;
+            }
+        }
+        return sums;
+    }
+
+    private static double installment(double balance, double monthlyRate, int months) {
+        if (monthlyRate <= 0) {
+            return balance / months;
+        }
+        double growth = Math.pow(1 + monthlyRate, months);
+        return balance * monthlyRate * growth / (growth - 1);
+    }
+
+    // Replays the installments rather than using the closed form
+    private static double balanceAfter(double principal, double monthlyRate, int term, int paid) {
+        double emi = installment(principal, monthlyRate, term);
+        double balance = principal;
+        for (int month = 0; month < paid; month++) {
+            balance = balance * (1 + monthlyRate) - emi;
+        }
+        return balance;
+    }
+
+    private void loan(LoanType type, LoanStatus status, String principal, String rate, int term, int monthsAgo) {
+        jdbcTemplate.update("INSERT INTO loans (loan_number, loan_type, principal_amount, interest_rate, term_months, " +
+                        "user_id, start_date, status, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)",
+                "STRESS" + book.size() + "-" + borrower.getId(), type.name(), new BigDecimal(principal),
+                new BigDecimal(rate), term, borrower.getId(), Date.valueOf(LocalDate.now().minusMonths(monthsAgo)),
+                status.name());
+        book.add(new Object[]{type, status, principal, rate, term, monthsAgo});
+    }
+
+    private static Segment segment(Scenario scenario, LoanType type, LoanStatus status) {
+        return scenario.getSegments().stream()
+                .filter(segment -> segment.getLoanType() == type && segment.getStatus() == status)
+                .findFirst().orElseThrow();
+    }
+
+    private static UserPrincipal admin() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("stress-admin");
+        user.setFirstName("Stress");
+        Role role = new Role();
+        role.setName(Role.ERole.ROLE_ADMIN);
+        user.setRoles(Collections.singleton(role));
+        return UserPrincipal.of(user);
+    }
+}
@@ -0,0 +1,260 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.SecurityConfigRepository;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.QueryCounter;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.unauthenticated;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LoginAttemptTrackerTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SecurityConfigRepository securityConfigRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final AtomicLong now = new AtomicLong(System.currentTimeMillis());
+    private final List<LoginAttemptTracker> trackers = new ArrayList<>();
+
+    @AfterEach
+    void stopTrackers() throws InterruptedException {
+        for (LoginAttemptTracker tracker : trackers) {
+            tracker.stop();
+        }
+    }
+
+    @Test
+    void concurrentFailuresLockOnceAndWriteOneRow() throws Exception {
+        LoginAttemptTracker tracker = tracker();
+        User user = TestAccounts.user(userRepository);
+
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String address = "10.1.0." + t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 20; i++) {
+                    tracker.recordFailure(user.getUsername(), address);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(tracker.isLocked(user.getUsername(), "10.9.9.9")).isTrue();
+        assertThat(tracker.getMetrics().get("failures")).isEqualTo(320L);
+        assertThat(tracker.getMetrics().get("locks")).isEqualTo(1L);
+
+        await(() -> (long) tracker.getMetrics().get("lockChangesWritten") == 1);
+        assertThat(lockRows(user)).isEqualTo(1);
+        assertThat(isStoredLocked(user)).isTrue();
+    }
+
+    @Test
+    void failuresBelowTheLimitCostNoQueries() {
+        LoginAttemptTracker tracker = tracker();
+        User user = TestAccounts.user(userRepository);
+
+        QueryCounter.reset();
+        for (int i = 0; i < 4; i++) {
+            assertThat(tracker.isLocked(user.getUsername(), "10.2.0.1")).isFalse();
+            tracker.recordFailure(user.getUsername(), "10.2.0.1");
+        }
+
+        assertThat(QueryCounter.count()).isZero();
+        assertThat(tracker.getMetrics().get("lockChangesPending")).isEqualTo(0);
+        assertThat(lockRows(user)).isZero();
+    }
+
+    @Test
+    void manyLocksAreStoredTogether() throws Exception {
+        LoginAttemptTracker tracker = tracker();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(TestAccounts.user(userRepository));
+        }
+
+        // Locks queued faster than the writer flushes
+        for (User user : users) {
+            for (int i = 0; i < 5; i++) {
+                tracker.recordFailure(user.getUsername(), null);
+            }
+        }
+
+        await(() -> (long) tracker.getMetrics().get("lockChangesWritten") == users.size());
+        for (User user : users) {
+            assertThat(isStoredLocked(user)).as(user.getUsername()).isTrue();
+        }
+    }
+
+    @Test
+    void oldFailuresSlideOutOfTheWindow() {
+        LoginAttemptTracker tracker = tracker();
+        String username = "nobody-" + System.nanoTime();
+
+        for (int i = 0; i < 4; i++) {
+            tracker.recordFailure(username, null);
+        }
+        // The window is 15 one-minute buckets, so these four are forgotten by minute 15
+        now.addAndGet(15 * MINUTE);
+        for (int i = 0; i < 4; i++) {
+            tracker.recordFailure(username, null);
+        }
+        assertThat(tracker.isLocked(username, null)).isFalse();
+
+        now.addAndGet(14 * MINUTE);
+        tracker.recordFailure(username, null);
+        assertThat(tracker.isLocked(username, null)).isTrue();
+    }
+
+    @Test
+    void locksExpireAndTheUnlockIsStored() {
+        LoginAttemptTracker tracker = tracker();
+        User user = TestAccounts.user(userRepository);
+        for (int i = 0; i < 5; i++) {
+            tracker.recordFailure(user.getUsername(), null);
+        }
+        await(() -> isStoredLocked(user));
+
+        now.addAndGet(15 * MINUTE);
+        assertThat(tracker.isLocked(user.getUsername(), null)).isFalse();
+        await(() -> !isStoredLocked(user));
+    }
+
+    @Test
+    void storedLocksAreRestoredOnStart() {
+        LoginAttemptTracker first = tracker();
+        User user = TestAccounts.user(userRepository);
+        for (int i = 0; i < 5; i++) {
+            first.recordFailure(user.getUsername(), null);
+        }
+        await(() -> isStoredLocked(user));
+
+        LoginAttemptTracker restarted = tracker();
+        assertThat(restarted.isLocked(user.getUsername(), null)).isTrue();
+    }
+
+    @Test
+    void oneAddressIsBlockedAcrossUsernames() {
+        LoginAttemptTracker tracker = tracker();
+        for (int i = 0; i < 100; i++) {
+            tracker.recordFailure("sprayed-" + i + "-" + System.nanoTime(), "10.3.0.1");
+        }
+
+        assertThat(tracker.isLocked("anyone", "10.3.0.1")).isTrue();
+        assertThat(tracker.isLocked("anyone", "10.3.0.2")).isFalse();
+    }
+
+    @Test
+    void formLoginIsRefusedOnceLockedEvenWithTheRightPassword() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        user.setPassword(passwordEncoder.encode("correct horse"));
+        userRepository.save(user);
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(fromOwnAddress(formLogin().user(user.getUsername()).password("wrong")))
+                    .andExpect(unauthenticated());
+        }
+        mockMvc.perform(fromOwnAddress(formLogin().user(user.getUsername()).password("correct horse")))
+                .andExpect(unauthenticated());
+
+        User other = TestAccounts.user(userRepository);
+        other.setPassword(passwordEncoder.encode("correct horse"));
+        userRepository.save(other);
+        mockMvc.perform(fromOwnAddress(formLogin().user(other.getUsername()).password("correct horse")))
+                .andExpect(authenticated());
+    }
+
+    /**
+     * Its own client address, so failed logins from other tests in this context do not count towards its address limit
+     */
+    private static RequestBuilder fromOwnAddress(RequestBuilder login) {
+        return context -> {
+            MockHttpServletRequest request = login.buildRequest(context);
+            request.setRemoteAddr("10.4.0.1");
+            return request;
+        };
+    }
+
+    private LoginAttemptTracker tracker() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(userRepository, securityConfigRepository,
+                transactionManager, 15, 5, 100, 15, 100_000, 20, now::get);
+        tracker.start();
+        trackers.add(tracker);
+        return tracker;
+    }
+
+    private long lockRows(User user) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM security_configs WHERE user_id = ?",
+                Long.class, user.getId());
+    }
+
+    private boolean isStoredLocked(User user) {
+        return jdbcTemplate.queryForList("SELECT account_locked FROM security_configs WHERE user_id = ?",
+                Boolean.class, user.getId()).contains(true);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out waiting").isLessThan(deadline);
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
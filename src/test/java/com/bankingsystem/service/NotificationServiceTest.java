@@ -0,0 +1,87 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Notification;
+import com.bankingsystem.model.Notification.DeliveryChannel;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationServiceTest {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void inboxPagesCoverInAppNotificationsOnceInOrder() {
+        User user = TestAccounts.user(userRepository);
+        User other = TestAccounts.user(userRepository);
+
+        // Four distinct timestamps, so most rows tie on created_at and only the id orders them
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 9, 0);
+        DeliveryChannel[] channels = DeliveryChannel.values();
+        for (int i = 0; i < 80; i++) {
+            insert(i % 5 == 0 ? other : user, channels[i % channels.length], base.plusMinutes(i % 4));
+        }
+
+        List<Long> expected = jdbcTemplate.queryForList(
+                "SELECT id FROM notifications WHERE user_id = ? AND delivery_channel = 'IN_APP' " +
+                        "ORDER BY created_at DESC, id DESC",
+                Long.class, user.getId());
+
+        List<Long> walked = new ArrayList<>();
+        LocalDateTime beforeDate = null;
+        Long beforeId = null;
+        while (true) {
+            Slice<Notification> page = notificationService.getInbox(user.getId(), beforeDate, beforeId, 6);
+            page.forEach(notification -> walked.add(notification.getId()));
+            if (!page.hasNext()) {
+                break;
+            }
+            Notification last = page.getContent().get(page.getNumberOfElements() - 1);
+            beforeDate = last.getCreatedAt();
+            beforeId = last.getId();
+        }
+
+        // Every fourth row is in-app and every fifth belongs to the other user
+        assertThat(expected).hasSize(16);
+        assertThat(walked).isEqualTo(expected);
+    }
+
+    @Test
+    void inboxIndexIsOrderedLikeTheInbox() {
+        List<String> columns = jdbcTemplate.queryForList(
+                "SELECT CONCAT(COLUMN_NAME, ' ', ORDERING_SPECIFICATION) FROM INFORMATION_SCHEMA.INDEX_COLUMNS " +
+                        "WHERE TABLE_NAME = 'NOTIFICATIONS' AND INDEX_NAME = 'IDX_NOTIFICATIONS_USER_CHANNEL_CREATED' " +
+                        "ORDER BY ORDINAL_POSITION",
+                String.class);
+        assertThat(columns).containsExactly("USER_ID ASC", "DELIVERY_CHANNEL ASC", "CREATED_AT DESC", "ID DESC");
+    }
+
+    private void insert(User user, DeliveryChannel channel, LocalDateTime createdAt) {
+        Long id = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR notification_seq", Long.class);
+        jdbcTemplate.update("INSERT INTO notifications (id, user_id, title, message, type, delivery_channel, " +
+                        "created_at, is_read, priority) VALUES (?, ?, 'Title', 'Message', 'SYSTEM', ?, ?, false, 1)",
+                id, user.getId(), channel.name(), Timestamp.valueOf(createdAt));
+    }
+}
@@ -0,0 +1,95 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.event.AccountPostingEvent;
+import com.bankingsystem.event.OutboxListener;
+import com.bankingsystem.model.OutboxDeadLetter;
+import com.bankingsystem.repository.OutboxDeadLetterRepository;
+import com.bankingsystem.repository.OutboxEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Own database: relays of other cached test contexts would otherwise deliver these events
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox-relay-test;DB_CLOSE_DELAY=-1",
+        "outbox.max-attempts=3",
+        "outbox.poll-interval-ms=20",
+        "outbox.max-backoff-ms=200"
+})
+@ActiveProfiles("test")
+class OutboxRelayTest {
+
+    private static final long POISONED_ACCOUNT = 990_001L;
+    private static final Set<Long> RECEIVED = ConcurrentHashMap.newKeySet();
+
+    @TestConfiguration
+    static class PoisonedListener {
+
+        @Bean
+        OutboxListener poisonedListener() {
+            return events -> {
+                for (Object event : events) {
+                    if (event instanceof AccountPostingEvent
+                            && ((AccountPostingEvent) event).getAccountId() == POISONED_ACCOUNT) {
+                        throw new IllegalStateException("poisoned account");
+                    }
+                }
+                for (Object event : events) {
+                    if (event instanceof AccountPostingEvent) {
+                        RECEIVED.add(((AccountPostingEvent) event).getAccountId());
+                    }
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OutboxDeadLetterRepository deadLetterRepository;
+
+    @Test
+    void failingPartitionIsDeadLetteredWithoutBlockingTheOthers() throws Exception {
+        eventPublisher.publishEvent(AccountPostingEvent.statusChanged(POISONED_ACCOUNT));
+        Set<Long> healthy = LongStream.rangeClosed(990_002L, 990_041L).boxed().collect(Collectors.toSet());
+        for (Long accountId : healthy) {
+            eventPublisher.publishEvent(AccountPostingEvent.statusChanged(accountId));
+        }
+
+        await(() -> RECEIVED.containsAll(healthy));
+        await(() -> deadLetterRepository.findAll().stream()
+                .anyMatch(deadLetter -> deadLetter.getPartitionKey().equals("account:" + POISONED_ACCOUNT)));
+
+        List<OutboxDeadLetter> deadLetters = deadLetterRepository.findAll();
+        assertThat(deadLetters).hasSize(1);
+        assertThat(deadLetters.get(0).getAttempts()).isEqualTo(3);
+        assertThat(deadLetters.get(0).getLastError()).isEqualTo("poisoned account");
+        assertThat(RECEIVED).doesNotContain(POISONED_ACCOUNT);
+        await(() -> outboxEventRepository.count() == 0);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
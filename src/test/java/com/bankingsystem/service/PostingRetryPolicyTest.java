@@ -0,0 +1,30 @@
+package com.bankingsystem.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostingRetryPolicyTest {
+
+    @Test
+    void retriesConflictsAndReportsOnlyMaskedAccountNumbers() {
+        PostingRetryPolicy policy = new PostingRetryPolicy(5, 1, 2);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.execute("ACC1234567890", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return "posted";
+        });
+
+        assertThat(result).isEqualTo("posted");
+        Map<String, Object> metrics = policy.getMetrics();
+        assertThat(metrics.get("retries")).isEqualTo(2L);
+        assertThat(metrics.get("hotAccounts")).isEqualTo(Map.of("****7890", 2L));
+    }
+}
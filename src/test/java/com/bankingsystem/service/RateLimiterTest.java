@@ -0,0 +1,133 @@
+package com.bankingsystem.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // Starts well away from zero so the arithmetic is checked with a realistic nanoTime
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toNanos(3));
+
+    @Test
+    void burstIsAllowedThenTheWaitIsOneInterval() {
+        // 20 a minute is one token every 3 seconds
+        RateLimiter limiter = limiter(100);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire("login", "ip:10.0.0.1")).isZero();
+        }
+        assertThat(limiter.tryAcquire("login", "ip:10.0.0.1")).isEqualTo(3 * SECOND);
+
+        now.addAndGet(SECOND);
+        assertThat(limiter.tryAcquire("login", "ip:10.0.0.1")).isEqualTo(2 * SECOND);
+        now.addAndGet(2 * SECOND);
+        assertThat(limiter.tryAcquire("login", "ip:10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("login", "ip:10.0.0.1")).isPositive();
+
+        assertThat(limiter.getMetrics().get("allowed")).isEqualTo(11L);
+        assertThat(limiter.getMetrics().get("limited")).isEqualTo(3L);
+    }
+
+    @Test
+    void concurrentRequestsShareOneBurst() throws Exception {
+        RateLimiter limiter = limiter(100);
+        AtomicInteger allowed = new AtomicInteger();
+
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.tryAcquire("transfer", "user:alice") == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // The clock stands still, so nothing refills: exactly the burst gets through
+        assertThat(allowed.get()).isEqualTo(10);
+        assertThat(limiter.getMetrics().get("limited")).isEqualTo(1600L - 10);
+    }
+
+    @Test
+    void keysAndRoutesHaveTheirOwnBuckets() {
+        RateLimiter limiter = limiter(100);
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire("login", "ip:10.0.0.1");
+        }
+
+        assertThat(limiter.tryAcquire("login", "ip:10.0.0.1")).isPositive();
+        assertThat(limiter.tryAcquire("login", "ip:10.0.0.2")).isZero();
+        assertThat(limiter.tryAcquire("transfer", "ip:10.0.0.1")).isZero();
+    }
+
+    @Test
+    void refilledBucketsAreSweptAndAFullTableLetsRequestsThrough() {
+        RateLimiter limiter = limiter(2);
+        limiter.tryAcquire("login", "ip:10.0.0.1");
+        limiter.tryAcquire("login", "ip:10.0.0.2");
+
+        // No room for a third key: not limited, only counted
+        for (int i = 0; i < 20; i++) {
+            assertThat(limiter.tryAcquire("login", "ip:10.0.0.3")).isZero();
+        }
+        assertThat(limiter.getMetrics().get("untracked")).isEqualTo(20L);
+
+        limiter.evictIdleBuckets();
+        assertThat(limiter.getMetrics().get("buckets")).isEqualTo(2);
+
+        // One token each, refilled after 3 seconds
+        now.addAndGet(3 * SECOND);
+        limiter.evictIdleBuckets();
+        assertThat(limiter.getMetrics().get("buckets")).isEqualTo(0);
+        assertThat(limiter.getMetrics().get("evicted")).isEqualTo(2L);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire("login", "ip:10.0.0.3")).isZero();
+        }
+        assertThat(limiter.tryAcquire("login", "ip:10.0.0.3")).isPositive();
+    }
+
+    @Test
+    void onlyPostsToLimitedPathsHaveARoute() {
+        RateLimiter limiter = limiter(100);
+        assertThat(limiter.routeFor("POST", "/login")).isEqualTo("login");
+        assertThat(limiter.routeFor("POST", "/transactions/transfer")).isEqualTo("transfer");
+        assertThat(limiter.routeFor("POST", "/transactions/new")).isEqualTo("new-transaction");
+        assertThat(limiter.routeFor("GET", "/login")).isNull();
+        assertThat(limiter.routeFor("POST", "/accounts")).isNull();
+
+        RateLimiter disabled = new RateLimiter(false, 100, 20, 10, 30, 10, 30, 10, now::get);
+        assertThat(disabled.routeFor("POST", "/login")).isNull();
+
+        RateLimiter noLoginLimit = new RateLimiter(true, 100, 0, 10, 30, 10, 30, 10, now::get);
+        assertThat(noLoginLimit.routeFor("POST", "/login")).isNull();
+    }
+
+    private RateLimiter limiter(int maxBuckets) {
+        return new RateLimiter(true, maxBuckets, 20, 10, 30, 10, 30, 10, now::get);
+    }
+}
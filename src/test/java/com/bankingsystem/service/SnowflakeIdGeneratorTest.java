@@ -0,0 +1,143 @@
+package com.bankingsystem.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final long EPOCH_MILLIS = 1704067200000L;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+
+    @Test
+    void idsAreUniqueAndIncreasingAcrossThreads() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        int threads = 8;
+        int perThread = 100_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                long[] ids = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = generator.nextId();
+                }
+                return ids;
+            }));
+        }
+
+        Set<Long> seen = new HashSet<>(threads * perThread * 2);
+        for (Future<long[]> future : futures) {
+            long[] ids = future.get(60, TimeUnit.SECONDS);
+            for (int i = 0; i < ids.length; i++) {
+                assertThat(seen.add(ids[i])).as("duplicate id %d", ids[i]).isTrue();
+                if (i > 0) {
+                    assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+                }
+                assertThat((ids[i] >>> SEQUENCE_BITS) & ((1 << NODE_BITS) - 1)).isEqualTo(7);
+            }
+        }
+        pool.shutdown();
+        assertThat(seen).hasSize(threads * perThread);
+    }
+
+    @Test
+    void clockSteppingBackDoesNotRepeatIds() {
+        AtomicLong now = new AtomicLong(EPOCH_MILLIS + 1_000_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, now::get);
+
+        long before = generator.nextId();
+        now.addAndGet(-5_000);
+        long during = generator.nextId();
+        long stillBehind = generator.nextId();
+        now.addAndGet(10_000);
+        long after = generator.nextId();
+
+        assertThat(during).isGreaterThan(before);
+        assertThat(stillBehind).isGreaterThan(during);
+        assertThat(after).isGreaterThan(stillBehind);
+        // Once the clock is ahead again, ids carry its time
+        assertThat(millisOf(after)).isEqualTo(now.get() - EPOCH_MILLIS);
+    }
+
+    @Test
+    void exhaustedSequenceBorrowsTheNextMillisecond() {
+        long frozen = EPOCH_MILLIS + 2_000_000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> frozen);
+
+        int perMillisecond = 1 << SEQUENCE_BITS;
+        long previous = -1;
+        for (int i = 0; i < perMillisecond * 3; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            assertThat(millisOf(id)).isEqualTo(frozen - EPOCH_MILLIS + i / perMillisecond);
+            assertThat(id & (perMillisecond - 1)).isEqualTo(i % perMillisecond);
+            previous = id;
+        }
+    }
+
+    @Test
+    void encodedNumbersAreFixedWidthAndSortLikeTheirIds() {
+        AtomicLong now = new AtomicLong(EPOCH_MILLIS);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, now::get);
+        String previous = "";
+        for (int i = 0; i < 10_000; i++) {
+            // Spread over decades so every digit position changes
+            now.addAndGet(i * 7919L);
+            String number = generator.nextTransactionNumber();
+            assertThat(number).hasSize(16).startsWith("TXN").matches("TXN[0-9A-HJKMNP-TV-Z]{13}");
+            assertThat(number).isGreaterThan(previous);
+            previous = number;
+        }
+        assertThat(generator.nextReferenceNumber()).hasSize(16).startsWith("REF");
+    }
+
+    @Test
+    void accountNumbersCarryALuhnCheckDigit() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0);
+        for (int i = 0; i < 10_000; i++) {
+            String number = generator.nextAccountNumber();
+            assertThat(number).hasSize(10).matches("[1-9][0-9]{9}");
+            assertThat(luhnValid(number)).as(number).isTrue();
+        }
+    }
+
+    @Test
+    void nodeIdMustFitInTenBits() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(1024)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long millisOf(long id) {
+        return id >>> (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    private static boolean luhnValid(String number) {
+        int sum = 0;
+        boolean doubled = false;
+        for (int i = number.length() - 1; i >= 0; i--) {
+            int digit = number.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return sum % 10 == 0;
+    }
+}
@@ -0,0 +1,135 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Heap held while exporting one very long statement. Run with {@code -Dbenchmark=true};
+ * {@code -Dbenchmark.rows} sets the number of postings on the account (default 5M).
+ * The journal lives in a file database under target/ so it does not have to fit in the heap.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:file:./target/benchmark/statements;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StatementServiceBenchmarkTest {
+
+    private static final long FIRST_ID = 1_000_000_000L;
+    private static final int LOAD_CHUNK = 1_000_000;
+    private static final long HEAP_CEILING = 64L * 1024 * 1024;
+
+    @Autowired
+    private StatementService statementService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void exportHeapStaysFlat() throws Exception {
+        long rows = Long.getLong("benchmark.rows", 5_000_000L);
+        User user = TestAccounts.user(userRepository);
+        Account account = TestAccounts.savings(accountService, user, "1000.00");
+        Account other = TestAccounts.savings(accountService, user, "1000.00");
+
+        jdbcTemplate.update("DELETE FROM transactions WHERE id >= ?", FIRST_ID);
+        long start = System.nanoTime();
+        for (long from = 1; from <= rows; from += LOAD_CHUNK) {
+            // Alternately in and out, one posting a second
+            jdbcTemplate.update("INSERT INTO transactions (id, transaction_number, transaction_type, amount, " +
+                            "source_account_id, destination_account_id, transaction_date, status, description) " +
+                            "SELECT ? + r.x, CONCAT('STMT', r.x), 'TRANSFER', 1.00, " +
+                            "CASE WHEN MOD(r.x, 2) = 0 THEN ? ELSE ? END, CASE WHEN MOD(r.x, 2) = 0 THEN ? ELSE ? END, " +
+                            "DATEADD('SECOND', r.x, TIMESTAMP '2020-01-01 00:00:00'), 'COMPLETED', 'Statement benchmark' " +
+                            "FROM SYSTEM_RANGE(?, ?) r",
+                    FIRST_ID, other.getId(), account.getId(), account.getId(), other.getId(),
+                    from, Math.min(rows, from + LOAD_CHUNK - 1));
+        }
+        System.out.printf("rows=%d loadSeconds=%.1f%n", rows, (System.nanoTime() - start) / 1e9);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long baseline = retainedHeap(memory);
+        AtomicLong peak = new AtomicLong();
+        AtomicBoolean exporting = new AtomicBoolean(true);
+        // Sample what survives a full collection while the export runs
+        Thread sampler = new Thread(() -> {
+            while (exporting.get()) {
+                peak.accumulateAndGet(retainedHeap(memory), Math::max);
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+
+        CountingOutputStream out = new CountingOutputStream();
+        start = System.nanoTime();
+        try {
+            statementService.writeStatement(account.getAccountNumber(), LocalDateTime.of(2020, 1, 1, 0, 0),
+                    LocalDateTime.of(2100, 1, 1, 0, 0), StatementService.Format.CSV, out);
+        } finally {
+            exporting.set(false);
+            sampler.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long growth = peak.get() - baseline;
+
+        System.out.printf("rows=%d exportSeconds=%.1f rows/s=%.0f bytes=%d retainedGrowthMB=%.1f%n",
+                rows, seconds, rows / seconds, out.bytes, growth / 1048576.0);
+        // Header, opening balance, the account's own opening deposit and every posting
+        assertThat(out.lines).isEqualTo(rows + 3);
+        assertThat(growth).isLessThan(HEAP_CEILING);
+    }
+
+    private static long retainedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long bytes;
+        private long lines;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    lines++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class StatementServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 6, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2025, 12, 31, 0, 0);
+
+    @Autowired
+    private StatementService statementService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void csvCarriesTheOpeningAndRunningBalanceFromTheJournal() {
+        Fixture fixture = fixture();
+
+        String[] lines = export(fixture.account, StatementService.Format.CSV).split("\n");
+
+        assertThat(lines).containsExactly(
+                "transaction_number,date,type,status,description,reference,amount,balance",
+                ",2025-06-01T00:00,OPENING_BALANCE,,,,,150.00",
+                fixture.numbers.get(2) + ",2025-06-01T00:00,DEPOSIT,COMPLETED,\"Rent, \"\"June\"\"\",,300.00,450.00",
+                fixture.numbers.get(3) + ",2025-06-02T09:30,WITHDRAWAL,PENDING,,,-20.00,450.00",
+                fixture.numbers.get(4) + ",2025-06-03T12:00,TRANSFER,COMPLETED,Refund,REF1,10.00,460.00");
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws Exception {
+        Fixture fixture = fixture();
+
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : export(fixture.account, StatementService.Format.NDJSON).split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+
+        assertThat(rows).hasSize(4);
+        assertThat(rows.get(0).get("type").asText()).isEqualTo("OPENING_BALANCE");
+        assertThat(rows.get(0).get("balance").asText()).isEqualTo("150.00");
+        assertThat(rows.get(1).get("description").asText()).isEqualTo("Rent, \"June\"");
+        assertThat(rows.get(1).get("balance").asText()).isEqualTo("450.00");
+        assertThat(rows.get(2).get("status").asText()).isEqualTo("PENDING");
+        assertThat(rows.get(2).get("amount").asText()).isEqualTo("-20.00");
+        assertThat(rows.get(3).get("transactionNumber").asText()).isEqualTo(fixture.numbers.get(4));
+        assertThat(rows.get(3).get("reference").asText()).isEqualTo("REF1");
+        assertThat(rows.get(3).get("balance").asText()).isEqualTo("460.00");
+    }
+
+    @Test
+    void openingBalanceIgnoresTheProjectedAccountBalance() {
+        // The projection says 1000.00 from the opening deposit, which is dated today and so after the period
+        Fixture fixture = fixture();
+        jdbcTemplate.update("UPDATE accounts SET balance = 99999.99 WHERE id = ?", fixture.account.getId());
+
+        String[] lines = export(fixture.account, StatementService.Format.CSV).split("\n");
+        assertThat(lines[1]).endsWith(",150.00");
+        assertThat(lines[lines.length - 1]).endsWith(",460.00");
+    }
+
+    /**
+     * Two completed postings before the period, three inside it (one pending) and one on the end date
+     */
+    private Fixture fixture() {
+        User user = TestAccounts.user(userRepository);
+        Account account = TestAccounts.savings(accountService, user, "1000.00");
+        Account other = TestAccounts.savings(accountService, user, "1000.00");
+
+        Fixture fixture = new Fixture(account);
+        fixture.insert("DEPOSIT", "200.00", null, account, LocalDateTime.of(2025, 1, 10, 8, 0), "COMPLETED", null, null);
+        fixture.insert("TRANSFER", "50.00", account, other, LocalDateTime.of(2025, 3, 1, 8, 0), "COMPLETED", null, null);
+        fixture.insert("DEPOSIT", "300.00", null, account, FROM, "COMPLETED", "Rent, \"June\"", null);
+        fixture.insert("WITHDRAWAL", "20.00", account, null, LocalDateTime.of(2025, 6, 2, 9, 30), "PENDING", null, null);
+        fixture.insert("TRANSFER", "10.00", other, account, LocalDateTime.of(2025, 6, 3, 12, 0), "COMPLETED", "Refund", "REF1");
+        fixture.insert("DEPOSIT", "1.00", null, account, TO, "COMPLETED", null, null);
+        return fixture;
+    }
+
+    private String export(Account account, StatementService.Format format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statementService.writeStatement(account.getAccountNumber(), FROM, TO, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private final class Fixture {
+        private final Account account;
+        private final List<String> numbers = new ArrayList<>();
+
+        private Fixture(Account account) {
+            this.account = account;
+        }
+
+        private void insert(String type, String amount, Account source, Account destination, LocalDateTime date,
+                            String status, String description, String reference) {
+            Long id = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR transaction_seq", Long.class);
+            String number = "ST" + id;
+            jdbcTemplate.update("INSERT INTO transactions (id, transaction_number, transaction_type, amount, " +
+                            "source_account_id, destination_account_id, transaction_date, status, description, " +
+                            "reference_number) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    id, number, type, new BigDecimal(amount), source == null ? null : source.getId(),
+                    destination == null ? null : destination.getId(), Timestamp.valueOf(date), status,
+                    description, reference);
+            numbers.add(number);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.AccountRepository;
+import com.bankingsystem.repository.TransactionRepository;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionJournalWriterTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionJournalWriter journalWriter;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void rejectedPostingsLeaveNoJournalRowsAndDoNotDisturbTheirBatch() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // Minimum balance 100, so exactly 90 withdrawals of 10 fit
+            accounts.add(TestAccounts.savings(accountService, user, "1000.00"));
+        }
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService posters = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8 * 120; i++) {
+            String accountNumber = accounts.get(i % accounts.size()).getAccountNumber();
+            futures.add(posters.submit(() -> {
+                try {
+                    accountService.withdraw(accountNumber, new BigDecimal("10.00"));
+                    succeeded.incrementAndGet();
+                } catch (RuntimeException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        posters.shutdown();
+
+        assertThat(succeeded.get()).isEqualTo(8 * 90);
+        assertThat(rejected.get()).isEqualTo(8 * 30);
+        for (Account account : accounts) {
+            Account stored = accountRepository.findByAccountNumber(account.getAccountNumber()).orElseThrow();
+            assertThat(stored.getBalance()).isEqualByComparingTo("100.00");
+            assertThat(transactionRepository.findBySourceAccount(stored)).hasSize(90);
+        }
+    }
+
+    /**
+     * Throughput with 1, 16 and 64 concurrent posters; run with {@code -Dbenchmark=true}
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void postingThroughput() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        String warmUpAccount = TestAccounts.savings(accountService, user, "1000.00").getAccountNumber();
+        for (int i = 0; i < 2000; i++) {
+            accountService.deposit(warmUpAccount, BigDecimal.ONE);
+        }
+
+        for (int posters : new int[] {1, 16, 64}) {
+            List<String> accountNumbers = new ArrayList<>();
+            for (int i = 0; i < posters; i++) {
+                accountNumbers.add(TestAccounts.savings(accountService, user, "1000.00").getAccountNumber());
+            }
+
+            int postingsPerPoster = 8000 / posters;
+            ExecutorService pool = Executors.newFixedThreadPool(posters);
+            long batchesBefore = (long) journalWriter.getMetrics().get("batches");
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (String accountNumber : accountNumbers) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < postingsPerPoster; i++) {
+                        accountService.deposit(accountNumber, BigDecimal.ONE);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.MINUTES);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            pool.shutdown();
+
+            long total = (long) postingsPerPoster * posters;
+            long batches = (long) journalWriter.getMetrics().get("batches") - batchesBefore;
+            System.out.printf("posters=%d postings=%d postings/s=%.0f averageBatchSize=%.1f%n",
+                    posters, total, total / (elapsedNanos / 1e9), (double) total / batches);
+        }
+    }
+}
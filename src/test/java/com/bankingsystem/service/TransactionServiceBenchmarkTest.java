@@ -0,0 +1,98 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Transaction;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page latency of {@link TransactionService#getUserTransactions} on a large journal.
+ * Run with {@code -Dbenchmark=true}; {@code -Dbenchmark.rows} sets the journal size
+ * (default 10M). The journal lives in a file database under target/ so it does not
+ * have to fit in the heap.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:file:./target/benchmark/transactions;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TransactionServiceBenchmarkTest {
+
+    private static final long FIRST_ID = 1_000_000_000L;
+    private static final int LOAD_CHUNK = 1_000_000;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void deepPageLatency() {
+        long rows = Long.getLong("benchmark.rows", 10_000_000L);
+        User user = TestAccounts.user(userRepository);
+        User others = TestAccounts.user(userRepository);
+        List<Long> accountIds = new ArrayList<>();
+        accountIds.add(TestAccounts.savings(accountService, user, "1000.00").getId());
+        accountIds.add(TestAccounts.savings(accountService, user, "1000.00").getId());
+        for (int i = 0; i < 198; i++) {
+            accountIds.add(TestAccounts.savings(accountService, others, "1000.00").getId());
+        }
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_slots");
+        jdbcTemplate.execute("CREATE TABLE bench_slots (slot INT PRIMARY KEY, account_id BIGINT)");
+        for (int i = 0; i < accountIds.size(); i++) {
+            jdbcTemplate.update("INSERT INTO bench_slots VALUES (?, ?)", i, accountIds.get(i));
+        }
+        jdbcTemplate.update("DELETE FROM transactions WHERE id >= ?", FIRST_ID);
+
+        long start = System.nanoTime();
+        for (long from = 1; from <= rows; from += LOAD_CHUNK) {
+            // Three postings a second across 200 accounts; 6x+3 is odd, so no posting is to its own account
+            jdbcTemplate.update("INSERT INTO transactions (id, transaction_number, transaction_type, amount, " +
+                    "source_account_id, destination_account_id, transaction_date, status) " +
+                    "SELECT ? + r.x, CONCAT('BENCH', r.x), 'TRANSFER', 1.00, s.account_id, d.account_id, " +
+                    "DATEADD('SECOND', r.x / 3, TIMESTAMP '2020-01-01 00:00:00'), 'COMPLETED' " +
+                    "FROM SYSTEM_RANGE(?, ?) r " +
+                    "JOIN bench_slots s ON s.slot = MOD(r.x, 200) " +
+                    "JOIN bench_slots d ON d.slot = MOD(r.x * 7 + 3, 200)",
+                    FIRST_ID, from, Math.min(rows, from + LOAD_CHUNK - 1));
+        }
+        System.out.printf("rows=%d loadSeconds=%.1f%n", rows, (System.nanoTime() - start) / 1e9);
+
+        for (int round = 0; round < 3; round++) {
+            long firstPage = 0;
+            long deepPage = 0;
+            LocalDateTime beforeDate = null;
+            Long beforeId = null;
+            for (int page = 1; page <= 100; page++) {
+                long pageStart = System.nanoTime();
+                Slice<Transaction> slice = transactionService.getUserTransactions(user, beforeDate, beforeId, 20);
+                long elapsed = System.nanoTime() - pageStart;
+                if (page == 1) {
+                    firstPage = elapsed;
+                }
+                deepPage = elapsed;
+                Transaction last = slice.getContent().get(slice.getNumberOfElements() - 1);
+                beforeDate = last.getTransactionDate();
+                beforeId = last.getId();
+            }
+            System.out.printf("round=%d firstPageMs=%.2f page100Ms=%.2f%n", round, firstPage / 1e6, deepPage / 1e6);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Transaction;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionServiceTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void keysetPagesCoverOwnedAndJointAccountsOnceInOrder() {
+        User user = TestAccounts.user(userRepository);
+        User partner = TestAccounts.user(userRepository);
+        Account owned = TestAccounts.savings(accountService, user, "1000.00");
+        Account joint = accountService.createAccount(partner, Account.AccountType.SAVINGS, new BigDecimal("1000.00"),
+                null, true, user);
+        Account foreign = TestAccounts.savings(accountService, TestAccounts.user(userRepository), "1000.00");
+
+        // Five distinct timestamps, so most rows tie on transaction_date and only the id orders them
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 9, 0);
+        for (int i = 0; i < 60; i++) {
+            LocalDateTime date = base.plusMinutes(i % 5);
+            switch (i % 4) {
+                case 0:
+                    insert(owned.getId(), foreign.getId(), date);
+                    break;
+                case 1:
+                    insert(foreign.getId(), joint.getId(), date);
+                    break;
+                case 2:
+                    insert(owned.getId(), joint.getId(), date);
+                    break;
+                default:
+                    insert(foreign.getId(), null, date);
+            }
+        }
+
+        List<Long> expected = jdbcTemplate.queryForList(
+                "SELECT id FROM transactions WHERE source_account_id IN (?, ?) OR destination_account_id IN (?, ?) " +
+                        "ORDER BY transaction_date DESC, id DESC",
+                Long.class, owned.getId(), joint.getId(), owned.getId(), joint.getId());
+
+        List<Long> walked = new ArrayList<>();
+        LocalDateTime beforeDate = null;
+        Long beforeId = null;
+        while (true) {
+            Slice<Transaction> page = transactionService.getUserTransactions(user, beforeDate, beforeId, 7);
+            page.forEach(transaction -> walked.add(transaction.getId()));
+            if (!page.hasNext()) {
+                break;
+            }
+            Transaction last = page.getContent().get(page.getNumberOfElements() - 1);
+            beforeDate = last.getTransactionDate();
+            beforeId = last.getId();
+        }
+
+        // 45 inserted rows plus the two opening deposits
+        assertThat(expected).hasSize(47);
+        assertThat(walked).isEqualTo(expected);
+    }
+
+    @Test
+    void journalIndexesAreOrderedNewestFirst() {
+        // The pages are only read straight off these indexes if their order matches the query's
+        List<String> columns = jdbcTemplate.queryForList(
+                "SELECT CONCAT(INDEX_NAME, ' ', COLUMN_NAME, ' ', ORDERING_SPECIFICATION) " +
+                        "FROM INFORMATION_SCHEMA.INDEX_COLUMNS WHERE TABLE_NAME = 'TRANSACTIONS' " +
+                        "AND INDEX_NAME LIKE 'IDX_TRANSACTIONS_%_DATE' ORDER BY INDEX_NAME, ORDINAL_POSITION",
+                String.class);
+        assertThat(columns).containsExactly(
+                "IDX_TRANSACTIONS_DESTINATION_DATE DESTINATION_ACCOUNT_ID ASC",
+                "IDX_TRANSACTIONS_DESTINATION_DATE TRANSACTION_DATE DESC",
+                "IDX_TRANSACTIONS_DESTINATION_DATE ID DESC",
+                "IDX_TRANSACTIONS_SOURCE_DATE SOURCE_ACCOUNT_ID ASC",
+                "IDX_TRANSACTIONS_SOURCE_DATE TRANSACTION_DATE DESC",
+                "IDX_TRANSACTIONS_SOURCE_DATE ID DESC");
+    }
+
+    private void insert(Long sourceId, Long destinationId, LocalDateTime date) {
+        Long id = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR transaction_seq", Long.class);
+        jdbcTemplate.update("INSERT INTO transactions (id, transaction_number, transaction_type, amount, " +
+                        "source_account_id, destination_account_id, transaction_date, status) " +
+                        "VALUES (?, ?, 'TRANSFER', 1.00, ?, ?, ?, 'COMPLETED')",
+                id, "KS" + id, sourceId, destinationId, Timestamp.valueOf(date));
+    }
+}
@@ -0,0 +1,172 @@
+package com.bankingsystem.service;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Loan;
+import com.bankingsystem.model.User;
+import com.bankingsystem.model.UserFinancialSummary;
+import com.bankingsystem.repository.LoanRepository;
+import com.bankingsystem.repository.OutboxEventRepository;
+import com.bankingsystem.repository.UserFinancialSummaryRepository;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.support.TestAccounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+// Own database: relays of other cached test contexts would otherwise consume these events
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:user-summary-test;DB_CLOSE_DELAY=-1",
+        "summary.holdings-ttl-seconds=0"
+})
+@ActiveProfiles("test")
+class UserSummaryServiceTest {
+
+    @SpyBean
+    private UserSummaryService userSummaryService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserFinancialSummaryRepository summaryRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Test
+    void incrementalSummaryMatchesFullRecompute() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        User other = TestAccounts.user(userRepository);
+        Account first = TestAccounts.savings(accountService, user, "5000.00");
+        Account second = TestAccounts.savings(accountService, user, "5000.00");
+        Account foreign = TestAccounts.savings(accountService, other, "5000.00");
+        awaitQuiet();
+        userSummaryService.getSummary(user);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 40; i++) {
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(5000), 2);
+            switch (random.nextInt(5)) {
+                case 0:
+                    accountService.deposit(first.getAccountNumber(), amount);
+                    break;
+                case 1:
+                    accountService.withdraw(second.getAccountNumber(), amount);
+                    break;
+                case 2:
+                    accountService.transfer(first.getAccountNumber(), second.getAccountNumber(), amount);
+                    break;
+                case 3:
+                    accountService.transfer(second.getAccountNumber(), foreign.getAccountNumber(), amount);
+                    break;
+                default:
+                    accountService.transfer(foreign.getAccountNumber(), first.getAccountNumber(), amount);
+            }
+        }
+
+        await(() -> view(stored(user)).equals(view(userSummaryService.compute(user))));
+        assertThat(view(stored(user))).isEqualTo(view(userSummaryService.compute(user)));
+    }
+
+    @Test
+    void rebuildRacingAnEventIsNotStored() throws Exception {
+        User user = TestAccounts.user(userRepository);
+        Account account = TestAccounts.savings(accountService, user, "1000.00");
+        awaitQuiet();
+
+        // The first compute reads the tables, then a deposit commits and its event finds no summary row
+        AtomicBoolean raced = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Object computed = invocation.callRealMethod();
+            if (raced.compareAndSet(false, true)) {
+                accountService.deposit(account.getAccountNumber(), new BigDecimal("250.00"));
+                awaitQuiet();
+            }
+            return computed;
+        }).when(userSummaryService).compute(any(User.class));
+
+        UserFinancialSummary summary = userSummaryService.rebuild(user);
+
+        assertThat(summary.getTotalBalance()).isEqualByComparingTo("1250.00");
+        assertThat(stored(user).getTotalBalance()).isEqualByComparingTo("1250.00");
+        assertThat((long) userSummaryService.getMetrics().get("rejectedRebuilds")).isPositive();
+    }
+
+    @Test
+    void loanTotalsAreReadAgainOnceExpired() {
+        User user = TestAccounts.user(userRepository);
+        TestAccounts.savings(accountService, user, "1000.00");
+        assertThat(userSummaryService.getSummary(user).getActiveLoanEmiTotal()).isEqualByComparingTo("0");
+
+        Loan loan = new Loan();
+        loan.setLoanNumber("LN" + System.nanoTime());
+        loan.setLoanType(Loan.LoanType.PERSONAL);
+        loan.setPrincipalAmount(new BigDecimal("10000.00"));
+        loan.setInterestRate(new BigDecimal("12.0"));
+        loan.setTermMonths(12);
+        loan.setEmiAmount(new BigDecimal("888.49"));
+        loan.setUser(user);
+        loan.setStartDate(LocalDate.now());
+        loan.setStatus(Loan.LoanStatus.ACTIVE);
+        loanRepository.save(loan);
+
+        // The TTL is zero here, so the next read picks the loan up
+        assertThat(userSummaryService.getSummary(user).getActiveLoanEmiTotal()).isEqualByComparingTo("888.49");
+        assertThat(stored(user).getActiveLoanEmiTotal()).isEqualByComparingTo("888.49");
+    }
+
+    private UserFinancialSummary stored(User user) {
+        Optional<UserFinancialSummary> summary = summaryRepository.findById(user.getId());
+        assertThat(summary).isPresent();
+        return summary.get();
+    }
+
+    /**
+     * Until every committed event has been handed to the listeners; the relay deletes a row only after that
+     */
+    private void awaitQuiet() throws InterruptedException {
+        await(() -> outboxEventRepository.count() == 0);
+    }
+
+    /**
+     * The figures the dashboard shows; dates are left out since the event copy keeps more precision
+     */
+    private static List<String> view(UserFinancialSummary summary) {
+        List<String> view = summary.getAccounts().stream()
+                .map(balance -> balance.getAccountNumber() + "=" + balance.getBalance().stripTrailingZeros().toPlainString())
+                .collect(Collectors.toList());
+        view.add("total=" + summary.getTotalBalance().stripTrailingZeros().toPlainString());
+        summary.getRecentTransactions().forEach(recent -> view.add(recent.getTransactionNumber() + " "
+                + recent.getDirection() + " " + recent.getAmount().stripTrailingZeros().toPlainString()));
+        return view;
+    }
+
+    private static void await(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.get()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
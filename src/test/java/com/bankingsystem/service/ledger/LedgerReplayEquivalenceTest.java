@@ -0,0 +1,135 @@
+package com.bankingsystem.service.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Random postings against a shard, killed at a random point (no clean stop, no final snapshot)
+ * and rebuilt from its snapshot and WAL; the rebuilt state must match what was acknowledged.
+ */
+class LedgerReplayEquivalenceTest {
+
+    private static final int WAL_BYTES = 4 << 20;
+    private static final long SEED_BALANCE = 100_000;
+    private static final long MINIMUM_BALANCE = 10_000;
+    private static final String[] ACCOUNTS = {"ACC1", "ACC2", "ACC3", "ACC4", "ACC5"};
+
+    @TempDir
+    Path root;
+
+    @Test
+    void replayAfterKillMatchesAcknowledgedState() throws Exception {
+        for (long seed = 1; seed <= 20; seed++) {
+            runRound(seed, Files.createDirectory(root.resolve("round-" + seed)));
+        }
+    }
+
+    private void runRound(long seed, Path directory) throws Exception {
+        Random random = new Random(seed);
+        Map<String, Long> expected = new HashMap<>();
+        for (String account : ACCOUNTS) {
+            expected.put(account, SEED_BALANCE);
+        }
+        Map<String, Map<String, Long>> pending = new HashMap<>();
+        Set<String> confirmed = new HashSet<>();
+
+        LedgerShard shard = new LedgerShard(0, directory, WAL_BYTES, LedgerReplayEquivalenceTest::seed);
+        shard.recover();
+        shard.start();
+        // Seed every account up front so the model and the shard start from the same balances
+        for (String account : ACCOUNTS) {
+            shard.submit(() -> shard.credit("OPEN-" + account, account, 0, "inactive")).get();
+            shard.submit(() -> shard.confirm(Collections.singleton("OPEN-" + account))).get();
+        }
+
+        int operations = 500 + random.nextInt(1500);
+        for (int i = 0; i < operations; i++) {
+            String key = "T" + seed + "-" + i;
+            String account = ACCOUNTS[random.nextInt(ACCOUNTS.length)];
+            long cents = 1 + random.nextInt(20_000);
+            int choice = random.nextInt(1000);
+            if (choice < 350) {
+                shard.submit(() -> shard.credit(key, account, cents, "inactive")).get();
+                expected.merge(account, cents, Long::sum);
+                pending.computeIfAbsent(key, k -> new HashMap<>()).put(account, cents);
+            } else if (choice < 700) {
+                boolean allowed = expected.get(account) - cents >= MINIMUM_BALANCE;
+                boolean applied = succeeds(() -> shard.submit(
+                        () -> shard.debit(key, account, cents, "inactive", "minimum")).get());
+                assertThat(applied).as("debit %s", key).isEqualTo(allowed);
+                if (applied) {
+                    expected.merge(account, -cents, Long::sum);
+                    pending.computeIfAbsent(key, k -> new HashMap<>()).put(account, -cents);
+                }
+            } else if (choice < 850 && !pending.isEmpty()) {
+                String settled = randomKey(random, pending);
+                shard.submit(() -> shard.confirm(Collections.singleton(settled))).get();
+                pending.remove(settled);
+                confirmed.add(settled);
+            } else if (choice < 997 && !pending.isEmpty()) {
+                String reversed = randomKey(random, pending);
+                shard.submit(() -> shard.reverse(reversed)).get();
+                pending.remove(reversed)
+                        .forEach((reversedAccount, signed) -> expected.merge(reversedAccount, -signed, Long::sum));
+            } else {
+                shard.submit(shard::snapshot).get();
+                // Confirmations are not logged; only those since the last snapshot can come back
+                confirmed.clear();
+            }
+        }
+        Map<String, Long> live = shard.submit(shard::balances).get();
+        assertThat(live).isEqualTo(expected);
+
+        // Kill: abandon the running shard without stopping or snapshotting it
+        LedgerShard replayed = new LedgerShard(0, directory, WAL_BYTES, LedgerReplayEquivalenceTest::seed);
+        replayed.recover();
+
+        assertThat(replayed.balances()).as("balances after replay, seed %d", seed).isEqualTo(expected);
+        Set<String> replayedPending = new HashSet<>(replayed.pendingKeys());
+        assertThat(replayedPending).as("pending after replay, seed %d", seed).containsAll(pending.keySet());
+        replayedPending.removeAll(pending.keySet());
+        // Anything else pending was confirmed before the kill; startup settlement confirms it again
+        assertThat(confirmed).containsAll(replayedPending);
+        replayed.stop();
+        shard.stop();
+    }
+
+    private static String randomKey(Random random, Map<String, Map<String, Long>> pending) {
+        List<String> keys = new ArrayList<>(pending.keySet());
+        Collections.sort(keys);
+        return keys.get(random.nextInt(keys.size()));
+    }
+
+    private static boolean succeeds(Attempt attempt) throws Exception {
+        try {
+            attempt.run();
+            return true;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    private static Optional<AccountSeed> seed(String accountNumber) {
+        return Optional.of(new AccountSeed(SEED_BALANCE, MINIMUM_BALANCE, true));
+    }
+
+    @FunctionalInterface
+    private interface Attempt {
+        void run() throws Exception;
+    }
+}
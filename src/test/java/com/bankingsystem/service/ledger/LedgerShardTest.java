@@ -0,0 +1,84 @@
+package com.bankingsystem.service.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LedgerShardTest {
+
+    private static final int WAL_BYTES = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotReplacesTheWalAndSurvivesReopen() throws Exception {
+        LedgerShard shard = open();
+        shard.start();
+        shard.submit(() -> shard.credit("T1", "ACC1", 500, "inactive")).get();
+        shard.submit(() -> shard.debit("T2", "ACC2", 300, "inactive", "minimum")).get();
+        shard.submit(() -> shard.confirm(Collections.singleton("T1"))).get();
+        shard.submit(shard::snapshot).get();
+        Map<String, Long> balances = shard.submit(shard::balances).get();
+        shard.stop();
+
+        LedgerShard reopened = new LedgerShard(0, directory, WAL_BYTES, LedgerShardTest::seed);
+        List<LedgerRecord> replayed = reopened.recover();
+
+        assertThat(replayed).isEmpty();
+        assertThat(reopened.balances()).isEqualTo(balances);
+        assertThat(reopened.pendingKeys()).containsExactly("T2");
+        assertThat(directory.resolve("shard-0.snapshot.tmp")).doesNotExist();
+    }
+
+    @Test
+    void failedWalForceRefusesFurtherWork() throws Exception {
+        AtomicBoolean deviceFailing = new AtomicBoolean();
+        WriteAheadLog wal = new WriteAheadLog(directory.resolve("shard-0.wal"), WAL_BYTES) {
+            @Override
+            void force() {
+                if (deviceFailing.get()) {
+                    throw new UncheckedIOException(new IOException("device error"));
+                }
+                super.force();
+            }
+        };
+        LedgerShard shard = new LedgerShard(0, directory, wal, LedgerShardTest::seed);
+        shard.recover();
+        shard.start();
+        shard.submit(() -> shard.credit("T1", "ACC1", 500, "inactive")).get();
+
+        deviceFailing.set(true);
+        assertThatThrownBy(() -> shard.submit(() -> shard.credit("T2", "ACC1", 500, "inactive")).get())
+                .hasCauseInstanceOf(IllegalStateException.class);
+        deviceFailing.set(false);
+
+        assertThat(shard.failed()).isTrue();
+        // Nothing is answered from balances that may be ahead of the disk
+        assertThatThrownBy(() -> shard.submit(() -> shard.balanceOf("ACC1")).get())
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("failed to force its WAL");
+        shard.stop();
+    }
+
+    private LedgerShard open() throws Exception {
+        LedgerShard shard = new LedgerShard(0, directory, WAL_BYTES, LedgerShardTest::seed);
+        shard.recover();
+        return shard;
+    }
+
+    private static Optional<AccountSeed> seed(String accountNumber) {
+        return Optional.of(new AccountSeed(100_000, 10_000, true));
+    }
+}
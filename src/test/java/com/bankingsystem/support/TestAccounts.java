@@ -0,0 +1,34 @@
+package com.bankingsystem.support;
+
+import com.bankingsystem.model.Account;
+import com.bankingsystem.model.Account.AccountType;
+import com.bankingsystem.model.User;
+import com.bankingsystem.repository.UserRepository;
+import com.bankingsystem.service.AccountService;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Users and accounts for tests that run against the full application context
+ */
+public final class TestAccounts {
+
+    private TestAccounts() {
+    }
+
+    public static User user(UserRepository userRepository) {
+        String name = "u" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        User user = new User();
+        user.setUsername(name);
+        user.setPassword("{noop}password");
+        user.setEmail(name + "@example.com");
+        user.setFirstName("Test");
+        user.setLastName("User");
+        return userRepository.save(user);
+    }
+
+    public static Account savings(AccountService accountService, User user, String balance) {
+        return accountService.createAccount(user, AccountType.SAVINGS, new BigDecimal(balance));
+    }
+}